@@ -112,8 +112,8 @@ def RESULT(logic, true_interest = 0, true_result = "",false_interest = 0, false_
 def ACCEPT_RESULT_IF_ATLEAST_ONE_NON_MISSING_VALUE():
 
 	for logicResult in result.getResult().getAssociatedResults():	
-		if logicResult.isUnresolvable() == false:
-			result.getResult().setUnresolvable(false)
+		if logicResult.isUnresolvable() == False:
+			result.getResult().setUnresolvable(False)
 			break
 	
 	
@@ -122,7 +122,7 @@ def ACCEPT_RESULT():
 	if result.getResult().isUnresolvable():
 		for logicResult in result.getResult().getAssociatedResults():	
 			if logicResult.hasMissingData():
-				result.getResult().setUnresolvable(false)
+				result.getResult().setUnresolvable(False)
 	
 def SET_INTEREST(test,true_interest=0,false_interest=0):
 
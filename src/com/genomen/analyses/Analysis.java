@@ -1,6 +1,8 @@
 package com.genomen.analyses;
 
 import com.genomen.core.AnalysisTask;
+import java.util.ArrayList;
+import java.util.List;
 import org.w3c.dom.Element;
 
 /**
@@ -11,6 +13,7 @@ public abstract class Analysis {
 
 
     private Element element;
+    private final List<String> dependencies = new ArrayList<String>();
 
     /**
      * Returns the DOM element containing the parameters used by this analysis.
@@ -20,6 +23,24 @@ public abstract class Analysis {
         return element;
     }
 
+    /**
+     * Gets the names of the analyses whose results this analysis requires.
+     * @return names of the analyses this analysis depends on
+     */
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Declares that this analysis requires the results of another analysis.
+     * @param analysisName name of the required analysis
+     */
+    public void addDependency( String analysisName ) {
+        if ( !dependencies.contains(analysisName) ) {
+            dependencies.add(analysisName);
+        }
+    }
+
     /**
      * Gets the tag of this analysis.
      * @return
@@ -0,0 +1,155 @@
+package com.genomen.analyses.snp;
+
+import com.genomen.core.AnalysisTask;
+import com.genomen.core.Sample;
+import com.genomen.entities.GenotypeIndex;
+import com.genomen.scripts.LogicResult;
+import com.genomen.scripts.RuleEvaluationException;
+import com.genomen.scripts.RuleProgram;
+import com.genomen.scripts.RuleProgramCache;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.log4j.Logger;
+
+/**
+ * Evaluates rules for all samples of a task at once. Rules consisting only of <code>RESULT(GENO(...))</code>
+ * statements with literal arguments are evaluated column-wise over a <code>GenotypeMatrix</code> of the cohort:
+ * the samples of each outcome are found by combining bitsets, and each outcome is evaluated once per rule.
+ * Other rules, and samples whose genotypes can not be compared, are left to be evaluated one sample at a time.
+ * @author ciszek
+ */
+class CohortRuleEvaluator {
+
+    private final Map<String, Integer> sampleIndexes = new HashMap<String, Integer>();
+    private final Map<String, CohortRule> cohortRules = new HashMap<String, CohortRule>();
+
+    /**
+     * Evaluates the rules that can be evaluated for the cohort.
+     * @param analysisTask task whose samples are evaluated
+     * @param rules rules to be evaluated
+     */
+    CohortRuleEvaluator( AnalysisTask analysisTask, List<Rule> rules ) {
+
+        Map<Rule, List<RuleProgram.GenotypeResult>> statements = new HashMap<Rule, List<RuleProgram.GenotypeResult>>();
+        Set<String> variantIDs = new LinkedHashSet<String>();
+
+        for ( Rule rule : rules ) {
+            RuleProgram program = RuleProgramCache.getInstance().getProgram( rule.getId(), rule.getLogic() );
+            List<RuleProgram.GenotypeResult> genotypeResults = program != null ? program.getGenotypeResults() : null;
+            if ( genotypeResults != null ) {
+                statements.put( rule, genotypeResults );
+                for ( RuleProgram.GenotypeResult genotypeResult : genotypeResults ) {
+                    variantIDs.add( genotypeResult.getVariantID() );
+                }
+            }
+        }
+        if ( statements.isEmpty() ) {
+            return;
+        }
+
+        List<Sample> samples = analysisTask.getSamples();
+        List<GenotypeIndex> genotypeIndexes = new ArrayList<GenotypeIndex>( samples.size() );
+        for ( int sampleIndex = 0; sampleIndex < samples.size(); sampleIndex++ ) {
+            sampleIndexes.put( samples.get(sampleIndex).getId(), sampleIndex );
+            genotypeIndexes.add( analysisTask.getGenotypeIndex( samples.get(sampleIndex).getId() ) );
+        }
+        GenotypeMatrix genotypeMatrix = new GenotypeMatrix( genotypeIndexes, variantIDs );
+        //The matrix holds the genotypes the rules need, so the indexes of all samples are not kept in memory at once.
+        for ( Sample sample : samples ) {
+            analysisTask.releaseGenotypeIndex( sample.getId() );
+        }
+
+        for ( Map.Entry<Rule, List<RuleProgram.GenotypeResult>> entry : statements.entrySet() ) {
+            try {
+                cohortRules.put( entry.getKey().getId(), new CohortRule( entry.getKey(), entry.getValue(), genotypeMatrix ) );
+            }
+            catch (RuleEvaluationException ex) {
+                //The rule is evaluated one sample at a time, which reports the error for the samples concerned.
+                Logger.getLogger( CohortRuleEvaluator.class ).debug(ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the result of a rule for a sample.
+     * @param rule the rule
+     * @param sample the sample
+     * @return result of the rule, or <code>null</code> if the rule has to be evaluated for the sample separately
+     */
+    LogicResult getResult( Rule rule, Sample sample ) {
+
+        CohortRule cohortRule = cohortRules.get( rule.getId() );
+        Integer sampleIndex = sampleIndexes.get( sample.getId() );
+        if ( cohortRule == null || sampleIndex == null ) {
+            return null;
+        }
+        return cohortRule.getResult(sampleIndex);
+    }
+
+    /**
+     * Gets the number of rules evaluated for the cohort.
+     * @return number of rules
+     */
+    int getRuleCount() {
+        return cohortRules.size();
+    }
+
+    /**
+     * Outcomes of a single rule for the cohort. Each statement replaces the result of the previous one, so the result
+     * of a sample is the result of the last statement, which has one of four outcomes depending on whether the genotype
+     * matched and whether it was missing.
+     */
+    private static class CohortRule {
+
+        private final BitSet evaluatedSamples;
+        private final BitSet matchingSamples;
+        private final BitSet missingSamples;
+        private final LogicResult[] outcomes = new LogicResult[4];
+
+        private CohortRule( Rule rule, List<RuleProgram.GenotypeResult> genotypeResults, GenotypeMatrix genotypeMatrix ) throws RuleEvaluationException {
+
+            //Genotypes without an allele fail the comparison of any statement.
+            evaluatedSamples = (BitSet)genotypeMatrix.getIndexedSamples().clone();
+            for ( RuleProgram.GenotypeResult genotypeResult : genotypeResults ) {
+                evaluatedSamples.andNot( genotypeMatrix.getSamplesWithoutAllele( genotypeResult.getVariantID() ) );
+                //Earlier statements only matter if their evaluation fails.
+                for ( int outcome = 0; outcome < outcomes.length; outcome++ ) {
+                    outcomes[outcome] = genotypeResult.evaluate( isMatching(outcome), isMissing(outcome), rule.getInterestLevel() );
+                }
+            }
+
+            RuleProgram.GenotypeResult last = genotypeResults.get( genotypeResults.size() - 1 );
+            missingSamples = genotypeMatrix.getMissingSamples( last.getVariantID() );
+            matchingSamples = genotypeMatrix.getMatchingSamples( last.getVariantID(), last.getAllele() );
+            //A missing genotype is compared as if it were the allele itself.
+            if ( GenotypeMatrix.matches( last.getAllele(), last.getAllele() ) ) {
+                matchingSamples.or(missingSamples);
+            }
+        }
+
+        private LogicResult getResult( int sampleIndex ) {
+
+            if ( !evaluatedSamples.get(sampleIndex) ) {
+                return null;
+            }
+            return outcomes[ getOutcome( matchingSamples.get(sampleIndex), missingSamples.get(sampleIndex) ) ].copy();
+        }
+
+        private static int getOutcome( boolean matching, boolean missing ) {
+            return ( matching ? 1 : 0 ) | ( missing ? 2 : 0 );
+        }
+
+        private static boolean isMatching( int outcome ) {
+            return ( outcome & 1 ) != 0;
+        }
+
+        private static boolean isMissing( int outcome ) {
+            return ( outcome & 2 ) != 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.genomen.analyses.snp;
+
+import com.genomen.entities.GenotypeIndex;
+import com.genomen.scripts.AlleleMatcher;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Genotypes of a cohort for a set of variants. Samples are numbered by their position in the cohort, and for each
+ * variant the samples having each allele are stored as a bitset, so that a genotype comparison is evaluated for all
+ * samples by comparing each distinct allele once and combining the bitsets.
+ * @author ciszek
+ */
+class GenotypeMatrix {
+
+    private final BitSet indexedSamples = new BitSet();
+    private final Map<String, VariantColumn> columns = new HashMap<String, VariantColumn>();
+
+    /**
+     * Constructs a matrix of the given variants.
+     * @param genotypeIndexes genotypes of each sample of the cohort, <code>null</code> for samples without an index
+     * @param variantIDs ids of the variants
+     */
+    GenotypeMatrix( List<GenotypeIndex> genotypeIndexes, Collection<String> variantIDs ) {
+
+        for ( String variantID : variantIDs ) {
+            columns.put( variantID, new VariantColumn() );
+        }
+
+        for ( int sampleIndex = 0; sampleIndex < genotypeIndexes.size(); sampleIndex++ ) {
+            GenotypeIndex genotypeIndex = genotypeIndexes.get(sampleIndex);
+            if ( genotypeIndex == null ) {
+                continue;
+            }
+            indexedSamples.set(sampleIndex);
+
+            for ( Map.Entry<String, VariantColumn> column : columns.entrySet() ) {
+                if ( genotypeIndex.contains( column.getKey() ) ) {
+                    column.getValue().add( sampleIndex, genotypeIndex.get( column.getKey() ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the samples whose genotypes are in the matrix.
+     * @return the samples, not to be modified
+     */
+    BitSet getIndexedSamples() {
+        return indexedSamples;
+    }
+
+    /**
+     * Gets the indexed samples without a genotype for a variant.
+     * @param variantID id of the variant
+     * @return the samples
+     */
+    BitSet getMissingSamples( String variantID ) {
+
+        BitSet missing = (BitSet)indexedSamples.clone();
+        missing.andNot( getColumn(variantID).presentSamples );
+        return missing;
+    }
+
+    /**
+     * Gets the samples that have a variant without an allele. Such genotypes can not be compared.
+     * @param variantID id of the variant
+     * @return the samples, not to be modified
+     */
+    BitSet getSamplesWithoutAllele( String variantID ) {
+        return getColumn(variantID).samplesWithoutAllele;
+    }
+
+    /**
+     * Gets the samples whose genotype of a variant matches an allele as in <code>LogicResult.compareToAllele</code>.
+     * @param variantID id of the variant
+     * @param allele allele compared to
+     * @return the samples
+     */
+    BitSet getMatchingSamples( String variantID, String allele ) {
+
+        BitSet matching = new BitSet();
+
+        for ( Map.Entry<String, BitSet> samplesByAllele : getColumn(variantID).samplesByAllele.entrySet() ) {
+            if ( matches( samplesByAllele.getKey(), allele ) ) {
+                matching.or( samplesByAllele.getValue() );
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Compares a genotype to an allele.
+     * @param genotype genotype of a sample
+     * @param allele allele compared to
+     * @return result of the comparison
+     */
+    static boolean matches( String genotype, String allele ) {
+
+        return AlleleMatcher.getMatcher(allele).matches(genotype);
+    }
+
+    private VariantColumn getColumn( String variantID ) {
+
+        VariantColumn column = columns.get(variantID);
+        if ( column == null ) {
+            throw new IllegalArgumentException( "Variant " + variantID + " is not in the matrix" );
+        }
+        return column;
+    }
+
+    /**
+     * Samples of a single variant grouped by allele.
+     */
+    private static class VariantColumn {
+
+        private final Map<String, BitSet> samplesByAllele = new HashMap<String, BitSet>();
+        private final BitSet presentSamples = new BitSet();
+        private final BitSet samplesWithoutAllele = new BitSet();
+
+        private void add( int sampleIndex, String allele ) {
+
+            presentSamples.set(sampleIndex);
+            if ( allele == null ) {
+                samplesWithoutAllele.set(sampleIndex);
+                return;
+            }
+            BitSet samples = samplesByAllele.get(allele);
+            if ( samples == null ) {
+                samples = new BitSet();
+                samplesByAllele.put( allele, samples );
+            }
+            samples.set(sampleIndex);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.genomen.analyses.snp;
+
+import com.genomen.entities.GenotypeIndex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the genotypes referred to by each rule. The references are read from the <code>GENO("id", ...)</code> calls
+ * in the logic of a rule and of the rules it refers to with <code>RULE("id")</code>. Rules whose references can not be
+ * determined from the logic, such as rules passing variables to <code>GENO</code>, are not indexed.
+ * @author ciszek
+ */
+public class RuleGenotypeIndex {
+
+    private static final String GENOTYPE_FUNCTION = "GENO";
+    private static final String RULE_FUNCTION = "RULE";
+    private static final String DATA_FUNCTION = "compareToData";
+
+    //Genotypes by rule id. Rules that are not indexed are mapped to null.
+    private final Map<String, List<String>> genotypes = new HashMap<String, List<String>>();
+
+    /**
+     * Constructs an index of the given rules.
+     * @param rules all rules that can be referred to, keyed by id
+     */
+    public RuleGenotypeIndex( Map<String, Rule> rules ) {
+
+        for ( String ruleID : rules.keySet() ) {
+            resolve( ruleID, rules, new HashSet<String>() );
+        }
+    }
+
+    /**
+     * Gets the genotypes referred to by a rule.
+     * @param ruleID id of the rule
+     * @return ids of the variants, or <code>null</code> if the rule is not indexed
+     */
+    public List<String> getGenotypes( String ruleID ) {
+        return genotypes.get(ruleID);
+    }
+
+    /**
+     * Checks whether a rule refers to genotypes of which none is present in the data of a sample.
+     * Such a rule can not be resolved for the sample.
+     * @param ruleID id of the rule
+     * @param genotypeIndex genotypes of the sample
+     * @return <code>true</code> if the rule is indexed, refers to at least one genotype and none of them is present, <code>false</code> otherwise
+     */
+    public boolean isMissingAllGenotypes( String ruleID, GenotypeIndex genotypeIndex ) {
+
+        List<String> ruleGenotypes = genotypes.get(ruleID);
+        if ( ruleGenotypes == null || ruleGenotypes.isEmpty() ) {
+            return false;
+        }
+        for ( String variantID : ruleGenotypes ) {
+            if ( genotypeIndex.contains(variantID) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Collects the genotypes of a rule and of the rules it refers to. Unknown and recursive references leave the rule unindexed.
+    private List<String> resolve( String ruleID, Map<String, Rule> rules, Set<String> visited ) {
+
+        if ( genotypes.containsKey(ruleID) ) {
+            return genotypes.get(ruleID);
+        }
+        Rule rule = rules.get(ruleID);
+        if ( rule == null || rule.getLogic() == null || !visited.add(ruleID) ) {
+            return null;
+        }
+
+        String logic = rule.getLogic();
+        List<String> ruleGenotypes = null;
+        List<String> genotypeReferences = findReferences( logic, GENOTYPE_FUNCTION );
+        List<String> ruleReferences = findReferences( logic, RULE_FUNCTION );
+
+        if ( genotypeReferences != null && ruleReferences != null && !logic.contains(DATA_FUNCTION) ) {
+            Set<String> collected = new LinkedHashSet<String>(genotypeReferences);
+            for ( String referredRuleID : ruleReferences ) {
+                List<String> referredGenotypes = resolve( referredRuleID, rules, visited );
+                if ( referredGenotypes == null ) {
+                    collected = null;
+                    break;
+                }
+                collected.addAll(referredGenotypes);
+            }
+            if ( collected != null ) {
+                ruleGenotypes = Collections.unmodifiableList( new ArrayList<String>(collected) );
+            }
+        }
+
+        visited.remove(ruleID);
+        genotypes.put( ruleID, ruleGenotypes );
+        return ruleGenotypes;
+    }
+
+    /**
+     * Finds the string literals passed as the first argument of a function.
+     * @param logic logic of a rule
+     * @param function name of the function
+     * @return the literals, or <code>null</code> if the function is called with something else than a literal
+     */
+    private static List<String> findReferences( String logic, String function ) {
+
+        List<String> references = new ArrayList<String>();
+        int position = findCall( logic, function, 0 );
+
+        while ( position >= 0 ) {
+            position = skipWhitespace( logic, position );
+            if ( position >= logic.length() || ( logic.charAt(position) != '"' && logic.charAt(position) != '\'' ) ) {
+                return null;
+            }
+            char quote = logic.charAt(position);
+            int end = logic.indexOf( quote, position + 1 );
+            if ( end < 0 ) {
+                return null;
+            }
+            references.add( logic.substring( position + 1, end ) );
+            position = findCall( logic, function, end + 1 );
+        }
+        return references;
+    }
+
+    //Finds the next call of a function and returns the position following the opening parenthesis, or -1.
+    private static int findCall( String logic, String function, int from ) {
+
+        int position = logic.indexOf( function, from );
+        while ( position >= 0 ) {
+            int next = skipWhitespace( logic, position + function.length() );
+            boolean separated = position == 0 || !isIdentifierCharacter( logic.charAt(position - 1) );
+            if ( separated && next < logic.length() && logic.charAt(next) == '(' ) {
+                return next + 1;
+            }
+            position = logic.indexOf( function, position + 1 );
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace( String logic, int position ) {
+
+        while ( position < logic.length() && Character.isWhitespace( logic.charAt(position) ) ) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isIdentifierCharacter( char c ) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+}
@@ -9,8 +9,24 @@ import com.genomen.dao.DAOFactory;
 import com.genomen.dao.RuleDAO;
 import com.genomen.scripts.LogicResult;
 import com.genomen.scripts.JythonLogicExecutor;
+import com.genomen.scripts.RuleEvaluationException;
+import com.genomen.scripts.RuleProgram;
+import com.genomen.scripts.RuleProgramCache;
+import com.genomen.core.AnalysisExecutor;
+import com.genomen.core.Configuration;
+import com.genomen.entities.GenotypeIndex;
+import com.genomen.metrics.ExecutionTrace;
+import com.genomen.metrics.Metrics;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.log4j.Logger;
 
 
 /**
@@ -19,6 +35,8 @@ import java.util.List;
  */
 public class SNPAnalysis extends Analysis {
 
+    //Name of the throughput counting the rules evaluated for samples
+    private static final String RULE_EVALUATIONS = "RuleEvaluations";
 
     public String getTag() {
         return this.getClass().getName();
@@ -32,26 +50,137 @@ public class SNPAnalysis extends Analysis {
         RuleDAO ruleDAO = DAOFactory.getDAOFactory().getRuleDAO();
         //Add all available rules from the database to the list of rules.
         ruleList.addAll( ruleDAO.getRules(true) );
+        //Rules referred to by other rules are looked up from memory instead of the database.
+        Map<String, Rule> ruleMap = new HashMap<String, Rule>();
+        for ( Rule rule : ruleDAO.getRules(false) ) {
+            ruleMap.put( rule.getId(), rule );
+        }
+        //Genotypes referred to by the rules, used to leave out rules that can not be resolved for a sample.
+        RuleGenotypeIndex ruleGenotypeIndex = Configuration.getConfiguration().isSkipRulesWithoutGenotypes() ? new RuleGenotypeIndex(ruleMap) : null;
 
         List<Sample> samples = analysisTask.getSamples();
+        //Rules depending only on genotypes are evaluated for all samples at once.
+        CohortRuleEvaluator cohortRuleEvaluator = null;
+        if ( Configuration.getConfiguration().isCohortRuleEvaluation() && Configuration.getConfiguration().getRuleEngine() == JythonLogicExecutor.NATIVE_ENGINE && samples.size() > 1 ) {
+            cohortRuleEvaluator = new CohortRuleEvaluator(analysisTask, ruleList);
+        }
+        ConcurrentLinkedQueue<Sample> pendingSamples = new ConcurrentLinkedQueue<Sample>(samples);
+
+        int workerCount = Math.min( AnalysisExecutor.getMaxConcurrentSamplesPerTask(), samples.size() );
+
+        //A single worker is run on the calling thread.
+        if ( workerCount <= 1 ) {
+            new SampleWorker(analysisTask, ruleList, ruleMap, ruleGenotypeIndex, cohortRuleEvaluator, pendingSamples).run();
+            return;
+        }
+
+        //Perform all available sub-analyses (rules) for each sample, several samples at a time.
+        ExecutorService executorService = AnalysisExecutor.getSampleExecutorService();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for ( int i = 0; i < workerCount; i++ ) {
+                futures.add( executorService.submit( new SampleWorker(analysisTask, ruleList, ruleMap, ruleGenotypeIndex, cohortRuleEvaluator, pendingSamples) ) );
+            }
+        }
+        catch (RejectedExecutionException ex) {
+            //The shared executor has been shut down, the remaining samples are analyzed on this thread.
+            Logger.getLogger( SNPAnalysis.class ).debug(ex);
+            new SampleWorker(analysisTask, ruleList, ruleMap, ruleGenotypeIndex, cohortRuleEvaluator, pendingSamples).run();
+        }
 
-        //Perform all available sub-analyses (rules) for each sample
-        for ( int i = 0; i < samples.size(); i++) {
-            Results results = new Results(this.getTag(), false);
-            performSubAnalyses(analysisTask, samples.get(i), ruleList, results );
-            analysisTask.addResults(samples.get(i).getId(), this.getTag(), results);
+        Throwable failure = null;
+        for ( Future<?> future : futures ) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException ex) {
+                Logger.getLogger( SNPAnalysis.class ).error(ex);
+                pendingSamples.clear();
+                for ( Future<?> running : futures ) {
+                    running.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( "Analysis of samples was interrupted", ex );
+            }
+            catch (ExecutionException ex) {
+                //The other workers finish their current sample and the rest are not analyzed.
+                pendingSamples.clear();
+                if ( failure == null ) {
+                    failure = ex.getCause();
+                }
+            }
+        }
+        if ( failure != null ) {
+            throw new IllegalStateException( "Analysis of samples failed", failure );
         }
 
     }
 
-    private void performSubAnalyses( AnalysisTask analysisTask, Sample sample, List<Rule> ruleList, Results results) {
+    /**
+     * Analyzes samples taken from a shared queue until the queue is empty.
+     * Each sample gets a <code>JythonLogicExecutor</code> of its own, as script engines are not thread safe
+     * and keep the variables set by the rules.
+     */
+    private class SampleWorker implements Runnable {
+
+        private final AnalysisTask analysisTask;
+        private final List<Rule> ruleList;
+        private final Map<String, Rule> ruleMap;
+        private final RuleGenotypeIndex ruleGenotypeIndex;
+        private final CohortRuleEvaluator cohortRuleEvaluator;
+        private final ConcurrentLinkedQueue<Sample> pendingSamples;
+
+        private SampleWorker( AnalysisTask p_analysisTask, List<Rule> p_ruleList, Map<String, Rule> p_ruleMap, RuleGenotypeIndex p_ruleGenotypeIndex, CohortRuleEvaluator p_cohortRuleEvaluator, ConcurrentLinkedQueue<Sample> p_pendingSamples ) {
+            analysisTask = p_analysisTask;
+            ruleList = p_ruleList;
+            ruleMap = p_ruleMap;
+            ruleGenotypeIndex = p_ruleGenotypeIndex;
+            cohortRuleEvaluator = p_cohortRuleEvaluator;
+            pendingSamples = p_pendingSamples;
+        }
 
-        JythonLogicExecutor jythonLogicExecutor = new JythonLogicExecutor(analysisTask);
+        @Override
+        public void run() {
+
+            Sample sample;
+
+            while ( (sample = pendingSamples.poll()) != null && !Thread.currentThread().isInterrupted() ) {
+                ExecutionTrace.Span span = analysisTask.getTrace().begin( ExecutionTrace.CATEGORY_SAMPLE, sample.getId() );
+                Results results = new Results(getTag(), false);
+                //All genotypes of the sample are read in a single query before the rules are applied.
+                GenotypeIndex genotypeIndex = ruleGenotypeIndex != null ? analysisTask.getGenotypeIndex( sample.getId() ) : null;
+                JythonLogicExecutor jythonLogicExecutor = new JythonLogicExecutor(analysisTask, ruleMap);
+                performSubAnalyses(jythonLogicExecutor, sample, ruleList, ruleGenotypeIndex, genotypeIndex, cohortRuleEvaluator, analysisTask.getTrace(), results );
+                analysisTask.addResults(sample.getId(), getTag(), results);
+                //The index is not needed after the sample has been analyzed.
+                analysisTask.releaseGenotypeIndex( sample.getId() );
+                span.end();
+            }
+        }
+    }
+
+    private void performSubAnalyses( JythonLogicExecutor jythonLogicExecutor, Sample sample, List<Rule> ruleList, RuleGenotypeIndex ruleGenotypeIndex, GenotypeIndex genotypeIndex, CohortRuleEvaluator cohortRuleEvaluator, ExecutionTrace trace, Results results) {
+
+        boolean tracingRules = trace.isTracingRules();
 
        //Loop through all listed rules.
         for ( int i = 0; i < ruleList.size(); i++) {
             
-            LogicResult logicResult = jythonLogicExecutor.execute( ruleList.get(i).getLogic(), sample, ruleList.get(i).getInterestLevel() );
+            LogicResult logicResult = null;
+            ExecutionTrace.Span span = tracingRules ? trace.begin( ExecutionTrace.CATEGORY_RULE, ruleList.get(i).getId() ) : null;
+            //Rules without any of their genotypes present are evaluated without querying the data.
+            if ( genotypeIndex != null && ruleGenotypeIndex.isMissingAllGenotypes( ruleList.get(i).getId(), genotypeIndex ) ) {
+                logicResult = evaluateWithoutGenotypes( ruleList.get(i) );
+            }
+            if ( logicResult == null && cohortRuleEvaluator != null ) {
+                logicResult = cohortRuleEvaluator.getResult( ruleList.get(i), sample );
+            }
+            if ( logicResult == null ) {
+                logicResult = jythonLogicExecutor.execute( ruleList.get(i), sample );
+            }
+            if ( span != null ) {
+                span.end();
+            }
 
             //If the logic script executed fails to return LogicResult, move to next iteration
             if ( logicResult == null ) {
@@ -71,6 +200,37 @@ public class SNPAnalysis extends Analysis {
             results.addResult(snpResultEntity);
 
         }
+        Metrics.getThroughput( RULE_EVALUATIONS ).mark( ruleList.size() );
+    }
+
+    /**
+     * Evaluates a rule consisting only of <code>RESULT(GENO(...))</code> statements for a sample that has none of
+     * its genotypes. Each missing genotype is compared as if it were the allele itself, so the result is the one the
+     * rule gives when executed.
+     * @return result of the rule, or <code>null</code> if the rule has other statements and has to be executed
+     */
+    private static LogicResult evaluateWithoutGenotypes( Rule rule ) {
+
+        RuleProgram program = RuleProgramCache.getInstance().getProgram( rule.getId(), rule.getLogic() );
+        List<RuleProgram.GenotypeResult> genotypeResults = program != null ? program.getGenotypeResults() : null;
+        if ( genotypeResults == null ) {
+            return null;
+        }
+
+        LogicResult logicResult = null;
+        try {
+            //Each statement replaces the result of the previous one.
+            for ( RuleProgram.GenotypeResult genotypeResult : genotypeResults ) {
+                boolean matches = GenotypeMatrix.matches( genotypeResult.getAllele(), genotypeResult.getAllele() );
+                logicResult = genotypeResult.evaluate( matches, true, rule.getInterestLevel() );
+            }
+        }
+        catch (RuleEvaluationException ex) {
+            //Executing the rule reports the error.
+            Logger.getLogger( SNPAnalysis.class ).debug(ex);
+            return null;
+        }
+        return logicResult;
     }
 
 
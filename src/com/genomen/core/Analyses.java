@@ -115,6 +115,11 @@ public class Analyses {
                 parameters = (Element)parameterList.item(0);
             }
             if ( analyzationLogic != null ) {
+                //Analyses whose results must be available before this analysis is performed
+                NodeList dependencyList = logic.getElementsByTagName("dependsOn");
+                for ( int dependencyIndex = 0; dependencyIndex < dependencyList.getLength(); dependencyIndex++ ) {
+                    analyzationLogic.addDependency( dependencyList.item(dependencyIndex).getTextContent().trim() );
+                }
                 analyzationLogic.initialize( parameters );
                 returnedLogics.put(analyzationLogic.getClass().getName(), analyzationLogic);
             }
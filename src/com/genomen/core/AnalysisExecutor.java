@@ -1,12 +1,12 @@
 package com.genomen.core;
 
 import com.genomen.core.Error.ErrorType;
+import com.genomen.importers.ImporterFactory;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
 
 /**
  * Manages analysis queues and executes analyses
@@ -19,11 +19,16 @@ public class AnalysisExecutor {
     private static final int MAX_CONCURRENT_REQUESTS = Configuration.getConfiguration().getMaxConcurrentRequests();
     private static final int MAX_QUEUE_TIME = Configuration.getConfiguration().getMaxQueueTime();
 
-    //A list of analyzation tasks currently in progress or waiting to be started.
-    private static final LinkedBlockingQueue<Runnable> analysisQueue = new LinkedBlockingQueue<Runnable>();
+    //Analysis requests waiting to be started.
+    private static final RequestScheduler requestScheduler = new RequestScheduler( Configuration.getConfiguration().getMaxQueuedRequests(),
+            Configuration.getConfiguration().getQueueRejectionPolicy(), TimeUnit.MINUTES.toMillis(MAX_QUEUE_TIME),
+            Configuration.getConfiguration().getMaxConcurrentCohortRequests() );
 
     private static final ExecutorService analysisExecutorService = Executors.newFixedThreadPool(MAX_CONCURRENT_ANALYSES);
-    private static final ThreadPoolExecutor requestQueueThreadPoolExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS, MAX_QUEUE_TIME, TimeUnit.MINUTES, analysisQueue);
+    //Samples of the requests running at the same time are analyzed on threads shared by all analyses.
+    private static final ExecutorService sampleExecutorService = Executors.newFixedThreadPool( Math.max( 1, MAX_CONCURRENT_SAMPLES_PER_TASK ) * Math.max( 1, MAX_CONCURRENT_REQUESTS ) );
+    //Each thread performs requests taken from the scheduler.
+    private static final ExecutorService requestExecutorService = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
 
     private static boolean running = false;
 
@@ -42,64 +47,157 @@ public class AnalysisExecutor {
         return MAX_CONCURRENT_SAMPLES_PER_TASK;
     }
 
+    /**
+     * Returns the maximum number of analyses performed simultaneously over all tasks.
+     * @return maximum number of concurrent analyses
+     */
+    public static int getMaxConcurrentAnalyses() {
+        return MAX_CONCURRENT_ANALYSES;
+    }
+
+    /**
+     * Gets the executor shared by all tasks for performing analyses.
+     * @return analysis executor
+     */
+    static ExecutorService getAnalysisExecutorService() {
+        return analysisExecutorService;
+    }
+
+    /**
+     * Gets the executor shared by all analyses for analyzing samples concurrently.
+     * @return sample executor
+     */
+    public static ExecutorService getSampleExecutorService() {
+        return sampleExecutorService;
+    }
+
     /**
      * Returns the current length of the analysis queue.
      * @return the size of the queue
      */
     public static int getQueueLength() {
-        return analysisQueue.size();
+        return requestScheduler.getQueueLength();
     }
 
     /**
-     * Submits an analysis request.
+     * Returns the number of analysis requests currently being performed.
+     * @return number of running requests
+     */
+    public static int getRunningRequests() {
+        return requestScheduler.getRunningRequests();
+    }
+
+    /**
+     * Returns the number of analysis requests that failed because the queue was full.
+     * @return number of rejected requests
+     */
+    public static long getRejectedRequests() {
+        return requestScheduler.getRejectedRequests();
+    }
+
+    /**
+     * Returns the number of analysis requests that failed because they waited longer than the maximum queue time.
+     * @return number of expired requests
+     */
+    public static long getExpiredRequests() {
+        return requestScheduler.getExpiredRequests();
+    }
+
+    /**
+     * Returns the average time the started analysis requests waited in the queue.
+     * @return average wait time in milliseconds
+     */
+    public static long getAverageWaitTime() {
+        return requestScheduler.getAverageWaitTime();
+    }
+
+    /**
+     * Returns the longest time a started analysis request waited in the queue.
+     * @return maximum wait time in milliseconds
+     */
+    public static long getMaxWaitTime() {
+        return requestScheduler.getMaxWaitTime();
+    }
+
+    /**
+     * Submits an analysis request. Requests are started in order of priority, and fail if the queue is full or
+     * if they wait longer than the maximum queue time.
      * @param analysisRequest <code>AnalysisRequest</code> containing necessary information for the analysis.
      */
-    public static void requestAnalysis( AnalysisRequest analysisRequest ) {
+    public static synchronized void requestAnalysis( AnalysisRequest analysisRequest ) {
 
         if ( !running) {
             analysisRequest.addError(new Error( ErrorType.CORE_SHUTDOWN ) );
             return;
         }
-
-        //If the queue thread pool is not shut down, add the requested analysis to the queue.
-        if ( !requestQueueThreadPoolExecutor.isShutdown() ) {
-            //Create a new runanble to wait in queue while the thread submitting the request continues running.
-            AnalysisQueueRunnable analysisQueueRunnable = new AnalysisQueueRunnable( analysisRequest );
-            //Add the request to the queu
-            requestQueueThreadPoolExecutor.execute(analysisQueueRunnable);
-        }
-        else {
-            analysisRequest.addError(new Error( ErrorType.CORE_SHUTDOWN ) );
-        }
+        requestScheduler.submit(analysisRequest);
     }
 
 
     /**
      *Starts up the executor and enables analysis requests to be submitted.
      */
-    public static void start() {
+    public static synchronized void start() {
 
+        if ( running || requestExecutorService.isShutdown() ) {
+            return;
+        }
         running = true;
-        Executors.newFixedThreadPool(MAX_CONCURRENT_ANALYSES);
-
+        ImporterFactory.initialize();
+        //Publishes the queue statistics.
+        RequestMetrics.getInstance();
+        for ( int i = 0; i < MAX_CONCURRENT_REQUESTS; i++ ) {
+            requestExecutorService.execute( new RequestWorker() );
+        }
     }
    
     /**
      * Shuts down the analyzer.
      */
-    public static void shutDown() {
+    public static synchronized void shutDown() {
 
         running = false;
 
-        List<Runnable> queue = requestQueueThreadPoolExecutor.shutdownNow();
+        List<AnalysisRequest> queue = requestScheduler.shutDown();
         //Loop through the list of pending analyses.
         for ( int i = 0; i < queue.size(); i++ ) {
-            AnalysisRequest analysisRequest = ((AnalysisQueueRunnable)queue.get(i)).getAnalysisRequest();
+            AnalysisRequest analysisRequest = queue.get(i);
             analysisRequest.addError( new Error( ErrorType.CORE_SHUTDOWN) );
             analysisRequest.cancel();
         }
+        requestExecutorService.shutdownNow();
         analysisExecutorService.shutdown();
+        sampleExecutorService.shutdown();
 
     }
+
+    /**
+     * Performs requests taken from the scheduler until it is shut down.
+     */
+    private static class RequestWorker implements Runnable {
+
+        @Override
+        public void run() {
+
+            try {
+                RequestScheduler.QueuedRequest queuedRequest;
+                while ( ( queuedRequest = requestScheduler.take() ) != null ) {
+                    try {
+                        new AnalysisQueueRunnable( queuedRequest.getAnalysisRequest() ).run();
+                    }
+                    catch (RuntimeException ex) {
+                        Logger.getLogger( AnalysisExecutor.class ).error(ex);
+                    }
+                    finally {
+                        requestScheduler.finished(queuedRequest);
+                    }
+                }
+            }
+            catch (InterruptedException ex) {
+                Logger.getLogger( AnalysisExecutor.class ).debug(ex);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
  
 }
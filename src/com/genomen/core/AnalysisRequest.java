@@ -1,5 +1,8 @@
 package com.genomen.core;
 
+import com.genomen.importers.ImporterFactory;
+import com.genomen.metrics.ExecutionTrace;
+import com.genomen.readers.vcfreader.VCFReader;
 import com.genomen.reporter.Report;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,8 +16,17 @@ import java.util.Observable;
 public class AnalysisRequest extends Observable {
 
     private TaskState state = TaskState.INITIALIZED;
+    //When the current state was entered, from System.nanoTime()
+    private long stateTime = System.nanoTime();
+
+    private final ExecutionTrace trace = Configuration.getConfiguration().isExecutionTrace()
+            ? new ExecutionTrace( true, Configuration.getConfiguration().isTraceRules() ) : ExecutionTrace.DISABLED;
     
     private boolean persistDatasets = false;
+
+    private int priority = 0;
+
+    private boolean streamingReports = Configuration.getConfiguration().isStreamingReports();
     
     private ArrayList<Report> reports = new ArrayList<Report>();
 
@@ -178,6 +190,8 @@ public class AnalysisRequest extends Observable {
         this.requiredFormats.addAll(p_formats);
         this.samples.addAll(samples);
         this.language = p_language;
+        RequestMetrics.getInstance().stateChanged( null, state, 0 );
+        trace.beginState( state.name() );
     }
 
     /**
@@ -191,6 +205,8 @@ public class AnalysisRequest extends Observable {
         requiredAnalyses.addAll(p_requiredAnalyses);
         requiredFormats.addAll(p_formats);
         language = p_language;
+        RequestMetrics.getInstance().stateChanged( null, state, 0 );
+        trace.beginState( state.name() );
     }
     
     /**
@@ -233,6 +249,15 @@ public class AnalysisRequest extends Observable {
      * @param p_state the new state
      */
         public void changeState( TaskState p_state ) {
+        long now = System.nanoTime();
+        RequestMetrics.getInstance().stateChanged( state, p_state, now - stateTime );
+        stateTime = now;
+        if ( p_state == TaskState.FINISHED ) {
+            trace.endState();
+        }
+        else if ( p_state != state ) {
+            trace.beginState( p_state.name() );
+        }
         state = p_state;
         setChanged();
         notifyObservers();
@@ -260,6 +285,58 @@ public class AnalysisRequest extends Observable {
         this.persistDatasets = persistDatasets;
     }
 
+    /**Are the reports written directly to the output path one sample at a time.
+     * Streamed reports are not added to this request.
+     * @return <code>true</code> if the reports are streamed, <code>false</code> otherwise.
+     */
+    public boolean isStreamingReports() {
+        return streamingReports;
+    }
+
+    /**Sets the reports to be written directly to the output path one sample at a time.
+     * @param p_streamingReports Are the reports streamed.
+     */
+    public void setStreamingReports(boolean p_streamingReports) {
+        streamingReports = p_streamingReports;
+    }
+
+    /**Gets the priority of this request. Requests of higher priority are started first.
+     * @return the priority, 0 by default
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**Sets the priority of this request. Requests of higher priority are started first.
+     * @param p_priority the priority
+     */
+    public void setPriority( int p_priority ) {
+        priority = p_priority;
+    }
+
+    /**Gets the number of samples analysed by this request. If no samples are listed, the samples of the datasets are
+     * counted, reading the headers of VCF files. Datasets of other formats are counted as one sample.
+     * @return the number of samples
+     */
+    public int getSampleCount() {
+
+        if ( !samples.isEmpty() ) {
+            return samples.size();
+        }
+        int sampleCount = 0;
+        for ( DataSet dataset : datasets ) {
+            sampleCount += countSamples(dataset);
+        }
+        return sampleCount;
+    }
+
+    /**Gets the execution trace of this request.
+     * @return the trace, disabled unless tracing is enabled in the configuration
+     */
+    public ExecutionTrace getTrace() {
+        return trace;
+    }
+
     /**Gets the IDs of the samples that are to be analysed.
      * @return the sample IDs
      */
@@ -267,4 +344,24 @@ public class AnalysisRequest extends Observable {
         return samples;
     }
 
+    //Counts the genotype columns of the VCF files of a dataset. The files of a dataset share their samples.
+    private static int countSamples( DataSet dataset ) {
+
+        if ( !ImporterFactory.VCF.equalsIgnoreCase( dataset.getFormat() ) ) {
+            return 1;
+        }
+        int sampleCount = 1;
+        for ( String file : dataset.getFiles() ) {
+            VCFReader reader = new VCFReader();
+            if ( reader.open(file) ) {
+                List<String> sampleIDs = reader.getSampleIDs();
+                if ( sampleIDs != null ) {
+                    sampleCount = Math.max( sampleCount, sampleIDs.size() );
+                }
+                reader.close();
+            }
+        }
+        return sampleCount;
+    }
+
 }
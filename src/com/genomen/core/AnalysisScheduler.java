@@ -0,0 +1,200 @@
+package com.genomen.core;
+
+import com.genomen.analyses.Analysis;
+import com.genomen.metrics.ExecutionTrace;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.log4j.Logger;
+
+/**
+ * Performs the analyses of a task concurrently on the shared analysis executor.
+ * An analysis is started once all the analyses it depends on have finished.
+ * @author ciszek
+ */
+class AnalysisScheduler {
+
+    private final AnalysisTask analysisTask;
+    private final int maxConcurrentAnalyses;
+
+    private final Map<String, Analysis> analyses = new LinkedHashMap<String, Analysis>();
+    private final Map<String, Integer> unfinishedDependencies = new HashMap<String, Integer>();
+    private final Map<String, List<String>> dependentAnalyses = new HashMap<String, List<String>>();
+    private final List<Error> errors = new ArrayList<Error>();
+
+    /**
+     * Constructs a scheduler for the analyses of a task
+     * @param p_analysisTask task to be analyzed
+     * @param p_analyses analyses to be performed
+     * @param p_maxConcurrentAnalyses maximum number of analyses of this task run at the same time
+     */
+    AnalysisScheduler( AnalysisTask p_analysisTask, List<Analysis> p_analyses, int p_maxConcurrentAnalyses ) {
+
+        analysisTask = p_analysisTask;
+        maxConcurrentAnalyses = Math.max(1, p_maxConcurrentAnalyses);
+
+        for ( Analysis analysis : p_analyses ) {
+            analyses.put( analysis.getClass().getName(), analysis );
+        }
+
+        for ( String name : analyses.keySet() ) {
+
+            int dependencyCount = 0;
+
+            for ( String dependency : analyses.get(name).getDependencies() ) {
+                //Results of analyses that were not requested are not waited for.
+                if ( !analyses.containsKey(dependency) ) {
+                    Logger.getLogger( AnalysisScheduler.class ).warn( name + " depends on " + dependency + " which is not performed" );
+                    continue;
+                }
+                if ( !dependentAnalyses.containsKey(dependency) ) {
+                    dependentAnalyses.put(dependency, new LinkedList<String>());
+                }
+                dependentAnalyses.get(dependency).add(name);
+                dependencyCount++;
+            }
+            unfinishedDependencies.put(name, dependencyCount);
+        }
+    }
+
+    /**
+     * Performs the analyses and waits for them to finish. If an analysis fails unexpectedly no further analyses are
+     * started, but the ones already running are waited for.
+     * @return errors that prevented analyses from being performed
+     */
+    List<Error> performAnalyses() {
+
+        LinkedList<String> readyAnalyses = new LinkedList<String>();
+        for ( String name : analyses.keySet() ) {
+            if ( unfinishedDependencies.get(name) == 0 ) {
+                readyAnalyses.add(name);
+            }
+        }
+
+        ExecutorCompletionService<String> completionService = new ExecutorCompletionService<String>( AnalysisExecutor.getAnalysisExecutorService() );
+        Map<Future<String>, String> runningAnalyses = new HashMap<Future<String>, String>();
+        boolean failed = false;
+
+        try {
+            while ( ( !failed && !readyAnalyses.isEmpty() ) || !runningAnalyses.isEmpty() ) {
+
+                while ( !failed && !readyAnalyses.isEmpty() && runningAnalyses.size() < maxConcurrentAnalyses ) {
+                    String name = readyAnalyses.removeFirst();
+                    AnalysisCallable analysisCallable = new AnalysisCallable( name, analyses.get(name) );
+                    try {
+                        runningAnalyses.put( completionService.submit( analysisCallable ), name );
+                    }
+                    catch (RejectedExecutionException ex) {
+                        //The shared executor has been shut down, perform the analysis on this thread.
+                        Logger.getLogger( AnalysisScheduler.class ).debug(ex);
+                        try {
+                            finish( analysisCallable.call(), readyAnalyses );
+                        }
+                        catch (RuntimeException analysisException) {
+                            fail( name, analysisException );
+                            failed = true;
+                        }
+                    }
+                }
+
+                if ( !runningAnalyses.isEmpty() ) {
+                    Future<String> future = completionService.take();
+                    String name = runningAnalyses.remove(future);
+                    try {
+                        finish( future.get(), readyAnalyses );
+                    }
+                    catch (ExecutionException ex) {
+                        //The analyses depending on the failed one and the rest of the task are not performed.
+                        fail( name, ex.getCause() );
+                        failed = true;
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Logger.getLogger( AnalysisScheduler.class ).error(ex);
+            for ( Map.Entry<Future<String>, String> runningAnalysis : runningAnalyses.entrySet() ) {
+                runningAnalysis.getKey().cancel(true);
+                addError( runningAnalysis.getValue() + ": interrupted" );
+            }
+            Thread.currentThread().interrupt();
+            return errors;
+        }
+
+        for ( String name : analyses.keySet() ) {
+            if ( unfinishedDependencies.get(name) >= 0 ) {
+                //Without a failure, analyses left waiting depend on each other.
+                addError( name + ( failed ? ": not performed" : ": cyclic dependency" ) );
+            }
+        }
+
+        return errors;
+    }
+
+    private void addError( String source ) {
+
+        synchronized ( errors ) {
+            errors.add( new Error( Error.ErrorType.ANALYSIS_FAILED, source ) );
+        }
+    }
+
+    //Marks an analysis failed without releasing the analyses depending on it.
+    private void fail( String name, Throwable cause ) {
+
+        Logger.getLogger( AnalysisScheduler.class ).error(cause);
+        addError( name + ": " + cause );
+        unfinishedDependencies.put(name, -1);
+    }
+
+    private void finish( String name, LinkedList<String> readyAnalyses ) {
+
+        unfinishedDependencies.put(name, -1);
+
+        if ( !dependentAnalyses.containsKey(name) ) {
+            return;
+        }
+        for ( String dependent : dependentAnalyses.get(name) ) {
+            int remaining = unfinishedDependencies.get(dependent) - 1;
+            unfinishedDependencies.put(dependent, remaining);
+            if ( remaining == 0 ) {
+                readyAnalyses.add(dependent);
+            }
+        }
+    }
+
+    /**
+     * Performs a single analysis and returns its name once finished. Exceptions thrown by the analysis are passed on
+     * to the scheduler.
+     */
+    private class AnalysisCallable implements Callable<String> {
+
+        private final String name;
+        private final Analysis analysis;
+
+        private AnalysisCallable( String p_name, Analysis p_analysis ) {
+            name = p_name;
+            analysis = p_analysis;
+        }
+
+        @Override
+        public String call() {
+
+            ExecutionTrace.Span span = analysisTask.getTrace().begin( ExecutionTrace.CATEGORY_ANALYSIS, analysis.getClass().getSimpleName() );
+            try {
+                analysis.analyze(analysisTask);
+            }
+            finally {
+                span.end();
+            }
+            return name;
+        }
+    }
+}
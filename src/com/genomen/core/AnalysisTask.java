@@ -6,10 +6,14 @@ import com.genomen.dao.DAOFactory;
 import com.genomen.dao.DataSetDAO;
 import com.genomen.dao.TaskDAO;
 import com.genomen.entities.DataType;
-import java.util.ArrayList;
+import com.genomen.entities.DataTypeManager;
+import com.genomen.entities.GenotypeIndex;
+import com.genomen.metrics.ExecutionTrace;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides access to data related to a specific analysis process. Holds both the raw source data and results of analyzes.
@@ -19,11 +23,16 @@ public class AnalysisTask {
 
     private String taskID;
 
+    private ExecutionTrace trace = ExecutionTrace.DISABLED;
+
     private HashMap<String, Sample> sampleMap = new HashMap<String, Sample>();
 
-    //Two maps used to map the results of the analysis.
-    private HashMap<String, HashMap<String, Results>> individualResultsMap = new HashMap<String, HashMap<String, Results>>();
-    private HashMap<String, Results> resultsMap = new HashMap<String, Results>();
+    //Two maps used to map the results of the analysis. Analyses may run concurrently, so both maps are concurrent.
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Results>> individualResultsMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Results> resultsMap = new ConcurrentHashMap<>();
+
+    //Genotypes of the samples, loaded on first use.
+    private final ConcurrentHashMap<String, GenotypeIndex> genotypeIndexes = new ConcurrentHashMap<>();
 
     /**
      * Adds samples to this task.
@@ -37,6 +46,22 @@ public class AnalysisTask {
 
     }
 
+    /**
+     * Gets the execution trace of the request of this task.
+     * @return the trace
+     */
+    public ExecutionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Sets the execution trace of the request of this task.
+     * @param p_trace the trace
+     */
+    public void setTrace( ExecutionTrace p_trace ) {
+        trace = p_trace;
+    }
+
     /**
      * Gets the identifier of this task.
      * @return id of this task
@@ -91,16 +116,58 @@ public class AnalysisTask {
         return dataSetDAO.getDataEntity( Configuration.getConfiguration().getDatabaseTempSchemaName(), individualID, attribute, dataID, dataType);
     }
 
+    /**
+     * Gets the genotype index of a sample. The index is loaded from the database on first use and kept until it is released.
+     * @param sampleID id of the sample
+     * @return genotype index of the sample, or <code>null</code> if the genotypes could not be loaded
+     */
+    public GenotypeIndex getGenotypeIndex( String sampleID ) {
+
+        GenotypeIndex index = genotypeIndexes.computeIfAbsent( sampleID, id -> new GenotypeIndex() );
+
+        synchronized ( index ) {
+            if ( !index.isLoaded() ) {
+                DataSetDAO dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
+                DataType dataType = DataTypeManager.getInstance().getDataType( GenotypeIndex.DATA_TYPE );
+
+                if ( dataType == null || !dataSetDAO.loadGenotypeIndex( Configuration.getConfiguration().getDatabaseTempSchemaName(), sampleID,
+                        GenotypeIndex.KEY_ATTRIBUTE, GenotypeIndex.VALUE_ATTRIBUTE, dataType, index ) ) {
+                    genotypeIndexes.remove(sampleID, index);
+                    return null;
+                }
+                index.setLoaded();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Releases the genotype index of a sample. The index is loaded again if it is needed later.
+     * @param sampleID id of the sample
+     */
+    public void releaseGenotypeIndex( String sampleID ) {
+        genotypeIndexes.remove(sampleID);
+    }
+
+    /**
+     * Releases the genotype indexes of all samples.
+     */
+    public void releaseGenotypeIndexes() {
+        genotypeIndexes.clear();
+    }
+
     /**
      *Removes all data related to this analysis.
      */
     public void clearData() {
+        releaseGenotypeIndexes();
         TaskDAO taskDAO = DAOFactory.getDAOFactory().getTaskDAO();
         taskDAO.deleteAllTaskData( Configuration.getConfiguration().getDatabaseTempSchemaName(),taskID);
     }
     
     public void removeTask() {
         
+        releaseGenotypeIndexes();
         TaskDAO taskDAO = DAOFactory.getDAOFactory().getTaskDAO();
         taskDAO.deleteTaskIndividuals(Configuration.getConfiguration().getDatabaseTempSchemaName(), taskID);
         taskDAO.deleteTask( Configuration.getConfiguration().getDatabaseTempSchemaName(), taskID);
@@ -113,13 +180,9 @@ public class AnalysisTask {
      * @param logicId id of the analysis logic that produced this result
      * @param results the result to be added
      */
-    public synchronized void addResults( String individualId, String logicId, Results results ) {
-
-        if ( !individualResultsMap.containsKey(individualId)) {
-            individualResultsMap.put( individualId, new HashMap<String, Results>());
-        }
+    public void addResults( String individualId, String logicId, Results results ) {
 
-        HashMap<String, Results> targetMap = individualResultsMap.get( individualId );
+        Map<String, Results> targetMap = individualResultsMap.computeIfAbsent( individualId, id -> new ConcurrentHashMap<String, Results>() );
 
         targetMap.put(logicId, results);
 
@@ -130,11 +193,7 @@ public class AnalysisTask {
      * @param logicId id of the analysis logic that produced this result
      * @param results the result to be added
      */
-    public synchronized void addResults( String logicId, Results results ) {
-
-        if ( !resultsMap.containsKey(logicId)) {
-            resultsMap.put( logicId, results );
-        }
+    public void addResults( String logicId, Results results ) {
 
         resultsMap.put(logicId, results);
 
@@ -148,11 +207,13 @@ public class AnalysisTask {
      */
     public Results getResults( String individualId, String logicId ) {
 
-        if ( !sampleMap.containsKey( individualId ) || !individualResultsMap.get( individualId ).containsKey(logicId) ) {
+        Map<String, Results> individualResults = individualResultsMap.get( individualId );
+
+        if ( !sampleMap.containsKey( individualId ) || individualResults == null || !individualResults.containsKey(logicId) ) {
             return new Results(logicId, false);
         }
 
-        return individualResultsMap.get(individualId).get(logicId);
+        return individualResults.get(logicId);
     }
 
     /**
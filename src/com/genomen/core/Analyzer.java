@@ -9,8 +9,12 @@ import com.genomen.dao.TaskDAO;
 import com.genomen.importers.ImporterException;
 import com.genomen.reporter.Report;
 import com.genomen.reporter.ReportCreator;
+import com.genomen.reporter.ReportWriter;
 import com.genomen.utils.RandomStringGenerator;
 import com.genomen.analyses.Analysis;
+import com.genomen.metrics.ExecutionTrace;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.log4j.Logger;
@@ -22,6 +26,7 @@ import org.apache.log4j.Logger;
  */
 public class Analyzer {
 
+    private static final String TRACE_FILE_EXTENSION = ".trace.json";
 
     /**
      * Performs an analysis based on the request given as a parameter.
@@ -39,6 +44,7 @@ public class Analyzer {
         
         //If analysistask could not be created, 
         if ( analysisTask == null) {
+            writeTrace( analysisRequest );
             analysisRequest.changeState( TaskState.FINISHED ); 
             return;
         }
@@ -46,7 +52,9 @@ public class Analyzer {
         taskDAO.changeTaskState( Configuration.getConfiguration().getDatabaseTempSchemaName(), analysisTask.getTaskID(), TaskState.PERFORMING_ANALYSIS);
         analysisRequest.changeState( TaskState.PERFORMING_ANALYSIS );
         //Perform analyses
-        performAnalyses( analysisTask, performableAnalyses);
+        performAnalyses( analysisRequest, analysisTask, performableAnalyses);
+        //Genotypes are not needed after the analyses.
+        analysisTask.releaseGenotypeIndexes();
         
         //Create reports based on the results
         taskDAO.changeTaskState( Configuration.getConfiguration().getDatabaseTempSchemaName(), analysisTask.getTaskID(), TaskState.CREATING_REPORTS);        
@@ -66,18 +74,38 @@ public class Analyzer {
            
         //Finish
         taskDAO.changeTaskState( Configuration.getConfiguration().getDatabaseTempSchemaName(), analysisTask.getTaskID(), TaskState.FINISHED);          
+        writeTrace( analysisRequest );
         analysisRequest.changeState( TaskState.FINISHED ); 
  
     }
     
 
     /*
-     * Performs the requested analyzes
+     * Writes the trace of the request next to its report. The span of the current state ends when the trace is written.
      */
-    private static void performAnalyses( AnalysisTask analysisTask, List<Analysis> performableAnalyses ) {
+    private static void writeTrace( AnalysisRequest analysisRequest ) {
 
-        for ( int i = 0; i < performableAnalyses.size(); i++) {
-            performableAnalyses.get(i).analyze(analysisTask);
+        if ( !analysisRequest.getTrace().isEnabled() ) {
+            return;
+        }
+        analysisRequest.getTrace().endState();
+        try {
+            analysisRequest.getTrace().write( new File( analysisRequest.getPath() + analysisRequest.getName() + TRACE_FILE_EXTENSION ) );
+        }
+        catch (IOException ex) {
+            Logger.getLogger( Analyzer.class ).error(ex);
+        }
+    }
+
+    /*
+     * Performs the requested analyzes. Independent analyses are performed concurrently on the shared analysis executor.
+     */
+    private static void performAnalyses( AnalysisRequest analysisRequest, AnalysisTask analysisTask, List<Analysis> performableAnalyses ) {
+
+        AnalysisScheduler analysisScheduler = new AnalysisScheduler( analysisTask, performableAnalyses, AnalysisExecutor.getMaxConcurrentAnalysesPerTask() );
+
+        for ( Error error : analysisScheduler.performAnalyses() ) {
+            analysisRequest.addError(error);
         }
     }
 
@@ -125,6 +153,7 @@ public class Analyzer {
         
         AnalysisTask analysisTask = new AnalysisTask();
         analysisTask.setTaskID( taskID );
+        analysisTask.setTrace( analysisRequest.getTrace() );
 
         List<Sample> individuals = new ArrayList<>();
         
@@ -135,6 +164,7 @@ public class Analyzer {
                 continue;
             }
                
+            ExecutionTrace.Span importSpan = analysisRequest.getTrace().begin( ExecutionTrace.CATEGORY_IMPORT, ( dataSetImporter.getClass().getSimpleName() + " " + datasets.get(i).getName() ).trim() );
             try {
                 individuals = dataSetImporter.importDataSet( Configuration.getConfiguration().getDatabaseTempSchemaName(), datasets.get(i).getName(), datasets.get(i).getFiles());
             } catch (ImporterException ex) {          
@@ -144,6 +174,9 @@ public class Analyzer {
                 Logger.getLogger(Analyzer.class ).debug(ex);
                 return null;
             }
+            finally {
+                importSpan.end();
+            }
 
             individuals = selectIndividuals(analysisRequest.getSamples(), individuals, analysisRequest);
             
@@ -194,8 +227,24 @@ public class Analyzer {
      */
     private static void createReports( AnalysisRequest analysisRequest, AnalysisTask analysisTask ) {
 
+        //Write the report directly, one sample at a time.
+        if ( analysisRequest.isStreamingReports() ) {
+            ReportWriter reportWriter = ReportCreator.createReportWriter( analysisRequest.getRequiredFormats(), analysisRequest.getPath() );
+            if ( !ReportCreator.writeReport( analysisTask, analysisRequest.getName(), analysisRequest.getLanguage(), reportWriter ) ) {
+                analysisRequest.addError( new Error( Error.ErrorType.ANALYSIS_FAILED, analysisRequest.getName() ) );
+            }
+            return;
+        }
         //Create a Report
-        Report report = ReportCreator.createReport( analysisTask, analysisRequest.getName(), analysisRequest.getLanguage() );
+        Report report;
+        try {
+            report = ReportCreator.createReport( analysisTask, analysisRequest.getName(), analysisRequest.getLanguage() );
+        }
+        catch (IllegalStateException ex) {
+            Logger.getLogger( Analyzer.class ).error(ex);
+            analysisRequest.addError( new Error( Error.ErrorType.ANALYSIS_FAILED, analysisRequest.getName() + ": " + ex.getCause() ) );
+            return;
+        }
         //Pass the report to analysisRequest.
         analysisRequest.addReport( report );    
 
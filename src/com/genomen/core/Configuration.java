@@ -31,7 +31,27 @@ public class Configuration {
     private final int MAX_CONCURRENT_ANALYSES;
     private final int MAX_CONCURRENT_REQUESTS;
     private final int MAX_QUEUE_TIME;
+    private final int MAX_QUEUED_REQUESTS;
+    private final int QUEUE_REJECTION_POLICY;
+    private final int MAX_CONCURRENT_COHORT_REQUESTS;
     private final int DB_TYPE;
+    private final int CONNECTION_POOL_SIZE;
+    private final int CONNECTION_POOL_TIMEOUT;
+    private final int STATEMENT_CACHE_SIZE;
+    private final boolean STREAMING_VCF_IMPORT;
+    private final int IMPORT_BATCH_SIZE;
+    private final int IMPORT_SINK_TYPE;
+    private final int STORAGE_LAYOUT;
+    private final int KNOWLEDGE_BASE_CACHE_SIZE;
+    private final boolean STREAMING_REPORTS;
+    private final int MAX_CONCURRENT_REPORT_SAMPLES;
+    private final boolean SKIP_RULES_WITHOUT_GENOTYPES;
+    private final boolean JMX_METRICS;
+    private final boolean EXECUTION_TRACE;
+    private final boolean TRACE_RULES;
+    private final int RULE_ENGINE;
+    private final boolean COHORT_RULE_EVALUATION;
+    private final String PACKED_GENOTYPE_PATH;
     private final String ANALYZATIONLOGIC_LIST_PATH;
     private final String TMP_FOLDER_PATH;    
     private final String DATABASE_ADDRESS;
@@ -75,12 +95,36 @@ public class Configuration {
 
     /**
      * Maximum amount of time task is allowed to wait in queue.
-     * @return maximum queue time
+     * @return maximum queue time in minutes, 0 for no limit
      */
     public int getMaxQueueTime() {
         return MAX_QUEUE_TIME;
     }
 
+    /**
+     * Gets the maximum number of analysis requests waiting in the queue.
+     * @return maximum queue length
+     */
+    public int getMaxQueuedRequests() {
+        return MAX_QUEUED_REQUESTS;
+    }
+
+    /**
+     * Gets the handling of requests submitted to a full queue.
+     * @return 0 if the new request fails, 1 if the oldest request of the lowest priority fails instead
+     */
+    public int getQueueRejectionPolicy() {
+        return QUEUE_REJECTION_POLICY;
+    }
+
+    /**
+     * Gets the maximum number of requests of more than one sample processed simultaneously.
+     * @return maximum number of concurrent cohort requests
+     */
+    public int getMaxConcurrentCohortRequests() {
+        return MAX_CONCURRENT_COHORT_REQUESTS;
+    }
+
     /**
      * Gets the database type used by this configuration.
      * @return the type of database used
@@ -89,6 +133,142 @@ public class Configuration {
         return DB_TYPE;
     }
 
+    /**
+     * Gets the maximum number of pooled database connections.
+     * @return connection pool size
+     */
+    public int getConnectionPoolSize() {
+        return CONNECTION_POOL_SIZE;
+    }
+
+    /**
+     * Gets the maximum time to wait for a pooled database connection.
+     * @return timeout in seconds
+     */
+    public int getConnectionPoolTimeout() {
+        return CONNECTION_POOL_TIMEOUT;
+    }
+
+    /**
+     * Gets the number of prepared statements cached per pooled connection.
+     * @return statement cache size
+     */
+    public int getStatementCacheSize() {
+        return STATEMENT_CACHE_SIZE;
+    }
+
+    /**
+     * Checks whether VCF files are imported without temporary files.
+     * @return <code>true</code> if VCF files are streamed to the database, <code>false</code> otherwise
+     */
+    public boolean isStreamingVCFImport() {
+        return STREAMING_VCF_IMPORT;
+    }
+
+    /**
+     * Gets the number of rows inserted in a single batch when importing.
+     * @return import batch size
+     */
+    public int getImportBatchSize() {
+        return IMPORT_BATCH_SIZE;
+    }
+
+    /**
+     * Gets the type of the sink through which imported data is written to the database.
+     * @return import sink type
+     */
+    public int getImportSinkType() {
+        return IMPORT_SINK_TYPE;
+    }
+
+    /**
+     * Gets the layout of the tables storing the data of the samples.
+     * @return storage layout
+     */
+    public int getStorageLayout() {
+        return STORAGE_LAYOUT;
+    }
+
+    /**
+     * Gets the maximum number of trait, rule and result texts kept in memory.
+     * @return knowledge base cache size
+     */
+    public int getKnowledgeBaseCacheSize() {
+        return KNOWLEDGE_BASE_CACHE_SIZE;
+    }
+
+    /**
+     * Should reports be written one sample at a time instead of being built in memory first.
+     * @return <code>true</code> if reports are streamed, <code>false</code> otherwise
+     */
+    public boolean isStreamingReports() {
+        return STREAMING_REPORTS;
+    }
+
+    /**
+     * Gets the maximum number of samples for which report components are created simultaneously.
+     * @return maximum concurrent report samples
+     */
+    public int getMaxConcurrentReportSamples() {
+        return MAX_CONCURRENT_REPORT_SAMPLES;
+    }
+
+    /**
+     * Should rules consisting only of genotype comparisons be evaluated without querying the data when none of the genotypes they refer to is present.
+     * @return <code>true</code> if such rules are not executed, <code>false</code> otherwise
+     */
+    public boolean isSkipRulesWithoutGenotypes() {
+        return SKIP_RULES_WITHOUT_GENOTYPES;
+    }
+
+    /**
+     * Tells whether runtime metrics are registered with the platform MBean server.
+     * @return <code>true</code> if the metrics are published through JMX, <code>false</code> otherwise
+     */
+    public boolean isJMXMetrics() {
+        return JMX_METRICS;
+    }
+
+    /**
+     * Tells whether a trace of each analysis request is written next to its report.
+     * @return <code>true</code> if requests are traced, <code>false</code> otherwise
+     */
+    public boolean isExecutionTrace() {
+        return EXECUTION_TRACE;
+    }
+
+    /**
+     * Tells whether the traces of analysis requests include the evaluation of each rule for each sample.
+     * @return <code>true</code> if rules are traced, <code>false</code> otherwise
+     */
+    public boolean isTraceRules() {
+        return TRACE_RULES;
+    }
+
+    /**
+     * Gets the engine used to execute rules.
+     * @return 0 for the script engine only, 1 for the native interpreter falling back to the script engine
+     */
+    public int getRuleEngine() {
+        return RULE_ENGINE;
+    }
+
+    /**
+     * Tells whether rules depending only on genotypes are evaluated for all samples of a task at once.
+     * @return <code>true</code> if cohort evaluation is used, <code>false</code> otherwise
+     */
+    public boolean isCohortRuleEvaluation() {
+        return COHORT_RULE_EVALUATION;
+    }
+
+    /**
+     * Gets the directory of the packed genotype files used with DBType 2.
+     * @return path of the directory
+     */
+    public String getPackedGenotypePath() {
+        return PACKED_GENOTYPE_PATH;
+    }
+
     /**
      * Gets the path to the list of analyzation logics
      * @return the analyzation logic list path
@@ -169,8 +349,28 @@ public class Configuration {
         MAX_CONCURRENT_INDIVIDUALS_PER_TASK = getIntValue("maxConcurrentIndividualsPerTask");
         MAX_CONCURRENT_ANALYSES = getIntValue("maxConcurrentAnalyses");
         MAX_CONCURRENT_REQUESTS = getIntValue("maxConcurrentRequests");
-        MAX_QUEUE_TIME = getIntValue("maxQueueTime");
+        MAX_QUEUE_TIME = getIntValue("maxQueueTime", 0);
+        MAX_QUEUED_REQUESTS = getIntValue("maxQueuedRequests", 100);
+        QUEUE_REJECTION_POLICY = getIntValue("queueRejectionPolicy", 0);
+        MAX_CONCURRENT_COHORT_REQUESTS = getIntValue("maxConcurrentCohortRequests", Math.max( 1, MAX_CONCURRENT_REQUESTS - 1 ));
         DB_TYPE = getIntValue("DBType");
+        CONNECTION_POOL_SIZE = getIntValue("connectionPoolSize", 16);
+        CONNECTION_POOL_TIMEOUT = getIntValue("connectionPoolTimeout", 60);
+        STATEMENT_CACHE_SIZE = getIntValue("statementCacheSize", 32);
+        STREAMING_VCF_IMPORT = getBooleanValue("streamingVCFImport", false);
+        IMPORT_BATCH_SIZE = getIntValue("importBatchSize", 5000);
+        IMPORT_SINK_TYPE = getIntValue("importSinkType", 2);
+        STORAGE_LAYOUT = getIntValue("storageLayout", 0);
+        KNOWLEDGE_BASE_CACHE_SIZE = getIntValue("knowledgeBaseCacheSize", 100000);
+        STREAMING_REPORTS = getBooleanValue("streamingReports", false);
+        MAX_CONCURRENT_REPORT_SAMPLES = getIntValue("maxConcurrentReportSamples", Runtime.getRuntime().availableProcessors());
+        SKIP_RULES_WITHOUT_GENOTYPES = getBooleanValue("skipRulesWithoutGenotypes", true);
+        RULE_ENGINE = getIntValue("ruleEngine", 1);
+        COHORT_RULE_EVALUATION = getBooleanValue("cohortRuleEvaluation", false);
+        JMX_METRICS = getBooleanValue("jmxMetrics", true);
+        EXECUTION_TRACE = getBooleanValue("executionTrace", false);
+        TRACE_RULES = getBooleanValue("traceRules", false);
+        PACKED_GENOTYPE_PATH = getStringValue("packedGenotypePath", "Genotypes");
         ANALYZATIONLOGIC_LIST_PATH = getStringValue("analysisLogicListPath");
         TMP_FOLDER_PATH = getStringValue("tmpFolderPath");
         DATABASE_ADDRESS = getStringValue("databaseAddress");
@@ -209,6 +409,69 @@ public class Configuration {
 
     }
 
+    /**
+     * Returns an optional integer value from the configuration file.
+     * @param tagName Tag name of the configuration value required.
+     * @param defaultValue Value used if the tag is not present.
+     * @return Configuration value
+     */
+    private int getIntValue( String tagName, int defaultValue ) {
+
+        Element element = document.getDocumentElement();
+
+        Element valueNode = (Element)element.getElementsByTagName(tagName).item(0);
+
+        if ( valueNode == null || valueNode.getFirstChild() == null ) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt( valueNode.getFirstChild().getNodeValue().trim() );
+        }
+        catch ( NumberFormatException ex ) {
+            Logger.getLogger( Configuration.class).error("Invalid configuration value for " + tagName + ", using " + defaultValue );
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns an optional boolean value from the configuration file.
+     * @param tagName Tag name of the configuration value required.
+     * @param defaultValue Value used if the tag is not present.
+     * @return Configuration value
+     */
+    private boolean getBooleanValue( String tagName, boolean defaultValue ) {
+
+        Element element = document.getDocumentElement();
+
+        Element valueNode = (Element)element.getElementsByTagName(tagName).item(0);
+
+        if ( valueNode == null || valueNode.getFirstChild() == null ) {
+            return defaultValue;
+        }
+
+        return Boolean.parseBoolean( valueNode.getFirstChild().getNodeValue().trim() );
+    }
+
+    /**
+     * Returns an optional String from the configuration file.
+     * @param tagName Tag name of the configuration value required.
+     * @param defaultValue Value used if the tag is not present.
+     * @return Configuration value
+     */
+    private String getStringValue( String tagName, String defaultValue ) {
+
+        Element element = document.getDocumentElement();
+
+        Element valueNode = (Element)element.getElementsByTagName(tagName).item(0);
+
+        if ( valueNode == null || valueNode.getFirstChild() == null ) {
+            return defaultValue;
+        }
+
+        return valueNode.getFirstChild().getNodeValue().trim();
+    }
+
     /**
      * Return a String from the configuration file.
      * @param tagName Tag name of the configuration value required.
@@ -20,7 +20,10 @@ public class Error {
         CORE_SHUTDOWN(3),
         CAN_NOT_READ_FILE(4),
         ANALYSIS_NOT_AVAILABLE(5),
-        UNABLE_TO_IMPORT(6);
+        UNABLE_TO_IMPORT(6),
+        ANALYSIS_FAILED(7),
+        QUEUE_FULL(8),
+        QUEUE_TIMEOUT(9);
         
         private final int id;
         
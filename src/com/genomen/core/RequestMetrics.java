@@ -0,0 +1,109 @@
+package com.genomen.core;
+
+import com.genomen.metrics.Metrics;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Publishes the statistics of the request queue and the number of requests in each <code>TaskState</code>.
+ * The time requests spend in each state is recorded in the <code>Stage</code> histograms of <code>Metrics</code>.
+ * @author ciszek
+ */
+public class RequestMetrics implements RequestMetricsMBean {
+
+    private static final RequestMetrics instance = new RequestMetrics();
+
+    private final AtomicLongArray taskCounts = new AtomicLongArray( TaskState.values().length );
+
+    static {
+        Metrics.register( "Requests", "AnalysisExecutor", instance );
+    }
+
+    /**
+     * Gets the metrics of the requests.
+     * @return the metrics
+     */
+    public static RequestMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Counts a request moved from one state to another.
+     * @param previousState state the request left, or <code>null</code> for a new request
+     * @param state state the request entered
+     * @param nanosInPreviousState time spent in the previous state, in nanoseconds
+     */
+    void stateChanged( TaskState previousState, TaskState state, long nanosInPreviousState ) {
+
+        if ( previousState == state ) {
+            return;
+        }
+        if ( previousState != null ) {
+            taskCounts.decrementAndGet( previousState.ordinal() );
+            //Time spent in the queue is recorded by the request scheduler.
+            if ( previousState != TaskState.INITIALIZED ) {
+                Metrics.getHistogram( "Stage", previousState.name() ).record(nanosInPreviousState);
+            }
+        }
+        taskCounts.incrementAndGet( state.ordinal() );
+    }
+
+    @Override
+    public int getQueueLength() {
+        return AnalysisExecutor.getQueueLength();
+    }
+
+    @Override
+    public int getRunningRequests() {
+        return AnalysisExecutor.getRunningRequests();
+    }
+
+    @Override
+    public long getRejectedRequests() {
+        return AnalysisExecutor.getRejectedRequests();
+    }
+
+    @Override
+    public long getExpiredRequests() {
+        return AnalysisExecutor.getExpiredRequests();
+    }
+
+    @Override
+    public long getAverageWaitTime() {
+        return AnalysisExecutor.getAverageWaitTime();
+    }
+
+    @Override
+    public long getMaxWaitTime() {
+        return AnalysisExecutor.getMaxWaitTime();
+    }
+
+    @Override
+    public long getInitializedTasks() {
+        return taskCounts.get( TaskState.INITIALIZED.ordinal() );
+    }
+
+    @Override
+    public long getLoadingDatasetsTasks() {
+        return taskCounts.get( TaskState.LOADING_DATASETS.ordinal() );
+    }
+
+    @Override
+    public long getPerformingAnalysisTasks() {
+        return taskCounts.get( TaskState.PERFORMING_ANALYSIS.ordinal() );
+    }
+
+    @Override
+    public long getCreatingReportsTasks() {
+        return taskCounts.get( TaskState.CREATING_REPORTS.ordinal() );
+    }
+
+    @Override
+    public long getClearingDataTasks() {
+        return taskCounts.get( TaskState.CLEARING_DATA.ordinal() );
+    }
+
+    @Override
+    public long getFinishedTasks() {
+        return taskCounts.get( TaskState.FINISHED.ordinal() );
+    }
+}
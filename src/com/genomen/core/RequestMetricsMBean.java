@@ -0,0 +1,68 @@
+package com.genomen.core;
+
+/**
+ * Management interface of the analysis request queue and the states of the requests.
+ * @author ciszek
+ */
+public interface RequestMetricsMBean {
+
+    /**
+     * @return number of requests waiting in the queue
+     */
+    public abstract int getQueueLength();
+
+    /**
+     * @return number of requests being performed
+     */
+    public abstract int getRunningRequests();
+
+    /**
+     * @return number of requests that failed because the queue was full
+     */
+    public abstract long getRejectedRequests();
+
+    /**
+     * @return number of requests that failed because they waited longer than the maximum queue time
+     */
+    public abstract long getExpiredRequests();
+
+    /**
+     * @return average time the started requests waited in the queue, in milliseconds
+     */
+    public abstract long getAverageWaitTime();
+
+    /**
+     * @return longest time a started request waited in the queue, in milliseconds
+     */
+    public abstract long getMaxWaitTime();
+
+    /**
+     * @return number of requests created but not yet started
+     */
+    public abstract long getInitializedTasks();
+
+    /**
+     * @return number of requests importing their datasets
+     */
+    public abstract long getLoadingDatasetsTasks();
+
+    /**
+     * @return number of requests performing analyses
+     */
+    public abstract long getPerformingAnalysisTasks();
+
+    /**
+     * @return number of requests creating reports
+     */
+    public abstract long getCreatingReportsTasks();
+
+    /**
+     * @return number of requests removing their data
+     */
+    public abstract long getClearingDataTasks();
+
+    /**
+     * @return number of requests finished since start up
+     */
+    public abstract long getFinishedTasks();
+}
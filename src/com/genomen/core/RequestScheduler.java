@@ -0,0 +1,342 @@
+package com.genomen.core;
+
+import com.genomen.core.Error.ErrorType;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded queue of analysis requests waiting to be performed. Requests are started in order of priority and, within
+ * a priority, in order of submission. Requests of more than one sample are cohort requests, of which only a limited
+ * number is performed at a time, so single sample requests can be started while cohort requests run. Requests that
+ * have waited longer than the maximum queue time fail without being performed.
+ * @author ciszek
+ */
+class RequestScheduler {
+
+    /**
+     * Requests submitted to a full queue fail.
+     */
+    static final int REJECT_NEW = 0;
+    /**
+     * The oldest request of the lowest priority fails to make room for a request of at least the same priority.
+     */
+    static final int DISCARD_LOWEST = 1;
+
+    private final int capacity;
+    private final int rejectionPolicy;
+    private final long maxQueueTime;
+    private final int maxConcurrentCohortRequests;
+
+    //Requests in the order they are started, highest priority first.
+    private final LinkedList<QueuedRequest> queue = new LinkedList<QueuedRequest>();
+    private int runningRequests = 0;
+    private int runningCohortRequests = 0;
+    private boolean shutDown = false;
+
+    private long submittedRequests = 0;
+    private long rejectedRequests = 0;
+    private long expiredRequests = 0;
+    private long startedRequests = 0;
+    private long totalWaitTime = 0;
+    private long maxWaitTime = 0;
+
+    /**
+     * Constructs a scheduler.
+     * @param p_capacity maximum number of waiting requests
+     * @param p_rejectionPolicy <code>REJECT_NEW</code> or <code>DISCARD_LOWEST</code>
+     * @param p_maxQueueTime milliseconds a request may wait before it fails, 0 for no limit
+     * @param p_maxConcurrentCohortRequests maximum number of cohort requests performed at a time
+     */
+    RequestScheduler( int p_capacity, int p_rejectionPolicy, long p_maxQueueTime, int p_maxConcurrentCohortRequests ) {
+        capacity = Math.max(1, p_capacity);
+        rejectionPolicy = p_rejectionPolicy;
+        maxQueueTime = Math.max(0, p_maxQueueTime);
+        maxConcurrentCohortRequests = Math.max(1, p_maxConcurrentCohortRequests);
+    }
+
+    /**
+     * Adds a request to the queue. A request that can not be queued fails with <code>ErrorType.QUEUE_FULL</code>,
+     * or with <code>ErrorType.CORE_SHUTDOWN</code> if the scheduler has been shut down.
+     * @param analysisRequest the request
+     */
+    void submit( AnalysisRequest analysisRequest ) {
+
+        List<AnalysisRequest> failedRequests;
+        AnalysisRequest discardedRequest = null;
+        boolean queued = false;
+        //Counting the samples may read the dataset headers, so it is done outside the lock.
+        boolean cohort = analysisRequest.getSampleCount() > 1;
+
+        synchronized (this) {
+            if ( shutDown ) {
+                analysisRequest.addError( new Error( ErrorType.CORE_SHUTDOWN ) );
+                return;
+            }
+            submittedRequests++;
+            failedRequests = removeExpired( System.currentTimeMillis() );
+
+            if ( queue.size() >= capacity && rejectionPolicy == DISCARD_LOWEST
+                    && queue.getLast().priority <= analysisRequest.getPriority() ) {
+                discardedRequest = removeLowest().analysisRequest;
+                rejectedRequests++;
+            }
+            if ( queue.size() < capacity ) {
+                insert( new QueuedRequest( analysisRequest, submittedRequests, cohort ) );
+                queued = true;
+                notifyAll();
+            }
+            else {
+                rejectedRequests++;
+            }
+        }
+
+        fail( failedRequests, ErrorType.QUEUE_TIMEOUT );
+        if ( discardedRequest != null ) {
+            fail( discardedRequest, ErrorType.QUEUE_FULL );
+        }
+        if ( !queued ) {
+            fail( analysisRequest, ErrorType.QUEUE_FULL );
+        }
+    }
+
+    /**
+     * Waits for the next request that can be started.
+     * @return the request, or <code>null</code> if the scheduler has been shut down
+     * @throws InterruptedException if interrupted while waiting
+     */
+    QueuedRequest take() throws InterruptedException {
+
+        while ( true ) {
+            List<AnalysisRequest> failedRequests;
+            synchronized (this) {
+                if ( shutDown ) {
+                    return null;
+                }
+                long now = System.currentTimeMillis();
+                failedRequests = removeExpired(now);
+
+                if ( failedRequests.isEmpty() ) {
+                    QueuedRequest queuedRequest = removeNext();
+                    if ( queuedRequest != null ) {
+                        start( queuedRequest, now );
+                        return queuedRequest;
+                    }
+                    //Wake up when the first request expires, or when a request is submitted or finished.
+                    wait( maxQueueTime > 0 && !queue.isEmpty() ? Math.max( 1, getFirstDeadline() - now ) : 0 );
+                }
+            }
+            fail( failedRequests, ErrorType.QUEUE_TIMEOUT );
+        }
+    }
+
+    /**
+     * Marks a request taken from the queue as finished.
+     * @param queuedRequest the request
+     */
+    synchronized void finished( QueuedRequest queuedRequest ) {
+
+        runningRequests--;
+        if ( queuedRequest.cohort ) {
+            runningCohortRequests--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops the scheduler and empties the queue. Requests already started are not affected.
+     * @return the requests that were waiting
+     */
+    synchronized List<AnalysisRequest> shutDown() {
+
+        shutDown = true;
+        List<AnalysisRequest> waitingRequests = new ArrayList<AnalysisRequest>();
+        for ( QueuedRequest queuedRequest : queue ) {
+            waitingRequests.add( queuedRequest.analysisRequest );
+        }
+        queue.clear();
+        notifyAll();
+        return waitingRequests;
+    }
+
+    /**
+     * Returns the number of requests waiting in the queue.
+     * @return length of the queue
+     */
+    synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of requests being performed.
+     * @return number of running requests
+     */
+    synchronized int getRunningRequests() {
+        return runningRequests;
+    }
+
+    /**
+     * Returns the number of requests submitted.
+     * @return number of submitted requests
+     */
+    synchronized long getSubmittedRequests() {
+        return submittedRequests;
+    }
+
+    /**
+     * Returns the number of requests that failed because the queue was full.
+     * @return number of rejected requests
+     */
+    synchronized long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    /**
+     * Returns the number of requests that failed because they waited too long.
+     * @return number of expired requests
+     */
+    synchronized long getExpiredRequests() {
+        return expiredRequests;
+    }
+
+    /**
+     * Returns the average time the started requests waited in the queue.
+     * @return average wait time in milliseconds
+     */
+    synchronized long getAverageWaitTime() {
+        return startedRequests == 0 ? 0 : totalWaitTime / startedRequests;
+    }
+
+    /**
+     * Returns the longest time a started request waited in the queue.
+     * @return maximum wait time in milliseconds
+     */
+    synchronized long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    private void insert( QueuedRequest queuedRequest ) {
+
+        ListIterator<QueuedRequest> iterator = queue.listIterator();
+        while ( iterator.hasNext() ) {
+            if ( iterator.next().priority < queuedRequest.priority ) {
+                iterator.previous();
+                break;
+            }
+        }
+        iterator.add(queuedRequest);
+    }
+
+    //Removes the first request that can be started, skipping cohort requests while their share is in use.
+    private QueuedRequest removeNext() {
+
+        Iterator<QueuedRequest> iterator = queue.iterator();
+        while ( iterator.hasNext() ) {
+            QueuedRequest queuedRequest = iterator.next();
+            if ( !queuedRequest.cohort || runningCohortRequests < maxConcurrentCohortRequests ) {
+                iterator.remove();
+                return queuedRequest;
+            }
+        }
+        return null;
+    }
+
+    //Removes the oldest request of the lowest priority.
+    private QueuedRequest removeLowest() {
+
+        int lowestPriority = queue.getLast().priority;
+        Iterator<QueuedRequest> iterator = queue.iterator();
+        while ( iterator.hasNext() ) {
+            QueuedRequest queuedRequest = iterator.next();
+            if ( queuedRequest.priority == lowestPriority ) {
+                iterator.remove();
+                return queuedRequest;
+            }
+        }
+        return null;
+    }
+
+    private List<AnalysisRequest> removeExpired( long now ) {
+
+        List<AnalysisRequest> expired = new ArrayList<AnalysisRequest>();
+        if ( maxQueueTime == 0 ) {
+            return expired;
+        }
+        Iterator<QueuedRequest> iterator = queue.iterator();
+        while ( iterator.hasNext() ) {
+            QueuedRequest queuedRequest = iterator.next();
+            if ( now - queuedRequest.queuedTime > maxQueueTime ) {
+                iterator.remove();
+                expired.add( queuedRequest.analysisRequest );
+            }
+        }
+        expiredRequests += expired.size();
+        return expired;
+    }
+
+    private long getFirstDeadline() {
+
+        long firstQueued = Long.MAX_VALUE;
+        for ( QueuedRequest queuedRequest : queue ) {
+            firstQueued = Math.min( firstQueued, queuedRequest.queuedTime );
+        }
+        return firstQueued + maxQueueTime + 1;
+    }
+
+    private void start( QueuedRequest queuedRequest, long now ) {
+
+        long waitTime = now - queuedRequest.queuedTime;
+        startedRequests++;
+        totalWaitTime += waitTime;
+        maxWaitTime = Math.max( maxWaitTime, waitTime );
+        runningRequests++;
+        if ( queuedRequest.cohort ) {
+            runningCohortRequests++;
+        }
+        Logger.getLogger( RequestScheduler.class ).debug( "Request " + queuedRequest.sequence + " started after " + waitTime
+                + " ms, " + queue.size() + " waiting, " + runningRequests + " running" );
+    }
+
+    //Failed requests are finished outside the lock, as finishing notifies the observers of the request.
+    private static void fail( List<AnalysisRequest> analysisRequests, ErrorType errorType ) {
+        for ( AnalysisRequest analysisRequest : analysisRequests ) {
+            fail( analysisRequest, errorType );
+        }
+    }
+
+    private static void fail( AnalysisRequest analysisRequest, ErrorType errorType ) {
+        analysisRequest.addError( new Error( errorType ) );
+        analysisRequest.cancel();
+        analysisRequest.changeState( TaskState.FINISHED );
+    }
+
+    /**
+     * A request waiting in the queue.
+     */
+    static class QueuedRequest {
+
+        private final AnalysisRequest analysisRequest;
+        private final long sequence;
+        private final long queuedTime = System.currentTimeMillis();
+        private final int priority;
+        private final boolean cohort;
+
+        private QueuedRequest( AnalysisRequest p_analysisRequest, long p_sequence, boolean p_cohort ) {
+            analysisRequest = p_analysisRequest;
+            sequence = p_sequence;
+            priority = p_analysisRequest.getPriority();
+            cohort = p_cohort;
+        }
+
+        /**
+         * Gets the queued request.
+         * @return analysis request
+         */
+        AnalysisRequest getAnalysisRequest() {
+            return analysisRequest;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.genomen.dao;
+
+import com.genomen.analyses.snp.Rule;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * RuleDAO reading rule logic and rule and result descriptions through <code>KnowledgeBaseCache</code>.
+ * The first lookup of each kind of text loads all texts of that kind in the language with a single query.
+ * Texts are cached only when they could be read, and rules themselves are always read from the database.
+ * @author ciszek
+ */
+class CachingRuleDAO implements RuleDAO {
+
+    private final DerbyRuleDAO ruleDAO;
+    private final KnowledgeBaseCache cache = KnowledgeBaseCache.getInstance();
+
+    /**
+     * Constructs a caching RuleDAO.
+     * @param p_ruleDAO RuleDAO reading the database
+     */
+    CachingRuleDAO( DerbyRuleDAO p_ruleDAO ) {
+        ruleDAO = p_ruleDAO;
+    }
+
+    @Override
+    public List<Rule> getRules( boolean ignoreSubrules ) {
+        return ruleDAO.getRules(ignoreSubrules);
+    }
+
+    @Override
+    public Rule getRule( String ruleID ) {
+        return ruleDAO.getRule(ruleID);
+    }
+
+    @Override
+    public String getRuleLogic( String ruleID ) {
+        return getText( KnowledgeBaseCache.RULE_LOGIC, ruleID, null );
+    }
+
+    @Override
+    public String getRuleDescription( String ruleID, String languageID ) {
+        return getText( KnowledgeBaseCache.RULE_DESCRIPTION, ruleID, languageID );
+    }
+
+    @Override
+    public String getResultDescription( String resultID, String languageID ) {
+        return getText( KnowledgeBaseCache.RESULT_DESCRIPTION, resultID, languageID );
+    }
+
+    @Override
+    public Map<String, String> getRuleLogics() {
+        return ruleDAO.getRuleLogics();
+    }
+
+    @Override
+    public Map<String, String> getRuleDescriptions( String languageID ) {
+        return ruleDAO.getRuleDescriptions(languageID);
+    }
+
+    @Override
+    public Map<String, String> getResultDescriptions( String languageID ) {
+        return ruleDAO.getResultDescriptions(languageID);
+    }
+
+    private String getText( int kind, String id, String languageID ) {
+
+        String text = cache.get( kind, languageID, id );
+        if ( text != null || cache.contains( kind, languageID, id ) ) {
+            return text;
+        }
+
+        if ( cache.startPreload( kind, languageID ) ) {
+            Map<String, String> texts = loadAll( kind, languageID );
+            if ( texts != null ) {
+                cache.putAll( kind, languageID, texts );
+            }
+            cache.finishPreload( kind, languageID, texts != null );
+            text = cache.get( kind, languageID, id );
+            if ( text != null || cache.contains( kind, languageID, id ) ) {
+                return text;
+            }
+        }
+
+        try {
+            switch ( kind ) {
+                case KnowledgeBaseCache.RULE_LOGIC:
+                    text = ruleDAO.readRuleLogic(id);
+                    break;
+                case KnowledgeBaseCache.RULE_DESCRIPTION:
+                    text = ruleDAO.readRuleDescription(id, languageID);
+                    break;
+                default:
+                    text = ruleDAO.readResultDescription(id, languageID);
+            }
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( CachingRuleDAO.class ).debug(ex);
+            return "";
+        }
+        cache.put( kind, languageID, id, text );
+        return text;
+    }
+
+    private Map<String, String> loadAll( int kind, String languageID ) {
+
+        switch ( kind ) {
+            case KnowledgeBaseCache.RULE_LOGIC:
+                return ruleDAO.getRuleLogics();
+            case KnowledgeBaseCache.RULE_DESCRIPTION:
+                return ruleDAO.getRuleDescriptions(languageID);
+            default:
+                return ruleDAO.getResultDescriptions(languageID);
+        }
+    }
+}
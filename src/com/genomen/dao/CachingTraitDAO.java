@@ -0,0 +1,107 @@
+package com.genomen.dao;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * TraitDAO reading trait texts through <code>KnowledgeBaseCache</code>. The first lookup in a language
+ * loads the texts of all traits in that language with a single query. Texts are cached only when they could be read.
+ * @author ciszek
+ */
+class CachingTraitDAO implements TraitDAO {
+
+    private final DerbyTraitDAO traitDAO;
+    private final KnowledgeBaseCache cache = KnowledgeBaseCache.getInstance();
+
+    /**
+     * Constructs a caching TraitDAO.
+     * @param p_traitDAO TraitDAO reading the database
+     */
+    CachingTraitDAO( DerbyTraitDAO p_traitDAO ) {
+        traitDAO = p_traitDAO;
+    }
+
+    @Override
+    public String getShortDescription( String symbolicName, String language ) {
+        return getText( KnowledgeBaseCache.SHORT_DESCRIPTION, symbolicName, language );
+    }
+
+    @Override
+    public String getDetailedDescription( String symbolicName, String language ) {
+        return getText( KnowledgeBaseCache.DETAILED_DESCRIPTION, symbolicName, language );
+    }
+
+    @Override
+    public String getTraitName( String symbolicName, String language ) {
+        return getText( KnowledgeBaseCache.TRAIT_NAME, symbolicName, language );
+    }
+
+    @Override
+    public Map<String, String[]> getTraitDescriptions( String language ) {
+        return traitDAO.getTraitDescriptions(language);
+    }
+
+    /**
+     * Loads the texts of all traits in a language into the cache.
+     * @param language language id
+     * @return <code>true</code> if the texts were loaded, <code>false</code> if they could not be read
+     */
+    boolean preload( String language ) {
+
+        Map<String, String[]> descriptions = traitDAO.getTraitDescriptions(language);
+        if ( descriptions == null ) {
+            return false;
+        }
+        Map<String, String> names = new HashMap<String, String>();
+        Map<String, String> shortDescriptions = new HashMap<String, String>();
+        Map<String, String> detailedDescriptions = new HashMap<String, String>();
+
+        for ( Map.Entry<String, String[]> entry : descriptions.entrySet() ) {
+            names.put( entry.getKey(), entry.getValue()[NAME] );
+            shortDescriptions.put( entry.getKey(), entry.getValue()[SHORT_DESCRIPTION] );
+            detailedDescriptions.put( entry.getKey(), entry.getValue()[DETAILED_DESCRIPTION] );
+        }
+        cache.putAll( KnowledgeBaseCache.TRAIT_NAME, language, names );
+        cache.putAll( KnowledgeBaseCache.SHORT_DESCRIPTION, language, shortDescriptions );
+        cache.putAll( KnowledgeBaseCache.DETAILED_DESCRIPTION, language, detailedDescriptions );
+        return true;
+    }
+
+    private String getText( int kind, String symbolicName, String language ) {
+
+        String text = cache.get( kind, language, symbolicName );
+        if ( text != null || cache.contains( kind, language, symbolicName ) ) {
+            return text;
+        }
+
+        //Trait texts of a language are loaded together.
+        if ( cache.startPreload( KnowledgeBaseCache.TRAIT_NAME, language ) ) {
+            cache.finishPreload( KnowledgeBaseCache.TRAIT_NAME, language, preload(language) );
+            text = cache.get( kind, language, symbolicName );
+            if ( text != null || cache.contains( kind, language, symbolicName ) ) {
+                return text;
+            }
+        }
+
+        try {
+            switch ( kind ) {
+                case KnowledgeBaseCache.TRAIT_NAME:
+                    text = traitDAO.readDescription(NAME, symbolicName, language);
+                    break;
+                case KnowledgeBaseCache.SHORT_DESCRIPTION:
+                    text = traitDAO.readDescription(SHORT_DESCRIPTION, symbolicName, language);
+                    break;
+                default:
+                    text = traitDAO.readDescription(DETAILED_DESCRIPTION, symbolicName, language);
+            }
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( CachingTraitDAO.class ).debug(ex);
+            return "";
+        }
+        cache.put( kind, language, symbolicName, text );
+        return text;
+    }
+}
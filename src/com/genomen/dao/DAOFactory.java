@@ -1,6 +1,7 @@
 package com.genomen.dao;
 
 import com.genomen.core.Configuration;
+import com.genomen.metrics.Metrics;
 
 /**
  * Factory class for DAOs
@@ -10,6 +11,7 @@ import com.genomen.core.Configuration;
 public abstract class DAOFactory {
 
     public static final int DERBY = 1;
+    public static final int PACKED = 2;
 
     public abstract RuleDAO getRuleDAO();
     public abstract TraitDAO getTraitDAO();
@@ -19,19 +21,26 @@ public abstract class DAOFactory {
     public abstract TaskDAO getTaskDAO();
     
     /**
-     * Returns DAO factory class of the specified type.
+     * Returns DAO factory class of the specified type. When metrics are enabled the calls made to the DAOs are timed.
      * @param factoryID Type of the DAO required.
      * @return Data access object factory.
      */
     public static DAOFactory getDAOFactory( int factoryID ) {
 
+        DAOFactory daoFactory;
+
         switch (factoryID) {
 
             case DERBY:
-                return new DerbyDAOFactory();
+                daoFactory = new DerbyDAOFactory();
+                break;
+            case PACKED:
+                daoFactory = new PackedDAOFactory();
+                break;
             default:
                 return null;
         }
+        return Metrics.isEnabled() ? new TimedDAOFactory(daoFactory) : daoFactory;
     }
     
     /**
@@ -39,16 +48,7 @@ public abstract class DAOFactory {
      * @return DAO factory class.
      */
     public static DAOFactory getDAOFactory() {
-
-        int dbID = Configuration.getConfiguration().getDBType();
-
-        switch (dbID) {
-
-            case DERBY:
-                return new DerbyDAOFactory();
-            default:
-                return null;
-        }
+        return getDAOFactory( Configuration.getConfiguration().getDBType() );
     }
     
 
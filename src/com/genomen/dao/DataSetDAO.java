@@ -3,6 +3,7 @@ package com.genomen.dao;
 import com.genomen.core.Sample;
 import com.genomen.entities.DataEntity;
 import com.genomen.entities.DataType;
+import com.genomen.entities.GenotypeIndex;
 import java.util.List;
 
 
@@ -12,6 +13,13 @@ import java.util.List;
  */
 public interface DataSetDAO {
 
+    //Storage layouts
+    public static final int PER_SAMPLE_LAYOUT = 0;
+    public static final int PARTITIONED_LAYOUT = 1;
+
+    //Column identifying the sample in tables shared by all samples
+    public static final String SAMPLE_COLUMN = "SAMPLE_ID";
+
     /**
      * Returns a <code>DataEntity</code> presenting the requested data.
      * @param schemaName Schema from which the data is to be retrieved
@@ -22,6 +30,18 @@ public interface DataSetDAO {
      * @return <code>DataEntity</code> presenting the requested data, or <code>null</code>
      */
     public abstract DataEntity getDataEntity( String schemaName, String sampleID, String attribute, String value, DataType dataType );
+
+    /**
+     * Loads the values of one attribute of all data of a sample into a <code>GenotypeIndex</code> keyed by another attribute.
+     * @param schemaName Schema from which the data is to be retrieved
+     * @param sampleID Id of the sample to whom the data is associated
+     * @param keyAttribute Name of the attribute used as the key of the index
+     * @param valueAttribute Name of the attribute stored in the index
+     * @param dataType Type of the data to be retrieved
+     * @param index Index to which the values are added
+     * @return <code>true</code> if the data was read, <code>false</code> otherwise
+     */
+    public abstract boolean loadGenotypeIndex( String schemaName, String sampleID, String keyAttribute, String valueAttribute, DataType dataType, GenotypeIndex index );
     
     /**
      * Creates a table to hold the type of data specified.
@@ -30,6 +50,14 @@ public interface DataSetDAO {
      * @param dataType <code>DataType</code> specifying the data which the table created is to hold
      */
     public abstract void createDataTable( String schemaName, String sampleID, DataType dataType );
+
+    /**
+     * Indexes the table holding the data of a sample by the required attributes of the data type.
+     * @param schemaName Schema of the table
+     * @param sampleID ID of the sample to whom the data is associated.
+     * @param dataType Data type definition of the table
+     */
+    public abstract void createIndexes( String schemaName, String sampleID, DataType dataType );
     
     /**
      * Creates a valid table name based on the ID of an sample and data type definition.
@@ -38,6 +66,13 @@ public interface DataSetDAO {
      * @return A valid table name
      */
     public abstract String createTableName( String sampleID, DataType dataType );
+
+    /**
+     * Tells whether the data of all samples is stored in a single table per data type, with the sample
+     * identified by <code>SAMPLE_COLUMN</code>.
+     * @return <code>true</code> if tables are shared by the samples, <code>false</code> if each sample has its own tables
+     */
+    public abstract boolean isPartitioned();
     
     /**
      * Removes the listed samples from the database.
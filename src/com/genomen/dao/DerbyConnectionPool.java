@@ -0,0 +1,479 @@
+package com.genomen.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded pool of embedded Derby connections with a per connection prepared statement cache.
+ * Connections handed out by the pool are returned to it when closed. Only statements prepared from the SQL string
+ * alone are cached.
+ * @author ciszek
+ */
+public class DerbyConnectionPool {
+
+    private final String url;
+    private final int maxSize;
+    private final long timeout;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new connection pool.
+     * @param p_url JDBC url of the database
+     * @param p_maxSize maximum number of connections
+     * @param p_timeout maximum time in milliseconds a borrower waits for a free connection
+     * @param p_statementCacheSize number of prepared statements cached per connection
+     */
+    public DerbyConnectionPool( String p_url, int p_maxSize, long p_timeout, int p_statementCacheSize ) {
+        url = p_url;
+        maxSize = Math.max(1, p_maxSize);
+        timeout = p_timeout;
+        statementCacheSize = Math.max(0, p_statementCacheSize);
+        permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool. Blocks until a connection is available or the timeout expires.
+     * Closing the returned connection returns it to the pool.
+     * @return a pooled connection
+     * @throws SQLException if no connection could be obtained
+     */
+    public Connection getConnection() throws SQLException {
+
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", ex);
+        }
+        long waitTime = System.nanoTime() - waitStart;
+        totalWaitTime.addAndGet(waitTime);
+        updateMaxWaitTime(waitTime);
+
+        if ( !acquired ) {
+            timeoutCount.incrementAndGet();
+            throw new SQLException("Timed out waiting for a database connection, pool size " + maxSize);
+        }
+        if ( closed ) {
+            permits.release();
+            throw new SQLException("Connection pool has been closed");
+        }
+
+        PooledConnection pooledConnection = null;
+        try {
+            pooledConnection = takeIdleConnection();
+            if ( pooledConnection == null ) {
+                pooledConnection = new PooledConnection( DriverManager.getConnection(url) );
+            }
+        }
+        catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+
+        activeCount.incrementAndGet();
+        borrowCount.incrementAndGet();
+
+        return pooledConnection.createHandle();
+    }
+
+    /**
+     * Closes all idle connections. Connections currently in use are closed when they are returned.
+     */
+    public void close() {
+
+        closed = true;
+        PooledConnection pooledConnection;
+        while ( (pooledConnection = idleConnections.poll()) != null ) {
+            pooledConnection.destroy();
+        }
+    }
+
+    /**
+     * Gets the maximum number of connections in this pool.
+     * @return maximum pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of connections currently borrowed from the pool.
+     * @return active connections
+     */
+    public int getActiveConnections() {
+        return activeCount.get();
+    }
+
+    /**
+     * Gets the number of open connections waiting in the pool.
+     * @return idle connections
+     */
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Gets the total number of successful borrows.
+     * @return borrow count
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * Gets the number of borrows that timed out.
+     * @return timeout count
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Gets the total time spent waiting for connections.
+     * @return wait time in milliseconds
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get());
+    }
+
+    /**
+     * Gets the longest time a borrower has waited for a connection.
+     * @return wait time in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    /**
+     * Gets the average time spent waiting for a connection.
+     * @return wait time in milliseconds
+     */
+    public double getAverageWaitTime() {
+        long borrows = borrowCount.get() + timeoutCount.get();
+        if ( borrows == 0 ) {
+            return 0;
+        }
+        return (double)totalWaitTime.get() / borrows / 1000000.0;
+    }
+
+    private void updateMaxWaitTime( long waitTime ) {
+
+        long current = maxWaitTime.get();
+        while ( waitTime > current && !maxWaitTime.compareAndSet(current, waitTime) ) {
+            current = maxWaitTime.get();
+        }
+    }
+
+    private PooledConnection takeIdleConnection() {
+
+        PooledConnection pooledConnection;
+        while ( (pooledConnection = idleConnections.pollFirst()) != null ) {
+            if ( pooledConnection.isUsable() ) {
+                return pooledConnection;
+            }
+            pooledConnection.destroy();
+        }
+        return null;
+    }
+
+    private void release( PooledConnection pooledConnection ) {
+
+        activeCount.decrementAndGet();
+
+        if ( !closed && pooledConnection.reset() ) {
+            idleConnections.offerFirst(pooledConnection);
+        }
+        else {
+            pooledConnection.destroy();
+        }
+        permits.release();
+    }
+
+    /**
+     * A physical connection together with its statement cache.
+     */
+    private class PooledConnection {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statementCache;
+
+        private PooledConnection( Connection p_connection ) {
+
+            connection = p_connection;
+            statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<String, PreparedStatement> eldest ) {
+                    if ( size() > statementCacheSize ) {
+                        closeStatement(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private Connection createHandle() {
+            ConnectionHandle handle = new ConnectionHandle(this);
+            handle.proxy = (Connection)Proxy.newProxyInstance( DerbyConnectionPool.class.getClassLoader(), new Class<?>[] {Connection.class}, handle );
+            return handle.proxy;
+        }
+
+        /**
+         * Takes a statement from the cache or prepares a new one. A cached statement is removed
+         * from the cache while in use so that nested use of the same SQL gets its own statement.
+         */
+        private PreparedStatement prepareStatement( String sql ) throws SQLException {
+
+            PreparedStatement statement = statementCache.remove(sql);
+            if ( statement == null ) {
+                statement = connection.prepareStatement(sql);
+            }
+            return statement;
+        }
+
+        private void returnStatement( String sql, PreparedStatement statement ) {
+
+            if ( statementCacheSize == 0 || statementCache.containsKey(sql) ) {
+                closeStatement(statement);
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                statementCache.put(sql, statement);
+            } catch (SQLException ex) {
+                Logger.getLogger(DerbyConnectionPool.class).debug(ex);
+                closeStatement(statement);
+            }
+        }
+
+        private boolean isUsable() {
+            try {
+                return !connection.isClosed();
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Restores the default connection state before the connection is reused.
+         * @return <code>true</code> if the connection can be reused, <code>false</code> otherwise
+         */
+        private boolean reset() {
+            try {
+                if ( connection.isClosed() ) {
+                    return false;
+                }
+                if ( !connection.getAutoCommit() ) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                connection.clearWarnings();
+                return true;
+            } catch (SQLException ex) {
+                Logger.getLogger(DerbyConnectionPool.class).debug(ex);
+                return false;
+            }
+        }
+
+        private void destroy() {
+
+            for ( PreparedStatement statement : statementCache.values() ) {
+                closeStatement(statement);
+            }
+            statementCache.clear();
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                Logger.getLogger(DerbyConnectionPool.class).debug(ex);
+            }
+        }
+    }
+
+    /**
+     * Connection given to a single borrower. Closing it returns the physical connection to the pool
+     * and closes the statements the borrower left open.
+     */
+    private class ConnectionHandle implements InvocationHandler {
+
+        private final PooledConnection pooledConnection;
+        private final List<Statement> openStatements = new LinkedList<>();
+        private Connection proxy;
+        private boolean closed = false;
+
+        private ConnectionHandle( PooledConnection p_pooledConnection ) {
+            pooledConnection = p_pooledConnection;
+        }
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+
+            String name = method.getName();
+
+            switch (name) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + pooledConnection.connection.toString();
+                default:
+                    break;
+            }
+
+            if ( closed ) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+
+            if ( name.equals("prepareStatement") && args.length == 1 ) {
+                String sql = (String)args[0];
+                PreparedStatement statement = pooledConnection.prepareStatement(sql);
+                PreparedStatement handle = (PreparedStatement)Proxy.newProxyInstance( DerbyConnectionPool.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, new StatementHandle(this, sql, statement) );
+                openStatements.add(handle);
+                return handle;
+            }
+
+            Object result;
+            try {
+                result = method.invoke(pooledConnection.connection, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+
+            if ( result instanceof Statement ) {
+                openStatements.add((Statement)result);
+            }
+            return result;
+        }
+
+        private void close() {
+
+            if ( closed ) {
+                return;
+            }
+            closed = true;
+
+            for ( Statement statement : new ArrayList<>(openStatements) ) {
+                closeStatement(statement);
+            }
+            openStatements.clear();
+            release(pooledConnection);
+        }
+    }
+
+    /**
+     * Statement given to a borrower for a cached SQL string. Closing it closes the result sets the borrower left open
+     * and returns the statement to the cache.
+     */
+    private class StatementHandle implements InvocationHandler {
+
+        private final ConnectionHandle connectionHandle;
+        private final String sql;
+        private final PreparedStatement statement;
+        private final List<ResultSet> resultSets = new LinkedList<>();
+        private boolean closed = false;
+
+        private StatementHandle( ConnectionHandle p_connectionHandle, String p_sql, PreparedStatement p_statement ) {
+            connectionHandle = p_connectionHandle;
+            sql = p_sql;
+            statement = p_statement;
+        }
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+
+            switch (method.getName()) {
+                case "close":
+                    if ( !closed ) {
+                        closed = true;
+                        for ( ResultSet resultSet : resultSets ) {
+                            closeResultSet(resultSet);
+                        }
+                        resultSets.clear();
+                        connectionHandle.openStatements.remove((Statement)proxy);
+                        connectionHandle.pooledConnection.returnStatement(sql, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return connectionHandle.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if ( closed ) {
+                throw new SQLException("Statement is closed");
+            }
+
+            Object result;
+            try {
+                result = method.invoke(statement, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+
+            if ( result instanceof ResultSet ) {
+                resultSets.add((ResultSet)result);
+            }
+            return result;
+        }
+    }
+
+    private static void closeStatement( Statement statement ) {
+        try {
+            statement.close();
+        } catch (SQLException ex) {
+            Logger.getLogger(DerbyConnectionPool.class).debug(ex);
+        }
+    }
+
+    private static void closeResultSet( ResultSet resultSet ) {
+        try {
+            resultSet.close();
+        } catch (SQLException ex) {
+            Logger.getLogger(DerbyConnectionPool.class).debug(ex);
+        }
+    }
+}
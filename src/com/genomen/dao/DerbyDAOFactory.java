@@ -4,8 +4,6 @@ import com.genomen.core.Configuration;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 
 /**
@@ -16,21 +14,23 @@ public class DerbyDAOFactory extends DAOFactory {
 
     public static final String DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
 
+    private static DerbyConnectionPool connectionPool = null;
+
     /**
-     * Gets a new instance of a Derby based RuleDAO
+     * Gets a new instance of a Derby based RuleDAO. Rule logic and descriptions are read through the knowledge base cache.
      * @return Derby based RuleDAO
      */
     public RuleDAO getRuleDAO() {
 
-        return new DerbyRuleDAO();
+        return new CachingRuleDAO( new DerbyRuleDAO() );
     }
     /**
-     * Gets a new instance of a Derby based TraitDAO
+     * Gets a new instance of a Derby based TraitDAO. Trait texts are read through the knowledge base cache.
      * @return Derby based TraitDAO
      */
     public TraitDAO getTraitDAO() {
 
-        return new DerbyTraitDAO();
+        return new CachingTraitDAO( new DerbyTraitDAO() );
     }
     /**
      * Gets a new instance of a Derby based ErrorDAO.
@@ -50,10 +50,14 @@ public class DerbyDAOFactory extends DAOFactory {
     }
  
     /**
-     * Gets a new instance of a Derby based DataSetDAO
+     * Gets a new instance of a Derby based DataSetDAO using the storage layout set in the configuration.
      * @return
      */
     public DerbyDataSetDAO getDataSetDAO() {
+
+        if ( Configuration.getConfiguration().getStorageLayout() == DataSetDAO.PARTITIONED_LAYOUT ) {
+            return new DerbyPartitionedDataSetDAO();
+        }
         return new DerbyDataSetDAO();
     }
     
@@ -66,7 +70,7 @@ public class DerbyDAOFactory extends DAOFactory {
     }
 
     /**
-     * Creates a new properly configured instance of Connection
+     * Borrows a properly configured connection from the connection pool. Closing the connection returns it to the pool.
      * @return An instance of Connection.
      * @throws java.lang.ClassNotFoundException
      * @throws java.lang.InstantiationException
@@ -75,13 +79,36 @@ public class DerbyDAOFactory extends DAOFactory {
      */
     public static Connection createConnection() throws ClassNotFoundException, InstantiationException, IllegalAccessException, SQLException {
 
-        Connection connection = null;
+        return getConnectionPool().getConnection();
+    }
+
+    /**
+     * Gets the connection pool shared by all Derby DAOs, creating it on first use.
+     * @return the connection pool
+     * @throws java.lang.ClassNotFoundException
+     * @throws java.lang.InstantiationException
+     * @throws java.lang.IllegalAccessException
+     */
+    public static synchronized DerbyConnectionPool getConnectionPool() throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+
+        if ( connectionPool == null ) {
+            Class.forName(DRIVER).newInstance();
+            Configuration configuration = Configuration.getConfiguration();
+            connectionPool = new DerbyConnectionPool( "jdbc:derby:" + configuration.getDatabaseAddress() + ";create=false",
+                    configuration.getConnectionPoolSize(), configuration.getConnectionPoolTimeout() * 1000L, configuration.getStatementCacheSize() );
+        }
+        return connectionPool;
+    }
 
-        Class.forName(DRIVER).newInstance();
-        connection = DriverManager.getConnection("jdbc:derby:" + Configuration.getConfiguration().getDatabaseAddress() + ";create=false");
+    /**
+     * Closes the pooled connections. A new pool is created when a connection is next requested.
+     */
+    public static synchronized void closeConnectionPool() {
 
-        return connection;
-  }
-   
+        if ( connectionPool != null ) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+    }
 
 }
@@ -6,10 +6,12 @@ import com.genomen.entities.DataAttributeConverter;
 import com.genomen.entities.DataEntity;
 import com.genomen.entities.DataEntityAttributeValue;
 import com.genomen.entities.DataType;
+import com.genomen.entities.GenotypeIndex;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,6 +23,8 @@ import org.apache.log4j.Logger;
  */
 public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
 
+    protected static final String TABLE_DOES_NOT_EXIST = "42X05";
+
     public DataEntity getDataEntity(String schemaName, String individualID, String attribute, String dataID, DataType dataType ) {
 
         Connection connection = null;
@@ -59,14 +63,60 @@ public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
 
     }
     
+    @Override
+    public boolean loadGenotypeIndex( String schemaName, String sampleID, String keyAttribute, String valueAttribute, DataType dataType, GenotypeIndex index ) {
+
+        Connection connection = null;
+        boolean loaded = false;
+
+        String tableName = createTableName(sampleID.toUpperCase(), dataType);
+
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyDataSetDAO.class ).debug(ex);
+            return loaded;
+        }
+
+        try {
+            PreparedStatement statement = connection.prepareStatement("SELECT " + keyAttribute + ", " + valueAttribute + " FROM " + schemaName + "." + tableName);
+            statement.setFetchSize(1000);
+            ResultSet results = statement.executeQuery();
+
+            while ( results.next() ) {
+                index.put( results.getString(1), results.getString(2) );
+            }
+            loaded = true;
+
+            results.close();
+            statement.close();
+
+        } catch (SQLException ex) {
+            //A sample without data of this type has an empty index.
+            loaded = TABLE_DOES_NOT_EXIST.equals(ex.getSQLState());
+            Logger.getLogger( DerbyDataSetDAO.class ).debug(ex);
+        }
+        finally {
+            closeConnection( connection );
+        }
+
+        return loaded;
+    }
+
     @Override
     public String createTableName( String taskID, DataType dataType ) {
         
         return dataType.getId().concat("_").concat(taskID);
         
     }
+
+    @Override
+    public boolean isPartitioned() {
+        return false;
+    }
     
-    private DataEntity createDataEntity( ResultSet resultSet, DataType dataType ) throws SQLException {
+    protected DataEntity createDataEntity( ResultSet resultSet, DataType dataType ) throws SQLException {
         
         DataEntity dataEntity = null;
         
@@ -115,6 +165,64 @@ public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
     public void createDataTable(String schemaName, String taskID, DataType dataType) {
 
         String tableName = createTableName( taskID, dataType );
+        StringBuilder valuesBuilder = new StringBuilder( createColumnDefinitions(dataType) );
+        
+        valuesBuilder.append( " ID BIGINT NOT NULL,");
+         valuesBuilder.append( "PRIMARY KEY (ID) ");
+     
+        ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();
+        contentDAO.createTable(schemaName, tableName, valuesBuilder.toString());
+
+    }
+
+    @Override
+    public void createIndexes( String schemaName, String sampleID, DataType dataType ) {
+
+        String tableName = createTableName(sampleID, dataType);
+
+        StringBuilder indexColumns = new StringBuilder();
+        for ( String attributeName : dataType.getAttributeNames() ) {
+            if ( dataType.isRequiredAttribute(attributeName) ) {
+                if ( indexColumns.length() > 0 ) {
+                    indexColumns.append(", ");
+                }
+                indexColumns.append(attributeName);
+            }
+        }
+        if ( indexColumns.length() == 0 ) {
+            return;
+        }
+
+        Connection connection = null;
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyDataSetDAO.class ).debug(ex);
+            return;
+        }
+
+        try {
+            //Index names are unique within a schema, so each table gets its own.
+            Statement statement = connection.createStatement();
+            statement.executeUpdate("CREATE INDEX " + schemaName + "." + tableName + "_INDEX ON " + schemaName + "." + tableName + " ( " + indexColumns + " )" );
+            statement.close();
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( DerbyDataSetDAO.class ).debug(ex);
+        }
+        finally {
+            closeConnection( connection );
+        }
+    }
+
+    /**
+     * Creates the column definitions for the attributes of a data type, each followed by a comma.
+     * @param dataType data type definition
+     * @return column definitions usable in a CREATE TABLE statement
+     */
+    public String createColumnDefinitions( DataType dataType ) {
+
         StringBuilder valuesBuilder = new StringBuilder();
         List<String> attributeNames = dataType.getAttributeNames();
                    
@@ -140,13 +248,8 @@ public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
                         
             valuesBuilder.append(", ");            
         }            
-        
-        valuesBuilder.append( " ID BIGINT NOT NULL,");
-         valuesBuilder.append( "PRIMARY KEY (ID) ");
-     
-        ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();
-        contentDAO.createTable(schemaName, tableName, valuesBuilder.toString());
 
+        return valuesBuilder.toString();
     }
     
     @Override
@@ -162,9 +265,7 @@ public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
             return;
         }
         
-        for ( String individual : individualIDs ) {
-            dropAllIndividualTables( Configuration.getConfiguration().getDatabaseTempSchemaName(), individual);
-        }
+        removeSampleData( Configuration.getConfiguration().getDatabaseTempSchemaName(), individualIDs );
         
         try {
             PreparedStatement statement = connection.prepareStatement("DELETE FROM " + Configuration.getConfiguration().getDatabaseTempSchemaName() + ".Individuals WHERE INDIVIDUAL_ID = ?");
@@ -187,16 +288,23 @@ public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
               
     }
      
-    private void dropAllIndividualTables( String schemaName, String individualID ) {
+    /**
+     * Removes the data of the listed samples, dropping the tables of the samples.
+     * @param schemaName schema storing the data
+     * @param individualIDs ids of the samples
+     */
+    protected void removeSampleData( String schemaName, List<String> individualIDs ) {
 
         ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();    
         String[] tables = contentDAO.getTables(schemaName);
         
-        for ( String table: tables ) {    
-            if ( table.matches( ".*_" + individualID.toUpperCase() + "$")) {
-                contentDAO.dropTable(Configuration.getConfiguration().getDatabaseTempSchemaName(), table);
-            }   
-        }      
+        for ( String individualID : individualIDs ) {
+            for ( String table: tables ) {    
+                if ( table.matches( ".*_" + individualID.toUpperCase() + "$")) {
+                    contentDAO.dropTable(schemaName, table);
+                }   
+            }      
+        }
     }    
     
     public Sample getSample( String individualID ) {
@@ -303,7 +411,7 @@ public class DerbyDataSetDAO extends DerbyDAO implements DataSetDAO {
             ResultSet results = statement.executeQuery();
 
             
-            if ( results.next() ) {
+            while ( results.next() ) {
 
                 //Currently no data besides ID is stored.
                 String id = results.getString("INDIVIDUAL_ID");
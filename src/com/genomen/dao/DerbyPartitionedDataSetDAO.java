@@ -0,0 +1,295 @@
+package com.genomen.dao;
+
+import com.genomen.core.Configuration;
+import com.genomen.entities.DataEntity;
+import com.genomen.entities.DataType;
+import com.genomen.entities.DataTypeManager;
+import com.genomen.entities.GenotypeIndex;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * DataSetDAO storing the data of all samples in a single table per data type. The rows of a sample are
+ * identified by <code>SAMPLE_COLUMN</code>, so adding or removing a sample requires no DDL and no catalog scans.
+ * @author ciszek
+ */
+public class DerbyPartitionedDataSetDAO extends DerbyDataSetDAO {
+
+    private static final String INDEX_ENDING = "_SAMPLE_INDEX";
+
+    @Override
+    public DataEntity getDataEntity( String schemaName, String sampleID, String attribute, String dataID, DataType dataType ) {
+
+        Connection connection = null;
+        DataEntity dataEntity = null;
+
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+            return dataEntity;
+        }
+
+        try {
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + schemaName + "." + createTableName(sampleID, dataType)
+                                                                    + " WHERE " + SAMPLE_COLUMN + " = ? AND " + attribute + " = ?");
+            statement.setString( 1, sampleID.toUpperCase() );
+            statement.setString( 2, dataID );
+            ResultSet results = statement.executeQuery();
+
+            dataEntity = createDataEntity(results, dataType);
+
+            results.close();
+            statement.close();
+
+        } catch (SQLException ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+        }
+        finally {
+            closeConnection( connection );
+        }
+
+        return dataEntity;
+    }
+
+    @Override
+    public boolean loadGenotypeIndex( String schemaName, String sampleID, String keyAttribute, String valueAttribute, DataType dataType, GenotypeIndex index ) {
+
+        Connection connection = null;
+        boolean loaded = false;
+
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+            return loaded;
+        }
+
+        try {
+            PreparedStatement statement = connection.prepareStatement("SELECT " + keyAttribute + ", " + valueAttribute + " FROM " + schemaName + "." + createTableName(sampleID, dataType)
+                                                                    + " WHERE " + SAMPLE_COLUMN + " = ?");
+            statement.setString( 1, sampleID.toUpperCase() );
+            statement.setFetchSize(1000);
+            ResultSet results = statement.executeQuery();
+
+            while ( results.next() ) {
+                index.put( results.getString(1), results.getString(2) );
+            }
+            loaded = true;
+
+            results.close();
+            statement.close();
+
+        } catch (SQLException ex) {
+            //No sample has data of this type yet.
+            loaded = TABLE_DOES_NOT_EXIST.equals(ex.getSQLState());
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+        }
+        finally {
+            closeConnection( connection );
+        }
+
+        return loaded;
+    }
+
+    @Override
+    public String createTableName( String sampleID, DataType dataType ) {
+        return dataType.getId();
+    }
+
+    @Override
+    public boolean isPartitioned() {
+        return true;
+    }
+
+    /**
+     * Creates the table shared by all samples for a data type. The table is keyed by the sample and the id of the row,
+     * and indexed by the sample and the required attributes of the data type.
+     * @param schemaName Schema to which the table is to be placed.
+     * @param sampleID ID of the sample, not used as the table is shared
+     * @param dataType <code>DataType</code> specifying the data which the table created is to hold
+     */
+    @Override
+    public void createDataTable( String schemaName, String sampleID, DataType dataType ) {
+
+        String tableName = createTableName( sampleID, dataType );
+        StringBuilder valuesBuilder = new StringBuilder( createColumnDefinitions(dataType) );
+
+        valuesBuilder.append( "ID BIGINT NOT NULL, " );
+        valuesBuilder.append( SAMPLE_COLUMN );
+        valuesBuilder.append( " VARCHAR(100) NOT NULL, " );
+        valuesBuilder.append( "PRIMARY KEY (" );
+        valuesBuilder.append( SAMPLE_COLUMN );
+        valuesBuilder.append( ", ID) " );
+
+        ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();
+        if ( !contentDAO.createTable(schemaName, tableName, valuesBuilder.toString()) ) {
+            return;
+        }
+
+        StringBuilder indexColumns = new StringBuilder( SAMPLE_COLUMN );
+        for ( String attributeName : dataType.getAttributeNames() ) {
+            if ( dataType.isRequiredAttribute(attributeName) ) {
+                indexColumns.append( ", " );
+                indexColumns.append( attributeName );
+            }
+        }
+
+        Connection connection = null;
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+            return;
+        }
+
+        try {
+            Statement statement = connection.createStatement();
+            statement.executeUpdate("CREATE INDEX " + schemaName + "." + tableName + INDEX_ENDING + " ON " + schemaName + "." + tableName + " ( " + indexColumns + " )");
+            statement.close();
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).error(ex);
+        }
+        finally {
+            closeConnection( connection );
+        }
+    }
+
+    /**
+     * Does nothing, as the shared table is indexed when it is created.
+     * @param schemaName Schema of the table
+     * @param sampleID ID of the sample
+     * @param dataType Data type definition of the table
+     */
+    @Override
+    public void createIndexes( String schemaName, String sampleID, DataType dataType ) {
+    }
+
+    /**
+     * Removes the rows of the listed samples from the tables of all known data types.
+     * @param schemaName schema storing the data
+     * @param sampleIDs ids of the samples
+     */
+    @Override
+    protected void removeSampleData( String schemaName, List<String> sampleIDs ) {
+
+        Connection connection = null;
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+            return;
+        }
+
+        try {
+            for ( DataType dataType : DataTypeManager.getInstance().getDataTypes() ) {
+                try {
+                    PreparedStatement statement = connection.prepareStatement("DELETE FROM " + schemaName + "." + createTableName(null, dataType) + " WHERE " + SAMPLE_COLUMN + " = ?");
+                    for ( String sampleID : sampleIDs ) {
+                        statement.setString( 1, sampleID.toUpperCase() );
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    statement.close();
+                }
+                catch (SQLException ex) {
+                    //Data types without a table have no rows to remove.
+                    Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+                }
+            }
+        }
+        finally {
+            closeConnection( connection );
+        }
+    }
+
+    @Override
+    public int getCurrentId( String schemaName, String sampleID, DataType dataType ) {
+
+        Connection connection = null;
+        int currentID = -1;
+
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+            return -1;
+        }
+
+        try {
+            PreparedStatement statement = connection.prepareStatement("SELECT MAX(ID) FROM " + schemaName + "." + createTableName(sampleID, dataType) + " WHERE " + SAMPLE_COLUMN + " = ?");
+            statement.setString( 1, sampleID.toUpperCase() );
+            ResultSet results = statement.executeQuery();
+
+            results.next();
+            int maxID = results.getInt(1);
+            //A sample without rows starts from zero, as it would in a table of its own.
+            currentID = results.wasNull() ? 0 : 1 + maxID;
+
+            results.close();
+            statement.close();
+
+        } catch (SQLException ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+        }
+        finally {
+            closeConnection( connection );
+        }
+
+        return currentID;
+    }
+
+    @Override
+    public List<String> getDataTypes( String sampleID ) {
+
+        List<String> dataTypeIDs = new ArrayList<String>();
+        Connection connection = null;
+
+        try {
+            connection = DerbyDAOFactory.createConnection();
+        }
+        catch (Exception ex) {
+            Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+            return dataTypeIDs;
+        }
+
+        String schemaName = Configuration.getConfiguration().getDatabaseTempSchemaName();
+
+        try {
+            for ( DataType dataType : DataTypeManager.getInstance().getDataTypes() ) {
+                try {
+                    PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM " + schemaName + "." + createTableName(sampleID, dataType)
+                                                                            + " WHERE " + SAMPLE_COLUMN + " = ? FETCH FIRST ROW ONLY");
+                    statement.setString( 1, sampleID.toUpperCase() );
+                    ResultSet results = statement.executeQuery();
+                    if ( results.next() ) {
+                        dataTypeIDs.add( dataType.getId() );
+                    }
+                    results.close();
+                    statement.close();
+                }
+                catch (SQLException ex) {
+                    //Data types without a table have no rows for the sample.
+                    Logger.getLogger( DerbyPartitionedDataSetDAO.class ).debug(ex);
+                }
+            }
+        }
+        finally {
+            closeConnection( connection );
+        }
+
+        return dataTypeIDs;
+    }
+}
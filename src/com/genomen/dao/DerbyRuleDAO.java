@@ -9,6 +9,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.log4j.Logger;
 
 /**
@@ -86,8 +88,9 @@ public class DerbyRuleDAO extends DerbyDAO implements RuleDAO {
 
         try {
 
-            Statement statement = connection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT SYMBOLIC_NAME_ID, trait_symbolic_name_id, effect_type, interest_level, logic  FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() +".rule WHERE SYMBOLIC_NAME_ID = '" + ruleID + "'");
+            PreparedStatement statement = connection.prepareStatement("SELECT SYMBOLIC_NAME_ID, trait_symbolic_name_id, effect_type, interest_level, logic  FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() +".rule WHERE SYMBOLIC_NAME_ID = ?");
+            statement.setString( 1, ruleID );
+            ResultSet results = statement.executeQuery();
 
             while ( results.next() ) {
                 String id = results.getString("SYMBOLIC_NAME_ID");
@@ -116,119 +119,157 @@ public class DerbyRuleDAO extends DerbyDAO implements RuleDAO {
 
     public String getRuleLogic( String ruleID ) {
 
-        Connection connection = null;
-
-        String logic = "";
         try {
-            connection = DerbyDAOFactory.createConnection();
+            return readRuleLogic(ruleID);
         }
-        catch (Exception ex) {
+        catch (SQLException ex) {
             Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
-            return logic;
+            return "";
         }
-        try {
-
-            Statement statement = connection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT logic  FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() +".rule WHERE SYMBOLIC_NAME_ID  = '" + ruleID + "'");
+    }
 
+    public String getRuleDescription( String ruleID, String languageID ) {
 
-            while (results.next() )
-            {
-                logic = results.getString("logic");
-            }
-            statement.close();
-            results.close();
+        try {
+            return readRuleDescription(ruleID, languageID);
         }
         catch (SQLException ex) {
             Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
+            return "";
         }
-        finally {
-            closeConnection( connection );
+    }
+
+    public String getResultDescription(String resultID, String languageID) {
+
+        try {
+            return readResultDescription(resultID, languageID);
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
+            return "";
         }
-        return logic;
     }
 
-    public String getRuleDescription( String ruleID, String languageID ) {
+    /**
+     * Reads the logic of a rule.
+     * @param ruleID rule id
+     * @return a logic script, or an empty string if the rule does not exist
+     * @throws SQLException if the database could not be read
+     */
+    String readRuleLogic( String ruleID ) throws SQLException {
+        return readText( "SELECT logic FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".rule WHERE SYMBOLIC_NAME_ID = ?", ruleID, null );
+    }
 
-        Connection connection = null;
+    /**
+     * Reads the description of a rule.
+     * @param ruleID rule id
+     * @param languageID language id
+     * @return description of a rule, or an empty string if the rule has no description in the language
+     * @throws SQLException if the database could not be read
+     */
+    String readRuleDescription( String ruleID, String languageID ) throws SQLException {
+        return readText( "SELECT description FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".rule_description WHERE symbolic_name_id = ? AND language_symbolic_name_id = ?", ruleID, languageID );
+    }
+
+    /**
+     * Reads the description of a result.
+     * @param resultID result id
+     * @param languageID language id
+     * @return result description, or an empty string if the result has no description in the language
+     * @throws SQLException if the database could not be read
+     */
+    String readResultDescription( String resultID, String languageID ) throws SQLException {
+        return readText( "SELECT description FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".result_description WHERE symbolic_name_id = ? AND language_symbolic_name_id = ?", resultID, languageID );
+    }
+
+    @Override
+    public Map<String, String> getRuleLogics() {
+        return getTexts( "SELECT SYMBOLIC_NAME_ID, logic FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".rule", null );
+    }
+
+    @Override
+    public Map<String, String> getRuleDescriptions( String languageID ) {
+        return getTexts( "SELECT symbolic_name_id, description FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".rule_description WHERE language_symbolic_name_id = ?", languageID );
+    }
+
+    @Override
+    public Map<String, String> getResultDescriptions( String languageID ) {
+        return getTexts( "SELECT symbolic_name_id, description FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".result_description WHERE language_symbolic_name_id = ?", languageID );
+    }
+
+    //Reads the text of an id, with an optional language as the second parameter of the query.
+    private String readText( String query, String id, String languageID ) throws SQLException {
 
-        String description = "";
+        Connection connection = null;
+        String text = "";
 
         try {
             connection = DerbyDAOFactory.createConnection();
         }
-        catch (Exception ex) {
-            Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
-            return description;
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+            throw new SQLException(ex);
         }
 
         try {
 
-            PreparedStatement statement = connection.prepareStatement("SELECT description FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() +".rule_description WHERE symbolic_name_id  = ? AND language_symbolic_name_id = ?");
-
-            statement.setString( 1, ruleID );
-            statement.setString( 2, languageID );
-
+            PreparedStatement statement = connection.prepareStatement(query);
+            statement.setString( 1, id );
+            if ( languageID != null ) {
+                statement.setString( 2, languageID );
+            }
             ResultSet results = statement.executeQuery();
 
-
             while (results.next() )
             {
-                description = results.getString("description");
+                text = results.getString(1);
             }
-            statement.close();
             results.close();
-        }
-        catch (SQLException ex) {
-            Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
+            statement.close();
         }
         finally {
             closeConnection( connection );
         }
-        
-        return description;
 
+        return text;
     }
 
-    public String getResultDescription(String resultID, String languageID) {
-        
-        Connection connection = null;
+    //Reads pairs of ids and texts, with an optional language as the only parameter of the query, or null if the query fails.
+    private Map<String, String> getTexts( String query, String languageID ) {
 
-        String description = "";
+        Connection connection = null;
+        Map<String, String> texts = new HashMap<String, String>();
 
         try {
             connection = DerbyDAOFactory.createConnection();
         }
         catch (Exception ex) {
             Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
-            return description;
+            return null;
         }
 
         try {
 
-            PreparedStatement statement = connection.prepareStatement("SELECT description FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() +".result_description WHERE symbolic_name_id  = ? AND language_symbolic_name_id = ?");
-
-            statement.setString( 1, resultID );
-            statement.setString( 2, languageID );
-
+            PreparedStatement statement = connection.prepareStatement(query);
+            if ( languageID != null ) {
+                statement.setString( 1, languageID );
+            }
             ResultSet results = statement.executeQuery();
 
-
             while (results.next() )
             {
-                description = results.getString("description");
+                texts.put( results.getString(1), results.getString(2) );
             }
             statement.close();
             results.close();
         }
         catch (SQLException ex) {
             Logger.getLogger( DerbyRuleDAO.class ).debug(ex);
+            return null;
         }
         finally {
             closeConnection( connection );
         }
 
-        return description;
-
+        return texts;
     }
 }
@@ -2,9 +2,11 @@ package com.genomen.dao;
 
 import com.genomen.core.Configuration;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.log4j.Logger;
 
 
@@ -13,6 +15,10 @@ import org.apache.log4j.Logger;
  * @author ciszek
  */
 public class DerbyTraitDAO extends DerbyDAO implements TraitDAO {
+
+    //Columns of the texts in the order of the positions of getTraitDescriptions
+    private static final String[] COLUMNS = { "name", "short_desc", "description" };
+
     /**
      * Performs a query and returns a short description of a trait.
      * @param symbolicName Name of the trait of which short description is queried.
@@ -22,37 +28,7 @@ public class DerbyTraitDAO extends DerbyDAO implements TraitDAO {
     @Override
     public String getShortDescription( String symbolicName, String language ) {
 
-        String shortDescription = "";
-        Connection connection = null;
-
-        try {
-            connection = DerbyDAOFactory.createConnection();
-        }
-        catch (Exception ex) {
-            Logger.getLogger( DerbyContentDAO.class ).debug(ex);
-            return shortDescription;
-        }
-
-        try {
-            Statement statement = connection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT short_desc FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() + ".trait_description WHERE "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description.trait_symbolic_name_id = '" + symbolicName + "' AND "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description.language_symbolic_name_id = '" + language + "'");
-            while ( results.next() ) {
-                shortDescription = results.getString("short_desc");
-            }
-            
-
-            results.close();
-            statement.close();
-
-
-        } catch (SQLException ex) {
-            Logger.getLogger( DerbyTraitDAO.class ).debug(ex);
-        }
-        finally {
-            closeConnection( connection );
-        }
-        
-        return shortDescription;
+        return getDescription( SHORT_DESCRIPTION, symbolicName, language );
 
     }
     /**
@@ -63,78 +39,107 @@ public class DerbyTraitDAO extends DerbyDAO implements TraitDAO {
      */
     public String getDetailedDescription( String symbolicName, String language ) {
 
-        String longDescription = "";
+        return getDescription( DETAILED_DESCRIPTION, symbolicName, language );
+
+    }
+
+    public String getTraitName(String symbolicName, String language) {
+
+        return getDescription( NAME, symbolicName, language );
+
+    }
+
+    @Override
+    public Map<String, String[]> getTraitDescriptions( String language ) {
+
+        Map<String, String[]> descriptions = new HashMap<String, String[]>();
         Connection connection = null;
 
         try {
             connection = DerbyDAOFactory.createConnection();
         }
         catch (Exception ex) {
-            Logger.getLogger( DerbyContentDAO.class ).debug(ex);
-            return longDescription;
+            Logger.getLogger( DerbyTraitDAO.class ).debug(ex);
+            return null;
         }
 
         try {
-            Statement statement = connection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT description FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".trait_description WHERE "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description.trait_symbolic_name_id = '" + symbolicName + "' AND "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description.language_symbolic_name_id = '" + language + "'");
+            PreparedStatement statement = connection.prepareStatement("SELECT trait_symbolic_name_id, name, short_desc, description FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".trait_description WHERE language_symbolic_name_id = ?");
+            statement.setString( 1, language );
+            ResultSet results = statement.executeQuery();
 
             while ( results.next() ) {
-                longDescription = results.getString("description");
+                String[] texts = new String[3];
+                texts[NAME] = results.getString("name");
+                texts[SHORT_DESCRIPTION] = results.getString("short_desc");
+                texts[DETAILED_DESCRIPTION] = results.getString("description");
+                descriptions.put( results.getString("trait_symbolic_name_id"), texts );
             }
 
-
             results.close();
             statement.close();
 
-
-
         } catch (SQLException ex) {
             Logger.getLogger( DerbyTraitDAO.class ).debug(ex);
+            return null;
         }
         finally {
             closeConnection( connection );
         }
-        
-        return longDescription;
 
+        return descriptions;
     }
 
-    public String getTraitName(String symbolicName, String language) {
+    /**
+     * Reads a text of the description of a trait.
+     * @param text position of the text, <code>NAME</code>, <code>SHORT_DESCRIPTION</code> or <code>DETAILED_DESCRIPTION</code>
+     * @param symbolicName symbolic trait name
+     * @param language language id
+     * @return the text, or an empty string if the trait has no description in the language
+     * @throws SQLException if the database could not be read
+     */
+    String readDescription( int text, String symbolicName, String language ) throws SQLException {
 
-        String traitName = "";
+        String value = "";
         Connection connection = null;
 
         try {
             connection = DerbyDAOFactory.createConnection();
         }
-        catch (Exception ex) {
-            Logger.getLogger( DerbyContentDAO.class ).debug(ex);
-            return traitName;
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+            throw new SQLException(ex);
         }
 
         try {
-            Statement statement = connection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT name FROM "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description WHERE "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description.trait_symbolic_name_id = '" + symbolicName + "' AND "+ Configuration.getConfiguration().getDatabaseSchemaName() +".trait_description.language_symbolic_name_id = '" + language + "'");
+            PreparedStatement statement = connection.prepareStatement("SELECT " + COLUMNS[text] + " FROM " + Configuration.getConfiguration().getDatabaseSchemaName() + ".trait_description WHERE trait_symbolic_name_id = ? AND language_symbolic_name_id = ?");
+            statement.setString( 1, symbolicName );
+            statement.setString( 2, language );
+            ResultSet results = statement.executeQuery();
 
             while ( results.next() ) {
-                traitName = results.getString("name");
+                value = results.getString(1);
             }
 
-
             results.close();
             statement.close();
-
-
-
-        } catch (SQLException ex) {
-            Logger.getLogger( DerbyTraitDAO.class ).debug(ex);
         }
         finally {
             closeConnection( connection );
         }
 
-        return traitName;
-        
+        return value;
+    }
+
+    //Reads a text of the description of a trait, or an empty string if the trait has no description in the language.
+    private String getDescription( int text, String symbolicName, String language ) {
+
+        try {
+            return readDescription( text, symbolicName, language );
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( DerbyTraitDAO.class ).debug(ex);
+            return "";
+        }
     }
 
 }
@@ -0,0 +1,196 @@
+package com.genomen.dao;
+
+import com.genomen.core.Configuration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches localized knowledge base texts read through <code>TraitDAO</code> and <code>RuleDAO</code>.
+ * Entries are keyed by the kind of the text, the language and the id, and the least recently used entries are
+ * evicted when the configured size is exceeded. The cache must be invalidated when the knowledge base is changed.
+ * @author ciszek
+ */
+public class KnowledgeBaseCache {
+
+    //Kinds of cached texts
+    public static final int TRAIT_NAME = 0;
+    public static final int SHORT_DESCRIPTION = 1;
+    public static final int DETAILED_DESCRIPTION = 2;
+    public static final int RULE_LOGIC = 3;
+    public static final int RULE_DESCRIPTION = 4;
+    public static final int RESULT_DESCRIPTION = 5;
+
+    //Stored in place of texts that do not exist in the database
+    private static final String NULL_VALUE = new String();
+    private static final char SEPARATOR = '\u0000';
+
+    private static final KnowledgeBaseCache instance = new KnowledgeBaseCache( Configuration.getConfiguration().getKnowledgeBaseCacheSize() );
+
+    private final Map<String, String> texts;
+    private final Set<String> preloaded = new HashSet<String>();
+    private final Set<String> preloading = new HashSet<String>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Returns the singleton instance of KnowledgeBaseCache
+     * @return instance of KnowledgeBaseCache
+     */
+    public static KnowledgeBaseCache getInstance() {
+        return instance;
+    }
+
+    private KnowledgeBaseCache( int maxSize ) {
+        texts = new LeastRecentlyUsedMap( maxSize );
+    }
+
+    /**
+     * Tells whether a text is cached.
+     * @param kind kind of the text
+     * @param language language id, or <code>null</code> for texts that are not localized
+     * @param id id of the trait, rule or result
+     * @return <code>true</code> if the text is cached, <code>false</code> otherwise
+     */
+    public synchronized boolean contains( int kind, String language, String id ) {
+        return texts.containsKey( createKey(kind, language, id) );
+    }
+
+    /**
+     * Gets a cached text. Use <code>contains</code> to separate a cached <code>null</code> from a missing entry.
+     * @param kind kind of the text
+     * @param language language id, or <code>null</code> for texts that are not localized
+     * @param id id of the trait, rule or result
+     * @return cached text, or <code>null</code>
+     */
+    public synchronized String get( int kind, String language, String id ) {
+
+        String text = texts.get( createKey(kind, language, id) );
+        if ( text == null ) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return text == NULL_VALUE ? null : text;
+    }
+
+    /**
+     * Adds a text to the cache.
+     * @param kind kind of the text
+     * @param language language id, or <code>null</code> for texts that are not localized
+     * @param id id of the trait, rule or result
+     * @param text text, may be <code>null</code>
+     */
+    public synchronized void put( int kind, String language, String id, String text ) {
+        texts.put( createKey(kind, language, id), text == null ? NULL_VALUE : text );
+    }
+
+    /**
+     * Adds texts of one kind to the cache.
+     * @param kind kind of the texts
+     * @param language language id, or <code>null</code> for texts that are not localized
+     * @param textMap texts keyed by id
+     */
+    public synchronized void putAll( int kind, String language, Map<String, String> textMap ) {
+
+        for ( Map.Entry<String, String> entry : textMap.entrySet() ) {
+            put( kind, language, entry.getKey(), entry.getValue() );
+        }
+    }
+
+    /**
+     * Starts preloading a kind of texts in a language. Only one caller at a time gets <code>true</code> for each
+     * kind and language, and is expected to load the texts and call <code>finishPreload</code>.
+     * @param kind kind of the texts
+     * @param language language id, or <code>null</code> for texts that are not localized
+     * @return <code>true</code> if the texts have not been preloaded and are not being preloaded, <code>false</code> otherwise
+     */
+    public synchronized boolean startPreload( int kind, String language ) {
+
+        String key = createKey(kind, language, "");
+        return !preloaded.contains(key) && preloading.add(key);
+    }
+
+    /**
+     * Finishes preloading a kind of texts in a language. Texts that could not be loaded are preloaded again
+     * by the next caller of <code>startPreload</code>.
+     * @param kind kind of the texts
+     * @param language language id, or <code>null</code> for texts that are not localized
+     * @param loaded <code>true</code> if the texts were loaded, <code>false</code> otherwise
+     */
+    public synchronized void finishPreload( int kind, String language, boolean loaded ) {
+
+        String key = createKey(kind, language, "");
+        if ( preloading.remove(key) && loaded ) {
+            preloaded.add(key);
+        }
+    }
+
+    /**
+     * Removes all cached texts. Must be called when the knowledge base in the database is changed.
+     */
+    public synchronized void invalidate() {
+        texts.clear();
+        preloaded.clear();
+        preloading.clear();
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of requests not found in the cache.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of cached texts.
+     * @return number of cached texts
+     */
+    public synchronized int size() {
+        return texts.size();
+    }
+
+    private static String createKey( int kind, String language, String id ) {
+
+        StringBuilder key = new StringBuilder();
+        key.append(kind);
+        key.append(SEPARATOR);
+        if ( language != null ) {
+            key.append(language);
+        }
+        key.append(SEPARATOR);
+        key.append(id);
+        return key.toString();
+    }
+
+    /**
+     * Map in access order removing the least recently used entry when the maximum size is exceeded.
+     */
+    private static class LeastRecentlyUsedMap extends LinkedHashMap<String, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private LeastRecentlyUsedMap( int p_maxSize ) {
+            super( 16, 0.75f, true );
+            maxSize = p_maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, String> eldest ) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.genomen.dao;
+
+/**
+ * Factory class for DAOs keeping variant data in packed binary files. All other data is accessed through the
+ * Derby DAOs, so the factory differs from <code>DerbyDAOFactory</code> only by its DataSetDAO.
+ * @author ciszek
+ */
+public class PackedDAOFactory extends DAOFactory {
+
+    private final DerbyDAOFactory derbyDAOFactory = new DerbyDAOFactory();
+
+    public RuleDAO getRuleDAO() {
+        return derbyDAOFactory.getRuleDAO();
+    }
+
+    public TraitDAO getTraitDAO() {
+        return derbyDAOFactory.getTraitDAO();
+    }
+
+    public ErrorDAO getErrorDAO() {
+        return derbyDAOFactory.getErrorDAO();
+    }
+
+    public ContentDAO getContentDAO() {
+        return derbyDAOFactory.getContentDAO();
+    }
+
+    /**
+     * Gets a new instance of a DataSetDAO storing variants in packed files and other data in the storage layout set in the configuration.
+     * @return packed DataSetDAO
+     */
+    public PackedDataSetDAO getDataSetDAO() {
+        return new PackedDataSetDAO( derbyDAOFactory.getDataSetDAO() );
+    }
+
+    public TaskDAO getTaskDAO() {
+        return derbyDAOFactory.getTaskDAO();
+    }
+}
@@ -0,0 +1,168 @@
+package com.genomen.dao;
+
+import com.genomen.core.Configuration;
+import com.genomen.core.Sample;
+import com.genomen.entities.DataAttributeConverter;
+import com.genomen.entities.DataEntity;
+import com.genomen.entities.DataEntityAttributeValue;
+import com.genomen.entities.DataType;
+import com.genomen.entities.GenotypeIndex;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * DataSetDAO keeping variant data in a <code>PackedGenotypeStore</code>. Samples and data of other types are
+ * stored in the database through the Derby DataSetDAO of the configured storage layout.
+ * @author ciszek
+ */
+public class PackedDataSetDAO implements DataSetDAO {
+
+    private final DerbyDataSetDAO derbyDataSetDAO;
+
+    /**
+     * Constructs a DataSetDAO using the given DAO for data that is not packed.
+     * @param p_derbyDataSetDAO DAO of the database
+     */
+    public PackedDataSetDAO( DerbyDataSetDAO p_derbyDataSetDAO ) {
+        derbyDataSetDAO = p_derbyDataSetDAO;
+    }
+
+    @Override
+    public DataEntity getDataEntity( String schemaName, String sampleID, String attribute, String value, DataType dataType ) {
+
+        if ( !PackedGenotypeStore.isPacked(dataType) ) {
+            return derbyDataSetDAO.getDataEntity( schemaName, sampleID, attribute, value, dataType );
+        }
+
+        try {
+            Object[] row = PackedGenotypeStore.getStore(schemaName).findRow( sampleID, attribute, value );
+            return row == null ? null : createDataEntity( row, dataType );
+        }
+        catch (IOException ex) {
+            Logger.getLogger( PackedDataSetDAO.class ).debug(ex);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean loadGenotypeIndex( String schemaName, String sampleID, String keyAttribute, String valueAttribute, DataType dataType, GenotypeIndex index ) {
+
+        if ( !PackedGenotypeStore.isPacked(dataType) || !GenotypeIndex.isIndexed( dataType.getId(), keyAttribute, valueAttribute ) ) {
+            return derbyDataSetDAO.loadGenotypeIndex( schemaName, sampleID, keyAttribute, valueAttribute, dataType, index );
+        }
+
+        try {
+            PackedGenotypeStore.getStore(schemaName).loadGenotypeIndex( sampleID, index );
+            return true;
+        }
+        catch (IOException ex) {
+            Logger.getLogger( PackedDataSetDAO.class ).debug(ex);
+            return false;
+        }
+    }
+
+    /**
+     * Creates a table for data that is not packed. Packed data needs no table.
+     * @param schemaName Schema to which the table is to be placed.
+     * @param sampleID ID of the sample to whom the data is associated.
+     * @param dataType <code>DataType</code> specifying the data which the table created is to hold
+     */
+    @Override
+    public void createDataTable( String schemaName, String sampleID, DataType dataType ) {
+
+        if ( !PackedGenotypeStore.isPacked(dataType) ) {
+            derbyDataSetDAO.createDataTable( schemaName, sampleID, dataType );
+        }
+    }
+
+    /**
+     * Indexes a table of data that is not packed. Packed data is looked up through the variant dictionary.
+     * @param schemaName Schema of the table
+     * @param sampleID ID of the sample to whom the data is associated.
+     * @param dataType Data type definition of the table
+     */
+    @Override
+    public void createIndexes( String schemaName, String sampleID, DataType dataType ) {
+
+        if ( !PackedGenotypeStore.isPacked(dataType) ) {
+            derbyDataSetDAO.createIndexes( schemaName, sampleID, dataType );
+        }
+    }
+
+    @Override
+    public String createTableName( String sampleID, DataType dataType ) {
+        return derbyDataSetDAO.createTableName( sampleID, dataType );
+    }
+
+    @Override
+    public boolean isPartitioned() {
+        return derbyDataSetDAO.isPartitioned();
+    }
+
+    @Override
+    public void removeSamples( List<String> samples ) {
+
+        derbyDataSetDAO.removeSamples(samples);
+
+        PackedGenotypeStore store = PackedGenotypeStore.getStore( Configuration.getConfiguration().getDatabaseTempSchemaName() );
+        for ( String sampleID : samples ) {
+            store.removeSample(sampleID);
+        }
+    }
+
+    @Override
+    public Sample getSample( String id ) {
+        return derbyDataSetDAO.getSample(id);
+    }
+
+    @Override
+    public List<Sample> getSamples() {
+        return derbyDataSetDAO.getSamples();
+    }
+
+    @Override
+    public List<String> getDataTypes( String sampleID ) {
+
+        List<String> dataTypeIDs = derbyDataSetDAO.getDataTypes(sampleID);
+        PackedGenotypeStore store = PackedGenotypeStore.getStore( Configuration.getConfiguration().getDatabaseTempSchemaName() );
+        if ( store.contains(sampleID) && !dataTypeIDs.contains(PackedGenotypeStore.DATA_TYPE) ) {
+            dataTypeIDs.add(PackedGenotypeStore.DATA_TYPE);
+        }
+        return dataTypeIDs;
+    }
+
+    @Override
+    public int getCurrentId( String schemaName, String sampleID, DataType dataType ) {
+
+        if ( !PackedGenotypeStore.isPacked(dataType) ) {
+            return derbyDataSetDAO.getCurrentId( schemaName, sampleID, dataType );
+        }
+
+        try {
+            return PackedGenotypeStore.getStore(schemaName).getNextRowId(sampleID);
+        }
+        catch (IOException ex) {
+            Logger.getLogger( PackedDataSetDAO.class ).debug(ex);
+            return -1;
+        }
+    }
+
+    //Creates a data entity of a packed row, with values of the same types as read from a table.
+    private static DataEntity createDataEntity( Object[] row, DataType dataType ) {
+
+        HashMap<String, DataEntityAttributeValue> dataEntityAttributes = new HashMap<String, DataEntityAttributeValue>();
+
+        for ( String attributeName : dataType.getAttributeNames() ) {
+            Object value = row[ PackedGenotypeStore.ATTRIBUTES.indexOf(attributeName) ];
+            if ( DataAttributeConverter.sqlTypeToJava( dataType.getAttributeType(attributeName) ) == DataAttributeConverter.INTEGER ) {
+                dataEntityAttributes.put( attributeName, new DataEntityAttributeValue( value == null ? 0 : (Integer)value ) );
+            }
+            else {
+                dataEntityAttributes.put( attributeName, new DataEntityAttributeValue( (String)value ) );
+            }
+        }
+        return new DataEntity( dataType, dataEntityAttributes );
+    }
+}
@@ -0,0 +1,967 @@
+package com.genomen.dao;
+
+import com.genomen.core.Configuration;
+import com.genomen.entities.AlleleCodes;
+import com.genomen.entities.DataAttributeConverter;
+import com.genomen.entities.DataType;
+import com.genomen.entities.GenotypeIndex;
+import com.genomen.utils.ResourceReleaser;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * Stores the variant data of samples in binary files instead of database tables. Variants are listed once in a
+ * dictionary shared by all samples, holding the id, the position and the two alleles of the variant. The file of a
+ * sample has a 2-bit code for each variant of the dictionary: missing, homozygous for the first allele, heterozygous
+ * or homozygous for the second allele. Rows that do not fit the codes, such as third alleles, indels, phased
+ * genotypes, strands differing from the dictionary or further rows of the same variant, are kept in a side table at
+ * the end of the file. Variants are identified by their id and position, as ids such as "." of VCF files are not
+ * unique. The row ids given by the importer are kept, as runs of consecutive ids for the coded rows.
+ * Sample files are written once per import and read through memory mapping.
+ * @author ciszek
+ */
+public class PackedGenotypeStore {
+
+    public static final String DATA_TYPE = "VARIANT";
+    public static final String VARIANT_ID = "VARIANT_ID";
+    public static final String CHROMOSOME = "CHROMOSOME";
+    public static final String SEQUENCE_START = "SEQUENCE_START";
+    public static final String STRAND = "STRAND";
+    public static final String ALLELE = "ALLELE";
+    //Attributes in the order of the values of a row
+    public static final List<String> ATTRIBUTES = Collections.unmodifiableList( Arrays.asList( VARIANT_ID, CHROMOSOME, SEQUENCE_START, STRAND, ALLELE ) );
+    private static final int ALLELE_COLUMN = 4;
+
+    //Genotype codes
+    private static final int MISSING = 0;
+    private static final int FIRST_HOMOZYGOUS = 1;
+    private static final int HETEROZYGOUS = 2;
+    private static final int SECOND_HOMOZYGOUS = 3;
+
+    //Records of the dictionary log
+    private static final int ADD_VARIANT = 0;
+    private static final int SET_ALLELES = 1;
+
+    private static final int MAGIC = 0x474D4E50;
+    private static final int VERSION = 1;
+    private static final int SAMPLE_VERSION = 2;
+    private static final int HEADER_LENGTH = 28;
+    private static final String DICTIONARY_FILE = "variants.dict";
+    private static final String SAMPLE_FILE_ENDING = ".gt";
+    private static final int MAX_OPEN_SAMPLES = 64;
+
+    private static final Map<String, PackedGenotypeStore> stores = new HashMap<String, PackedGenotypeStore>();
+
+    private final File directory;
+    private final List<VariantRecord> variants = new ArrayList<VariantRecord>();
+    //Variants by id and position, and the last variant of each id
+    private final Map<VariantRecord, Integer> variantIndexes = new HashMap<VariantRecord, Integer>();
+    private final Map<String, Integer> lastIndexes = new HashMap<String, Integer>();
+    private final Map<String, String> chromosomes = new HashMap<String, String>();
+    //Dictionary changes not yet written to the dictionary file
+    private final List<Integer> pendingVariants = new ArrayList<Integer>();
+    private final List<Integer> pendingAlleles = new ArrayList<Integer>();
+    private final Map<String, PackedSample> openSamples = new LinkedHashMap<String, PackedSample>( 16, 0.75f, true );
+
+    /**
+     * Gets the store of a schema, reading its dictionary on first use.
+     * @param schemaName name of the schema
+     * @return store of the schema
+     */
+    public static synchronized PackedGenotypeStore getStore( String schemaName ) {
+
+        PackedGenotypeStore store = stores.get(schemaName);
+        if ( store == null ) {
+            store = new PackedGenotypeStore( new File( Configuration.getConfiguration().getPackedGenotypePath(), schemaName ) );
+            stores.put( schemaName, store );
+        }
+        return store;
+    }
+
+    /**
+     * Deletes the stores of all schemas.
+     */
+    public static synchronized void deleteAll() {
+
+        for ( PackedGenotypeStore store : stores.values() ) {
+            store.closeSamples();
+        }
+        stores.clear();
+        deleteRecursively( new File( Configuration.getConfiguration().getPackedGenotypePath() ) );
+    }
+
+    /**
+     * Checks whether data of a type is kept in the store.
+     * @param dataType data type definition
+     * @return <code>true</code> if the data type is the variant type with the attributes and types supported by the store, <code>false</code> otherwise
+     */
+    public static boolean isPacked( DataType dataType ) {
+
+        if ( dataType == null || !DATA_TYPE.equals( dataType.getId() ) || dataType.getAttributeNames().size() != ATTRIBUTES.size()
+                || !dataType.getAttributeNames().containsAll(ATTRIBUTES) ) {
+            return false;
+        }
+        for ( String attributeName : ATTRIBUTES ) {
+            boolean numeric = attributeName.equals(SEQUENCE_START) || attributeName.equals(STRAND);
+            int type = DataAttributeConverter.sqlTypeToJava( dataType.getAttributeType(attributeName) );
+            if ( type != ( numeric ? DataAttributeConverter.INTEGER : DataAttributeConverter.TEXT ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private PackedGenotypeStore( File p_directory ) {
+
+        directory = p_directory;
+        File dictionaryFile = new File( directory, DICTIONARY_FILE );
+        if ( dictionaryFile.exists() ) {
+            readDictionary(dictionaryFile);
+        }
+    }
+
+    /**
+     * Checks whether a sample has data in the store.
+     * @param sampleID id of the sample
+     * @return <code>true</code> if the sample has a file, <code>false</code> otherwise
+     */
+    public boolean contains( String sampleID ) {
+        return getSampleFile(sampleID).exists();
+    }
+
+    /**
+     * Gets the id following the largest row id stored for a sample.
+     * @param sampleID id of the sample
+     * @return next row id, 1 if the sample has no data
+     * @throws IOException if the file of the sample can not be read
+     */
+    public int getNextRowId( String sampleID ) throws IOException {
+
+        PackedSample sample = openSample(sampleID);
+        if ( sample == null ) {
+            return 1;
+        }
+        int nextRowId = sample.nextRowId;
+        releaseSample(sample);
+        return nextRowId;
+    }
+
+    /**
+     * Adds the genotypes of a sample to a genotype index.
+     * @param sampleID id of the sample
+     * @param index index to which the genotypes are added
+     * @throws IOException if the file of the sample can not be read
+     */
+    public void loadGenotypeIndex( String sampleID, GenotypeIndex index ) throws IOException {
+
+        PackedSample sample = openSample(sampleID);
+        if ( sample == null ) {
+            return;
+        }
+        try {
+            VariantRecord[] records = getRecords( sample.variantCount );
+
+            for ( int variantIndex = 0; variantIndex < sample.variantCount; variantIndex++ ) {
+                int code = sample.getCode(variantIndex);
+                if ( code != MISSING && !sample.sideRows.containsKey(variantIndex) ) {
+                    index.put( records[variantIndex].id, records[variantIndex].getGenotype(code) );
+                }
+                else if ( sample.sideRows.containsKey(variantIndex) ) {
+                    index.put( records[variantIndex].id, (String)getRows( sample, variantIndex, records[variantIndex] ).get(0)[ALLELE_COLUMN] );
+                }
+            }
+        }
+        finally {
+            releaseSample(sample);
+        }
+    }
+
+    /**
+     * Finds the row of a sample whose attribute has the given value. Of several rows the one of the variant listed
+     * first in the dictionary is returned, and of the rows of a variant the one with the smallest row id.
+     * @param sampleID id of the sample
+     * @param attribute name of the attribute
+     * @param value value of the attribute
+     * @return values of the row in the order of <code>ATTRIBUTES</code>, or <code>null</code>
+     * @throws IOException if the file of the sample can not be read
+     */
+    public Object[] findRow( String sampleID, String attribute, String value ) throws IOException {
+
+        PackedSample sample = openSample(sampleID);
+        if ( sample == null ) {
+            return null;
+        }
+        try {
+            //Variants are looked up from the dictionary, other attributes require a scan.
+            if ( VARIANT_ID.equals(attribute) ) {
+                return findVariant( sample, value );
+            }
+
+            int column = ATTRIBUTES.indexOf(attribute);
+            if ( column < 0 ) {
+                return null;
+            }
+            VariantRecord[] records = getRecords( sample.variantCount );
+            for ( int variantIndex = 0; variantIndex < sample.variantCount; variantIndex++ ) {
+                for ( Object[] row : getRows( sample, variantIndex, records[variantIndex] ) ) {
+                    if ( row[column] != null && row[column].toString().equals(value) ) {
+                        return row;
+                    }
+                }
+            }
+            return null;
+        }
+        finally {
+            releaseSample(sample);
+        }
+    }
+
+    /**
+     * Creates a writer for the data of a sample. The data already stored for the sample is kept.
+     * @param sampleID id of the sample
+     * @return writer of the sample
+     */
+    public SampleWriter createWriter( String sampleID ) {
+        return new SampleWriter( this, sampleID );
+    }
+
+    /**
+     * Removes the data of a sample.
+     * @param sampleID id of the sample
+     */
+    public synchronized void removeSample( String sampleID ) {
+
+        closeSample( sampleID.toUpperCase() );
+        File file = getSampleFile(sampleID);
+        if ( file.exists() && !file.delete() ) {
+            Logger.getLogger( PackedGenotypeStore.class ).error( "Unable to delete " + file );
+        }
+    }
+
+    //Gets the first row of the variants with the given id, or null if the sample has none.
+    private Object[] findVariant( PackedSample sample, String variantID ) {
+
+        List<VariantRecord> records = new ArrayList<VariantRecord>();
+        List<Integer> indexes = new ArrayList<Integer>();
+        synchronized ( this ) {
+            Integer variantIndex = lastIndexes.get(variantID);
+            while ( variantIndex != null ) {
+                if ( variantIndex < sample.variantCount ) {
+                    records.add( variants.get(variantIndex) );
+                    indexes.add(variantIndex);
+                }
+                int previousIndex = variants.get(variantIndex).previousIndex;
+                variantIndex = previousIndex < 0 ? null : previousIndex;
+            }
+        }
+
+        for ( int i = indexes.size() - 1; i >= 0; i-- ) {
+            List<Object[]> rows = getRows( sample, indexes.get(i), records.get(i) );
+            if ( !rows.isEmpty() ) {
+                return rows.get(0);
+            }
+        }
+        return null;
+    }
+
+    //Gets the rows of a variant in the order of their row ids, or an empty list if the sample has no row for it.
+    private static List<Object[]> getRows( PackedSample sample, int variantIndex, VariantRecord record ) {
+
+        List<Object[]> rows = new ArrayList<Object[]>();
+        List<SideRow> sideRows = sample.sideRows.get(variantIndex);
+        if ( sideRows != null ) {
+            for ( SideRow sideRow : sideRows ) {
+                Object[] row = sideRow.values.clone();
+                row[0] = record.id;
+                rows.add(row);
+            }
+        }
+        int code = sample.getCode(variantIndex);
+        if ( code != MISSING ) {
+            int rowId = sample.getRowId(variantIndex);
+            int position = 0;
+            while ( position < rows.size() && sideRows.get(position).rowId < rowId ) {
+                position++;
+            }
+            rows.add( position, createRow( record, code ) );
+        }
+        return rows;
+    }
+
+    //Gets the values of a coded row.
+    private static Object[] createRow( VariantRecord record, int code ) {
+        return new Object[] { record.id, record.chromosome, record.start, record.strand, record.getGenotype(code) };
+    }
+
+    private synchronized VariantRecord[] getRecords( int count ) {
+        return variants.subList( 0, count ).toArray( new VariantRecord[count] );
+    }
+
+    /**
+     * Gets the sample file opened for reading, or null if the sample has no data. The sample stays mapped until it
+     * is given to <code>releaseSample</code>.
+     */
+    private synchronized PackedSample openSample( String sampleID ) throws IOException {
+
+        String key = sampleID.toUpperCase();
+        PackedSample sample = openSamples.get(key);
+        if ( sample == null ) {
+            File file = getSampleFile(sampleID);
+            if ( !file.exists() ) {
+                return null;
+            }
+
+            sample = new PackedSample(file);
+            openSamples.put( key, sample );
+            if ( openSamples.size() > MAX_OPEN_SAMPLES ) {
+                closeSample( openSamples.keySet().iterator().next() );
+            }
+        }
+        sample.references++;
+        return sample;
+    }
+
+    private synchronized void releaseSample( PackedSample sample ) {
+        sample.release();
+    }
+
+    //Removes a sample from the open samples. Its file is unmapped once the samples being read are released.
+    private synchronized void closeSample( String key ) {
+
+        PackedSample sample = openSamples.remove(key);
+        if ( sample != null ) {
+            sample.release();
+        }
+    }
+
+    private synchronized void closeSamples() {
+
+        for ( PackedSample sample : openSamples.values() ) {
+            sample.release();
+        }
+        openSamples.clear();
+    }
+
+    //Gets the index of a variant, adding it to the dictionary if it is not listed.
+    private synchronized int getVariantIndex( String variantID, String chromosome, Integer start, Integer strand, String allele ) {
+
+        VariantRecord record = new VariantRecord( variantID, internChromosome(chromosome), start, strand );
+        Integer variantIndex = variantIndexes.get(record);
+        if ( variantIndex != null ) {
+            return variantIndex;
+        }
+
+        String[] alleles = splitAlleles(allele);
+        if ( alleles != null ) {
+            record.setAlleles( alleles[0], alleles[1] );
+        }
+        addVariant(record);
+        pendingVariants.add( variants.size() - 1 );
+        return variants.size() - 1;
+    }
+
+    private void addVariant( VariantRecord record ) {
+
+        Integer previousIndex = lastIndexes.get(record.id);
+        record.previousIndex = previousIndex == null ? -1 : previousIndex;
+        variants.add(record);
+        variantIndexes.put( record, variants.size() - 1 );
+        lastIndexes.put( record.id, variants.size() - 1 );
+    }
+
+    /**
+     * Encodes a row as a genotype code of the dictionary, or returns <code>MISSING</code> if the row has to be kept
+     * in the side table. Alleles of a variant not known yet, or the second allele of a variant seen only as
+     * homozygous so far, are taken from the row.
+     */
+    private synchronized int encode( int variantIndex, String chromosome, Integer start, Integer strand, String allele ) {
+
+        VariantRecord record = variants.get(variantIndex);
+        if ( !equals( record.strand, strand ) ) {
+            return MISSING;
+        }
+        int alleleCode = AlleleCodes.getCode(allele);
+        if ( record.genotypeCodes != null && allele != null ) {
+            int lastCode = record.hasSecondAllele ? SECOND_HOMOZYGOUS : FIRST_HOMOZYGOUS;
+            for ( int code = FIRST_HOMOZYGOUS; code <= lastCode; code++ ) {
+                int genotypeCode = record.genotypeCodes[code];
+                if ( genotypeCode != AlleleCodes.NO_CODE ? genotypeCode == alleleCode : allele.equals( record.getGenotype(code) ) ) {
+                    return code;
+                }
+            }
+        }
+
+        String[] alleles = splitAlleles(allele);
+        if ( alleles == null || record.hasSecondAllele ) {
+            return MISSING;
+        }
+        if ( record.genotypeCodes == null ) {
+            record.setAlleles( alleles[0], alleles[1] );
+        }
+        else if ( alleles[0].equals(record.firstAllele) ) {
+            record.setAlleles( record.firstAllele, alleles[1] );
+        }
+        else if ( alleles[0].equals(alleles[1]) ) {
+            record.setAlleles( record.firstAllele, alleles[0] );
+        }
+        else {
+            return MISSING;
+        }
+        pendingAlleles.add(variantIndex);
+        return encode( variantIndex, chromosome, start, strand, allele );
+    }
+
+    /**
+     * Writes the dictionary changes and the file of a sample, replacing the previous file of the sample.
+     */
+    private synchronized void writeSample( String sampleID, SampleWriter writer ) throws IOException {
+
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new IOException( "Unable to create " + directory );
+        }
+        writeDictionaryChanges();
+
+        //Row ids of the coded rows as runs of consecutive variants with consecutive row ids.
+        int[] runs = new int[3 * 16];
+        int runCount = 0;
+        for ( int variantIndex = writer.coded.nextSetBit(0); variantIndex >= 0; variantIndex = writer.coded.nextSetBit( variantIndex + 1 ) ) {
+            int rowId = writer.rowIds[variantIndex];
+            int run = 3 * ( runCount - 1 );
+            if ( runCount > 0 && variantIndex == runs[run] + runs[run + 2] && rowId == runs[run + 1] + runs[run + 2] ) {
+                runs[run + 2]++;
+                continue;
+            }
+            if ( 3 * runCount == runs.length ) {
+                runs = Arrays.copyOf( runs, runs.length * 2 );
+            }
+            runs[3 * runCount] = variantIndex;
+            runs[3 * runCount + 1] = rowId;
+            runs[3 * runCount + 2] = 1;
+            runCount++;
+        }
+        Collections.sort( writer.sideRows );
+
+        File file = getSampleFile(sampleID);
+        File tempFile = new File( directory, file.getName() + ".tmp" );
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(tempFile) ) );
+        try {
+            int codeLength = ( writer.variantCount + 3 ) / 4;
+            output.writeInt(MAGIC);
+            output.writeInt(SAMPLE_VERSION);
+            output.writeInt(writer.variantCount);
+            output.writeInt(writer.rowCount);
+            output.writeInt(writer.nextRowId);
+            output.writeInt(runCount);
+            output.writeInt( writer.sideRows.size() );
+            output.write( writer.codes, 0, codeLength );
+
+            for ( int i = 0; i < 3 * runCount; i++ ) {
+                output.writeInt( runs[i] );
+            }
+            for ( SideRow sideRow : writer.sideRows ) {
+                output.writeInt( sideRow.rowId );
+                output.writeInt( sideRow.variantIndex );
+                writeString( output, (String)sideRow.values[1] );
+                writeInteger( output, (Integer)sideRow.values[2] );
+                writeInteger( output, (Integer)sideRow.values[3] );
+                writeString( output, (String)sideRow.values[4] );
+            }
+        }
+        finally {
+            output.close();
+        }
+
+        closeSample( sampleID.toUpperCase() );
+        if ( file.exists() && !file.delete() ) {
+            throw new IOException( "Unable to replace " + file );
+        }
+        if ( !tempFile.renameTo(file) ) {
+            throw new IOException( "Unable to write " + file );
+        }
+    }
+
+    private void writeDictionaryChanges() throws IOException {
+
+        if ( pendingVariants.isEmpty() && pendingAlleles.isEmpty() ) {
+            return;
+        }
+        File dictionaryFile = new File( directory, DICTIONARY_FILE );
+        boolean created = !dictionaryFile.exists();
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dictionaryFile, true ) ) );
+        try {
+            if ( created ) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+            }
+            for ( int variantIndex : pendingVariants ) {
+                VariantRecord record = variants.get(variantIndex);
+                output.writeByte(ADD_VARIANT);
+                writeString( output, record.id );
+                writeString( output, record.chromosome );
+                writeInteger( output, record.start );
+                writeInteger( output, record.strand );
+                writeString( output, record.firstAllele );
+                writeString( output, record.hasSecondAllele ? record.secondAllele : null );
+            }
+            for ( int variantIndex : pendingAlleles ) {
+                //Variants added in the same batch are already written with their alleles.
+                if ( variantIndex < variants.size() - pendingVariants.size() ) {
+                    output.writeByte(SET_ALLELES);
+                    output.writeInt(variantIndex);
+                    writeString( output, variants.get(variantIndex).firstAllele );
+                    writeString( output, variants.get(variantIndex).secondAllele );
+                }
+            }
+        }
+        finally {
+            output.close();
+        }
+        pendingVariants.clear();
+        pendingAlleles.clear();
+    }
+
+    private void readDictionary( File dictionaryFile ) {
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream( new BufferedInputStream( new FileInputStream(dictionaryFile) ) );
+            if ( input.readInt() != MAGIC || input.readInt() != VERSION ) {
+                throw new IOException( "Unknown format of " + dictionaryFile );
+            }
+            while ( true ) {
+                int recordType;
+                try {
+                    recordType = input.readByte();
+                }
+                catch (EOFException ex) {
+                    break;
+                }
+                if ( recordType == ADD_VARIANT ) {
+                    VariantRecord record = new VariantRecord( readString(input), internChromosome( readString(input) ), readInteger(input), readInteger(input) );
+                    String firstAllele = readString(input);
+                    String secondAllele = readString(input);
+                    if ( firstAllele != null ) {
+                        record.setAlleles( firstAllele, secondAllele != null ? secondAllele : firstAllele );
+                    }
+                    addVariant(record);
+                }
+                else {
+                    VariantRecord record = variants.get( input.readInt() );
+                    record.setAlleles( readString(input), readString(input) );
+                }
+            }
+        }
+        catch (IOException ex) {
+            Logger.getLogger( PackedGenotypeStore.class ).error(ex);
+        }
+        finally {
+            if ( input != null ) {
+                try {
+                    input.close();
+                }
+                catch (IOException ex) {
+                    Logger.getLogger( PackedGenotypeStore.class ).debug(ex);
+                }
+            }
+        }
+    }
+
+    private String internChromosome( String chromosome ) {
+
+        if ( chromosome == null ) {
+            return null;
+        }
+        String interned = chromosomes.get(chromosome);
+        if ( interned == null ) {
+            chromosomes.put( chromosome, chromosome );
+            interned = chromosome;
+        }
+        return interned;
+    }
+
+    private File getSampleFile( String sampleID ) {
+
+        //Sample ids are case insensitive, as table names in the database.
+        StringBuilder name = new StringBuilder();
+        for ( char c : sampleID.toUpperCase().toCharArray() ) {
+            if ( Character.isLetterOrDigit(c) || c == '_' || c == '-' ) {
+                name.append(c);
+            }
+            else {
+                name.append('%').append( Integer.toHexString(c) );
+            }
+        }
+        return new File( directory, name.append(SAMPLE_FILE_ENDING).toString() );
+    }
+
+    //Splits a genotype of two alleles, or returns null for other genotypes.
+    private static String[] splitAlleles( String allele ) {
+
+        if ( allele == null ) {
+            return null;
+        }
+        int separator = allele.indexOf('/');
+        if ( separator <= 0 || separator == allele.length() - 1 || allele.indexOf( '/', separator + 1 ) >= 0 ) {
+            return null;
+        }
+        return new String[] { allele.substring( 0, separator ), allele.substring( separator + 1 ) };
+    }
+
+    private static boolean equals( Object first, Object second ) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    private static void writeString( DataOutputStream output, String value ) throws IOException {
+
+        output.writeBoolean( value != null );
+        if ( value != null ) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt( bytes.length );
+            output.write(bytes);
+        }
+    }
+
+    private static void writeInteger( DataOutputStream output, Integer value ) throws IOException {
+
+        output.writeBoolean( value != null );
+        if ( value != null ) {
+            output.writeInt(value);
+        }
+    }
+
+    private static String readString( DataInputStream input ) throws IOException {
+
+        if ( !input.readBoolean() ) {
+            return null;
+        }
+        byte[] bytes = new byte[ input.readInt() ];
+        input.readFully(bytes);
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private static Integer readInteger( DataInputStream input ) throws IOException {
+        return input.readBoolean() ? input.readInt() : null;
+    }
+
+    private static String readString( ByteBuffer buffer ) {
+
+        if ( buffer.get() == 0 ) {
+            return null;
+        }
+        byte[] bytes = new byte[ buffer.getInt() ];
+        buffer.get(bytes);
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private static Integer readInteger( ByteBuffer buffer ) {
+        return buffer.get() == 0 ? null : buffer.getInt();
+    }
+
+    private static void deleteRecursively( File file ) {
+
+        File[] children = file.listFiles();
+        if ( children != null ) {
+            for ( File child : children ) {
+                deleteRecursively(child);
+            }
+        }
+        if ( file.exists() && !file.delete() ) {
+            Logger.getLogger( PackedGenotypeStore.class ).error( "Unable to delete " + file );
+        }
+    }
+
+    /**
+     * Entry of the variant dictionary. The genotype codes are allele codes of the three genotypes of the two alleles,
+     * <code>AlleleCodes.NO_CODE</code> for genotypes that got no code.
+     */
+    private static class VariantRecord {
+
+        private final String id;
+        private final String chromosome;
+        private final Integer start;
+        private final Integer strand;
+        private String firstAllele;
+        private String secondAllele;
+        private boolean hasSecondAllele = false;
+        private int[] genotypeCodes;
+        //Index of the previous variant with the same id, -1 if there is none
+        private int previousIndex = -1;
+
+        private VariantRecord( String p_id, String p_chromosome, Integer p_start, Integer p_strand ) {
+            id = p_id;
+            chromosome = p_chromosome;
+            start = p_start;
+            strand = p_strand;
+        }
+
+        //A variant whose alleles are equal has been seen only as homozygous and its second allele is still open.
+        private void setAlleles( String p_firstAllele, String p_secondAllele ) {
+
+            firstAllele = p_firstAllele;
+            secondAllele = p_secondAllele;
+            hasSecondAllele = !firstAllele.equals(secondAllele);
+            genotypeCodes = new int[] { AlleleCodes.NO_CODE,
+                                        AlleleCodes.intern( firstAllele + "/" + firstAllele ),
+                                        hasSecondAllele ? AlleleCodes.intern( firstAllele + "/" + secondAllele ) : AlleleCodes.NO_CODE,
+                                        hasSecondAllele ? AlleleCodes.intern( secondAllele + "/" + secondAllele ) : AlleleCodes.NO_CODE };
+        }
+
+        private String getGenotype( int code ) {
+
+            if ( genotypeCodes[code] != AlleleCodes.NO_CODE ) {
+                return AlleleCodes.getAllele( genotypeCodes[code] );
+            }
+            if ( code == FIRST_HOMOZYGOUS ) {
+                return firstAllele + "/" + firstAllele;
+            }
+            return code == HETEROZYGOUS ? firstAllele + "/" + secondAllele : secondAllele + "/" + secondAllele;
+        }
+
+        //Variants are identified by their id and position.
+        @Override
+        public boolean equals( Object other ) {
+
+            if ( !( other instanceof VariantRecord ) ) {
+                return false;
+            }
+            VariantRecord record = (VariantRecord)other;
+            return PackedGenotypeStore.equals( id, record.id ) && PackedGenotypeStore.equals( chromosome, record.chromosome )
+                    && PackedGenotypeStore.equals( start, record.start );
+        }
+
+        @Override
+        public int hashCode() {
+            return ( ( id == null ? 0 : id.hashCode() ) * 31 + ( chromosome == null ? 0 : chromosome.hashCode() ) ) * 31 + ( start == null ? 0 : start );
+        }
+    }
+
+    /**
+     * Row of the side table.
+     */
+    private static class SideRow implements Comparable<SideRow> {
+
+        private final int rowId;
+        private final int variantIndex;
+        private final Object[] values;
+
+        private SideRow( int p_rowId, int p_variantIndex, Object[] p_values ) {
+            rowId = p_rowId;
+            variantIndex = p_variantIndex;
+            values = p_values;
+        }
+
+        @Override
+        public int compareTo( SideRow other ) {
+            return rowId < other.rowId ? -1 : ( rowId == other.rowId ? 0 : 1 );
+        }
+    }
+
+    /**
+     * File of a sample mapped to memory. The side rows are read when the file is opened. The file is unmapped when
+     * the sample is no longer open and none of its readers holds it.
+     */
+    private static class PackedSample {
+
+        private final MappedByteBuffer buffer;
+        private final int variantCount;
+        private final int rowCount;
+        private final int nextRowId;
+        private final int runCount;
+        private final int runOffset;
+        private final Map<Integer, List<SideRow>> sideRows = new HashMap<Integer, List<SideRow>>();
+        //The open samples hold a reference to the sample, readers hold one while reading.
+        private int references = 1;
+
+        private PackedSample( File file ) throws IOException {
+
+            RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+            try {
+                buffer = randomAccessFile.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length() );
+            }
+            finally {
+                randomAccessFile.close();
+            }
+
+            if ( buffer.getInt(0) != MAGIC || buffer.getInt(4) != SAMPLE_VERSION ) {
+                ResourceReleaser.unmap(buffer);
+                throw new IOException( "Unknown format of " + file );
+            }
+            variantCount = buffer.getInt(8);
+            rowCount = buffer.getInt(12);
+            nextRowId = buffer.getInt(16);
+            runCount = buffer.getInt(20);
+            int sideRowCount = buffer.getInt(24);
+            runOffset = HEADER_LENGTH + ( variantCount + 3 ) / 4;
+
+            ByteBuffer sideTable = buffer.duplicate();
+            sideTable.position( runOffset + 12 * runCount );
+            for ( int i = 0; i < sideRowCount; i++ ) {
+                SideRow sideRow = new SideRow( sideTable.getInt(), sideTable.getInt(),
+                                               new Object[] { null, readString(sideTable), readInteger(sideTable), readInteger(sideTable), readString(sideTable) } );
+                List<SideRow> variantRows = sideRows.get(sideRow.variantIndex);
+                if ( variantRows == null ) {
+                    variantRows = new ArrayList<SideRow>(1);
+                    sideRows.put( sideRow.variantIndex, variantRows );
+                }
+                variantRows.add(sideRow);
+            }
+        }
+
+        private int getCode( int variantIndex ) {
+            return ( buffer.get( HEADER_LENGTH + variantIndex / 4 ) >> ( ( variantIndex % 4 ) * 2 ) ) & 3;
+        }
+
+        //Gets the row id of a coded row from the run containing its variant.
+        private int getRowId( int variantIndex ) {
+
+            int low = 0;
+            int high = runCount - 1;
+            while ( low < high ) {
+                int middle = ( low + high + 1 ) / 2;
+                if ( buffer.getInt( runOffset + 12 * middle ) <= variantIndex ) {
+                    low = middle;
+                }
+                else {
+                    high = middle - 1;
+                }
+            }
+            int run = runOffset + 12 * low;
+            return buffer.getInt( run + 4 ) + variantIndex - buffer.getInt(run);
+        }
+
+        private void release() {
+
+            references--;
+            if ( references == 0 ) {
+                ResourceReleaser.unmap(buffer);
+            }
+        }
+    }
+
+    /**
+     * Collects the rows of a sample during an import. The first row of a variant that fits the genotype codes is
+     * coded, other rows go to the side table. Nothing is written before <code>commit</code>.
+     */
+    public static class SampleWriter {
+
+        private final PackedGenotypeStore store;
+        private final String sampleID;
+        private final BitSet coded = new BitSet();
+        private final List<SideRow> sideRows = new ArrayList<SideRow>();
+        private byte[] codes = new byte[1024];
+        private int[] rowIds = new int[4096];
+        private int variantCount = 0;
+        private int rowCount = 0;
+        private int nextRowId = 1;
+
+        private SampleWriter( PackedGenotypeStore p_store, String p_sampleID ) {
+            store = p_store;
+            sampleID = p_sampleID;
+        }
+
+        /**
+         * Adds a row of the sample.
+         * @param rowId id of the row
+         * @param variantID id of the variant
+         * @param chromosome chromosome of the variant
+         * @param start start position of the variant
+         * @param strand strand of the variant
+         * @param allele genotype of the sample
+         */
+        public void addRow( int rowId, String variantID, String chromosome, Integer start, Integer strand, String allele ) {
+
+            if ( variantID == null ) {
+                return;
+            }
+            int variantIndex = store.getVariantIndex( variantID, chromosome, start, strand, allele );
+            addVariant( variantIndex, rowId );
+
+            int code = coded.get(variantIndex) ? MISSING : store.encode( variantIndex, chromosome, start, strand, allele );
+            if ( code == MISSING ) {
+                sideRows.add( new SideRow( rowId, variantIndex, new Object[] { null, chromosome, start, strand, allele } ) );
+            }
+            else {
+                setCode( variantIndex, code, rowId );
+            }
+        }
+
+        /**
+         * Writes the rows of the sample together with the rows already stored for it.
+         * @throws IOException if the rows can not be written
+         */
+        public void commit() throws IOException {
+
+            PackedSample previous = store.openSample(sampleID);
+            if ( previous != null ) {
+                try {
+                    VariantRecord[] records = store.getRecords( previous.variantCount );
+                    for ( int variantIndex = 0; variantIndex < previous.variantCount; variantIndex++ ) {
+                        int code = previous.getCode(variantIndex);
+                        if ( code == MISSING ) {
+                            continue;
+                        }
+                        int rowId = previous.getRowId(variantIndex);
+                        addVariant( variantIndex, rowId );
+                        if ( coded.get(variantIndex) ) {
+                            sideRows.add( new SideRow( rowId, variantIndex, createRow( records[variantIndex], code ) ) );
+                        }
+                        else {
+                            setCode( variantIndex, code, rowId );
+                        }
+                    }
+                    for ( List<SideRow> variantRows : previous.sideRows.values() ) {
+                        for ( SideRow sideRow : variantRows ) {
+                            addVariant( sideRow.variantIndex, sideRow.rowId );
+                            sideRows.add(sideRow);
+                        }
+                    }
+                }
+                finally {
+                    store.releaseSample(previous);
+                }
+            }
+            store.writeSample( sampleID, this );
+        }
+
+        private void addVariant( int variantIndex, int rowId ) {
+
+            rowCount++;
+            nextRowId = Math.max( nextRowId, rowId + 1 );
+            variantCount = Math.max( variantCount, variantIndex + 1 );
+            if ( variantIndex / 4 >= codes.length ) {
+                codes = Arrays.copyOf( codes, Math.max( codes.length * 2, variantIndex / 4 + 1 ) );
+            }
+            if ( variantIndex >= rowIds.length ) {
+                rowIds = Arrays.copyOf( rowIds, Math.max( rowIds.length * 2, variantIndex + 1 ) );
+            }
+        }
+
+        private void setCode( int variantIndex, int code, int rowId ) {
+
+            codes[variantIndex / 4] |= code << ( ( variantIndex % 4 ) * 2 );
+            rowIds[variantIndex] = rowId;
+            coded.set(variantIndex);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.genomen.dao;
 
 import com.genomen.analyses.snp.Rule;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface defining methods for reading rule data from a database.
@@ -45,4 +46,24 @@ public interface RuleDAO {
      * @return result description
      */    
     public abstract String getResultDescription( String resultID, String languageID );
+
+    /**
+     * Gets the logic of all rules.
+     * @return logic scripts keyed by rule id, or <code>null</code> if they could not be read
+     */
+    public abstract Map<String, String> getRuleLogics();
+
+    /**
+     * Gets the descriptions of all rules in the given language.
+     * @param languageID language id
+     * @return rule descriptions keyed by rule id, or <code>null</code> if they could not be read
+     */
+    public abstract Map<String, String> getRuleDescriptions( String languageID );
+
+    /**
+     * Gets the descriptions of all results in the given language.
+     * @param languageID language id
+     * @return result descriptions keyed by result id, or <code>null</code> if they could not be read
+     */
+    public abstract Map<String, String> getResultDescriptions( String languageID );
 }
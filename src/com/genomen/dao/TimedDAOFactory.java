@@ -0,0 +1,110 @@
+package com.genomen.dao;
+
+import com.genomen.metrics.LatencyHistogram;
+import com.genomen.metrics.Metrics;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory wrapping the DAOs of another factory so that the duration of each call is recorded in the
+ * <code>DAO</code> histograms of <code>Metrics</code>, one per interface method, such as <code>RuleDAO.getRule</code>.
+ * @author ciszek
+ */
+class TimedDAOFactory extends DAOFactory {
+
+    private static final ConcurrentHashMap<Method, LatencyHistogram> histograms = new ConcurrentHashMap<Method, LatencyHistogram>();
+
+    private final DAOFactory daoFactory;
+
+    /**
+     * Constructs a factory timing the DAOs of the given factory.
+     * @param p_daoFactory factory creating the DAOs
+     */
+    TimedDAOFactory( DAOFactory p_daoFactory ) {
+        daoFactory = p_daoFactory;
+    }
+
+    @Override
+    public RuleDAO getRuleDAO() {
+        return wrap( RuleDAO.class, daoFactory.getRuleDAO() );
+    }
+
+    @Override
+    public TraitDAO getTraitDAO() {
+        return wrap( TraitDAO.class, daoFactory.getTraitDAO() );
+    }
+
+    @Override
+    public ErrorDAO getErrorDAO() {
+        return wrap( ErrorDAO.class, daoFactory.getErrorDAO() );
+    }
+
+    @Override
+    public ContentDAO getContentDAO() {
+        return wrap( ContentDAO.class, daoFactory.getContentDAO() );
+    }
+
+    @Override
+    public DataSetDAO getDataSetDAO() {
+        return wrap( DataSetDAO.class, daoFactory.getDataSetDAO() );
+    }
+
+    @Override
+    public TaskDAO getTaskDAO() {
+        return wrap( TaskDAO.class, daoFactory.getTaskDAO() );
+    }
+
+    private static <T> T wrap( Class<T> daoInterface, T dao ) {
+
+        if ( dao == null ) {
+            return null;
+        }
+        return daoInterface.cast( Proxy.newProxyInstance( daoInterface.getClassLoader(), new Class<?>[] { daoInterface }, new TimingHandler( daoInterface, dao ) ) );
+    }
+
+    /**
+     * Times the calls made to a DAO.
+     */
+    private static class TimingHandler implements InvocationHandler {
+
+        private final Class<?> daoInterface;
+        private final Object dao;
+
+        private TimingHandler( Class<?> p_daoInterface, Object p_dao ) {
+            daoInterface = p_daoInterface;
+            dao = p_dao;
+        }
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+
+            if ( method.getDeclaringClass() == Object.class ) {
+                return method.invoke( dao, args );
+            }
+
+            long start = System.nanoTime();
+            try {
+                return method.invoke( dao, args );
+            }
+            catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            finally {
+                getHistogram(method).recordSince(start);
+            }
+        }
+
+        private LatencyHistogram getHistogram( Method method ) {
+
+            LatencyHistogram histogram = histograms.get(method);
+            if ( histogram == null ) {
+                histogram = Metrics.getHistogram( "DAO", daoInterface.getSimpleName() + "." + method.getName() );
+                histograms.put( method, histogram );
+            }
+            return histogram;
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.genomen.dao;
 
+import java.util.Map;
+
 /**
  * Interface defining methods for accessing trait descriptions.
  * @author ciszek
  */
 public interface TraitDAO {
 
+    //Positions of the texts returned by getTraitDescriptions
+    public static final int NAME = 0;
+    public static final int SHORT_DESCRIPTION = 1;
+    public static final int DETAILED_DESCRIPTION = 2;
+
     /**
      * Gets the short description of a trait.
      * @param symbolicName symbolic trait name
@@ -29,4 +36,12 @@ public interface TraitDAO {
      * @return translated trait name
      */
     public abstract String getTraitName( String symbolicName, String language );
+
+    /**
+     * Gets the names and descriptions of all traits in the given language.
+     * @param language language id
+     * @return texts of each trait keyed by symbolic trait name, in the order <code>NAME</code>, <code>SHORT_DESCRIPTION</code>, <code>DETAILED_DESCRIPTION</code>,
+     * or <code>null</code> if they could not be read
+     */
+    public abstract Map<String, String[]> getTraitDescriptions( String language );
 }
@@ -0,0 +1,90 @@
+package com.genomen.entities;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns allele strings into integer codes shared by all samples.
+ * The number of distinct allele strings is small, so genotypes can be stored and compared as codes. As the codes
+ * are kept for the lifetime of the process, the number of codes is limited. Alleles seen after the limit has been
+ * reached get no code and are handled as strings by the users of the codes.
+ * @author ciszek
+ */
+public final class AlleleCodes {
+
+    public static final int NO_CODE = -1;
+    //Enough for the genotypes of SNPs and common indels
+    private static final int MAX_CODES = 1 << 16;
+
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] alleles = new String[64];
+    private static int alleleCount = 0;
+
+    private AlleleCodes() {
+    }
+
+    /**
+     * Gets the code of an allele string, assigning a new code if the string has not been seen before.
+     * @param allele allele string
+     * @return code of the allele or <code>NO_CODE</code> if the allele is <code>null</code> or no more codes can be assigned
+     */
+    public static int intern( String allele ) {
+
+        if ( allele == null ) {
+            return NO_CODE;
+        }
+
+        Integer code = codes.get(allele);
+        if ( code != null ) {
+            return code;
+        }
+        return add(allele);
+    }
+
+    /**
+     * Gets the code of an allele string without assigning a new one.
+     * @param allele allele string
+     * @return code of the allele or <code>NO_CODE</code> if the allele has not been interned
+     */
+    public static int getCode( String allele ) {
+
+        if ( allele == null ) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(allele);
+        return code == null ? NO_CODE : code;
+    }
+
+    /**
+     * Gets the allele string of a code.
+     * @param code allele code
+     * @return allele string or <code>null</code> for <code>NO_CODE</code>
+     */
+    public static String getAllele( int code ) {
+
+        if ( code == NO_CODE ) {
+            return null;
+        }
+        return alleles[code];
+    }
+
+    private static synchronized int add( String allele ) {
+
+        Integer code = codes.get(allele);
+        if ( code != null ) {
+            return code;
+        }
+        if ( alleleCount == MAX_CODES ) {
+            return NO_CODE;
+        }
+
+        if ( alleleCount == alleles.length ) {
+            alleles = Arrays.copyOf(alleles, alleles.length * 2);
+        }
+        String canonical = new String(allele);
+        alleles[alleleCount] = canonical;
+        codes.put(canonical, alleleCount);
+
+        return alleleCount++;
+    }
+}
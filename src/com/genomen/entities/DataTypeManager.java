@@ -1,6 +1,8 @@
 package com.genomen.entities;
 
 import com.genomen.core.Configuration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,5 +24,13 @@ public class DataTypeManager {
     public DataType getDataType( String dataTypeID ) {
         return dataTypes.get(dataTypeID);
     }
+
+    /**
+     * Lists all known data types.
+     * @return data type definitions
+     */
+    public List<DataType> getDataTypes() {
+        return new ArrayList<DataType>( dataTypes.values() );
+    }
     
 }
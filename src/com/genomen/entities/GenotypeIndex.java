@@ -0,0 +1,159 @@
+package com.genomen.entities;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of the genotypes of a single sample keyed by variant id.
+ * Uses open addressing with linear probing and stores alleles as codes interned by <code>AlleleCodes</code>.
+ * Alleles for which no code is available are kept as strings.
+ * @author ciszek
+ */
+public final class GenotypeIndex {
+
+    public static final String DATA_TYPE = "VARIANT";
+    public static final String KEY_ATTRIBUTE = "VARIANT_ID";
+    public static final String VALUE_ATTRIBUTE = "ALLELE";
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NULL_ALLELE = Integer.MIN_VALUE;
+    private static final int UNCODED_ALLELE = Integer.MIN_VALUE + 1;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] alleleCodes = new int[INITIAL_CAPACITY];
+    private final Map<String, String> uncodedAlleles = new HashMap<String, String>();
+    private int size = 0;
+    private boolean loaded = false;
+
+    /**
+     * Checks whether lookups of the given kind can be served from a genotype index.
+     * @param type id of the data type
+     * @param keyAttribute attribute used to identify the data
+     * @param valueAttribute attribute whose value is requested
+     * @return <code>true</code> if the lookup is a genotype lookup, <code>false</code> otherwise
+     */
+    public static boolean isIndexed( String type, String keyAttribute, String valueAttribute ) {
+        return DATA_TYPE.equals(type) && KEY_ATTRIBUTE.equals(keyAttribute) && VALUE_ATTRIBUTE.equals(valueAttribute);
+    }
+
+    /**
+     * Adds a genotype to the index. If the variant is already present the existing genotype is kept.
+     * @param variantID id of the variant
+     * @param allele genotype of the sample
+     */
+    public void put( String variantID, String allele ) {
+
+        if ( variantID == null ) {
+            return;
+        }
+        if ( (size + 1) * 2 > keys.length ) {
+            resize();
+        }
+
+        int slot = findSlot(keys, variantID);
+        if ( keys[slot] == null ) {
+            keys[slot] = variantID;
+            int code = allele == null ? NULL_ALLELE : AlleleCodes.intern(allele);
+            if ( code == AlleleCodes.NO_CODE ) {
+                code = UNCODED_ALLELE;
+                uncodedAlleles.put( variantID, allele );
+            }
+            alleleCodes[slot] = code;
+            size++;
+        }
+    }
+
+    /**
+     * Checks whether the index contains a genotype for a variant.
+     * @param variantID id of the variant
+     * @return <code>true</code> if the variant is present, <code>false</code> otherwise
+     */
+    public boolean contains( String variantID ) {
+        return variantID != null && keys[findSlot(keys, variantID)] != null;
+    }
+
+    /**
+     * Gets the genotype of a variant.
+     * @param variantID id of the variant
+     * @return the genotype or <code>null</code> if the variant is not present or has no genotype
+     */
+    public String get( String variantID ) {
+
+        int code = getCode(variantID);
+        if ( code == NULL_ALLELE ) {
+            return null;
+        }
+        if ( code == UNCODED_ALLELE ) {
+            return uncodedAlleles.get(variantID);
+        }
+        return AlleleCodes.getAllele(code);
+    }
+
+    /**
+     * Gets the number of variants in the index.
+     * @return number of variants
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the index has been loaded.
+     * @return <code>true</code> if loaded, <code>false</code> otherwise
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Marks the index as loaded.
+     */
+    public void setLoaded() {
+        loaded = true;
+    }
+
+    private int getCode( String variantID ) {
+
+        if ( variantID == null ) {
+            return NULL_ALLELE;
+        }
+        int slot = findSlot(keys, variantID);
+        if ( keys[slot] == null ) {
+            return NULL_ALLELE;
+        }
+        return alleleCodes[slot];
+    }
+
+    private static int findSlot( String[] table, String key ) {
+
+        int mask = table.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+
+        while ( table[slot] != null && !table[slot].equals(key) ) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix( int hash ) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+
+        String[] oldKeys = keys;
+        int[] oldCodes = alleleCodes;
+
+        keys = new String[oldKeys.length * 2];
+        alleleCodes = new int[oldKeys.length * 2];
+
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            if ( oldKeys[i] != null ) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                alleleCodes[slot] = oldCodes[i];
+            }
+        }
+    }
+}
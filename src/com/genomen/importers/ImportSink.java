@@ -0,0 +1,41 @@
+package com.genomen.importers;
+
+/**
+ * Destination of the rows of a single data type of a single sample during an import.
+ * Values of a row are given in the order of the attributes of the data type.
+ * @author ciszek
+ */
+public interface ImportSink {
+
+    /**
+     * Gets the position of an attribute in the rows of this sink.
+     * @param attributeName name of the attribute
+     * @return index of the attribute in a row or -1 if the data type has no such attribute
+     */
+    public abstract int getColumnIndex( String attributeName );
+
+    /**
+     * Gets the number of attribute values in a row.
+     * @return row length
+     */
+    public abstract int getColumnCount();
+
+    /**
+     * Adds a row to the sink. The array of values may be reused by the caller once this method returns.
+     * @param id unique id of the row within the data of the sample
+     * @param values attribute values of the row
+     * @throws ImporterException if the row can not be written
+     */
+    public abstract void addRow( long id, Object[] values ) throws ImporterException;
+
+    /**
+     * Writes all remaining rows and releases the resources of the sink.
+     * @throws ImporterException if the rows can not be written
+     */
+    public abstract void close() throws ImporterException;
+
+    /**
+     * Releases the resources of the sink, discarding the rows that have not been written.
+     */
+    public abstract void abort();
+}
@@ -12,6 +12,7 @@ public class ImporterException extends Exception {
     public static final String INDIVIDUAL_ID_ERROR = "Individual Id already exists: ";
     public static final String UNABLE_TO_READ_DATASET = "Unable to read dataset: ";
     public static final String MALFORMED_DATABASE = "Malformed database. Unable to import.";    
+    public static final String DATABASE_WRITE_ERROR = "Unable to write dataset to the database: ";
      
     public ImporterException( String message ) {
         super(message);
@@ -10,6 +10,7 @@ import com.genomen.core.Configuration;
 public abstract class ImporterFactory {
 
     public static final int DERBY = 1;
+    public static final int PACKED = 2;
     
     //Formats
     public static final String TWENTYTHREEANDME = "23andme";
@@ -23,6 +24,21 @@ public abstract class ImporterFactory {
      */
     public abstract Importer getImporter(String fileType );
     
+    /**
+     * Prepares the database for importing datasets. Called once at startup, before any datasets are imported.
+     */
+    public static void initialize() {
+
+        switch ( Configuration.getConfiguration().getDBType() ) {
+
+            case DERBY:
+            case PACKED:
+                DerbyImporterFactory.initialize();
+                break;
+            default:
+        }
+    }
+
     /**
      * 
      * @return
@@ -33,6 +49,7 @@ public abstract class ImporterFactory {
         switch (dbID) {
 
             case DERBY:
+            case PACKED:
                 return new DerbyImporterFactory();
             default:
                 return null;
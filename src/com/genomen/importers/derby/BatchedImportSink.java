@@ -0,0 +1,128 @@
+package com.genomen.importers.derby;
+
+import com.genomen.entities.DataType;
+import com.genomen.importers.ImporterException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.apache.log4j.Logger;
+
+/**
+ * Sink inserting rows into the table of a sample with batched prepared statements.
+ * @author ciszek
+ */
+class BatchedImportSink extends DerbyImportSink {
+
+    private final int batchSize;
+    private Connection connection;
+    private PreparedStatement insertStatement;
+    private int batchedRows = 0;
+
+    /**
+     * Constructs a sink and prepares the insert statement.
+     * @param p_importer importer using this sink
+     * @param p_schemaName schema of the table
+     * @param p_sampleID id of the sample
+     * @param p_dataType type of the imported data
+     * @param p_batchSize number of rows inserted in a single batch
+     * @throws ImporterException if a connection to the database can not be established
+     */
+    BatchedImportSink( DerbyImporter p_importer, String p_schemaName, String p_sampleID, DataType p_dataType, int p_batchSize ) throws ImporterException {
+
+        super(p_importer, p_schemaName, p_sampleID, p_dataType);
+        batchSize = Math.max(1, p_batchSize);
+
+        StringBuilder parameters = new StringBuilder();
+        int parameterCount = attributeNames.size() + ( partitionKey != null ? 2 : 1 );
+        for ( int i = 0; i < parameterCount; i++ ) {
+            parameters.append( i == 0 ? "?" : ", ?" );
+        }
+
+        try {
+            connection = importer.openConnection();
+            connection.setAutoCommit(false);
+            insertStatement = connection.prepareStatement( "INSERT INTO " + schemaName + "." + tableName + " ( " + createColumnList() + " ) VALUES ( " + parameters + " )" );
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( BatchedImportSink.class ).error(ex);
+            abort();
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+        }
+    }
+
+    @Override
+    public void addRow( long id, Object[] values ) throws ImporterException {
+
+        try {
+            for ( int i = 0; i < values.length; i++ ) {
+                insertStatement.setObject( i + 1, values[i] );
+            }
+            insertStatement.setLong( values.length + 1, id );
+            if ( partitionKey != null ) {
+                insertStatement.setString( values.length + 2, partitionKey );
+            }
+            insertStatement.addBatch();
+
+            if ( ++batchedRows >= batchSize ) {
+                flush();
+            }
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( BatchedImportSink.class ).error(ex);
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+        }
+    }
+
+    @Override
+    public void close() throws ImporterException {
+
+        try {
+            flush();
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( BatchedImportSink.class ).error(ex);
+            abort();
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+        }
+        release();
+        importer.createIndexes(schemaName, sampleID, dataType);
+    }
+
+    @Override
+    public void abort() {
+
+        if ( connection != null ) {
+            try {
+                connection.rollback();
+            }
+            catch (SQLException ex) {
+                Logger.getLogger( BatchedImportSink.class ).debug(ex);
+            }
+        }
+        release();
+    }
+
+    private void flush() throws SQLException {
+
+        if ( batchedRows > 0 ) {
+            insertStatement.executeBatch();
+            batchedRows = 0;
+        }
+        connection.commit();
+    }
+
+    private void release() {
+
+        try {
+            if ( insertStatement != null ) {
+                insertStatement.close();
+            }
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( BatchedImportSink.class ).debug(ex);
+        }
+        insertStatement = null;
+        importer.closeConnection(connection);
+        connection = null;
+    }
+}
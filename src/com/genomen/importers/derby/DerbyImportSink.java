@@ -0,0 +1,74 @@
+package com.genomen.importers.derby;
+
+import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DataSetDAO;
+import com.genomen.entities.DataType;
+import com.genomen.importers.ImportSink;
+import java.util.List;
+
+/**
+ * Base class for sinks importing the data of a sample into its Derby table.
+ * @author ciszek
+ */
+abstract class DerbyImportSink implements ImportSink {
+
+    protected final DerbyImporter importer;
+    protected final String schemaName;
+    protected final String sampleID;
+    protected final DataType dataType;
+    protected final List<String> attributeNames;
+    protected final String tableName;
+    //Value of the sample column, or null if the sample has its own table
+    protected final String partitionKey;
+
+    /**
+     * Constructs a sink and creates the table of the sample if it does not exist.
+     * @param p_importer importer using this sink
+     * @param p_schemaName schema of the table
+     * @param p_sampleID id of the sample
+     * @param p_dataType type of the imported data
+     */
+    DerbyImportSink( DerbyImporter p_importer, String p_schemaName, String p_sampleID, DataType p_dataType ) {
+
+        importer = p_importer;
+        schemaName = p_schemaName;
+        sampleID = p_sampleID;
+        dataType = p_dataType;
+        attributeNames = dataType.getAttributeNames();
+        DataSetDAO dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
+        tableName = dataSetDAO.createTableName(sampleID.toUpperCase(), dataType);
+        partitionKey = dataSetDAO.isPartitioned() ? sampleID.toUpperCase() : null;
+
+        importer.prepareDataTable(schemaName, sampleID, dataType);
+    }
+
+    @Override
+    public int getColumnIndex( String attributeName ) {
+        return attributeNames.indexOf(attributeName);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return attributeNames.size();
+    }
+
+    /**
+     * Creates the list of the columns written by this sink, the attributes followed by the id
+     * and, in a table shared by the samples, the sample.
+     * @return comma separated list of column names
+     */
+    protected String createColumnList() {
+
+        StringBuilder columns = new StringBuilder();
+        for ( String attributeName : attributeNames ) {
+            columns.append(attributeName);
+            columns.append(", ");
+        }
+        columns.append("ID");
+        if ( partitionKey != null ) {
+            columns.append(", ");
+            columns.append(DataSetDAO.SAMPLE_COLUMN);
+        }
+        return columns.toString();
+    }
+}
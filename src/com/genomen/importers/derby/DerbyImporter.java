@@ -6,16 +6,18 @@ import com.genomen.dao.DAOFactory;
 import com.genomen.dao.DataSetDAO;
 import com.genomen.dao.DerbyDAO;
 import com.genomen.dao.DerbyDAOFactory;
+import com.genomen.dao.PackedGenotypeStore;
 import com.genomen.entities.DataEntityAttributeValue;
 import com.genomen.entities.DataType;
 import com.genomen.entities.DataTypeManager;
+import com.genomen.importers.ImportSink;
 import com.genomen.importers.ImporterException;
+import com.genomen.metrics.Metrics;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import org.apache.log4j.Logger;
@@ -29,6 +31,14 @@ public abstract class DerbyImporter extends DerbyDAO {
     
     public static final int INVALID_ID = -1;
 
+    //Types of import sinks
+    public static final int FILE_SINK = 0;
+    public static final int BATCHED_SINK = 1;
+    public static final int PIPED_SINK = 2;
+
+    //Name of the throughput counting imported rows
+    static final String IMPORTED_ROWS = "ImportedRows";
+
     /**
      * Inserts a list of samples into the sample table.
      * @param names a list of sample names
@@ -87,17 +97,8 @@ public abstract class DerbyImporter extends DerbyDAO {
      */
     public void bulkImport( String schemaName, String individualID, String type, File file) {
         
-        DataSetDAO dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
-        ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();
         DataType dataType = DataTypeManager.getInstance().getDataType(type);
-        String tableName = dataSetDAO.createTableName(individualID.toUpperCase(), dataType );
-
-        
-        //If table for this data type has not been already created
-        if ( !contentDAO.tableExists(schemaName, tableName)) {
-            //Create a new table for this data type.
-            dataSetDAO.createDataTable(schemaName, individualID, dataType );               
-        }
+        String tableName = prepareDataTable(schemaName, individualID, dataType);
         
         Connection connection = null;
         try {
@@ -112,43 +113,124 @@ public abstract class DerbyImporter extends DerbyDAO {
             Statement statement = connection.createStatement();
             statement.executeUpdate("CALL SYSCS_UTIL.SYSCS_IMPORT_TABLE ('" + schemaName + "', '" + tableName + "', '" + file.getAbsolutePath() + "'" + ",'\t',null,null,0)");
             statement.close();
-            connection.close();
         }
         catch (SQLException ex) {
             Logger.getLogger(DerbyImporter.class ).debug(ex);          
         }
+        finally {
+            closeConnection(connection);
+        }
         
         createIndexes(schemaName, individualID, dataType);
 
     }
     
     /**
-     * Creates a tab separated tuple that presents a data entity as a single row.
-     * @param id An unique ID for the data
-     * @param attributes Attributes of a data entity presented as a set of <code>DataEntityAttributeValue</code> instances
-     * @return String representation of a data entity
+     * Creates a sink for importing data of a sample, using the type of sink set in the configuration.
+     * @param schemaName Name of the schema used for the dataset
+     * @param individualID id of the sample to which the data is associated
+     * @param type Type of the data
+     * @return sink accepting the rows of the data
+     * @throws ImporterException if the sink can not be created
+     */
+    protected ImportSink createImportSink( String schemaName, String individualID, String type ) throws ImporterException {
+        return createImportSink( schemaName, individualID, type, Configuration.getConfiguration().getImportSinkType() );
+    }
+
+    /**
+     * Creates a sink for importing data of a sample. With DBType 2 variants are written to packed files regardless of the type of sink.
+     * @param schemaName Name of the schema used for the dataset
+     * @param individualID id of the sample to which the data is associated
+     * @param type Type of the data
+     * @param sinkType type of the sink
+     * @return sink accepting the rows of the data
+     * @throws ImporterException if the sink can not be created
      */
-    protected String createTuple( int id, HashMap<String, DataEntityAttributeValue> attributes, String type ) {
+    protected ImportSink createImportSink( String schemaName, String individualID, String type, int sinkType ) throws ImporterException {
 
-        StringBuilder tuple = new StringBuilder();
-       
         DataType dataType = DataTypeManager.getInstance().getDataType(type);
-        
-        List<String> dataTypeAttributes = dataType.getAttributeNames();
-        for ( int i = 0; i < dataTypeAttributes.size(); i++) {
-            DataEntityAttributeValue dataTypeAttribute = attributes.get(dataTypeAttributes.get(i));
+        ImportSink sink;
+
+        if ( Configuration.getConfiguration().getDBType() == DAOFactory.PACKED && PackedGenotypeStore.isPacked(dataType) ) {
+            sink = new PackedImportSink( schemaName, individualID, dataType );
+        }
+        else {
+            switch ( sinkType ) {
+                case BATCHED_SINK:
+                    sink = new BatchedImportSink( this, schemaName, individualID, dataType, Configuration.getConfiguration().getImportBatchSize() );
+                    break;
+                case PIPED_SINK:
+                    //Rows are inserted in batches if the table functions could not be created.
+                    if ( DerbyImporterFactory.isPipedImportAvailable() ) {
+                        sink = new PipedImportSink( this, schemaName, individualID, dataType );
+                    }
+                    else {
+                        sink = new BatchedImportSink( this, schemaName, individualID, dataType, Configuration.getConfiguration().getImportBatchSize() );
+                    }
+                    break;
+                default:
+                    sink = new FileImportSink( this, schemaName, individualID, dataType );
+            }
+        }
+        return Metrics.isEnabled() ? new MeteredImportSink(sink) : sink;
+    }
 
-            String value = dataTypeAttribute.getString();
+    /**
+     * Creates the table for a data type of a sample if it does not exist.
+     * @param schemaName Name of the schema used for the dataset
+     * @param individualID id of the sample
+     * @param dataType Type of the data
+     * @return name of the table
+     */
+    protected String prepareDataTable( String schemaName, String individualID, DataType dataType ) {
 
-            tuple.append(value);
-            tuple.append("\t");            
+        DataSetDAO dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
+        ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();
+        String tableName = dataSetDAO.createTableName(individualID.toUpperCase(), dataType );
+
+        //If table for this data type has not been already created
+        if ( !contentDAO.tableExists(schemaName, tableName)) {
+            //Create a new table for this data type.
+            dataSetDAO.createDataTable(schemaName, individualID, dataType );               
         }
-        tuple.append(id);
+        return tableName;
+    }
 
-        return tuple.toString();
+    /**
+     * Borrows a database connection for importing.
+     * @return database connection
+     * @throws ImporterException if no connection can be established
+     */
+    protected Connection openConnection() throws ImporterException {
+
+        try {
+            return DerbyDAOFactory.createConnection();
+        }
+        catch(ClassNotFoundException | InstantiationException | IllegalAccessException | SQLException ex) {
+            Logger.getLogger( DerbyImporter.class ).debug(ex);
+            throw new ImporterException(ImporterException.CONNECTION_FAILURE);
+        }
+    }
+
+    /**
+     * Adds a data entity to an import sink.
+     * @param sink sink to which the data is added
+     * @param id An unique ID for the data
+     * @param attributes Attributes of a data entity presented as a set of <code>DataEntityAttributeValue</code> instances
+     * @throws ImporterException if the data can not be written
+     */
+    protected void addRow( ImportSink sink, long id, HashMap<String, DataEntityAttributeValue> attributes ) throws ImporterException {
+
+        Object[] values = new Object[sink.getColumnCount()];
+        for ( String attributeName : attributes.keySet() ) {
+            int column = sink.getColumnIndex(attributeName);
+            if ( column >= 0 ) {
+                values[column] = attributes.get(attributeName).getString();
+            }
+        }
+        sink.addRow(id, values);
+    }
 
-    }    
-    
     protected String findFile( String[] fileArray, String ending ) {
         
         for ( int i = 0; i < fileArray.length; i++ ) {
@@ -179,48 +261,14 @@ public abstract class DerbyImporter extends DerbyDAO {
         return datasetDAO.getCurrentId(Configuration.getConfiguration().getDatabaseTempSchemaName(), individualID.toUpperCase(), dataType);
     }
 
+    /**
+     * Indexes the imported data of a sample.
+     * @param schemaName Name of the schema used for the dataset
+     * @param sampleID id of the sample
+     * @param dataType Type of the data
+     */
     protected void createIndexes( String schemaName, String sampleID, DataType dataType) {
-        
-        String tableName = DAOFactory.getDAOFactory().getDataSetDAO().createTableName(sampleID, dataType);
-        
-        List<String> indexAttributes = new ArrayList<String>();
-        
-        for ( int i = 0; i < dataType.getAttributeNames().size(); i++) {
-            if ( dataType.isRequiredAttribute(dataType.getAttributeNames().get(i) ) ) {
-                indexAttributes.add(dataType.getAttributeNames().get(i));                
-            }
-        }      
-        
-        String indexStatement = "";
-        
-        for ( int i = 0; i < indexAttributes.size(); i++) {
-            indexStatement = indexStatement + indexAttributes.get(i);
-            
-            if ( i != indexAttributes.size()-1) {
-                indexStatement = indexStatement + ", ";
-            }
-            
-        }     
-        
-        Connection connection = null;
-        try {
-            connection = DerbyDAOFactory.createConnection();
-        }
-        catch (Exception ex) {
-            Logger.getLogger(DerbyImporter.class ).debug(ex);           
-            return;
-        }
-
-        try {           
-            Statement statement = connection.createStatement();
-            statement.executeUpdate("CREATE INDEX " + dataType.getId() + "_index ON " + schemaName + "." + tableName + " ( " + indexStatement + " )" );
-            statement.close();
-            connection.close();
-        }
-        catch (SQLException ex) {
-            Logger.getLogger(DerbyImporter.class ).debug(ex);          
-        }        
-        
+        DAOFactory.getDAOFactory().getDataSetDAO().createIndexes(schemaName, sampleID, dataType);
     }
     
 }
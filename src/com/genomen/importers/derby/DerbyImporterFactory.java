@@ -1,13 +1,65 @@
 package com.genomen.importers.derby;
 
+import com.genomen.core.Configuration;
+import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DerbyDAOFactory;
 import com.genomen.importers.Importer;
 import com.genomen.importers.ImporterFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.apache.log4j.Logger;
 
 /**
  * Factory that creates importers specific for Derby.
  * @author ciszek
  */
 public class DerbyImporterFactory extends ImporterFactory{
+
+    private static boolean initialized = false;
+    private static boolean pipedImportAvailable = false;
+
+    /**
+     * Creates the table functions read by piped import sinks in the temporary schema, if piped sinks are used.
+     * If the functions can not be created, the rows are imported with batched inserts instead.
+     */
+    public static synchronized void initialize() {
+
+        if ( initialized || Configuration.getConfiguration().getImportSinkType() != DerbyImporter.PIPED_SINK ) {
+            return;
+        }
+        initialized = true;
+
+        Connection connection = null;
+        try {
+            connection = DerbyDAOFactory.createConnection();
+            connection.setAutoCommit(false);
+            PipedImportSink.createFunctions( connection, Configuration.getConfiguration().getDatabaseTempSchemaName(), DAOFactory.getDAOFactory().getDataSetDAO().isPartitioned() );
+            pipedImportAvailable = true;
+        }
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException | SQLException ex) {
+            Logger.getLogger( DerbyImporterFactory.class ).error( "Unable to create the import table functions, datasets are imported with batched inserts", ex );
+        }
+        finally {
+            if ( connection != null ) {
+                try {
+                    connection.close();
+                }
+                catch (SQLException ex) {
+                    Logger.getLogger( DerbyImporterFactory.class ).debug(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether the table functions read by piped import sinks exist. The factory is initialized if it has not been.
+     * @return <code>true</code> if piped import sinks can be used, <code>false</code> otherwise
+     */
+    static synchronized boolean isPipedImportAvailable() {
+
+        initialize();
+        return pipedImportAvailable;
+    }
     
     public Importer getImporter( String fileType ) {
 
@@ -1,26 +1,22 @@
 
 package com.genomen.importers.derby;
 
-import com.genomen.dao.DerbyDAOFactory;
 import com.genomen.entities.DataEntityAttributeValue;
 import com.genomen.core.Sample;
+import com.genomen.importers.ImportSink;
 import com.genomen.importers.Importer;
 import com.genomen.importers.ImporterException;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StreamTokenizer;
-import java.sql.Connection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import org.apache.log4j.Logger;
 import com.genomen.utils.ResourceReleaser;
-import java.sql.SQLException;
 import java.util.logging.Level;
 
 
@@ -32,7 +28,6 @@ public class DerbyPEDImporter extends DerbySNPImporter implements Importer {
 
     private static final String PED_ENDING = "ped";
     private static final String MAP_ENDING = "map";    
-    private static final String TEMP_FILE_NAME = "ped.tmp";
     
     public List<Sample> importDataSet( String schemaName, String individualID, String[] fileNames ) {
 
@@ -121,24 +116,14 @@ public class DerbyPEDImporter extends DerbySNPImporter implements Importer {
     private void importSNPs( StreamTokenizer PEDTokenizer, File MAPFile, Sample individual, String schemaName  ) throws ImporterException {
 
         BufferedReader MAPReader = null;
-        BufferedWriter bufferedWriter = null;
-        File temp = null;
+        ImportSink sink = null;
         try {
 
-            temp = new File(individual.getId() + TEMP_FILE_NAME);
-
-            bufferedWriter = new BufferedWriter( new FileWriter(temp) );
-
             MAPReader = new BufferedReader(new FileReader(MAPFile));
             StreamTokenizer MAPTokenizer = new StreamTokenizer(MAPReader);
             MAPTokenizer.wordChars( '_','_' );
 
-            Connection connection = null;
-
 
-            connection = DerbyDAOFactory.createConnection();
-
-            
             String[] alleles = new String[2];
 
             int id = getCurrentId( individual.getId(), DerbySNPImporter.VARIANT );   
@@ -146,6 +131,8 @@ public class DerbyPEDImporter extends DerbySNPImporter implements Importer {
             if ( id == DerbyImporter.INVALID_ID) {
                 throw new ImporterException( ImporterException.DATA_TABLE_INDEX_ERROR, DerbySNPImporter.VARIANT);
             }
+
+            sink = createImportSink(schemaName, individual.getId(), DerbySNPImporter.VARIANT);
             
             int index = 0;
             while ( PEDTokenizer.nextToken() != StreamTokenizer.TT_EOL  ) {
@@ -159,16 +146,13 @@ public class DerbyPEDImporter extends DerbySNPImporter implements Importer {
                 index++;
                 if ( index == 2) {
 
-                    String line = createTuple(id, createSNP(MAPTokenizer,alleles[0], alleles[1]), DerbySNPImporter.VARIANT);
-                    bufferedWriter.write(line);
-                    bufferedWriter.newLine();
+                    addRow(sink, id, createSNP(MAPTokenizer,alleles[0], alleles[1]));
                     index = 0;
                     id++;
                 }
             }
-            ResourceReleaser.close(bufferedWriter);
-            this.bulkImport(schemaName, individual.getId(), DerbySNPImporter.VARIANT, temp);
-            temp.delete();
+            sink.close();
+            sink = null;
         }
         catch (FileNotFoundException ex) {
             Logger.getLogger( this.getClass() ).error( ex );
@@ -176,26 +160,14 @@ public class DerbyPEDImporter extends DerbySNPImporter implements Importer {
         }
         catch (IOException ex) {
             Logger.getLogger( this.getClass() ).error( ex );
-            throw new ImporterException( ImporterException.TEMP_FILE_ERROR);
-        } catch (ClassNotFoundException ex) {
-            Logger.getLogger( this.getClass() ).error( ex );
-            throw new ImporterException( ImporterException.CONNECTION_FAILURE);
-        } catch (InstantiationException ex) {
-            Logger.getLogger( this.getClass() ).error( ex );
-            throw new ImporterException( ImporterException.CONNECTION_FAILURE);            
-        } catch (IllegalAccessException ex) {
-            Logger.getLogger( this.getClass() ).error( ex );
-            throw new ImporterException( ImporterException.CONNECTION_FAILURE);            
-        } catch (SQLException ex) {
-            Logger.getLogger( this.getClass() ).error( ex );
-            throw new ImporterException( ImporterException.CONNECTION_FAILURE);            
+            throw new ImporterException( ImporterException.UNABLE_TO_READ_DATASET, MAPFile.getName());
         }
         finally {
 
             ResourceReleaser.close(MAPReader);
             
-            if ( temp != null && temp.exists() ) {
-                temp.delete();
+            if ( sink != null ) {
+                sink.abort();
             } 
         }
 
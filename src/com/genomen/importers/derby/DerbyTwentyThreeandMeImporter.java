@@ -1,19 +1,15 @@
 package com.genomen.importers.derby;
 
-import com.genomen.core.Configuration;
 import com.genomen.importers.derby.DerbySNPImporter;
 import com.genomen.core.Sample;
-import com.genomen.entities.DataEntityAttributeValue;
+import com.genomen.importers.ImportSink;
 import com.genomen.importers.Importer;
 import com.genomen.importers.ImporterException;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import com.genomen.readers.twentythreeandmereader.TwentyThreeandMeReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.NoSuchFileException;
 import java.util.LinkedList;
 import java.util.List;
 import org.apache.log4j.Logger;
@@ -27,9 +23,7 @@ import java.util.ArrayList;
  */
 public class DerbyTwentyThreeandMeImporter extends DerbySNPImporter implements Importer {
 
-    private static final String FORMAT_REGEXP = "^\\w+\\s\\w+\\s\\d+\\s[\\w-]+";
-    private static final String COLUMN_SEPARATOR = "\\s";
-    private static final String TEMP_FILE_NAME = "23AndMe.temp";
+    private static final Integer UNKNOWN_STRAND = -1;
     private static final String TWENTYTHREEANDME_ENDING = "txt";
 
 
@@ -60,20 +54,12 @@ public class DerbyTwentyThreeandMeImporter extends DerbySNPImporter implements I
         if ( !file.exists() || !file.canRead() ) {
             throw new ImporterException(  ImporterException.UNABLE_TO_READ_DATASET, file.getName() );
         }
-        BufferedReader bufferedReader = null;
-        BufferedWriter bufferedWriter = null;
+        TwentyThreeandMeReader reader = new TwentyThreeandMeReader();
+        ImportSink sink = null;
         
-        File tempFile = null;
         try {
 
-            FileReader fileReader = new FileReader(file);
-            bufferedReader = new BufferedReader( fileReader );
-
-            tempFile = new File( Configuration.getConfiguration().getTmpFolderPath() + individualID.concat(TEMP_FILE_NAME));
-            tempFile.getParentFile().mkdirs();
-            bufferedWriter = new BufferedWriter( new FileWriter(tempFile));
-
-            String line;
+            reader.open(file);
 
             int id = getCurrentId( individualID, DerbySNPImporter.VARIANT);   
             
@@ -81,38 +67,49 @@ public class DerbyTwentyThreeandMeImporter extends DerbySNPImporter implements I
                 throw new ImporterException( ImporterException.DATA_TABLE_INDEX_ERROR, DerbySNPImporter.VARIANT);
             }
 
-            while ( ( line = bufferedReader.readLine() ) != null )  {
+            sink = createImportSink(schemaName, individualID, DerbySNPImporter.VARIANT);
+            int idColumn = sink.getColumnIndex(DerbySNPImporter.ID);
+            int chromosomeColumn = sink.getColumnIndex(DerbySNPImporter.CHROMOSOME);
+            int startColumn = sink.getColumnIndex(DerbySNPImporter.SEQUENCE_START);
+            int alleleColumn = sink.getColumnIndex(DerbySNPImporter.ALLELE);
+            int strandColumn = sink.getColumnIndex(DerbySNPImporter.STRAND);
+
+            Object[] values = new Object[sink.getColumnCount()];
+            values[strandColumn] = UNKNOWN_STRAND;
+
+            while ( reader.readRow() )  {
 
-               if ( line.matches(FORMAT_REGEXP) ) {
+               if ( reader.isValid() ) {
 
-                    String tuple = createTuple( id, extractSNPData(line), DerbySNPImporter.VARIANT );
-                    bufferedWriter.write(tuple);
-                    bufferedWriter.newLine();
+                    values[idColumn] = reader.getColumn(TwentyThreeandMeReader.RSID);
+                    values[chromosomeColumn] = reader.getChromosome();
+                    values[startColumn] = reader.getPosition();
+                    values[alleleColumn] = reader.getAlleles();
+                    sink.addRow( id, values );
                     id++;
                }
-               else if ( !line.startsWith("#")) {
-                    Logger.getLogger(DerbyTwentyThreeandMeImporter.class ).error( "Corrupted line in " + file.getPath() + " : " + line );
+               else if ( !reader.isComment() ) {
+                    Logger.getLogger(DerbyTwentyThreeandMeImporter.class ).error( "Corrupted line in " + file.getPath() + " : " + reader.getRow() );
                }
 
             }
             
-            ResourceReleaser.close(bufferedWriter);
-            this.bulkImport(schemaName, individualID,DerbySNPImporter.VARIANT, tempFile);
-            tempFile.delete();
+            sink.close();
+            sink = null;
         }
  
-        catch (FileNotFoundException ex) {
+        catch (FileNotFoundException | NoSuchFileException ex) {
             Logger.getLogger(DerbyTwentyThreeandMeImporter.class ).debug(ex);
             throw new ImporterException( ImporterException.UNABLE_TO_READ_DATASET);
         }        
         catch ( IOException ex ) {
             Logger.getLogger(DerbyTwentyThreeandMeImporter.class ).debug(ex);
-            throw new ImporterException( ImporterException.TEMP_FILE_ERROR);
+            throw new ImporterException( ImporterException.UNABLE_TO_READ_DATASET, file.getName() );
         }
         finally {
-            ResourceReleaser.close(bufferedReader);
-            if ( tempFile != null && tempFile.exists() ) {
-                tempFile.delete();
+            ResourceReleaser.close(reader);
+            if ( sink != null ) {
+                sink.abort();
             } 
         }
         
@@ -121,39 +118,5 @@ public class DerbyTwentyThreeandMeImporter extends DerbySNPImporter implements I
 
         return individualList;
     }
-    
-    private HashMap<String, DataEntityAttributeValue> extractSNPData( String line ) {
-
-        String[] columns = line.split(COLUMN_SEPARATOR);
-
-        if ( columns.length != 4 ) {
-            return null;
-        }
-
-        HashMap<String, DataEntityAttributeValue> attributes = new HashMap<String, DataEntityAttributeValue>();
-        
-        String id = columns[0];
-        String chromosome = columns[1];
-        int start = Integer.parseInt(columns[2]);
-        String allele = "";
-        allele = allele.concat( String.valueOf( columns[3].charAt(0)));
-        allele = allele.concat("/");
-
-        if (columns[3].length() > 1 ) {
-            allele = allele.concat( String.valueOf( columns[3].charAt(1)));
-        }
-        else {
-            allele = allele.concat("-");
-        }
-        
-        attributes.put(DerbySNPImporter.ID, new DataEntityAttributeValue(id) );
-        attributes.put(DerbySNPImporter.CHROMOSOME, new DataEntityAttributeValue(chromosome) );        
-        attributes.put(DerbySNPImporter.SEQUENCE_START, new DataEntityAttributeValue(start) );           
-        attributes.put(DerbySNPImporter.ALLELE, new DataEntityAttributeValue(allele) );         
-        attributes.put(DerbySNPImporter.STRAND, new DataEntityAttributeValue(-1) );     
-        
-        return attributes;
-        
-    }
 
 }
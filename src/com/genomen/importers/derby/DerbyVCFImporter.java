@@ -2,7 +2,12 @@ package com.genomen.importers.derby;
 
 import com.genomen.core.Configuration;
 import com.genomen.core.Sample;
+import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DerbyDAOFactory;
+import com.genomen.entities.DataType;
+import com.genomen.entities.DataTypeManager;
 import com.genomen.entities.DataEntityAttributeValue;
+import com.genomen.importers.ImportSink;
 import com.genomen.importers.Importer;
 import com.genomen.importers.ImporterException;
 import com.genomen.readers.vcfreader.VCFException;
@@ -10,11 +15,8 @@ import com.genomen.readers.vcfreader.VCFInfo;
 import com.genomen.readers.vcfreader.VCFReader;
 import com.genomen.readers.vcfreader.VCFRow;
 import com.genomen.readers.vcfreader.VCFEntry;
-import com.genomen.utils.ResourceReleaser;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -29,14 +31,14 @@ import org.apache.log4j.Logger;
 public class DerbyVCFImporter extends DerbySNPImporter implements Importer{
 
 
-    private static final String TEMP_VARIANT_FILE_NAME = "VCFVariant.temp";    
-    private static final String TEMP_VARIANT_INDO_FILE_NAME = "VCFVariantInfo.temp";     
     private static final String GENOTYPE = "GT";
     private static final String DELETED = "-";
 
     
     private Map<String,Integer> variantIndexes = new HashMap<String, Integer>();
     private Map<String,Integer> variantInfoIndexes = new HashMap<String, Integer>();;
+    //Ids of the variants last written for each sample, to which the additional data of a row refers
+    private Map<String,Integer> lastVariantIDs = new HashMap<String, Integer>();
     private VCFReader vcfReader;
     
     @Override
@@ -59,27 +61,31 @@ public class DerbyVCFImporter extends DerbySNPImporter implements Importer{
         
         insertIndividuals( sampleIDs );
 
-        //Create tmp files for each individual 
-        List<BufferedWriter> variantWriters = new ArrayList<BufferedWriter>();
-        List<BufferedWriter> infoWriters = new ArrayList<BufferedWriter>();
-        
-        List<File> tempVariantFiles = new ArrayList<File>();
-        List<File> tempVariantInfoFiles = new ArrayList<File>();  
-        
-        for ( String id: sampleIDs) {
-            tempVariantFiles.add( new File( Configuration.getConfiguration().getTmpFolderPath() + id.concat(TEMP_VARIANT_FILE_NAME)));
-            tempVariantInfoFiles.add( new File( Configuration.getConfiguration().getTmpFolderPath() + id.concat(TEMP_VARIANT_INDO_FILE_NAME)));
+        //Staging tables hold variants in the database, so packed variants are imported through sinks.
+        if ( Configuration.getConfiguration().isStreamingVCFImport() && Configuration.getConfiguration().getDBType() != DAOFactory.PACKED ) {
+            try {
+                importStreaming( schemaName, sampleIDs );
+            }
+            finally {
+                vcfReader.close();
+            }
+            return individualList;
         }
+
+        //Sinks of all samples are open at the same time, so their rows are collected into files.
+        List<ImportSink> variantSinks = new ArrayList<ImportSink>();
+        List<ImportSink> infoSinks = new ArrayList<ImportSink>();
           
         //Find valid indexes for all tables
         for ( String id: sampleIDs) {
-            int variantIndex = getCurrentId( individualID, DerbySNPImporter.VARIANT);
+            int variantIndex = getCurrentId( id, DerbySNPImporter.VARIANT);
             if ( variantIndex == DerbyImporter.INVALID_ID) {
                 throw new ImporterException( ImporterException.DATA_TABLE_INDEX_ERROR, DerbySNPImporter.VARIANT);
             }            
             variantIndexes.put(id, variantIndex);
+            lastVariantIDs.put(id, variantIndex - 1);
 
-            int variantInfoIndex = getCurrentId( individualID, DerbySNPImporter.VARIANT_INFO);
+            int variantInfoIndex = getCurrentId( id, DerbySNPImporter.VARIANT_INFO);
             if ( variantInfoIndex == DerbyImporter.INVALID_ID) {
                 throw new ImporterException( ImporterException.DATA_TABLE_INDEX_ERROR, DerbySNPImporter.VARIANT_INFO);
             }            
@@ -88,55 +94,51 @@ public class DerbyVCFImporter extends DerbySNPImporter implements Importer{
         
         try {
             
-            //Create writer for every tmp file.
+            //Create sinks for every sample.
             for ( int i = 0; i < sampleIDs.size(); i++ ) {
-                variantWriters.add( new BufferedWriter( new FileWriter( tempVariantFiles.get(i) )) );
+                variantSinks.add( createImportSink(schemaName, sampleIDs.get(i), DerbySNPImporter.VARIANT, DerbyImporter.FILE_SINK) );
             }
             for ( int i = 0; i < sampleIDs.size(); i++ ) {
-                infoWriters.add( new BufferedWriter( new FileWriter( tempVariantInfoFiles.get(i) )) );
+                infoSinks.add( createImportSink(schemaName, sampleIDs.get(i), DerbySNPImporter.VARIANT_INFO, DerbyImporter.FILE_SINK) );
             }            
             
             VCFRow row;  
                   
-            //Loop through all variants and write variants to sample specific tmp files.
+            //Loop through all variants and write variants to sample specific sinks.
             while ( ( row = vcfReader.readNextRow() ) != null )  {
                 //Write genotypes
                 for ( int i = 0; i < sampleIDs.size(); i++) {
-                    writeGenotype( sampleIDs.get(i), row, vcfReader, variantWriters.get(i), infoWriters.get(i) );
-                    writeVariantInfo( sampleIDs.get(i),row, vcfReader, infoWriters.get(i) );
+                    writeGenotype( sampleIDs.get(i), row, vcfReader, variantSinks.get(i), infoSinks.get(i) );
+                    writeVariantInfo( sampleIDs.get(i),row, vcfReader, infoSinks.get(i) );
                 }        
             }
             
-            //Close all writers
-            for ( BufferedWriter writer : variantWriters ) {
-                ResourceReleaser.close(writer);
+            //Import the data of all samples
+            while ( !variantSinks.isEmpty() ) {
+                variantSinks.remove(0).close();
             }
-            for ( BufferedWriter writer : infoWriters ) {
-                ResourceReleaser.close(writer);
-            }    
-            //Import all tmp files and delete files after import
-            for ( int i = 0; i < tempVariantFiles.size(); i++) {
-                this.bulkImport(schemaName, sampleIDs.get(i), DerbySNPImporter.VARIANT, tempVariantFiles.get(i));
-                tempVariantFiles.get(i).delete();
-            }
-            for ( int i = 0; i < tempVariantInfoFiles.size(); i++ ) {
-                this.bulkImport(schemaName, sampleIDs.get(i), DerbySNPImporter.VARIANT_INFO, tempVariantInfoFiles.get(i));
-                tempVariantInfoFiles.get(i).delete();
+            while ( !infoSinks.isEmpty() ) {
+                infoSinks.remove(0).close();
             }
 
         }         
         catch (VCFException ex) {
             Logger.getLogger(DerbyVCFImporter.class ).error( ex.getMessage());
-        } catch (IOException ex) {
-            Logger.getLogger(DerbyVCFImporter.class ).error( ex.getMessage());
+            throw new ImporterException( ImporterException.UNABLE_TO_READ_DATASET, ex.getMessage() );
         }
         finally {
             vcfReader.close();
+            for ( ImportSink sink : variantSinks ) {
+                sink.abort();
+            }
+            for ( ImportSink sink : infoSinks ) {
+                sink.abort();
+            }
         }
         return individualList;
     }
     
-    private void writeGenotype( String sampleID, VCFRow row, VCFReader reader, BufferedWriter variantWriter, BufferedWriter infoWriter ) throws IOException {
+    private void writeGenotype( String sampleID, VCFRow row, VCFReader reader, ImportSink variantSink, ImportSink infoSink ) throws ImporterException {
         
         String chromosome = row.getChrom();
         int start = row.getPos();
@@ -161,28 +163,26 @@ public class DerbyVCFImporter extends DerbySNPImporter implements Importer{
                     attributes.put(DerbySNPImporter.ALLELE, new DataEntityAttributeValue(alleles.toString()) );         
                     attributes.put(DerbySNPImporter.STRAND, new DataEntityAttributeValue(-1) );    
 
-                    String tuple = createTuple( variantIndexes.get(sampleID), attributes, DerbySNPImporter.VARIANT );
-                    variantWriter.write(tuple);
-                    variantWriter.newLine();
+                    int variantID = variantIndexes.get(sampleID);
+                    addRow( variantSink, variantID, attributes );
                     incrementIndex(variantIndexes, sampleID);
+                    lastVariantIDs.put(sampleID, variantID);
                 }
                 //Otherwise write it as additional variant related data
                 else {
                     HashMap<String, DataEntityAttributeValue> attributes = new HashMap<String, DataEntityAttributeValue>();
-                    attributes.put(DerbySNPImporter.VARIANT_ID, new DataEntityAttributeValue(variantIndexes.get(sampleID)) );      
+                    attributes.put(DerbySNPImporter.VARIANT_ID, new DataEntityAttributeValue(lastVariantIDs.get(sampleID)) );      
                     attributes.put(DerbySNPImporter.NAME, new DataEntityAttributeValue(formatName) );          
                     attributes.put(DerbySNPImporter.VALUE, new DataEntityAttributeValue(genotype) );           
 
-                    String tuple = createTuple( variantInfoIndexes.get(sampleID), attributes, DerbySNPImporter.VARIANT_INFO );
-                    infoWriter.write(tuple);
-                    infoWriter.newLine();
+                    addRow( infoSink, variantInfoIndexes.get(sampleID), attributes );
                     incrementIndex(variantInfoIndexes, sampleID);     
                 }  
             }
     
     }
 
-    private void writeVariantInfo( String sampleID, VCFRow row, VCFReader reader, BufferedWriter infoWriter ) throws IOException {
+    private void writeVariantInfo( String sampleID, VCFRow row, VCFReader reader, ImportSink infoSink ) throws ImporterException {
                 
         for ( int f = 0; f < row.getInfo().length; f++ ) {
             
@@ -191,10 +191,11 @@ public class DerbyVCFImporter extends DerbySNPImporter implements Importer{
             VCFInfo vcfInfo = reader.getInfo(infoId);
 
             HashMap<String, DataEntityAttributeValue> attributes = new HashMap<String, DataEntityAttributeValue>();
-            attributes.put(DerbySNPImporter.VARIANT_ID, new DataEntityAttributeValue(variantIndexes.get(sampleID)) );
+            attributes.put(DerbySNPImporter.VARIANT_ID, new DataEntityAttributeValue(lastVariantIDs.get(sampleID)) );
 
             //Flags have no value, therefore the name of the flag is used as a value of the flag.
-            if ( vcfInfo.getType().equals( VCFEntry.FLAG)) {      
+            //Entries not defined in the header are handled as key-value pairs.
+            if ( vcfInfo != null && vcfInfo.getType().equals( VCFEntry.FLAG)) {      
                 attributes.put(DerbySNPImporter.NAME, new DataEntityAttributeValue(infoId) );          
                 attributes.put(DerbySNPImporter.VALUE, new DataEntityAttributeValue(infoId) );        
             }
@@ -204,14 +205,161 @@ public class DerbyVCFImporter extends DerbySNPImporter implements Importer{
                 attributes.put(DerbySNPImporter.VALUE, new DataEntityAttributeValue(infoValue) ); 
             }
         
-            String tuple = createTuple( variantInfoIndexes.get(sampleID), attributes, DerbySNPImporter.VARIANT_INFO );
-            infoWriter.write(tuple);
-            infoWriter.newLine();
+            addRow( infoSink, variantInfoIndexes.get(sampleID), attributes );
             incrementIndex(variantInfoIndexes, sampleID);
  
         }
     }    
     
+    /**
+     * Imports the dataset without temporary files. Each row is parsed once and the data of all samples is
+     * inserted in batches into staging tables shared by the samples, from which it is moved to the sample tables.
+     */
+    private void importStreaming( String schemaName, List<String> sampleIDs ) throws ImporterException {
+
+        DataType variantType = DataTypeManager.getInstance().getDataType(DerbySNPImporter.VARIANT);
+        DataType variantInfoType = DataTypeManager.getInstance().getDataType(DerbySNPImporter.VARIANT_INFO);
+
+        //Next free ids of each sample, in the order of the samples in the file
+        long[] variantIDs = new long[sampleIDs.size()];
+        long[] variantInfoIDs = new long[sampleIDs.size()];
+        //Ids of the variants last written, to which the additional data of a row refers
+        long[] lastVariantIDs = new long[sampleIDs.size()];
+
+        for ( int s = 0; s < sampleIDs.size(); s++ ) {
+            variantIDs[s] = getCurrentId( sampleIDs.get(s), DerbySNPImporter.VARIANT);
+            if ( variantIDs[s] == DerbyImporter.INVALID_ID) {
+                throw new ImporterException( ImporterException.DATA_TABLE_INDEX_ERROR, DerbySNPImporter.VARIANT);
+            }
+            lastVariantIDs[s] = variantIDs[s] - 1;
+            variantInfoIDs[s] = getCurrentId( sampleIDs.get(s), DerbySNPImporter.VARIANT_INFO);
+            if ( variantInfoIDs[s] == DerbyImporter.INVALID_ID) {
+                throw new ImporterException( ImporterException.DATA_TABLE_INDEX_ERROR, DerbySNPImporter.VARIANT_INFO);
+            }
+        }
+
+        Connection connection = null;
+        StagingTable variants = null;
+        StagingTable variantInfos = null;
+
+        try {
+            connection = DerbyDAOFactory.createConnection();
+            connection.setAutoCommit(false);
+
+            int batchSize = Configuration.getConfiguration().getImportBatchSize();
+            variants = new StagingTable( connection, schemaName, variantType, batchSize );
+            variantInfos = new StagingTable( connection, schemaName, variantInfoType, batchSize );
+
+            VariantColumns columns = new VariantColumns( variants, variantInfos );
+            Object[] variantValues = new Object[variants.getRowLength()];
+            Object[] variantInfoValues = new Object[variantInfos.getRowLength()];
+
+            VCFRow row;
+            while ( ( row = vcfReader.readNextRow() ) != null )  {
+
+                String[] ids = row.getIds();
+                String[] format = row.getFormat();
+                Map<String, String[]> genotypes = row.getGenotypes();
+
+                for ( int s = 0; s < sampleIDs.size(); s++ ) {
+
+                    String sampleID = sampleIDs.get(s);
+                    String[] sampleValues = genotypes.get(sampleID);
+
+                    for ( int i = 0; i < ids.length; i++ ) {
+                        for ( int f = 0; f < format.length; f++ ) {
+
+                            if ( format[f].equals(GENOTYPE) ) {
+                                long variantID = variantIDs[s]++;
+                                lastVariantIDs[s] = variantID;
+                                variantValues[columns.variantId] = ids[i];
+                                variantValues[columns.chromosome] = row.getChrom();
+                                variantValues[columns.sequenceStart] = row.getPos();
+                                variantValues[columns.strand] = -1;
+                                variantValues[columns.allele] = extractAlleles( row.getRef(), row.getAlt(), sampleValues[f] ).toString();
+                                variants.addRow( sampleID, variantID, variantValues );
+                            }
+                            else {
+                                variantInfoValues[columns.infoVariantId] = (int)lastVariantIDs[s];
+                                variantInfoValues[columns.name] = format[f];
+                                variantInfoValues[columns.value] = sampleValues[f];
+                                variantInfos.addRow( sampleID, variantInfoIDs[s]++, variantInfoValues );
+                            }
+                        }
+                    }
+
+                    for ( int f = 0; f < row.getInfo().length; f++ ) {
+
+                        String infoId = row.getInfo()[f][0];
+                        VCFInfo vcfInfo = vcfReader.getInfo(infoId);
+                        variantInfoValues[columns.infoVariantId] = (int)lastVariantIDs[s];
+                        variantInfoValues[columns.name] = infoId;
+                        //Flags have no value, therefore the name of the flag is used as a value of the flag.
+                        variantInfoValues[columns.value] = vcfInfo != null && vcfInfo.getType().equals( VCFEntry.FLAG) ? infoId : row.getInfo()[f][1];
+                        variantInfos.addRow( sampleID, variantInfoIDs[s]++, variantInfoValues );
+                    }
+                }
+            }
+
+            variants.createSampleIndex();
+            variantInfos.createSampleIndex();
+
+            for ( String sampleID : sampleIDs ) {
+                variants.moveToSampleTable(sampleID);
+                variantInfos.moveToSampleTable(sampleID);
+                createIndexes( schemaName, sampleID.toUpperCase(), variantType );
+                createIndexes( schemaName, sampleID.toUpperCase(), variantInfoType );
+            }
+        }
+        catch (VCFException ex) {
+            Logger.getLogger(DerbyVCFImporter.class ).error( ex.getMessage());
+            throw new ImporterException( ImporterException.UNABLE_TO_READ_DATASET, ex.getMessage() );
+        }
+        catch (SQLException ex) {
+            Logger.getLogger(DerbyVCFImporter.class ).error( ex );
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, ex.getMessage() );
+        }
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+            Logger.getLogger(DerbyVCFImporter.class ).error( ex );
+            throw new ImporterException( ImporterException.CONNECTION_FAILURE );
+        }
+        finally {
+            if ( variants != null ) {
+                variants.drop();
+            }
+            if ( variantInfos != null ) {
+                variantInfos.drop();
+            }
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Positions of the imported attributes in the rows of the staging tables.
+     */
+    private static class VariantColumns {
+
+        private final int variantId;
+        private final int chromosome;
+        private final int sequenceStart;
+        private final int strand;
+        private final int allele;
+        private final int infoVariantId;
+        private final int name;
+        private final int value;
+
+        private VariantColumns( StagingTable variants, StagingTable variantInfos ) {
+            variantId = variants.getColumnIndex(DerbySNPImporter.ID);
+            chromosome = variants.getColumnIndex(DerbySNPImporter.CHROMOSOME);
+            sequenceStart = variants.getColumnIndex(DerbySNPImporter.SEQUENCE_START);
+            strand = variants.getColumnIndex(DerbySNPImporter.STRAND);
+            allele = variants.getColumnIndex(DerbySNPImporter.ALLELE);
+            infoVariantId = variantInfos.getColumnIndex(DerbySNPImporter.VARIANT_ID);
+            name = variantInfos.getColumnIndex(DerbySNPImporter.NAME);
+            value = variantInfos.getColumnIndex(DerbySNPImporter.VALUE);
+        }
+    }
+
     private Alleles extractAlleles( String[]ref, String[] alt, String genotype) {
      
         String separator = "";
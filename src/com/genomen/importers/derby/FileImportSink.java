@@ -0,0 +1,88 @@
+package com.genomen.importers.derby;
+
+import com.genomen.core.Configuration;
+import com.genomen.entities.DataType;
+import com.genomen.importers.ImporterException;
+import com.genomen.utils.ResourceReleaser;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import org.apache.log4j.Logger;
+
+/**
+ * Sink writing rows into a tab separated temporary file which is imported with the Derby import procedure when closed.
+ * @author ciszek
+ */
+class FileImportSink extends DerbyImportSink {
+
+    private static final String TEMP_FILE_ENDING = ".import.temp";
+
+    private final File tempFile;
+    private BufferedWriter writer;
+
+    /**
+     * Constructs a sink and creates its temporary file.
+     * @param p_importer importer using this sink
+     * @param p_schemaName schema of the table
+     * @param p_sampleID id of the sample
+     * @param p_dataType type of the imported data
+     * @throws ImporterException if the temporary file can not be created
+     */
+    FileImportSink( DerbyImporter p_importer, String p_schemaName, String p_sampleID, DataType p_dataType ) throws ImporterException {
+
+        super(p_importer, p_schemaName, p_sampleID, p_dataType);
+
+        //Named by the sample, as samples may share the table
+        tempFile = new File( Configuration.getConfiguration().getTmpFolderPath() + dataType.getId() + "_" + sampleID.toUpperCase() + TEMP_FILE_ENDING );
+        tempFile.getParentFile().mkdirs();
+        try {
+            writer = new BufferedWriter( new FileWriter(tempFile) );
+        }
+        catch (IOException ex) {
+            Logger.getLogger( FileImportSink.class ).debug(ex);
+            throw new ImporterException( ImporterException.TEMP_FILE_ERROR );
+        }
+    }
+
+    @Override
+    public void addRow( long id, Object[] values ) throws ImporterException {
+
+        try {
+            for ( int i = 0; i < values.length; i++ ) {
+                //An empty field is imported as NULL
+                if ( values[i] != null ) {
+                    writer.write( String.valueOf(values[i]) );
+                }
+                writer.write('\t');
+            }
+            writer.write( String.valueOf(id) );
+            if ( partitionKey != null ) {
+                writer.write('\t');
+                writer.write(partitionKey);
+            }
+            writer.newLine();
+        }
+        catch (IOException ex) {
+            Logger.getLogger( FileImportSink.class ).debug(ex);
+            throw new ImporterException( ImporterException.TEMP_FILE_ERROR );
+        }
+    }
+
+    @Override
+    public void close() throws ImporterException {
+
+        ResourceReleaser.close(writer);
+        writer = null;
+        importer.bulkImport( schemaName, sampleID, dataType.getId(), tempFile );
+        tempFile.delete();
+    }
+
+    @Override
+    public void abort() {
+
+        ResourceReleaser.close(writer);
+        writer = null;
+        tempFile.delete();
+    }
+}
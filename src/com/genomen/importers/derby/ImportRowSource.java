@@ -0,0 +1,138 @@
+package com.genomen.importers.derby;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.derby.vti.StringColumnVTI;
+
+/**
+ * Derby table function returning the rows written to an import pipe. Used by <code>PipedImportSink</code>
+ * to insert rows into a table directly from the importing thread, without an intermediate file.
+ * @author ciszek
+ */
+public class ImportRowSource extends StringColumnVTI {
+
+    private static final ConcurrentHashMap<String, Pipe> pipes = new ConcurrentHashMap<String, Pipe>();
+
+    private final Pipe pipe;
+    private Object[][] chunk = null;
+    private int chunkRow = 0;
+    private Object[] row = null;
+
+    private ImportRowSource( String[] columnNames, Pipe p_pipe ) {
+        super(columnNames);
+        pipe = p_pipe;
+    }
+
+    /**
+     * Entry point of the table function.
+     * @param pipeID id of a registered pipe
+     * @return rows written to the pipe
+     * @throws SQLException if no pipe with the id is registered
+     */
+    public static ResultSet open( String pipeID ) throws SQLException {
+
+        Pipe pipe = pipes.get(pipeID);
+        if ( pipe == null ) {
+            throw new SQLException( "Unknown import pipe " + pipeID );
+        }
+        return new ImportRowSource( pipe.columnNames, pipe );
+    }
+
+    /**
+     * Registers a pipe so that it can be read through the table function.
+     * @param pipeID id of the pipe
+     * @param pipe pipe to be registered
+     */
+    static void register( String pipeID, Pipe pipe ) {
+        pipes.put(pipeID, pipe);
+    }
+
+    /**
+     * Removes a registered pipe.
+     * @param pipeID id of the pipe
+     */
+    static void unregister( String pipeID ) {
+        pipes.remove(pipeID);
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+
+        while ( chunk == null || chunkRow == chunk.length ) {
+            if ( pipe.aborted ) {
+                return false;
+            }
+            try {
+                chunk = pipe.queue.take();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(ex);
+            }
+            chunkRow = 0;
+            if ( chunk == Pipe.END ) {
+                return false;
+            }
+        }
+        if ( pipe.aborted ) {
+            return false;
+        }
+        row = chunk[chunkRow++];
+        return true;
+    }
+
+    @Override
+    public void close() {
+        chunk = null;
+        row = null;
+    }
+
+    @Override
+    protected String getRawColumn( int columnNumber ) {
+
+        Object value = row[columnNumber - 1];
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Queue of row chunks passed from an importing thread to the table function.
+     */
+    static class Pipe {
+
+        static final Object[][] END = new Object[0][];
+
+        private final String[] columnNames;
+        private final BlockingQueue<Object[][]> queue;
+        private volatile boolean aborted = false;
+
+        /**
+         * Constructs a pipe.
+         * @param p_columnNames names of the columns of the rows
+         * @param capacity maximum number of chunks waiting to be read
+         */
+        Pipe( String[] p_columnNames, int capacity ) {
+            columnNames = p_columnNames;
+            queue = new LinkedBlockingQueue<Object[][]>(capacity);
+        }
+
+        BlockingQueue<Object[][]> getQueue() {
+            return queue;
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+
+        /**
+         * Makes the table function end without reading the remaining rows.
+         */
+        void abort() {
+            aborted = true;
+            queue.clear();
+            queue.offer(END);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.genomen.importers.derby;
+
+import com.genomen.importers.ImportSink;
+import com.genomen.importers.ImporterException;
+import com.genomen.metrics.Metrics;
+import com.genomen.metrics.Throughput;
+
+/**
+ * Sink counting the rows passed to another sink in the <code>ImportedRows</code> throughput of <code>Metrics</code>.
+ * @author ciszek
+ */
+class MeteredImportSink implements ImportSink {
+
+    //Rows are counted in groups to keep the shared counters out of the import loop.
+    private static final int MARK_INTERVAL = 1024;
+
+    private final ImportSink sink;
+    private final Throughput importedRows = Metrics.getThroughput( DerbyImporter.IMPORTED_ROWS );
+    private int unmarkedRows = 0;
+
+    /**
+     * Constructs a sink counting the rows of the given sink.
+     * @param p_sink sink the rows are written to
+     */
+    MeteredImportSink( ImportSink p_sink ) {
+        sink = p_sink;
+    }
+
+    @Override
+    public int getColumnIndex( String attributeName ) {
+        return sink.getColumnIndex(attributeName);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return sink.getColumnCount();
+    }
+
+    @Override
+    public void addRow( long id, Object[] values ) throws ImporterException {
+
+        sink.addRow( id, values );
+        if ( ++unmarkedRows >= MARK_INTERVAL ) {
+            importedRows.mark(unmarkedRows);
+            unmarkedRows = 0;
+        }
+    }
+
+    @Override
+    public void close() throws ImporterException {
+
+        sink.close();
+        importedRows.mark(unmarkedRows);
+        unmarkedRows = 0;
+    }
+
+    @Override
+    public void abort() {
+        sink.abort();
+    }
+}
@@ -0,0 +1,98 @@
+package com.genomen.importers.derby;
+
+import com.genomen.dao.PackedGenotypeStore;
+import com.genomen.entities.DataType;
+import com.genomen.importers.ImportSink;
+import com.genomen.importers.ImporterException;
+import java.io.IOException;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Sink writing the variants of a sample into a <code>PackedGenotypeStore</code> instead of a table.
+ * The rows are encoded as they are added and the file of the sample is written when the sink is closed.
+ * The row ids are stored with the rows, as the rows of other types refer to them.
+ * @author ciszek
+ */
+class PackedImportSink implements ImportSink {
+
+    private final List<String> attributeNames;
+    private final int variantColumn;
+    private final int chromosomeColumn;
+    private final int startColumn;
+    private final int strandColumn;
+    private final int alleleColumn;
+    private PackedGenotypeStore.SampleWriter writer;
+
+    /**
+     * Constructs a sink for the variants of a sample.
+     * @param p_schemaName schema of the sample
+     * @param p_sampleID id of the sample
+     * @param p_dataType type of the imported data, accepted by <code>PackedGenotypeStore.isPacked</code>
+     */
+    PackedImportSink( String p_schemaName, String p_sampleID, DataType p_dataType ) {
+
+        attributeNames = p_dataType.getAttributeNames();
+        variantColumn = attributeNames.indexOf(PackedGenotypeStore.VARIANT_ID);
+        chromosomeColumn = attributeNames.indexOf(PackedGenotypeStore.CHROMOSOME);
+        startColumn = attributeNames.indexOf(PackedGenotypeStore.SEQUENCE_START);
+        strandColumn = attributeNames.indexOf(PackedGenotypeStore.STRAND);
+        alleleColumn = attributeNames.indexOf(PackedGenotypeStore.ALLELE);
+        writer = PackedGenotypeStore.getStore(p_schemaName).createWriter(p_sampleID);
+    }
+
+    @Override
+    public int getColumnIndex( String attributeName ) {
+        return attributeNames.indexOf(attributeName);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return attributeNames.size();
+    }
+
+    @Override
+    public void addRow( long id, Object[] values ) throws ImporterException {
+
+        writer.addRow( (int)id, toText( values[variantColumn] ), toText( values[chromosomeColumn] ), toInteger( values[startColumn] ),
+                       toInteger( values[strandColumn] ), toText( values[alleleColumn] ) );
+    }
+
+    @Override
+    public void close() throws ImporterException {
+
+        try {
+            writer.commit();
+        }
+        catch (IOException ex) {
+            Logger.getLogger( PackedImportSink.class ).error(ex);
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, ex.getMessage() );
+        }
+        finally {
+            writer = null;
+        }
+    }
+
+    @Override
+    public void abort() {
+        writer = null;
+    }
+
+    private static String toText( Object value ) {
+        return value == null ? null : value.toString();
+    }
+
+    //Values are given as numbers or as their text, as for the other sinks.
+    private static Integer toInteger( Object value ) throws ImporterException {
+
+        if ( value == null || value instanceof Integer ) {
+            return (Integer)value;
+        }
+        try {
+            return Integer.valueOf( value.toString().trim() );
+        }
+        catch (NumberFormatException ex) {
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, value.toString() );
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.genomen.importers.derby;
+
+import com.genomen.dao.DataSetDAO;
+import com.genomen.entities.DataType;
+import com.genomen.entities.DataTypeManager;
+import com.genomen.importers.ImporterException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+
+/**
+ * Sink streaming rows into the table of a sample through a table function. A single
+ * INSERT ... SELECT reading the table function runs on a pool of import threads while rows are added,
+ * so the data is neither written to a temporary file nor sent to the database statement by statement.
+ * The insert is started when the first rows are sent, so a connection is only borrowed while rows are streamed.
+ * The import pool is not shared with the analyses, as each insert occupies its thread until its sink is closed.
+ * The table functions are created by <code>createFunctions</code> at startup.
+ * @author ciszek
+ */
+class PipedImportSink extends DerbyImportSink {
+
+    private static final String FUNCTION_PREFIX = "IMPORT_";
+    private static final String FUNCTION_ENTRY_POINT = "com.genomen.importers.derby.ImportRowSource.open";
+    private static final String OBJECT_EXISTS = "X0Y68";
+    private static final int CHUNK_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final long OFFER_TIMEOUT = 100;
+
+    private static final AtomicLong pipeCounter = new AtomicLong();
+    //Every open sink has at most one insert running, so the pool grows with the number of concurrent imports.
+    private static final ExecutorService importExecutorService = Executors.newCachedThreadPool( new ImportThreadFactory() );
+
+    private final String pipeID;
+    private final ImportRowSource.Pipe pipe;
+    private final Consumer consumer = new Consumer();
+    private Future<?> consumerFuture = null;
+    private volatile Exception failure = null;
+
+    private Object[][] chunk = new Object[CHUNK_SIZE][];
+    private int chunkRows = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructs a sink.
+     * @param p_importer importer using this sink
+     * @param p_schemaName schema of the table
+     * @param p_sampleID id of the sample
+     * @param p_dataType type of the imported data
+     */
+    PipedImportSink( DerbyImporter p_importer, String p_schemaName, String p_sampleID, DataType p_dataType ) {
+
+        super(p_importer, p_schemaName, p_sampleID, p_dataType);
+
+        String[] columnNames = new String[attributeNames.size() + ( partitionKey != null ? 2 : 1 )];
+        for ( int i = 0; i < attributeNames.size(); i++ ) {
+            columnNames[i] = attributeNames.get(i);
+        }
+        columnNames[attributeNames.size()] = "ID";
+        if ( partitionKey != null ) {
+            columnNames[attributeNames.size() + 1] = DataSetDAO.SAMPLE_COLUMN;
+        }
+
+        pipeID = "PIPE_" + pipeCounter.incrementAndGet();
+        pipe = new ImportRowSource.Pipe( columnNames, QUEUE_CAPACITY );
+        ImportRowSource.register(pipeID, pipe);
+    }
+
+    @Override
+    public void addRow( long id, Object[] values ) throws ImporterException {
+
+        Object[] row = new Object[values.length + ( partitionKey != null ? 2 : 1 )];
+        System.arraycopy( values, 0, row, 0, values.length );
+        row[values.length] = id;
+        if ( partitionKey != null ) {
+            row[values.length + 1] = partitionKey;
+        }
+
+        chunk[chunkRows++] = row;
+        if ( chunkRows == CHUNK_SIZE ) {
+            send( chunk );
+            chunk = new Object[CHUNK_SIZE][];
+            chunkRows = 0;
+        }
+    }
+
+    @Override
+    public void close() throws ImporterException {
+
+        if ( closed ) {
+            return;
+        }
+        try {
+            if ( chunkRows > 0 ) {
+                Object[][] lastChunk = new Object[chunkRows][];
+                System.arraycopy( chunk, 0, lastChunk, 0, chunkRows );
+                send( lastChunk );
+            }
+            //Nothing to insert if no rows were sent
+            if ( consumerFuture != null ) {
+                send( ImportRowSource.Pipe.END );
+                waitForConsumer();
+            }
+        }
+        catch (ImporterException ex) {
+            abort();
+            throw ex;
+        }
+        closed = true;
+        ImportRowSource.unregister(pipeID);
+
+        if ( failure != null ) {
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+        }
+        importer.createIndexes(schemaName, sampleID, dataType);
+    }
+
+    @Override
+    public void abort() {
+
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        pipe.abort();
+        //A consumer that has not started yet is not run at all.
+        if ( consumerFuture != null && !consumer.cancel() ) {
+            try {
+                waitForConsumer();
+            }
+            catch (ImporterException ex) {
+                Logger.getLogger( PipedImportSink.class ).debug(ex);
+            }
+        }
+        ImportRowSource.unregister(pipeID);
+    }
+
+    /**
+     * Creates the table functions read by the sinks of all data types in a schema, if they do not exist.
+     * @param connection database connection
+     * @param schemaName schema of the tables
+     * @param partitioned <code>true</code> if the samples share tables, <code>false</code> otherwise
+     * @throws SQLException if a function can not be created
+     */
+    static synchronized void createFunctions( Connection connection, String schemaName, boolean partitioned ) throws SQLException {
+
+        for ( DataType dataType : DataTypeManager.getInstance().getDataTypes() ) {
+            String columns = createFunctionColumns( dataType, partitioned );
+            createFunction( connection, schemaName, getFunctionName( dataType, columns ), columns );
+        }
+    }
+
+    //Passes a chunk to the consumer, starting the consumer with the first chunk and failing if the consumer has stopped.
+    private void send( Object[][] rows ) throws ImporterException {
+
+        if ( consumerFuture == null ) {
+            consumerFuture = importExecutorService.submit(consumer);
+        }
+
+        try {
+            while ( !pipe.getQueue().offer( rows, OFFER_TIMEOUT, TimeUnit.MILLISECONDS ) ) {
+                if ( failure != null || consumerFuture.isDone() ) {
+                    throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+        }
+    }
+
+    private void waitForConsumer() throws ImporterException {
+
+        try {
+            consumerFuture.get();
+        }
+        catch (ExecutionException ex) {
+            Logger.getLogger( PipedImportSink.class ).error( ex.getCause() );
+            failure = ex;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ImporterException( ImporterException.DATABASE_WRITE_ERROR, tableName );
+        }
+    }
+
+    //Name of the table function returning rows of the data type. The column definitions are part of the name
+    //so that a changed data type gets a new function.
+    private static String getFunctionName( DataType dataType, String columns ) {
+        return FUNCTION_PREFIX + dataType.getId().toUpperCase() + "_" + Integer.toHexString( columns.hashCode() ).toUpperCase();
+    }
+
+    private static String createFunctionColumns( DataType dataType, boolean partitioned ) {
+
+        StringBuilder columns = new StringBuilder();
+        for ( String attributeName : dataType.getAttributeNames() ) {
+            columns.append(attributeName);
+            columns.append(" ");
+            columns.append(dataType.getAttributeType(attributeName));
+            int attributeSize = dataType.getAttributeSize(attributeName);
+            if ( attributeSize > 0 ) {
+                columns.append("(");
+                columns.append(attributeSize);
+                columns.append(")");
+            }
+            columns.append(", ");
+        }
+        columns.append("ID BIGINT");
+        if ( partitioned ) {
+            columns.append(", ");
+            columns.append(DataSetDAO.SAMPLE_COLUMN);
+            columns.append(" VARCHAR(100)");
+        }
+        return columns.toString();
+    }
+
+    //Creates the table function if it does not yet exist in the schema.
+    private static void createFunction( Connection connection, String schemaName, String functionName, String columns ) throws SQLException {
+
+        ResultSet functions = connection.getMetaData().getFunctions( null, schemaName.toUpperCase(), functionName );
+        boolean exists = functions.next();
+        functions.close();
+        if ( exists ) {
+            return;
+        }
+
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate( "CREATE FUNCTION " + schemaName + "." + functionName + " ( PIPE_ID VARCHAR(100) ) RETURNS TABLE ( " + columns + " ) "
+                                    + "LANGUAGE JAVA PARAMETER STYLE DERBY_JDBC_RESULT_SET NO SQL EXTERNAL NAME '" + FUNCTION_ENTRY_POINT + "'" );
+        }
+        catch (SQLException ex) {
+            //Created concurrently by another process
+            if ( !OBJECT_EXISTS.equals(ex.getSQLState()) ) {
+                throw ex;
+            }
+        }
+        finally {
+            statement.close();
+        }
+        connection.commit();
+    }
+
+    /**
+     * Inserts the rows read from the pipe in a single transaction.
+     */
+    private class Consumer implements Runnable {
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * Prevents the consumer from being run if it has not been started.
+         * @return <code>true</code> if the consumer will not be run, <code>false</code> if it has been started
+         */
+        private boolean cancel() {
+            return started.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+
+            if ( !started.compareAndSet(false, true) ) {
+                return;
+            }
+
+            Connection connection = null;
+            try {
+                connection = importer.openConnection();
+                connection.setAutoCommit(false);
+
+                String functionName = getFunctionName( dataType, createFunctionColumns( dataType, partitionKey != null ) );
+                String columns = createColumnList();
+                PreparedStatement statement = connection.prepareStatement( "INSERT INTO " + schemaName + "." + tableName + " ( " + columns + " ) SELECT " + columns
+                                                                        + " FROM TABLE ( " + schemaName + "." + functionName + "(?) ) AS IMPORTED" );
+                statement.setString(1, pipeID);
+                statement.executeUpdate();
+                statement.close();
+
+                if ( pipe.isAborted() ) {
+                    connection.rollback();
+                }
+                else {
+                    connection.commit();
+                }
+            }
+            catch (SQLException | ImporterException ex) {
+                Logger.getLogger( PipedImportSink.class ).error(ex);
+                failure = ex;
+                if ( connection != null ) {
+                    try {
+                        connection.rollback();
+                    }
+                    catch (SQLException rollbackException) {
+                        Logger.getLogger( PipedImportSink.class ).debug(rollbackException);
+                    }
+                }
+            }
+            finally {
+                importer.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads, so that an idle import pool does not keep the application running.
+     */
+    private static class ImportThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+
+            Thread thread = new Thread( runnable, "import-" + threadCount.incrementAndGet() );
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.genomen.importers.derby;
+
+import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DataSetDAO;
+import com.genomen.dao.DerbyDataSetDAO;
+import com.genomen.entities.DataType;
+import com.genomen.metrics.Metrics;
+import com.genomen.utils.RandomStringGenerator;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Table shared by all samples of a dataset during a streaming import. Rows are inserted in batches
+ * together with the id of the sample and finally moved to the tables of the samples. When the storage layout
+ * already keeps all samples in one table per data type, rows are inserted directly into that table instead.
+ * @author ciszek
+ */
+class StagingTable {
+
+    private static final String SAMPLE_ID = DataSetDAO.SAMPLE_COLUMN;
+
+    private final Connection connection;
+    private final String schemaName;
+    private final String tableName;
+    private final DataType dataType;
+    private final List<String> attributeNames;
+    private final int batchSize;
+    private final String columnList;
+    //Rows are written directly to the table shared by the samples
+    private final boolean direct;
+
+    private PreparedStatement insertStatement;
+    private int batchedRows = 0;
+
+    /**
+     * Creates a new staging table for a data type.
+     * @param p_connection connection used for all operations, with auto-commit disabled
+     * @param p_schemaName schema of the table
+     * @param p_dataType type of the data stored
+     * @param p_batchSize number of rows inserted in a single batch
+     * @throws SQLException if the table can not be created
+     */
+    StagingTable( Connection p_connection, String p_schemaName, DataType p_dataType, int p_batchSize ) throws SQLException {
+
+        connection = p_connection;
+        schemaName = p_schemaName;
+        dataType = p_dataType;
+        attributeNames = dataType.getAttributeNames();
+        batchSize = Math.max(1, p_batchSize);
+
+        DataSetDAO dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
+        direct = dataSetDAO.isPartitioned();
+        tableName = direct ? dataSetDAO.createTableName( null, dataType ) : dataType.getId() + "_STAGE_" + RandomStringGenerator.generateRandomString(10);
+
+        StringBuilder columns = new StringBuilder();
+        for ( String attributeName : attributeNames ) {
+            columns.append(attributeName);
+            columns.append(", ");
+        }
+        columns.append("ID");
+        columnList = columns.toString();
+
+        if ( direct ) {
+            if ( !DAOFactory.getDAOFactory().getContentDAO().tableExists(schemaName, tableName) ) {
+                dataSetDAO.createDataTable( schemaName, null, dataType );
+            }
+        }
+        else {
+            Statement statement = connection.createStatement();
+            statement.executeUpdate( "CREATE TABLE " + schemaName + "." + tableName + " ( " + new DerbyDataSetDAO().createColumnDefinitions(dataType) + " ID BIGINT NOT NULL, " + SAMPLE_ID + " VARCHAR(100) NOT NULL )" );
+            statement.close();
+            connection.commit();
+        }
+
+        StringBuilder parameters = new StringBuilder();
+        for ( int i = 0; i < attributeNames.size() + 2; i++ ) {
+            parameters.append( i == 0 ? "?" : ", ?" );
+        }
+        insertStatement = prepareStatement( "INSERT INTO " + schemaName + "." + tableName + " ( " + columnList + ", " + SAMPLE_ID + " ) VALUES ( " + parameters + " )" );
+    }
+
+    /**
+     * Gets the position of an attribute in the rows of this table.
+     * @param attributeName name of the attribute
+     * @return index of the attribute in a row
+     */
+    int getColumnIndex( String attributeName ) {
+        return attributeNames.indexOf(attributeName);
+    }
+
+    /**
+     * Gets the number of attribute values in a row.
+     * @return row length
+     */
+    int getRowLength() {
+        return attributeNames.size();
+    }
+
+    /**
+     * Adds a row to the current batch. The batch is written when it is full.
+     * @param sampleID id of the sample the row belongs to
+     * @param id id of the row within the data of the sample
+     * @param values attribute values in the order of the data type attributes
+     * @throws SQLException if the batch can not be written
+     */
+    void addRow( String sampleID, long id, Object[] values ) throws SQLException {
+
+        for ( int i = 0; i < values.length; i++ ) {
+            insertStatement.setObject( i + 1, values[i] );
+        }
+        insertStatement.setLong( values.length + 1, id );
+        insertStatement.setString( values.length + 2, direct ? sampleID.toUpperCase() : sampleID );
+        insertStatement.addBatch();
+
+        if ( ++batchedRows >= batchSize ) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes and commits the rows in the current batch.
+     * @throws SQLException if the batch can not be written
+     */
+    void flush() throws SQLException {
+
+        if ( batchedRows > 0 ) {
+            insertStatement.executeBatch();
+            connection.commit();
+            Metrics.getThroughput( DerbyImporter.IMPORTED_ROWS ).mark(batchedRows);
+            batchedRows = 0;
+        }
+    }
+
+    /**
+     * Moves the rows of a sample into the table of the sample, creating the table if necessary.
+     * @param sampleID id of the sample
+     * @throws SQLException if the rows can not be moved
+     */
+    void moveToSampleTable( String sampleID ) throws SQLException {
+
+        flush();
+        if ( direct ) {
+            return;
+        }
+
+        DataSetDAO dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
+        String sampleTableName = dataSetDAO.createTableName( sampleID.toUpperCase(), dataType );
+
+        if ( !DAOFactory.getDAOFactory().getContentDAO().tableExists(schemaName, sampleTableName) ) {
+            dataSetDAO.createDataTable( schemaName, sampleID.toUpperCase(), dataType );
+        }
+
+        PreparedStatement statement = prepareStatement( "INSERT INTO " + schemaName + "." + sampleTableName + " ( " + columnList + " ) SELECT " + columnList + " FROM " + schemaName + "." + tableName + " WHERE " + SAMPLE_ID + " = ?" );
+        statement.setString(1, sampleID);
+        statement.executeUpdate();
+        statement.close();
+        connection.commit();
+    }
+
+    /**
+     * Indexes the table by sample so that the rows of each sample can be moved efficiently.
+     * @throws SQLException if the index can not be created
+     */
+    void createSampleIndex() throws SQLException {
+
+        flush();
+        if ( direct ) {
+            return;
+        }
+        Statement statement = connection.createStatement();
+        statement.executeUpdate( "CREATE INDEX " + schemaName + "." + tableName + "_S ON " + schemaName + "." + tableName + " ( " + SAMPLE_ID + " )" );
+        statement.close();
+        connection.commit();
+    }
+
+    //Statements naming the staging table or a sample table are not used again, so they are kept out of the
+    //statement cache of the connection pool, which caches statements prepared from the SQL string only.
+    private PreparedStatement prepareStatement( String sql ) throws SQLException {
+        return connection.prepareStatement( sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+    }
+
+    /**
+     * Drops the staging table. Rows already written directly to the shared table are kept.
+     */
+    void drop() {
+
+        try {
+            insertStatement.close();
+            connection.rollback();
+            if ( direct ) {
+                return;
+            }
+            Statement statement = connection.createStatement();
+            statement.executeUpdate( "DROP TABLE " + schemaName + "." + tableName );
+            statement.close();
+            connection.commit();
+        }
+        catch (SQLException ex) {
+            Logger.getLogger( StagingTable.class ).error(ex);
+        }
+    }
+}
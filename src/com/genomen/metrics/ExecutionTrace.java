@@ -0,0 +1,215 @@
+package com.genomen.metrics;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Timeline of a single analysis request, collected as spans of the threads performing it and written in the
+ * trace event format of the Chrome trace viewer (<code>chrome://tracing</code>). A disabled trace ignores all
+ * spans, so tracing calls can be left in place at no cost.
+ * @author ciszek
+ */
+public class ExecutionTrace {
+
+    //Declared before DISABLED, whose construction refers to it.
+    private static final Span NO_SPAN = new Span( null, null, null, 0 );
+
+    /**
+     * Trace recording nothing.
+     */
+    public static final ExecutionTrace DISABLED = new ExecutionTrace( false, false );
+
+    public static final String CATEGORY_STATE = "state";
+    public static final String CATEGORY_IMPORT = "import";
+    public static final String CATEGORY_ANALYSIS = "analysis";
+    public static final String CATEGORY_SAMPLE = "sample";
+    public static final String CATEGORY_RULE = "rule";
+    public static final String CATEGORY_REPORT = "report";
+
+    //State spans are shown on a track of their own, as states change on different threads.
+    private static final long STATE_TRACK = 0;
+
+    private final boolean enabled;
+    private final boolean tracingRules;
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<Event>();
+    private final ConcurrentHashMap<Long, String> threadNames = new ConcurrentHashMap<Long, String>();
+    private Span stateSpan = NO_SPAN;
+
+    /**
+     * Constructs a trace.
+     * @param p_enabled are spans recorded
+     * @param p_tracingRules are spans of single rules recorded
+     */
+    public ExecutionTrace( boolean p_enabled, boolean p_tracingRules ) {
+        enabled = p_enabled;
+        tracingRules = p_enabled && p_tracingRules;
+    }
+
+    /**
+     * Tells whether this trace records spans.
+     * @return <code>true</code> if spans are recorded, <code>false</code> otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Tells whether spans of single rule evaluations are recorded.
+     * @return <code>true</code> if rules are traced, <code>false</code> otherwise
+     */
+    public boolean isTracingRules() {
+        return tracingRules;
+    }
+
+    /**
+     * Starts a span on the current thread. Spans of a thread are shown nested when one is started and ended within another.
+     * @param category category of the span, such as <code>CATEGORY_ANALYSIS</code>
+     * @param name name of the span
+     * @return the span, to be ended by the same thread
+     */
+    public Span begin( String category, String name ) {
+
+        if ( !enabled ) {
+            return NO_SPAN;
+        }
+        long threadID = Thread.currentThread().getId();
+        threadNames.putIfAbsent( threadID, Thread.currentThread().getName() );
+        return new Span( this, category, name, threadID );
+    }
+
+    /**
+     * Ends the span of the current state of the request and starts a span for the next state.
+     * @param state name of the state entered
+     */
+    public synchronized void beginState( String state ) {
+
+        endState();
+        if ( enabled ) {
+            threadNames.putIfAbsent( STATE_TRACK, "Request" );
+            stateSpan = new Span( this, CATEGORY_STATE, state, STATE_TRACK );
+        }
+    }
+
+    /**
+     * Ends the span of the current state of the request.
+     */
+    public synchronized void endState() {
+
+        stateSpan.end();
+        stateSpan = NO_SPAN;
+    }
+
+    /**
+     * Writes the spans ended so far as a JSON trace file.
+     * @param file the trace file
+     * @throws IOException if the file can not be written
+     */
+    public void write( File file ) throws IOException {
+
+        if ( file.getParentFile() != null ) {
+            file.getParentFile().mkdirs();
+        }
+
+        List<Event> recorded = new ArrayList<Event>(events);
+        JsonGenerator generator = new JsonFactory().createGenerator( file, JsonEncoding.UTF8 );
+        try {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("traceEvents");
+
+            for ( Long threadID : threadNames.keySet() ) {
+                generator.writeStartObject();
+                generator.writeStringField( "name", "thread_name" );
+                generator.writeStringField( "ph", "M" );
+                generator.writeNumberField( "pid", 1 );
+                generator.writeNumberField( "tid", threadID );
+                generator.writeObjectFieldStart("args");
+                generator.writeStringField( "name", threadNames.get(threadID) );
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            for ( Event event : recorded ) {
+                generator.writeStartObject();
+                generator.writeStringField( "name", event.name );
+                generator.writeStringField( "cat", event.category );
+                generator.writeStringField( "ph", "X" );
+                generator.writeNumberField( "ts", event.startMicros );
+                generator.writeNumberField( "dur", event.durationMicros );
+                generator.writeNumberField( "pid", 1 );
+                generator.writeNumberField( "tid", event.threadID );
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.writeStringField( "displayTimeUnit", "ms" );
+            generator.writeEndObject();
+        }
+        finally {
+            generator.close();
+        }
+    }
+
+    private void add( Span span, long endNanos ) {
+        events.add( new Event( span.category, span.name, span.threadID, ( span.startNanos - startNanos ) / 1000, ( endNanos - span.startNanos ) / 1000 ) );
+    }
+
+    /**
+     * A timed part of the request, recorded when ended.
+     */
+    public static class Span {
+
+        private final ExecutionTrace trace;
+        private final String category;
+        private final String name;
+        private final long threadID;
+        private final long startNanos;
+        private boolean ended = false;
+
+        private Span( ExecutionTrace p_trace, String p_category, String p_name, long p_threadID ) {
+            trace = p_trace;
+            category = p_category;
+            name = p_name;
+            threadID = p_threadID;
+            startNanos = p_trace != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Ends this span. Ending a span again has no effect.
+         */
+        public void end() {
+
+            if ( trace == null || ended ) {
+                return;
+            }
+            ended = true;
+            trace.add( this, System.nanoTime() );
+        }
+    }
+
+    /**
+     * A complete event of the trace.
+     */
+    private static class Event {
+
+        private final String category;
+        private final String name;
+        private final long threadID;
+        private final long startMicros;
+        private final long durationMicros;
+
+        private Event( String p_category, String p_name, long p_threadID, long p_startMicros, long p_durationMicros ) {
+            category = p_category;
+            name = p_name;
+            threadID = p_threadID;
+            startMicros = p_startMicros;
+            durationMicros = p_durationMicros;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.genomen.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with buckets of doubling width, starting from one microsecond. Recording a duration
+ * only increments counters, so it can be used on threads evaluating rules or querying the database.
+ * @author ciszek
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    //Bucket i holds durations shorter than 2^i microseconds, the last bucket holds all longer durations.
+    private static final int BUCKET_COUNT = 36;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos duration in nanoseconds
+     */
+    public void record( long nanos ) {
+
+        if ( nanos < 0 ) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        buckets.incrementAndGet( Math.min( bucket, BUCKET_COUNT - 1 ) );
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while ( nanos > max && !maxNanos.compareAndSet( max, nanos ) ) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since the given start time.
+     * @param startNanos start time from <code>System.nanoTime()</code>
+     */
+    public void recordSince( long startNanos ) {
+        record( System.nanoTime() - startNanos );
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getAverageMillis() {
+
+        long recorded = count.get();
+        return recorded == 0 ? 0 : totalNanos.get() / NANOS_PER_MILLI / recorded;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return getPercentile(0.5);
+    }
+
+    @Override
+    public double get95thPercentileMillis() {
+        return getPercentile(0.95);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return getPercentile(0.99);
+    }
+
+    @Override
+    public String[] getBuckets() {
+
+        List<String> nonEmpty = new ArrayList<String>();
+        for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+            long bucketCount = buckets.get(i);
+            if ( bucketCount > 0 ) {
+                String bound = i == BUCKET_COUNT - 1 ? ">= " + getUpperBound(i - 1) : "< " + getUpperBound(i);
+                nonEmpty.add( bound + " ms: " + bucketCount );
+            }
+        }
+        return nonEmpty.toArray( new String[nonEmpty.size()] );
+    }
+
+    @Override
+    public void reset() {
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    private double getPercentile( double fraction ) {
+
+        long total = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+            total += buckets.get(i);
+        }
+        long rank = (long)Math.ceil( total * fraction );
+        long seen = 0;
+        for ( int i = 0; i < BUCKET_COUNT - 1; i++ ) {
+            seen += buckets.get(i);
+            if ( seen >= rank && seen > 0 ) {
+                return Math.min( getUpperBound(i), getMaxMillis() );
+            }
+        }
+        return getMaxMillis();
+    }
+
+    private static double getUpperBound( int bucket ) {
+        return ( 1L << bucket ) / 1000.0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.genomen.metrics;
+
+/**
+ * Management interface of a <code>LatencyHistogram</code>.
+ * @author ciszek
+ */
+public interface LatencyHistogramMBean {
+
+    /**
+     * Gets the number of recorded durations.
+     * @return number of durations
+     */
+    public abstract long getCount();
+
+    /**
+     * Gets the average of the recorded durations.
+     * @return average duration in milliseconds
+     */
+    public abstract double getAverageMillis();
+
+    /**
+     * Gets the longest recorded duration.
+     * @return maximum duration in milliseconds
+     */
+    public abstract double getMaxMillis();
+
+    /**
+     * Gets the duration within which half of the recorded durations fall.
+     * @return median in milliseconds, rounded up to the bucket boundary
+     */
+    public abstract double getMedianMillis();
+
+    /**
+     * Gets the duration within which 95 percent of the recorded durations fall.
+     * @return 95th percentile in milliseconds, rounded up to the bucket boundary
+     */
+    public abstract double get95thPercentileMillis();
+
+    /**
+     * Gets the duration within which 99 percent of the recorded durations fall.
+     * @return 99th percentile in milliseconds, rounded up to the bucket boundary
+     */
+    public abstract double get99thPercentileMillis();
+
+    /**
+     * Gets the non-empty buckets of the histogram.
+     * @return upper bound and count of each bucket
+     */
+    public abstract String[] getBuckets();
+
+    /**
+     * Discards the recorded durations.
+     */
+    public abstract void reset();
+}
@@ -0,0 +1,110 @@
+package com.genomen.metrics;
+
+import com.genomen.core.Configuration;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+
+/**
+ * Registry of runtime metrics. Metrics are created on first use and, if enabled in the configuration, registered
+ * with the platform MBean server as <code>com.genomen:type=&lt;type&gt;,name=&lt;name&gt;</code>.
+ * @author ciszek
+ */
+public class Metrics {
+
+    /**
+     * Domain of the registered MBeans.
+     */
+    public static final String DOMAIN = "com.genomen";
+
+    private static final boolean ENABLED = Configuration.getConfiguration().isJMXMetrics();
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+    private static final ConcurrentHashMap<String, Throughput> throughputs = new ConcurrentHashMap<String, Throughput>();
+
+    /**
+     * Tells whether the metrics are published through JMX.
+     * @return <code>true</code> if the metrics are registered, <code>false</code> otherwise
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Gets a latency histogram, creating and registering it on first use.
+     * @param type type of the measured operation, such as <code>Stage</code> or <code>DAO</code>
+     * @param name name of the measured operation
+     * @return the histogram
+     */
+    public static LatencyHistogram getHistogram( String type, String name ) {
+
+        String key = createKey( type, name );
+        LatencyHistogram histogram = histograms.get(key);
+        if ( histogram == null ) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent( key, created );
+            if ( histogram == null ) {
+                histogram = created;
+                register( type, name, histogram );
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Gets a throughput meter, creating and registering it on first use.
+     * @param name name of the counted events
+     * @return the meter
+     */
+    public static Throughput getThroughput( String name ) {
+
+        Throughput throughput = throughputs.get(name);
+        if ( throughput == null ) {
+            Throughput created = new Throughput();
+            throughput = throughputs.putIfAbsent( name, created );
+            if ( throughput == null ) {
+                throughput = created;
+                register( "Throughput", name, throughput );
+            }
+        }
+        return throughput;
+    }
+
+    /**
+     * Registers an MBean if the metrics are enabled. A failed registration is logged and otherwise ignored.
+     * @param type type of the MBean
+     * @param name name of the MBean
+     * @param mbean the MBean
+     */
+    public static void register( String type, String name, Object mbean ) {
+
+        if ( !ENABLED ) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName( DOMAIN + ":" + createKey( type, name ) );
+            if ( !ManagementFactory.getPlatformMBeanServer().isRegistered(objectName) ) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean( mbean, objectName );
+            }
+        }
+        catch (JMException ex) {
+            Logger.getLogger( Metrics.class ).debug(ex);
+        }
+    }
+
+    private static String createKey( String type, String name ) {
+        return "type=" + quoteIfNeeded(type) + ",name=" + quoteIfNeeded(name);
+    }
+
+    private static String quoteIfNeeded( String value ) {
+
+        for ( int i = 0; i < value.length(); i++ ) {
+            if ( ",=:\"*?\n".indexOf( value.charAt(i) ) >= 0 ) {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+}
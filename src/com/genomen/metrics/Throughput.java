@@ -0,0 +1,55 @@
+package com.genomen.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events, such as evaluated rules or imported rows, in one second slots covering the last minute.
+ * @author ciszek
+ */
+public class Throughput implements ThroughputMBean {
+
+    private static final int WINDOW_SECONDS = 60;
+
+    private final AtomicLong count = new AtomicLong();
+    //Events of each second of the window, and the second each slot currently counts.
+    private final AtomicLongArray slotCounts = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray slotSeconds = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * Counts events.
+     * @param events number of events
+     */
+    public void mark( long events ) {
+
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int)( second % WINDOW_SECONDS );
+        long slotSecond = slotSeconds.get(slot);
+        //The first thread to reach a new second clears the slot. Events counted meanwhile may be lost, which only skews the rate.
+        if ( slotSecond != second && slotSeconds.compareAndSet( slot, slotSecond, second ) ) {
+            slotCounts.set( slot, 0 );
+        }
+        slotCounts.addAndGet( slot, events );
+        count.addAndGet(events);
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getRatePerSecond() {
+
+        long second = System.currentTimeMillis() / 1000;
+        long events = 0;
+        //The current second is still being counted.
+        for ( int slot = 0; slot < WINDOW_SECONDS; slot++ ) {
+            long slotSecond = slotSeconds.get(slot);
+            if ( slotSecond < second && second - slotSecond <= WINDOW_SECONDS ) {
+                events += slotCounts.get(slot);
+            }
+        }
+        return events / (double)WINDOW_SECONDS;
+    }
+}
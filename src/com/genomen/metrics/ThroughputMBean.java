@@ -0,0 +1,20 @@
+package com.genomen.metrics;
+
+/**
+ * Management interface of a <code>Throughput</code>.
+ * @author ciszek
+ */
+public interface ThroughputMBean {
+
+    /**
+     * Gets the number of events since start up.
+     * @return number of events
+     */
+    public abstract long getCount();
+
+    /**
+     * Gets the average number of events per second during the last minute.
+     * @return events per second
+     */
+    public abstract double getRatePerSecond();
+}
@@ -0,0 +1,264 @@
+package com.genomen.readers.twentythreeandmereader;
+
+import com.genomen.utils.ResourceReleaser;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for raw data files in the format used by 23andMe. The file is memory mapped and each row is
+ * copied into a reusable byte buffer and split into its four columns. Columns are decoded only when requested.
+ * Each part of the file is unmapped when the next one is mapped, and the last one when the reader is closed.
+ * @author ciszek
+ */
+public class TwentyThreeandMeReader implements Closeable {
+
+    public static final int RSID = 0;
+    public static final int CHROMOSOME = 1;
+    public static final int POSITION = 2;
+    public static final int GENOTYPE = 3;
+
+    private static final int COLUMN_COUNT = 4;
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int INITIAL_LINE_LENGTH = 256;
+    private static final byte COMMENT = '#';
+    private static final byte ALLELE_SEPARATOR = '/';
+    private static final byte MISSING_ALLELE = '-';
+
+    private FileChannel channel;
+    private long fileSize;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    private byte[] line = new byte[INITIAL_LINE_LENGTH];
+    private int length = 0;
+    private final int[] columnStarts = new int[COLUMN_COUNT];
+    private final int[] columnEnds = new int[COLUMN_COUNT];
+    private boolean valid;
+    private int position;
+    private String chromosome = null;
+    private final String[] alleles = new String[ 1 << 14 ];
+
+    /**
+     * Opens a file for reading.
+     * @param file 23andMe raw data file
+     * @throws IOException if the file can not be opened
+     */
+    public void open( File file ) throws IOException {
+
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        fileSize = channel.size();
+        windowStart = 0;
+        window = null;
+    }
+
+    /**
+     * Reads the next row of the file.
+     * @return <code>true</code> if a row was read, <code>false</code> if the end of the file was reached
+     * @throws IOException if reading fails
+     */
+    public boolean readRow() throws IOException {
+
+        length = 0;
+        boolean read = false;
+
+        while ( nextWindow() ) {
+            read = true;
+            byte b = 0;
+            while ( window.hasRemaining() && ( b = window.get() ) != '\n' ) {
+                append(b);
+            }
+            if ( b == '\n' ) {
+                break;
+            }
+        }
+
+        if ( length > 0 && line[length - 1] == '\r' ) {
+            length--;
+        }
+        if ( read ) {
+            tokenize();
+        }
+        return read;
+    }
+
+    /**
+     * Checks whether the current row is a comment.
+     * @return <code>true</code> if the row is a comment, <code>false</code> otherwise
+     */
+    public boolean isComment() {
+        return length > 0 && line[0] == COMMENT;
+    }
+
+    /**
+     * Checks whether the current row consists of an id, a chromosome, a position and a genotype
+     * separated by single whitespace characters.
+     * @return <code>true</code> if the row is valid, <code>false</code> otherwise
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Gets the position of the SNP on the current row.
+     * @return position of the SNP
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the current row.
+     * @return the row as a <code>String</code>
+     */
+    public String getRow() {
+        return new String( line, 0, length, StandardCharsets.US_ASCII );
+    }
+
+    /**
+     * Gets a column of the current row.
+     * @param column index of the column
+     * @return the column as a <code>String</code>
+     */
+    public String getColumn( int column ) {
+        return new String( line, columnStarts[column], columnEnds[column] - columnStarts[column], StandardCharsets.US_ASCII );
+    }
+
+    /**
+     * Gets the chromosome of the current row. Consecutive rows on the same chromosome share the same instance.
+     * @return chromosome of the SNP
+     */
+    public String getChromosome() {
+
+        int start = columnStarts[CHROMOSOME];
+        int end = columnEnds[CHROMOSOME];
+
+        if ( chromosome == null || chromosome.length() != end - start ) {
+            chromosome = getColumn(CHROMOSOME);
+            return chromosome;
+        }
+        for ( int i = start; i < end; i++ ) {
+            if ( chromosome.charAt(i - start) != line[i] ) {
+                chromosome = getColumn(CHROMOSOME);
+                return chromosome;
+            }
+        }
+        return chromosome;
+    }
+
+    /**
+     * Gets the genotype of the current row as two alleles separated by a slash.
+     * A missing second allele is presented as a dash. Identical genotypes share the same instance.
+     * @return alleles of the SNP
+     */
+    public String getAlleles() {
+
+        int start = columnStarts[GENOTYPE];
+        byte first = line[start];
+        byte second = columnEnds[GENOTYPE] - start > 1 ? line[start + 1] : MISSING_ALLELE;
+
+        int index = ( first << 7 ) | second;
+        if ( alleles[index] == null ) {
+            alleles[index] = new String( new byte[]{ first, ALLELE_SEPARATOR, second }, StandardCharsets.US_ASCII );
+        }
+        return alleles[index];
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        ResourceReleaser.unmap(window);
+        window = null;
+        if ( channel != null ) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    //Maps the next part of the file if the current one has been read.
+    private boolean nextWindow() throws IOException {
+
+        if ( window != null && window.hasRemaining() ) {
+            return true;
+        }
+        if ( window != null ) {
+            windowStart += window.capacity();
+            ResourceReleaser.unmap(window);
+            window = null;
+        }
+        if ( channel == null || windowStart >= fileSize ) {
+            return false;
+        }
+        window = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, Math.min( WINDOW_SIZE, fileSize - windowStart ) );
+        return true;
+    }
+
+    private void append( byte b ) {
+
+        if ( length == line.length ) {
+            byte[] newLine = new byte[line.length * 2];
+            System.arraycopy( line, 0, newLine, 0, length );
+            line = newLine;
+        }
+        line[length++] = b;
+    }
+
+    private void tokenize() {
+
+        valid = false;
+        int column = 0;
+        int start = 0;
+
+        for ( int i = 0; i <= length; i++ ) {
+            if ( i == length || isWhitespace( line[i] ) ) {
+                //Empty columns and additional columns make the row invalid.
+                if ( i == start || column == COLUMN_COUNT ) {
+                    return;
+                }
+                columnStarts[column] = start;
+                columnEnds[column] = i;
+                column++;
+                start = i + 1;
+            }
+        }
+
+        if ( column != COLUMN_COUNT ) {
+            return;
+        }
+        for ( int i = columnStarts[RSID]; i < columnEnds[CHROMOSOME]; i++ ) {
+            if ( i != columnEnds[RSID] && !isWordCharacter( line[i] ) ) {
+                return;
+            }
+        }
+        for ( int i = columnStarts[GENOTYPE]; i < columnEnds[GENOTYPE]; i++ ) {
+            if ( !isWordCharacter( line[i] ) && line[i] != MISSING_ALLELE ) {
+                return;
+            }
+        }
+
+        long value = 0;
+        for ( int i = columnStarts[POSITION]; i < columnEnds[POSITION]; i++ ) {
+            if ( line[i] < '0' || line[i] > '9' ) {
+                return;
+            }
+            value = value * 10 + ( line[i] - '0' );
+            if ( value > Integer.MAX_VALUE ) {
+                return;
+            }
+        }
+        position = (int)value;
+        valid = true;
+    }
+
+    private static boolean isWhitespace( byte b ) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private static boolean isWordCharacter( byte b ) {
+        return ( b >= 'a' && b <= 'z' ) || ( b >= 'A' && b <= 'Z' ) || ( b >= '0' && b <= '9' ) || b == '_';
+    }
+}
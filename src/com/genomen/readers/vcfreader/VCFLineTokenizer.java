@@ -0,0 +1,459 @@
+package com.genomen.readers.vcfreader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the data rows of a VCF file into a reusable character buffer and splits them into columns
+ * by recording the offsets of the columns. Columns are decoded into strings only when requested.
+ * @author ciszek
+ */
+public class VCFLineTokenizer {
+
+    private static final char COLUMN_SEPARATOR = '\t';
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_LINE_LENGTH = 1024;
+    private static final int INITIAL_COLUMN_COUNT = 16;
+
+    //Number of fixed columns preceding the optional FORMAT and sample columns.
+    public static final int COMMON_COLUMN_COUNT = 8;
+
+    public static final int CHROM = 0;
+    public static final int POS = 1;
+    public static final int ID = 2;
+    public static final int REF = 3;
+    public static final int ALT = 4;
+    public static final int QUAL = 5;
+    public static final int FILTER = 6;
+    public static final int INFO = 7;
+    public static final int FORMAT = 8;
+
+    private final Reader reader;
+    private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+    private int readPosition = 0;
+    private int readLimit = 0;
+
+    private char[] line = new char[INITIAL_LINE_LENGTH];
+    private int length = 0;
+
+    private int[] columnStarts = new int[INITIAL_COLUMN_COUNT];
+    private int[] columnEnds = new int[INITIAL_COLUMN_COUNT];
+    private int columnCount = 0;
+
+    /**
+     * Constructs a tokenizer reading lines from the given reader.
+     * @param p_reader reader positioned at the first data row
+     */
+    public VCFLineTokenizer( Reader p_reader ) {
+        reader = p_reader;
+    }
+
+    /**
+     * Reads the next line and splits it into columns.
+     * @return <code>true</code> if a line was read, <code>false</code> if the end of the file was reached
+     * @throws IOException if reading fails
+     */
+    public boolean readLine() throws IOException {
+
+        length = 0;
+        boolean read = false;
+
+        while ( true ) {
+            if ( readPosition == readLimit ) {
+                readLimit = reader.read(readBuffer, 0, readBuffer.length);
+                readPosition = 0;
+                if ( readLimit <= 0 ) {
+                    readLimit = 0;
+                    break;
+                }
+            }
+            read = true;
+
+            //Copy characters up to the end of the line
+            int start = readPosition;
+            while ( readPosition < readLimit && readBuffer[readPosition] != '\n' ) {
+                readPosition++;
+            }
+            append( start, readPosition );
+
+            if ( readPosition < readLimit ) {
+                readPosition++;
+                break;
+            }
+        }
+
+        if ( length > 0 && line[length - 1] == '\r' ) {
+            length--;
+        }
+        if ( !read ) {
+            return false;
+        }
+
+        tokenize();
+        return true;
+    }
+
+    /**
+     * Gets the number of columns in the current line.
+     * @return column count
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Gets a column of the current line.
+     * @param column index of the column
+     * @return the column as a <code>String</code>
+     */
+    public String getColumn( int column ) {
+        return new String( line, columnStarts[column], columnEnds[column] - columnStarts[column] );
+    }
+
+    /**
+     * Splits a column of the current line by a separator.
+     * @param column index of the column
+     * @param separator separator of the values
+     * @return values of the column
+     */
+    public String[] getValues( int column, char separator ) {
+        return split( columnStarts[column], columnEnds[column], separator );
+    }
+
+    /**
+     * Parses an integer column of the current line.
+     * @param column index of the column
+     * @return value of the column
+     * @throws NumberFormatException if the column is not a valid integer
+     */
+    public int parseInt( int column ) {
+
+        int start = columnStarts[column];
+        int end = columnEnds[column];
+
+        if ( start == end || end - start > 9 ) {
+            //Empty or possibly overflowing values are left for Integer to report.
+            return Integer.parseInt( getColumn(column) );
+        }
+
+        int value = 0;
+        for ( int i = start; i < end; i++ ) {
+            char c = line[i];
+            if ( c < '0' || c > '9' ) {
+                throw new NumberFormatException( getColumn(column) );
+            }
+            value = value * 10 + ( c - '0' );
+        }
+        return value;
+    }
+
+    /**
+     * Checks the syntax of the eight common columns of the current line.
+     * @return index of the first invalid column or -1 if all columns are valid
+     */
+    public int findInvalidColumn() {
+
+        if ( columnCount < COMMON_COLUMN_COUNT ) {
+            return columnCount;
+        }
+        if ( !isToken( columnStarts[CHROM], columnEnds[CHROM] ) ) {
+            return CHROM;
+        }
+        if ( !isDigits( columnStarts[POS], columnEnds[POS] ) ) {
+            return POS;
+        }
+        if ( !isList( columnStarts[ID], columnEnds[ID] ) ) {
+            return ID;
+        }
+        if ( !isAlleles( columnStarts[REF], columnEnds[REF], false ) ) {
+            return REF;
+        }
+        if ( !isAlleles( columnStarts[ALT], columnEnds[ALT], true ) ) {
+            return ALT;
+        }
+        if ( !isFloat( line, columnStarts[QUAL], columnEnds[QUAL] ) ) {
+            return QUAL;
+        }
+        if ( !isList( columnStarts[FILTER], columnEnds[FILTER] ) ) {
+            return FILTER;
+        }
+        if ( columnStarts[INFO] == columnEnds[INFO] ) {
+            return INFO;
+        }
+        return -1;
+    }
+
+    /**
+     * Splits a sample column by the genotype separator, validating each value against the types of the row format.
+     * @param column index of the sample column
+     * @param types types of the values in the order of the row format, or <code>null</code> if not validated
+     * @param row number of the current row, used in error messages
+     * @return values of the sample or <code>null</code> if the number of values does not match the number of types
+     * @throws VCFException if a value does not match its type
+     */
+    String[] getSampleValues( int column, String[] types, int row ) throws VCFException {
+
+        int start = columnStarts[column];
+        int end = columnEnds[column];
+        String[] values = split( start, end, ':' );
+
+        if ( types == null ) {
+            return values;
+        }
+        if ( values.length != types.length ) {
+            return null;
+        }
+
+        int valueStart = start;
+        for ( int v = 0; v < values.length; v++ ) {
+
+            int valueEnd = valueStart + values[v].length();
+            //If multiple values for one key are present, verify them individually.
+            int subStart = valueStart;
+            for ( int i = valueStart; i <= valueEnd; i++ ) {
+                if ( i == valueEnd || line[i] == ',' ) {
+                    if ( !isOfType( types[v], line, subStart, i ) ) {
+                        throw new VCFException( VCFException.VALUE_MISMATCH, row, column );
+                    }
+                    subStart = i + 1;
+                }
+            }
+            valueStart = valueEnd + 1;
+        }
+        return values;
+    }
+
+    /**
+     * Checks whether the characters in the given range form a valid value of a FORMAT type.
+     * Unknown types are accepted.
+     * @param type type of the value, <code>null</code> if the format is not defined
+     * @param chars characters containing the value
+     * @param start start of the value
+     * @param end end of the value, exclusive
+     * @return <code>true</code> if the value is valid, <code>false</code> otherwise
+     */
+    static boolean isOfType( String type, char[] chars, int start, int end ) {
+
+        if ( type == null ) {
+            return false;
+        }
+        if ( type.equals(VCFFormat.FLOAT) ) {
+            return isFloat( chars, start, end );
+        }
+        if ( type.equals(VCFFormat.INTEGER) ) {
+            return isInteger( chars, start, end );
+        }
+        if ( type.equals(VCFFormat.STRING) ) {
+            return isString( chars, start, end );
+        }
+        if ( type.equals(VCFFormat.CHAR) ) {
+            return end - start == 1 && ( isLetter(chars[start]) || chars[start] == '.' );
+        }
+        return true;
+    }
+
+    //A single dot or a decimal number with an optional sign, fraction and exponent.
+    private static boolean isFloat( char[] chars, int start, int end ) {
+
+        if ( end - start == 1 && chars[start] == '.' ) {
+            return true;
+        }
+        int i = start;
+        if ( i < end && ( chars[i] == '+' || chars[i] == '-' ) ) {
+            i++;
+        }
+        int digits = 0;
+        while ( i < end && isDigit(chars[i]) ) {
+            i++;
+            digits++;
+        }
+        if ( i < end && chars[i] == '.' ) {
+            i++;
+            while ( i < end && isDigit(chars[i]) ) {
+                i++;
+                digits++;
+            }
+        }
+        if ( digits == 0 ) {
+            return false;
+        }
+        if ( i < end && ( chars[i] == 'e' || chars[i] == 'E' ) ) {
+            i++;
+            if ( i < end && ( chars[i] == '+' || chars[i] == '-' ) ) {
+                i++;
+            }
+            int exponentStart = i;
+            while ( i < end && isDigit(chars[i]) ) {
+                i++;
+            }
+            if ( i == exponentStart ) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    //Digits and dots.
+    private static boolean isInteger( char[] chars, int start, int end ) {
+
+        for ( int i = start; i < end; i++ ) {
+            if ( !isDigit(chars[i]) && chars[i] != '.' ) {
+                return false;
+            }
+        }
+        return end > start;
+    }
+
+    //Letters, digits, dots, slashes and bars.
+    private static boolean isString( char[] chars, int start, int end ) {
+
+        for ( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            if ( !isLetter(c) && !isDigit(c) && c != '|' && c != '.' && c != '/' ) {
+                return false;
+            }
+        }
+        return end > start;
+    }
+
+    //Any characters but whitespace.
+    private boolean isToken( int start, int end ) {
+
+        for ( int i = start; i < end; i++ ) {
+            if ( Character.isWhitespace( line[i] ) ) {
+                return false;
+            }
+        }
+        return end > start;
+    }
+
+    private boolean isDigits( int start, int end ) {
+
+        for ( int i = start; i < end; i++ ) {
+            if ( !isDigit(line[i]) ) {
+                return false;
+            }
+        }
+        return end > start;
+    }
+
+    //A missing value or a list of non-empty values without whitespace.
+    private boolean isList( int start, int end ) {
+
+        if ( end == start ) {
+            return false;
+        }
+        for ( int i = start; i < end; i++ ) {
+            if ( line[i] == ' ' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Comma separated bases or symbolic alleles. Alternate alleles may also be missing, deleted or breakends.
+    private boolean isAlleles( int start, int end, boolean alternate ) {
+
+        if ( end == start ) {
+            return false;
+        }
+        if ( alternate ) {
+            for ( int i = start; i < end; i++ ) {
+                if ( line[i] == ' ' ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean symbolic = false;
+        for ( int i = start; i < end; i++ ) {
+            char c = line[i];
+            if ( c == '<' ) {
+                symbolic = true;
+            }
+            else if ( c == '>' ) {
+                symbolic = false;
+            }
+            else if ( !symbolic && !isLetter(c) && c != ',' && c != '*' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit( char c ) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter( char c ) {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+    }
+
+    //Trailing empty values are dropped, as by String.split.
+    private String[] split( int start, int end, char separator ) {
+
+        if ( start < end ) {
+            while ( end > start && line[end - 1] == separator ) {
+                end--;
+            }
+            if ( end == start ) {
+                return new String[0];
+            }
+        }
+
+        int count = 1;
+        for ( int i = start; i < end; i++ ) {
+            if ( line[i] == separator ) {
+                count++;
+            }
+        }
+
+        String[] values = new String[count];
+        int valueStart = start;
+        int value = 0;
+        for ( int i = start; i < end; i++ ) {
+            if ( line[i] == separator ) {
+                values[value++] = new String( line, valueStart, i - valueStart );
+                valueStart = i + 1;
+            }
+        }
+        values[value] = new String( line, valueStart, end - valueStart );
+
+        return values;
+    }
+
+    private void append( int start, int end ) {
+
+        int count = end - start;
+        if ( length + count > line.length ) {
+            char[] newLine = new char[ Math.max( line.length * 2, length + count ) ];
+            System.arraycopy( line, 0, newLine, 0, length );
+            line = newLine;
+        }
+        System.arraycopy( readBuffer, start, line, length, count );
+        length += count;
+    }
+
+    private void tokenize() {
+
+        columnCount = 0;
+        int start = 0;
+        for ( int i = 0; i <= length; i++ ) {
+            if ( i == length || line[i] == COLUMN_SEPARATOR ) {
+                if ( columnCount == columnStarts.length ) {
+                    int[] newStarts = new int[columnStarts.length * 2];
+                    int[] newEnds = new int[columnEnds.length * 2];
+                    System.arraycopy( columnStarts, 0, newStarts, 0, columnCount );
+                    System.arraycopy( columnEnds, 0, newEnds, 0, columnCount );
+                    columnStarts = newStarts;
+                    columnEnds = newEnds;
+                }
+                columnStarts[columnCount] = start;
+                columnEnds[columnCount] = i;
+                columnCount++;
+                start = i + 1;
+            }
+        }
+    }
+}
@@ -35,21 +35,7 @@ public class VCFReader {
     private static final Pattern CONTIG_REGEXP = Pattern.compile("^##contig=<ID=[a-zA-Z0-9_]+,URL=[a-zA-Z0-9./:]+(,ID=[a-zA-Z0-9_]+,URL=[a-zA-Z0-9./:]+)*");
     private static final Pattern PEDIGREE_REGEXP = Pattern.compile("^##PEDIGREE=<([a-zA-Z0-9_-]+=[\\d\\w-]+)(,[a-zA-Z0-9_-]+=[\\d\\w-]+)*>");
     private static final Pattern PEDIGREE_DB_REGEXP = Pattern.compile("^##pedigreeDB=[a-zA-Z0-9./:]+");
-    private static final Pattern COMMON_COLUMNS_PATTERN = Pattern.compile(
-                                                                            "^[a-zA-Z0-9_]+" // CHROM
-                                                                            +"\\t[0-9]+" //POS
-                                                                            +"\\t[a-zA-Z0-9]+((;[a-zA-Z0-9]+)+)*|[.]" //ID
-                                                                            +"\\t[ACTG]+|<[a-zA-Z0-9]+((,[ACTG]+|<[a-zA-Z0-9]+)+)*>" //REF
-                                                                            +"\\t[ACTG*]+|<[a-zA-Z0-9]+((,[ACTG*]+|<[a-zA-Z0-9]+)+)*>" //ALT
-                                                                            +"\\t([0-9]+)|([0-9_]+[.][0-9]+)" //QUAL
-                                                                            +"\\t.|PASS|[a-zA-Z0-9]+((;[a-zA-Z0-9]+)+)?" //FILTER
-                                                                            +"\\t([a-zA-Z0-9]+=[a-zA-Z0-9.]+)|[a-zA-Z0-9.]+((;([a-zA-Z0-9]+=[a-zA-Z0-9.]+)|[a-zA-Z0-9.]+)+)*.*"//INFO
-                                                                        );   
-    private static final Pattern REGEXP_FLOAT = Pattern.compile("[.]|[0-9]+|([0-9]+[.][0-9]+)");
-    private static final Pattern REGEXP_STRING = Pattern.compile("[a-zA-Z0-9|./]+");
-    private static final Pattern REGEXP_INTEGER = Pattern.compile("[0-9.]+");
-    private static final Pattern REGEXP_CHAR = Pattern.compile("[a-zA-Z.]");   
-    
+
     private static final String ID = "ID";
     private static final String TYPE = "Type";
     private static final String NUMBER = "Number";
@@ -66,6 +52,13 @@ public class VCFReader {
     private static final int GENOTYPE_START = 9;
     
     private BufferedReader bufferedReader;
+    private VCFLineTokenizer tokenizer;
+    private boolean validationEnabled = true;
+
+    //Format of the previous row and the types of its values, reused while the format does not change.
+    private String rowFormatColumn;
+    private String[] rowFormat;
+    private String[] rowFormatTypes;
     
     //Metadata
     private Map<String, VCFInfo> info = new HashMap<String, VCFInfo>();
@@ -210,6 +203,15 @@ public class VCFReader {
     }
     
     
+    /**
+     * Sets whether the syntax of the data rows and the genotype values are verified while reading.
+     * @param p_validationEnabled <code>true</code> to verify rows, <code>false</code> otherwise
+     */
+    public void setValidationEnabled( boolean p_validationEnabled ) {
+        validationEnabled = p_validationEnabled;
+        rowFormatColumn = null;
+    }
+
     /**
      * Opens a VCF-file for reading. Parses the metadata and sets the internal pointer to the first row of the dataset. 
      * @param filePath VCF-file to be opened.
@@ -221,6 +223,7 @@ public class VCFReader {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
             bufferedReader = new BufferedReader(inputStreamReader);
             currentRow = 0;
+            rowFormatColumn = null;
             
         } catch (FileNotFoundException ex) {
             Logger.getLogger(VCFReader.class.getName()).log(Level.SEVERE, null, ex);
@@ -230,6 +233,8 @@ public class VCFReader {
         if ( !readMetadata() ) {
             return false;
         }
+        //Data rows are read from the same buffered reader following the header.
+        tokenizer = new VCFLineTokenizer(bufferedReader);
         
         return true;
     }
@@ -416,17 +421,20 @@ public class VCFReader {
      */
     public VCFRow readNextRow() throws VCFException {
         try {
-            String nextLine = readNext();
-            
-            if ( nextLine == null ) {
+            if ( tokenizer == null || !tokenizer.readLine() ) {
                 return null;
-            } 
+            }
+            currentRow++;
+
             //If the row does not match the proper format, throw an exception.
-            if ( !COMMON_COLUMNS_PATTERN.matcher(nextLine).matches() ) {
+            if ( tokenizer.getColumnCount() < VCFLineTokenizer.COMMON_COLUMN_COUNT ) {
+                throw new VCFException(VCFException.INVALID_SYNTAX, currentRow);
+            }
+            if ( validationEnabled && tokenizer.findInvalidColumn() >= 0 ) {
                 throw new VCFException(VCFException.INVALID_SYNTAX, currentRow);
             }
             
-            return createVCFRow(nextLine);
+            return createVCFRow();
             
         } catch (IOException ex) {
             Logger.getLogger(VCFReader.class.getName()).log(Level.SEVERE, null, ex);
@@ -438,80 +446,85 @@ public class VCFReader {
         return null;
     }
     
-    //Parses a data row from a VCF file and returns it as an instance of <code>VCFRow</code>
-    private VCFRow createVCFRow(String line ) throws VCFException {
-        
-        String[] split = line.split("\\t");
+    //Creates an instance of <code>VCFRow</code> from the columns of the current data row
+    private VCFRow createVCFRow() throws VCFException {
         
         //We can assume that the format for the first eight columns is verified.
-        String chromosome = split[0];
-        int position = Integer.parseInt(split[1]);
-        String[] ids = split[2].split(VALUE_SEPARATOR);
-        String[] refValues = split[3].split(VALUE_SEPARATOR);
-        String[] altValues = split[4].split(VALUE_SEPARATOR);
-        String qualityValues = split[5];
+        String chromosome = tokenizer.getColumn(VCFLineTokenizer.CHROM);
+        int position = tokenizer.parseInt(VCFLineTokenizer.POS);
+        String[] ids = tokenizer.getValues(VCFLineTokenizer.ID, ',');
+        String[] refValues = tokenizer.getValues(VCFLineTokenizer.REF, ',');
+        String[] altValues = tokenizer.getValues(VCFLineTokenizer.ALT, ',');
+        String qualityValues = tokenizer.getColumn(VCFLineTokenizer.QUAL);
         
-        String[] filterValues = split[6].split(";");
+        String[] filterValues = tokenizer.getValues(VCFLineTokenizer.FILTER, ';');
         
-        String[] infoArray = split[7].split(";");
+        String[] infoArray = tokenizer.getValues(VCFLineTokenizer.INFO, ';');
         String[][] infoValues = new String[infoArray.length][2];
         
         for ( int i = 0; i < infoArray.length; i++) {
-            String[] infoKeyValue = infoArray[i].split(KEY_VALUE_SEPARATOR);
-            if ( infoKeyValue.length > 1) {
-                infoValues[i][0] = infoKeyValue[0];
-                infoValues[i][1] = infoKeyValue[1];
+            int separator = infoArray[i].indexOf('=');
+            if ( separator >= 0 ) {
+                infoValues[i][0] = infoArray[i].substring(0, separator);
+                int valueEnd = infoArray[i].indexOf('=', separator + 1);
+                infoValues[i][1] = infoArray[i].substring(separator + 1, valueEnd < 0 ? infoArray[i].length() : valueEnd);
             }
-            if ( infoKeyValue.length == 1) {
-                infoValues[i][0] = infoKeyValue[0];
-                infoValues[i][1] = infoKeyValue[0];
+            else {
+                infoValues[i][0] = infoArray[i];
+                infoValues[i][1] = infoArray[i];
             }
         }
         
-
-        String[] rowFormat = null;
-        
-        if ( split.length >= GENOTYPE_START-1) {
-            rowFormat = split[GENOTYPE_START-1].split(GENOTYPE_SEPARATOR);
-        }
-        
+        String[] format = null;
         Map<String, String[]> genotypes = null;
         
         //Read genotypes using the format specified for this row.
-        if ( split.length >= GENOTYPE_START-1) {
-            genotypes = parseGenotypes(split, rowFormat);
+        if ( tokenizer.getColumnCount() > VCFLineTokenizer.FORMAT ) {
+            updateRowFormat();
+            format = rowFormat;
+            genotypes = parseGenotypes();
         }        
         
-        return  new VCFRow( chromosome, position, ids, refValues, altValues, qualityValues, filterValues, infoValues, rowFormat, genotypes);
+        return  new VCFRow( chromosome, position, ids, refValues, altValues, qualityValues, filterValues, infoValues, format, genotypes);
         
     }
+
+    //Reads the format of the current row, reusing the previous one if it has not changed.
+    private void updateRowFormat() {
+
+        String formatColumn = tokenizer.getColumn(VCFLineTokenizer.FORMAT);
+        if ( formatColumn.equals(rowFormatColumn) ) {
+            return;
+        }
+
+        rowFormatColumn = formatColumn;
+        rowFormat = tokenizer.getValues(VCFLineTokenizer.FORMAT, ':');
+        rowFormatTypes = null;
+
+        if ( validationEnabled ) {
+            rowFormatTypes = new String[rowFormat.length];
+            for ( int i = 0; i < rowFormat.length; i++ ) {
+                VCFFormat vcfFormat = format.get(rowFormat[i]);
+                rowFormatTypes[i] = vcfFormat == null ? null : vcfFormat.getType();
+            }
+        }
+    }
     
-    private Map<String,String[]> parseGenotypes( String[] line, String[] format ) throws VCFException {
+    private Map<String,String[]> parseGenotypes() throws VCFException {
         
         Map<String,String[]>  genotypes = new HashMap<String,String[]>();
         
-        for ( int i = GENOTYPE_START; i < line.length; i++ ) {
+        for ( int i = GENOTYPE_START; i < tokenizer.getColumnCount(); i++ ) {
             
-            String[] genotype = line[i].split(GENOTYPE_SEPARATOR);
-            
-            if ( genotype.length != format.length) {
+            //If there are more samples on this row than there are row names defined, throw an exception.
+            if ( sampleIDs == null || i - GENOTYPE_START >= sampleIDs.length) {
                 throw new VCFException( VCFException.INVALID_SYNTAX, currentRow);
             }
-            
+
             //Make sure that all values match format definitions
-            for ( int j = 0; j < genotype.length; j++) {
-                
-                String[] genotypeValues = genotype[j].split(VALUE_SEPARATOR);
-                //If multiple values for one key are present, verify them individually.
-                for ( int k = 0; k < genotypeValues.length; k++) {
-                    if ( !validGenotypeFormat( format[j], genotypeValues[k]) ) {
-                        throw new VCFException( VCFException.VALUE_MISMATCH, currentRow, i);
-                    }                     
-                }
-                               
-            }
-            //If there are more samples on this row than there are row names defined, throw an exception.
-            if ( i -  GENOTYPE_START > sampleIDs.length) {
+            String[] genotype = tokenizer.getSampleValues(i, rowFormatTypes, currentRow);
+            
+            if ( genotype == null ) {
                 throw new VCFException( VCFException.INVALID_SYNTAX, currentRow);
             }
             
@@ -523,31 +536,6 @@ public class VCFReader {
         
     }
     
-    //Check if the genotype value has a format that matches it's definitions.
-    private boolean validGenotypeFormat( String id, String genotypeEntry) {
-        
-        VCFFormat format = this.format.get(id);
-        
-        if ( format == null ) {
-           return false;
-        }
-        
-        if ( format.getType().equals(VCFFormat.FLOAT)) {
-            return REGEXP_FLOAT.matcher(genotypeEntry).matches();
-        }
-        if ( format.getType().equals(VCFFormat.INTEGER)) {
-            return REGEXP_INTEGER.matcher(genotypeEntry).matches();
-        }
-        if ( format.getType().equals(VCFFormat.STRING) ) {
-            return REGEXP_STRING.matcher(genotypeEntry).matches();
-        }
-        if ( format.getType().equals(VCFFormat.CHAR)) {
-            return REGEXP_CHAR.matcher(genotypeEntry).matches();
-        }
-        
-        return true;
-    }
-    
     
     /**
      * Closes the file and free associated resources.
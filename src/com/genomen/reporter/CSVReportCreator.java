@@ -32,7 +32,7 @@ public class CSVReportCreator {
         }     
     }
     
-    private static void writeFile(ReportTable reportTable, String fileName) {
+    static void writeFile(ReportTable reportTable, String fileName) {
         
             File file = new File(fileName);
 
@@ -0,0 +1,43 @@
+package com.genomen.reporter;
+
+/**
+ * Writes a separate CSV file for each trait table of each sample, as <code>CSVReportCreator</code> does.
+ * @author ciszek
+ */
+public class CSVReportWriter implements ReportWriter {
+
+    private final String path;
+    private String name;
+
+    /**
+     * Constructs a writer placing the files in the given directory.
+     * @param p_path output directory
+     */
+    public CSVReportWriter( String p_path ) {
+        path = p_path;
+    }
+
+    @Override
+    public void startReport( String p_name ) {
+        name = p_name;
+    }
+
+    @Override
+    public void writeIndividualEntry( IndividualEntry individualEntry ) {
+
+        for ( ReportComponent component : individualEntry.getComponents() ) {
+            if ( component instanceof TraitTable ) {
+                TraitTable table = (TraitTable)component;
+                CSVReportCreator.writeFile( table, path + name + "_" + individualEntry.getIndividual().getId() + "_" + table.getTitle() + ".csv" );
+            }
+        }
+    }
+
+    @Override
+    public void endReport() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,54 @@
+package com.genomen.reporter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes each part of a report to several writers, so that all requested formats are written from a single pass over the samples.
+ * @author ciszek
+ */
+public class CompositeReportWriter implements ReportWriter {
+
+    private final List<ReportWriter> writers = new ArrayList<ReportWriter>();
+
+    /**
+     * Adds a writer.
+     * @param p_writer writer to be added
+     */
+    public void addWriter( ReportWriter p_writer ) {
+        writers.add(p_writer);
+    }
+
+    @Override
+    public void startReport( String name ) throws IOException {
+
+        for ( ReportWriter writer : writers ) {
+            writer.startReport(name);
+        }
+    }
+
+    @Override
+    public void writeIndividualEntry( IndividualEntry individualEntry ) throws IOException {
+
+        for ( ReportWriter writer : writers ) {
+            writer.writeIndividualEntry(individualEntry);
+        }
+    }
+
+    @Override
+    public void endReport() throws IOException {
+
+        for ( ReportWriter writer : writers ) {
+            writer.endReport();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        for ( ReportWriter writer : writers ) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.genomen.reporter;
+
+import com.genomen.core.Configuration;
+import com.genomen.utils.ResourceReleaser;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes a report as HTML. The XML of the report is passed as SAX events directly to the transformation
+ * with the configured XSLT file, so no intermediate XML file is written.
+ * @author ciszek
+ */
+public class HTMLReportWriter extends XMLReportWriter {
+
+    /**
+     * Constructs a writer placing the report in the given directory.
+     * @param p_path output directory
+     */
+    public HTMLReportWriter( String p_path ) {
+        super(p_path);
+    }
+
+    @Override
+    String getFileExtension() {
+        return ".html";
+    }
+
+    @Override
+    ReportXMLOutput createOutput( BufferedOutputStream outputStream ) throws IOException {
+
+        try {
+            return new SAXReportXMLOutput( XSLTTransformer.createTransformerHandler( Configuration.getConfiguration().getXSLTFilePath(), outputStream ), outputStream );
+        }
+        catch (IOException ex) {
+            ResourceReleaser.close(outputStream);
+            throw ex;
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package com.genomen.reporter;
 
 import com.genomen.core.AnalysisTask;
+import com.genomen.core.Configuration;
 import com.genomen.core.Sample;
+import com.genomen.metrics.ExecutionTrace;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
 
 /**
- * Creates analysis reports
+ * Creates analysis reports. The components of each sample are created concurrently on a bounded pool,
+ * and every pool thread uses reporter instances of its own. Samples appear in the report in the order of the task.
  * @author ciszek
  */
 public class ReportCreator {
 
     private static final String REPORTER_LIST_FILE_PATH = "config/Reporters.xml";
-    private static List<Reporter> reporters = new ReportersReader().getReporters(REPORTER_LIST_FILE_PATH);
+    private static final int MAX_CONCURRENT_SAMPLES = Math.max( 1, Configuration.getConfiguration().getMaxConcurrentReportSamples() );
+    private static final ThreadLocal<List<Reporter>> reporters = new ReporterFactory();
+    private static final ExecutorService reportExecutorService = Executors.newFixedThreadPool( MAX_CONCURRENT_SAMPLES, new ReportThreadFactory() );
 
     /**
      * Creates a report using all available reporters
@@ -20,22 +35,133 @@ public class ReportCreator {
      * @param name name of the report
      * @param language report language
      * @return analysis report
+     * @throws IllegalStateException if the components of a sample can not be created
      */
     public static Report createReport( AnalysisTask analysisTask, String name, String language ) {
 
         Report report = new Report(name);
         List<IndividualEntry> individualEntries = createIndividualEntries(analysisTask.getSamples());
+        List<Future<IndividualEntry>> futures = new ArrayList<Future<IndividualEntry>>();
 
         for ( int individualIndex = 0; individualIndex < individualEntries.size(); individualIndex++) {
-            report.addComponent(individualEntries.get(individualIndex));
-
-            for ( int reporterIndex = 0; reporterIndex < reporters.size(); reporterIndex++ ) {
-                reporters.get(reporterIndex).createReportComponent(analysisTask, individualEntries.get(individualIndex), language );
+            futures.add( reportExecutorService.submit( new IndividualEntryCallable( analysisTask, individualEntries.get(individualIndex), language ) ) );
+        }
+        try {
+            for ( int individualIndex = 0; individualIndex < individualEntries.size(); individualIndex++) {
+                futures.get(individualIndex).get();
+                report.addComponent(individualEntries.get(individualIndex));
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while creating the report", ex );
+        }
+        catch (ExecutionException ex) {
+            Logger.getLogger( ReportCreator.class ).error(ex.getCause());
+            throw new IllegalStateException( "Creating the report failed", ex.getCause() );
+        }
+        finally {
+            //Entries of the other samples are not needed after a failure.
+            for ( Future<IndividualEntry> future : futures ) {
+                future.cancel(true);
             }
         }
         return report;
     }
 
+    /**
+     * Writes a report using all available reporters. The entry of each sample is passed to the writer as soon as it is
+     * complete and is not retained afterwards. At most twice the number of report threads are in progress at a time.
+     * The writer is closed when the report has been written.
+     * @param analysisTask task on which results the report is based
+     * @param name name of the report
+     * @param language report language
+     * @param reportWriter writer of the report
+     * @return <code>true</code> if the report was written, <code>false</code> otherwise
+     */
+    public static boolean writeReport( AnalysisTask analysisTask, String name, String language, ReportWriter reportWriter ) {
+
+        List<Sample> individuals = analysisTask.getSamples();
+        LinkedList<Future<IndividualEntry>> futures = new LinkedList<Future<IndividualEntry>>();
+        int submitted = 0;
+
+        try {
+            reportWriter.startReport(name);
+
+            while ( submitted < individuals.size() || !futures.isEmpty() ) {
+
+                while ( submitted < individuals.size() && futures.size() < 2 * MAX_CONCURRENT_SAMPLES ) {
+                    IndividualEntry individualEntry = new IndividualEntry( individuals.get(submitted++) );
+                    futures.add( reportExecutorService.submit( new IndividualEntryCallable( analysisTask, individualEntry, language ) ) );
+                }
+                IndividualEntry individualEntry = waitFor( futures.removeFirst() );
+                if ( individualEntry == null ) {
+                    return false;
+                }
+                reportWriter.writeIndividualEntry(individualEntry);
+            }
+            reportWriter.endReport();
+            return true;
+        }
+        catch (IOException ex) {
+            Logger.getLogger( ReportCreator.class ).error(ex);
+            return false;
+        }
+        finally {
+            for ( Future<IndividualEntry> future : futures ) {
+                future.cancel(true);
+            }
+            reportWriter.close();
+        }
+    }
+
+    /**
+     * Writes a report that has already been created. The writer is closed when the report has been written.
+     * @param report report to be written
+     * @param reportWriter writer of the report
+     * @return <code>true</code> if the report was written, <code>false</code> otherwise
+     */
+    public static boolean writeReport( Report report, ReportWriter reportWriter ) {
+
+        try {
+            reportWriter.startReport( report.getName() );
+            for ( IndividualEntry individualEntry : report.getIndividualEntries() ) {
+                reportWriter.writeIndividualEntry(individualEntry);
+            }
+            reportWriter.endReport();
+            return true;
+        }
+        catch (IOException ex) {
+            Logger.getLogger( ReportCreator.class ).error(ex);
+            return false;
+        }
+        finally {
+            reportWriter.close();
+        }
+    }
+
+    /**
+     * Creates a writer for the requested report formats.
+     * @param formats names of the requested formats
+     * @param path output directory
+     * @return writer of the requested formats
+     */
+    public static ReportWriter createReportWriter( List<String> formats, String path ) {
+
+        CompositeReportWriter reportWriter = new CompositeReportWriter();
+
+        if ( formats.contains( ReportFormat.CSV.getName() ) ) {
+            reportWriter.addWriter( new CSVReportWriter(path) );
+        }
+        if ( formats.contains( ReportFormat.XML.getName() ) ) {
+            reportWriter.addWriter( new XMLReportWriter(path) );
+        }
+        if ( formats.contains( ReportFormat.HTML.getName() ) ) {
+            reportWriter.addWriter( new HTMLReportWriter(path) );
+        }
+        return reportWriter;
+    }
+
     private static List<IndividualEntry> createIndividualEntries( List<Sample> individuals ) {
 
         List<IndividualEntry> individualEntries = new LinkedList<IndividualEntry>();
@@ -46,4 +172,80 @@ public class ReportCreator {
         return individualEntries;
     }
 
+    //Waits for the components of a sample, or returns null if the wait fails.
+    private static IndividualEntry waitFor( Future<IndividualEntry> future ) {
+
+        try {
+            return future.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Logger.getLogger( ReportCreator.class ).debug(ex);
+        }
+        catch (ExecutionException ex) {
+            Logger.getLogger( ReportCreator.class ).error(ex.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Creates the components of a single sample with the reporters of the current thread.
+     */
+    private static class IndividualEntryCallable implements Callable<IndividualEntry> {
+
+        private final AnalysisTask analysisTask;
+        private final IndividualEntry individualEntry;
+        private final String language;
+
+        private IndividualEntryCallable( AnalysisTask p_analysisTask, IndividualEntry p_individualEntry, String p_language ) {
+            analysisTask = p_analysisTask;
+            individualEntry = p_individualEntry;
+            language = p_language;
+        }
+
+        @Override
+        public IndividualEntry call() {
+
+            List<Reporter> threadReporters = reporters.get();
+            for ( int reporterIndex = 0; reporterIndex < threadReporters.size(); reporterIndex++ ) {
+                Reporter reporter = threadReporters.get(reporterIndex);
+                ExecutionTrace.Span span = analysisTask.getTrace().begin( ExecutionTrace.CATEGORY_REPORT, reporter.getClass().getSimpleName() + " " + individualEntry.getIndividual().getId() );
+                //A failing reporter fails the whole report, which is reported by the waiting thread.
+                try {
+                    reporter.createReportComponent( analysisTask, individualEntry, language );
+                }
+                finally {
+                    span.end();
+                }
+            }
+            return individualEntry;
+        }
+    }
+
+    /**
+     * Gives each thread reporter instances of its own, as reporters are not required to be thread-safe.
+     */
+    private static class ReporterFactory extends ThreadLocal<List<Reporter>> {
+
+        @Override
+        protected List<Reporter> initialValue() {
+            return new ReportersReader().getReporters(REPORTER_LIST_FILE_PATH);
+        }
+    }
+
+    /**
+     * Creates daemon threads, so that an idle report pool does not keep the application running.
+     */
+    private static class ReportThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+
+            Thread thread = new Thread( runnable, "report-" + threadCount.incrementAndGet() );
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
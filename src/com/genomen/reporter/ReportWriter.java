@@ -0,0 +1,35 @@
+package com.genomen.reporter;
+
+import java.io.IOException;
+
+/**
+ * Writes a report one sample at a time, so that the entries of the samples already written can be released.
+ * @author ciszek
+ */
+public interface ReportWriter {
+
+    /**
+     * Starts a new report.
+     * @param name name of the report
+     * @throws IOException if the report can not be written
+     */
+    public abstract void startReport( String name ) throws IOException;
+
+    /**
+     * Writes the results of a sample.
+     * @param individualEntry results of a sample
+     * @throws IOException if the entry can not be written
+     */
+    public abstract void writeIndividualEntry( IndividualEntry individualEntry ) throws IOException;
+
+    /**
+     * Finishes the report.
+     * @throws IOException if the report can not be written
+     */
+    public abstract void endReport() throws IOException;
+
+    /**
+     * Releases the resources of this writer. Called also when writing the report fails.
+     */
+    public abstract void close();
+}
@@ -0,0 +1,24 @@
+package com.genomen.reporter;
+
+import java.io.IOException;
+
+/**
+ * Receives the XML of a report as a sequence of events. Attributes must directly follow the start of their element.
+ * @author ciszek
+ */
+interface ReportXMLOutput {
+
+    public abstract void startDocument() throws IOException;
+
+    public abstract void startElement( String name ) throws IOException;
+
+    public abstract void attribute( String name, String value ) throws IOException;
+
+    public abstract void characters( String text ) throws IOException;
+
+    public abstract void endElement() throws IOException;
+
+    public abstract void endDocument() throws IOException;
+
+    public abstract void close();
+}
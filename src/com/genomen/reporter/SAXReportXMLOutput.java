@@ -0,0 +1,114 @@
+package com.genomen.reporter;
+
+import com.genomen.utils.ResourceReleaser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Passes the XML of a report to a SAX <code>ContentHandler</code>, such as the handler of an XSLT transformation.
+ * The start of an element is held back until its attributes are known.
+ * @author ciszek
+ */
+class SAXReportXMLOutput implements ReportXMLOutput {
+
+    private final ContentHandler contentHandler;
+    private final Closeable target;
+    private final Deque<String> openElements = new ArrayDeque<String>();
+    private final AttributesImpl attributes = new AttributesImpl();
+    private String pendingElement = null;
+
+    /**
+     * Constructs an output for a content handler.
+     * @param p_contentHandler handler receiving the events
+     * @param p_target stream written by the handler, closed with this output
+     */
+    SAXReportXMLOutput( ContentHandler p_contentHandler, Closeable p_target ) {
+        contentHandler = p_contentHandler;
+        target = p_target;
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+
+        try {
+            contentHandler.startDocument();
+        }
+        catch (SAXException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void startElement( String name ) throws IOException {
+
+        flushPendingElement();
+        pendingElement = name;
+    }
+
+    @Override
+    public void attribute( String name, String value ) throws IOException {
+        attributes.addAttribute( "", name, name, "CDATA", value );
+    }
+
+    @Override
+    public void characters( String text ) throws IOException {
+
+        flushPendingElement();
+        try {
+            contentHandler.characters( text.toCharArray(), 0, text.length() );
+        }
+        catch (SAXException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void endElement() throws IOException {
+
+        flushPendingElement();
+        String name = openElements.pop();
+        try {
+            contentHandler.endElement( "", name, name );
+        }
+        catch (SAXException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+
+        try {
+            contentHandler.endDocument();
+        }
+        catch (SAXException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        ResourceReleaser.close(target);
+    }
+
+    private void flushPendingElement() throws IOException {
+
+        if ( pendingElement == null ) {
+            return;
+        }
+        try {
+            contentHandler.startElement( "", pendingElement, pendingElement, attributes );
+        }
+        catch (SAXException ex) {
+            throw new IOException(ex);
+        }
+        openElements.push(pendingElement);
+        pendingElement = null;
+        attributes.clear();
+    }
+}
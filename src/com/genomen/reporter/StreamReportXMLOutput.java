@@ -0,0 +1,114 @@
+package com.genomen.reporter;
+
+import com.genomen.utils.ResourceReleaser;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes the XML of a report to a stream through an <code>XMLStreamWriter</code>.
+ * @author ciszek
+ */
+class StreamReportXMLOutput implements ReportXMLOutput {
+
+    private static final String ENCODING = "UTF-8";
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    private final OutputStream outputStream;
+    private final XMLStreamWriter writer;
+
+    StreamReportXMLOutput( OutputStream p_outputStream ) throws IOException {
+
+        outputStream = p_outputStream;
+        try {
+            writer = outputFactory.createXMLStreamWriter( outputStream, ENCODING );
+        }
+        catch (XMLStreamException ex) {
+            ResourceReleaser.close(outputStream);
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+
+        try {
+            writer.writeStartDocument( ENCODING, "1.0" );
+            writer.writeCharacters("\n");
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void startElement( String name ) throws IOException {
+
+        try {
+            writer.writeStartElement(name);
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void attribute( String name, String value ) throws IOException {
+
+        try {
+            writer.writeAttribute( name, value );
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void characters( String text ) throws IOException {
+
+        try {
+            writer.writeCharacters(text);
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void endElement() throws IOException {
+
+        try {
+            writer.writeEndElement();
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+
+        try {
+            writer.writeEndDocument();
+            writer.flush();
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        try {
+            writer.close();
+        }
+        catch (XMLStreamException ex) {
+            Logger.getLogger( StreamReportXMLOutput.class ).debug(ex);
+        }
+        ResourceReleaser.close(outputStream);
+    }
+}
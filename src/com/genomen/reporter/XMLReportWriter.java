@@ -0,0 +1,191 @@
+package com.genomen.reporter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes a report as an XML document. The document has the same structure
+ * as the one written by <code>XMLReportCreator</code>, but each sample is written as soon as its results are available.
+ * @author ciszek
+ */
+public class XMLReportWriter implements ReportWriter {
+
+    private final String path;
+    private File file;
+    private ReportXMLOutput output;
+
+    /**
+     * Constructs a writer placing the report in the given directory.
+     * @param p_path output directory
+     */
+    public XMLReportWriter( String p_path ) {
+        path = p_path;
+    }
+
+    /**
+     * Gets the file into which the report is written.
+     * @return report file, or <code>null</code> if no report has been started
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void startReport( String name ) throws IOException {
+
+        file = new File( path + name + getFileExtension() );
+        if ( file.getParentFile() != null ) {
+            file.getParentFile().mkdirs();
+        }
+        output = createOutput( new BufferedOutputStream( new FileOutputStream(file) ) );
+
+        output.startDocument();
+        output.startElement("report");
+        output.attribute( "date", LocalDateTime.now().format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM)) );
+        output.characters("\n");
+    }
+
+    @Override
+    public void writeIndividualEntry( IndividualEntry individualEntry ) throws IOException {
+
+        output.startElement("individual");
+        writeElement( "id", individualEntry.getIndividual().getId() );
+
+        for ( ReportComponent component : individualEntry.getComponents() ) {
+            if ( component instanceof TraitTable ) {
+                writeTraitTable( (TraitTable)component );
+            }
+            else if ( component instanceof ReportTable ) {
+                writeTable( (ReportTable)component );
+            }
+            else {
+                Logger.getLogger( XMLReportWriter.class ).debug( "Unsupported report component " + component.getClass().getName() );
+            }
+        }
+        output.endElement();
+        output.characters("\n");
+    }
+
+    @Override
+    public void endReport() throws IOException {
+
+        output.endElement();
+        output.endDocument();
+        close();
+    }
+
+    @Override
+    public void close() {
+
+        if ( output != null ) {
+            output.close();
+            output = null;
+        }
+    }
+
+    /**
+     * Gets the extension of the report file.
+     * @return file extension including the dot
+     */
+    String getFileExtension() {
+        return ".xml";
+    }
+
+    /**
+     * Creates the output receiving the XML of the report.
+     * @param outputStream stream of the report file
+     * @return output writing the XML into the stream
+     * @throws IOException if the output can not be created
+     */
+    ReportXMLOutput createOutput( BufferedOutputStream outputStream ) throws IOException {
+        return new StreamReportXMLOutput(outputStream);
+    }
+
+    private void writeTraitTable( TraitTable traitTable ) throws IOException {
+
+        output.startElement("traitTable");
+        for ( TableRow row : traitTable.getRows() ) {
+            if ( row instanceof TraitEntry ) {
+                writeTraitEntry( (TraitEntry)row );
+            }
+        }
+        output.endElement();
+    }
+
+    private void writeTraitEntry( TraitEntry traitEntry ) throws IOException {
+
+        output.characters("\n");
+        output.startElement("traitEntry");
+        writeElement( "title", traitEntry.getTable().getTitle() );
+        writeElement( "shortDescription", traitEntry.getShortDescription() );
+        writeElement( "longDescription", traitEntry.getLongDescription() );
+        writeTable( traitEntry.getTable() );
+        output.endElement();
+    }
+
+    private void writeTable( ReportTable table ) throws IOException {
+
+        output.startElement("table");
+        output.startElement("headers");
+        for ( String header : table.getHeaderDescriptions() ) {
+            writeElement( "header", header );
+        }
+        output.endElement();
+
+        output.startElement("rows");
+        String[] headers = table.getHeaders();
+        for ( TableRow row : table.getRows() ) {
+            String[] values = row.getValues();
+            output.startElement("row");
+            for ( int column = 0; column < values.length; column++ ) {
+                writeElement( headers[column], values[column] );
+            }
+            output.endElement();
+        }
+        output.endElement();
+        output.endElement();
+    }
+
+    private void writeElement( String name, String content ) throws IOException {
+
+        output.startElement(name);
+        output.characters( toXMLText(content) );
+        output.endElement();
+    }
+
+    //Replaces characters that can not be presented in XML with a space. Most texts are returned as such.
+    private static String toXMLText( String text ) {
+
+        if ( text == null ) {
+            return "";
+        }
+        char[] characters = null;
+        for ( int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            boolean valid;
+            if ( Character.isHighSurrogate(c) ) {
+                valid = i + 1 < text.length() && Character.isLowSurrogate( text.charAt(i + 1) );
+                if ( valid ) {
+                    i++;
+                    continue;
+                }
+            }
+            else {
+                valid = c >= 0x20 ? !Character.isLowSurrogate(c) && c != 0xFFFE && c != 0xFFFF : c == '\t' || c == '\n' || c == '\r';
+            }
+            if ( !valid ) {
+                if ( characters == null ) {
+                    characters = text.toCharArray();
+                }
+                characters[i] = ' ';
+            }
+        }
+        return characters == null ? text : new String(characters);
+    }
+}
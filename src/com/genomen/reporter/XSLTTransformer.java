@@ -1,22 +1,32 @@
 package com.genomen.reporter;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 /**
- * Used to transform XML reports into HTML
+ * Used to transform XML reports into HTML. Each stylesheet is compiled once into <code>Templates</code>,
+ * which are shared by all threads and recompiled only when the stylesheet file changes.
  * @author ciszek
  */
 public class XSLTTransformer {
 
+    private static final Map<String, CompiledStylesheet> stylesheets = new ConcurrentHashMap<String, CompiledStylesheet>();
+
     /**
      * Transforms XML report into HTML
      * @param sourceXMLpath path of the report
@@ -24,13 +34,16 @@ public class XSLTTransformer {
      * @param outputPath path of the result
      */
     public static void transform( String sourceXMLpath, String XSLTpath, String outputPath ) {
-        try {
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer(new StreamSource(XSLTpath));
-            transformer.transform(new javax.xml.transform.stream.StreamSource(sourceXMLpath), new StreamResult(new FileOutputStream(outputPath)));
+
+        Templates templates = getTemplates(XSLTpath);
+        if ( templates == null ) {
+            return;
         }
-        catch (TransformerConfigurationException ex) {
-            Logger.getLogger(XSLTTransformer.class.getName()).log(Level.SEVERE, null, ex);
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(outputPath);
+            templates.newTransformer().transform(new StreamSource(sourceXMLpath), new StreamResult(outputStream));
         }
         catch (TransformerException ex) {
             Logger.getLogger(XSLTTransformer.class.getName()).log(Level.SEVERE, null, ex);
@@ -38,7 +51,85 @@ public class XSLTTransformer {
         catch (FileNotFoundException ex) {
             Logger.getLogger(XSLTTransformer.class.getName()).log(Level.SEVERE, null, ex);
         }
+        finally {
+            closeStream(outputStream);
+        }
+    }
+
+    /**
+     * Creates a SAX handler transforming the events it receives with a stylesheet and writing the result into a stream.
+     * @param XSLTpath path of the XSL file
+     * @param outputStream stream receiving the result
+     * @return handler of the transformation
+     * @throws IOException if the stylesheet can not be compiled or the transformation can not be created
+     */
+    public static TransformerHandler createTransformerHandler( String XSLTpath, OutputStream outputStream ) throws IOException {
+
+        Templates templates = getTemplates(XSLTpath);
+        TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        if ( templates == null || !transformerFactory.getFeature(SAXTransformerFactory.FEATURE) ) {
+            throw new IOException("Unable to create a transformation with " + XSLTpath);
+        }
+
+        try {
+            TransformerHandler transformerHandler = ((SAXTransformerFactory)transformerFactory).newTransformerHandler(templates);
+            transformerHandler.setResult( new StreamResult(outputStream) );
+            return transformerHandler;
+        }
+        catch (TransformerConfigurationException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Gets the compiled form of a stylesheet, compiling it if it has not been compiled or the file has changed.
+     * @param XSLTpath path of the XSL file
+     * @return compiled stylesheet, or <code>null</code> if the stylesheet can not be compiled
+     */
+    public static Templates getTemplates( String XSLTpath ) {
+
+        long lastModified = new File(XSLTpath).lastModified();
+        CompiledStylesheet stylesheet = stylesheets.get(XSLTpath);
+        if ( stylesheet != null && stylesheet.lastModified == lastModified ) {
+            return stylesheet.templates;
+        }
+
+        try {
+            Templates templates = TransformerFactory.newInstance().newTemplates(new StreamSource(XSLTpath));
+            stylesheets.put( XSLTpath, new CompiledStylesheet(templates, lastModified) );
+            return templates;
+        }
+        catch (TransformerConfigurationException ex) {
+            Logger.getLogger(XSLTTransformer.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
     }
 
+    private static void closeStream( OutputStream outputStream ) {
+
+        if ( outputStream == null ) {
+            return;
+        }
+        try {
+            outputStream.close();
+        }
+        catch (IOException ex) {
+            Logger.getLogger(XSLTTransformer.class.getName()).log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * Compiled stylesheet and the modification time of the file it was compiled from.
+     */
+    private static class CompiledStylesheet {
+
+        private final Templates templates;
+        private final long lastModified;
+
+        private CompiledStylesheet( Templates p_templates, long p_lastModified ) {
+            templates = p_templates;
+            lastModified = p_lastModified;
+        }
+    }
 
 }
@@ -0,0 +1,177 @@
+package com.genomen.scripts;
+
+import com.genomen.entities.AlleleCodes;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled allele specification of a rule, such as <code>"A/G"</code>, <code>"N/T"</code> or an indel. A genotype
+ * matches when each of its alleles matches one of the alleles of the specification, where <code>N</code> stands for
+ * any word character, and at least as many alleles match as the specification has. Alleles consisting of letters,
+ * digits and dashes are compared character by character, others are compiled into a regular expression once.
+ * The outcome for each genotype is remembered by its allele code, so repeated comparisons are array lookups.
+ * Matchers are shared by all rules and threads.
+ * @author ciszek
+ */
+public final class AlleleMatcher {
+
+    private static final String SEPARATOR = "/";
+    private static final byte UNKNOWN = 0;
+    private static final byte NO_MATCH = 1;
+    private static final byte MATCH = 2;
+    private static final int MAX_CACHED_MATCHERS = 10000;
+
+    private static final ConcurrentHashMap<String, AlleleMatcher> matchers = new ConcurrentHashMap<String, AlleleMatcher>();
+
+    private final AllelePattern[] ruleAlleles;
+    //Outcomes by allele code of the genotype
+    private volatile byte[] outcomes = new byte[0];
+
+    /**
+     * Gets the matcher of an allele specification, compiling it on first use.
+     * @param allele allele specification of a rule
+     * @return matcher of the specification
+     */
+    public static AlleleMatcher getMatcher( String allele ) {
+
+        AlleleMatcher matcher = matchers.get(allele);
+        if ( matcher == null ) {
+            matcher = new AlleleMatcher(allele);
+            if ( matchers.size() < MAX_CACHED_MATCHERS ) {
+                AlleleMatcher previous = matchers.putIfAbsent( allele, matcher );
+                if ( previous != null ) {
+                    matcher = previous;
+                }
+            }
+        }
+        return matcher;
+    }
+
+    private AlleleMatcher( String allele ) {
+
+        String[] alleles = allele.split(SEPARATOR);
+        ruleAlleles = new AllelePattern[alleles.length];
+        for ( int i = 0; i < alleles.length; i++ ) {
+            ruleAlleles[i] = new AllelePattern( alleles[i] );
+        }
+    }
+
+    /**
+     * Compares a genotype to the specification.
+     * @param genotype genotype, such as <code>"A/G"</code>
+     * @return <code>true</code> if the genotype matches, <code>false</code> otherwise
+     */
+    public boolean matches( String genotype ) {
+
+        int code = AlleleCodes.getCode(genotype);
+        if ( code == AlleleCodes.NO_CODE ) {
+            return compare(genotype);
+        }
+
+        byte[] known = outcomes;
+        if ( code < known.length && known[code] != UNKNOWN ) {
+            return known[code] == MATCH;
+        }
+        boolean matches = compare(genotype);
+        remember( code, matches );
+        return matches;
+    }
+
+    private boolean compare( String genotype ) {
+
+        String[] genotypeAlleles = genotype.split(SEPARATOR);
+        int matchCount = 0;
+        for ( int genotypeIndex = 0; genotypeIndex < genotypeAlleles.length; genotypeIndex++ ) {
+
+            for ( int ruleIndex = 0; ruleIndex < ruleAlleles.length; ruleIndex++ ) {
+                if ( ruleAlleles[ruleIndex].matches( genotypeAlleles[genotypeIndex] ) ) {
+                    matchCount++;
+                    break;
+                }
+            }
+        }
+        return matchCount >= ruleAlleles.length;
+    }
+
+    private synchronized void remember( int code, boolean matches ) {
+
+        byte[] known = outcomes;
+        if ( code >= known.length ) {
+            known = Arrays.copyOf( known, Math.max( code + 1, known.length * 2 ) );
+        }
+        else {
+            known = known.clone();
+        }
+        known[code] = matches ? MATCH : NO_MATCH;
+        outcomes = known;
+    }
+
+    /**
+     * A single allele of the specification.
+     */
+    private static class AllelePattern {
+
+        private final String allele;
+        private final boolean literal;
+        private final Pattern pattern;
+        private final PatternSyntaxException syntaxException;
+
+        private AllelePattern( String p_allele ) {
+
+            allele = p_allele;
+            literal = isLiteral(allele);
+
+            Pattern compiled = null;
+            PatternSyntaxException exception = null;
+            if ( !literal ) {
+                try {
+                    compiled = Pattern.compile( allele.replaceAll( "N", "\\\\w" ) );
+                }
+                catch (PatternSyntaxException ex) {
+                    //Reported when the allele is used, as before the allele was compiled.
+                    exception = ex;
+                }
+            }
+            pattern = compiled;
+            syntaxException = exception;
+        }
+
+        private boolean matches( String genotypeAllele ) {
+
+            if ( syntaxException != null ) {
+                throw syntaxException;
+            }
+            if ( !literal ) {
+                return pattern.matcher(genotypeAllele).matches();
+            }
+            if ( genotypeAllele.length() != allele.length() ) {
+                return false;
+            }
+            for ( int i = 0; i < allele.length(); i++ ) {
+                char c = genotypeAllele.charAt(i);
+                if ( allele.charAt(i) == 'N' ? !isWordCharacter(c) : allele.charAt(i) != c ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //Letters, digits and dashes have no special meaning in a regular expression.
+        private static boolean isLiteral( String allele ) {
+
+            for ( int i = 0; i < allele.length(); i++ ) {
+                char c = allele.charAt(i);
+                if ( !isWordCharacter(c) && c != '-' ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isWordCharacter( char c ) {
+            return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || c == '_';
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.genomen.scripts;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.apache.log4j.Logger;
+
+/**
+ * Caches compiled rule logic so that each rule is compiled only once and shared across samples and tasks.
+ * Entries are keyed by rule id and the hash of the rule logic, so a rule whose logic has changed is recompiled.
+ * Rules are compiled with an engine of the cache, as a compiled script keeps a reference to the engine that compiled
+ * it and the engines of executors hold the executor and its task.
+ * @author ciszek
+ */
+public class CompiledRuleCache {
+
+    private static final CompiledRuleCache instance = new CompiledRuleCache();
+
+    private final ConcurrentHashMap<String, Entry> scripts = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private ScriptEngine compiler = null;
+    private boolean compilerStarted = false;
+
+    /**
+     * Returns the singleton instance of CompiledRuleCache
+     * @return instance of CompiledRuleCache
+     */
+    public static CompiledRuleCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the compiled logic of a rule, compiling it if it is not cached. The script is evaluated in the context of
+     * the engine running it.
+     * @param ruleID id of the rule
+     * @param logic logic of the rule
+     * @return compiled logic, or <code>null</code> if the script engine can not compile scripts
+     * @throws ScriptException if the logic could not be compiled
+     */
+    public CompiledScript getCompiledScript( String ruleID, String logic ) throws ScriptException {
+
+        int logicHash = logic.hashCode();
+        Entry entry = scripts.get(ruleID);
+
+        if ( entry != null && entry.logicHash == logicHash && entry.logic.equals(logic) ) {
+            hitCount.incrementAndGet();
+            return entry.script;
+        }
+
+        ScriptEngine engine = getCompiler();
+        if ( engine == null ) {
+            return null;
+        }
+        missCount.incrementAndGet();
+        CompiledScript script;
+        synchronized ( engine ) {
+            try {
+                script = ((Compilable)engine).compile(logic);
+            }
+            finally {
+                engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+            }
+        }
+        scripts.put(ruleID, new Entry(logicHash, logic, script));
+
+        return script;
+    }
+
+    //Starts the compiling engine on first use.
+    private synchronized ScriptEngine getCompiler() {
+
+        if ( !compilerStarted ) {
+            compilerStarted = true;
+            ScriptEngine engine = new ScriptEngineManager().getEngineByName("jython");
+            if ( engine instanceof Compilable ) {
+                compiler = engine;
+            }
+            else {
+                Logger.getLogger( CompiledRuleCache.class ).error("Jython script engine can not compile rules");
+            }
+        }
+        return compiler;
+    }
+
+    /**
+     * Removes all compiled rules. Must be called when the rules in the database are changed.
+     */
+    public void invalidate() {
+        scripts.clear();
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of requests that required compilation.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of compiled rules in the cache.
+     * @return number of cached rules
+     */
+    public int size() {
+        return scripts.size();
+    }
+
+    private static class Entry {
+
+        private final int logicHash;
+        private final String logic;
+        private final CompiledScript script;
+
+        private Entry( int p_logicHash, String p_logic, CompiledScript p_script ) {
+            logicHash = p_logicHash;
+            logic = p_logic;
+            script = p_script;
+        }
+    }
+}
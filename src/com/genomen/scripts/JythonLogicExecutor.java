@@ -1,46 +1,112 @@
 package com.genomen.scripts;
 
 import com.genomen.core.AnalysisTask;
+import com.genomen.core.Configuration;
 import com.genomen.entities.DataEntity;
 import com.genomen.entities.DataType;
 import com.genomen.entities.DataTypeManager;
+import com.genomen.entities.GenotypeIndex;
 import com.genomen.core.Sample;
 import com.genomen.analyses.snp.Rule;
 import com.genomen.dao.DAOFactory;
 import com.genomen.dao.RuleDAO;
+import com.genomen.metrics.LatencyHistogram;
+import com.genomen.metrics.Metrics;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import org.apache.log4j.Logger;
 
 /**
- * Executes analysis rules presented as jython scripts
+ * Executes analysis rules presented as jython scripts. Rules that <code>RuleProgram</code> can parse are evaluated
+ * without the script engine when the native rule engine is configured, and the script engine is started only when
+ * a rule requires it. Rules referred to by other rules are executed at most once per sample, and rules referring
+ * to themselves are reported as errors.
  * @author ciszek
  */
 public class JythonLogicExecutor {
 
+    public static final int JYTHON_ENGINE = 0;
+    public static final int NATIVE_ENGINE = 1;
+
+    private static final String RESULT_EXPRESSION = "result.getResult()";
+    private static final boolean nativeEngine = Configuration.getConfiguration().getRuleEngine() == NATIVE_ENGINE;
+    //Durations of rule evaluations, including the rules they refer to.
+    private static final LatencyHistogram JYTHON_LATENCY = Metrics.getHistogram( "RuleEvaluation", "Jython" );
+    private static final LatencyHistogram NATIVE_LATENCY = Metrics.getHistogram( "RuleEvaluation", "Native" );
+
     private AnalysisTask analysisTask;
-    private ScriptEngine scriptEngine;
+    private ScriptEngine scriptEngine = null;
+    private boolean scriptEngineStarted = false;
+    private CompiledScript resultScript = null;
+
+    //Rules by id, filled from the database on demand if no rules were given.
+    private final Map<String, Rule> rules;
+    private final boolean loadRules;
+    //Results of the rules referred to by other rules, for the sample of memoSampleID only.
+    private final Map<String, LogicResult> memo = new HashMap<String, LogicResult>();
+    private String memoSampleID = null;
+    //Ids of the referred rules currently being executed, outermost first.
+    private final List<String> ruleStack = new ArrayList<String>();
 
     /**
-     * Constructs a logic executor for the given analysis task
+     * Constructs a logic executor for the given analysis task. Rules referred to by other rules are read from the database.
      * @param p_analysisTask task on which the executor is to be used
      */
     public JythonLogicExecutor( AnalysisTask p_analysisTask ) {
+        this( p_analysisTask, new HashMap<String, Rule>(), true );
+    }
+
+    /**
+     * Constructs a logic executor for the given analysis task.
+     * @param p_analysisTask task on which the executor is to be used
+     * @param p_rules all rules that can be referred to, keyed by id. The map is not modified and may be shared between executors.
+     */
+    public JythonLogicExecutor( AnalysisTask p_analysisTask, Map<String, Rule> p_rules ) {
+        this( p_analysisTask, p_rules, false );
+    }
+
+    private JythonLogicExecutor( AnalysisTask p_analysisTask, Map<String, Rule> p_rules, boolean p_loadRules ) {
 
         analysisTask = p_analysisTask;
+        rules = p_rules;
+        loadRules = p_loadRules;
+    }
+
+    //Starts the script engine on first use.
+    private ScriptEngine getScriptEngine() {
+
+        if ( scriptEngineStarted ) {
+            return scriptEngine;
+        }
+        scriptEngineStarted = true;
+
         ScriptEngineManager manager = new ScriptEngineManager ();
         scriptEngine = manager.getEngineByName ("jython");
+        if ( scriptEngine == null ) {
+            Logger.getLogger( JythonLogicExecutor.class ).error("Jython script engine is not available");
+            return null;
+        }
         String script = JythonBaseScript.getInstance().getBaseScript();
 
         try {
             scriptEngine.put("jythonLogicExecutor", this );
             scriptEngine.eval(script);
+            if ( scriptEngine instanceof Compilable ) {
+                resultScript = ((Compilable)scriptEngine).compile(RESULT_EXPRESSION);
+            }
         }
         catch (ScriptException ex) {
             Logger.getLogger( JythonLogicExecutor.class ).error(ex);
         }
+        return scriptEngine;
     }
 
     /**
@@ -60,17 +126,28 @@ public class JythonLogicExecutor {
         LogicResult result = new LogicResult();
         result.setType(LogicResult.BOOLEAN);
 
-        DataEntity dataEntity = analysisTask.getData( dataType, individual.getId(), dataAttributeID, dataAttributeValue );
-
+        GenotypeIndex genotypeIndex = null;
+        if ( GenotypeIndex.isIndexed(type, dataAttributeID, attribute) ) {
+            genotypeIndex = analysisTask.getGenotypeIndex( individual.getId() );
+        }
 
-        if ( dataEntity == null ) {
-            result.addMissingGenotype(dataAttributeValue);
-            result.setResult(true);
-            result.setValue(value);
-            result.setUnresolvable(true);
+        if ( genotypeIndex != null ) {
+            if ( !genotypeIndex.contains(dataAttributeValue) ) {
+                setMissing(result, dataAttributeValue, value);
+            }
+            else {
+                result.setValue(genotypeIndex.get(dataAttributeValue));
+            }
         }
         else {
-            result.setValue(dataEntity.getDataEntityAttribute(attribute).getString());
+            DataEntity dataEntity = analysisTask.getData( dataType, individual.getId(), dataAttributeID, dataAttributeValue );
+
+            if ( dataEntity == null ) {
+                setMissing(result, dataAttributeValue, value);
+            }
+            else {
+                result.setValue(dataEntity.getDataEntityAttribute(attribute).getString());
+            }
         }
 
         result.compareToAllele(value);
@@ -78,27 +155,138 @@ public class JythonLogicExecutor {
         return result;
     }
     
+    private void setMissing( LogicResult result, String dataAttributeValue, String value ) {
+        result.addMissingGenotype(dataAttributeValue);
+        result.setResult(true);
+        result.setValue(value);
+        result.setUnresolvable(true);
+    }
+
     /**
-     * Executes a rule on an individual
+     * Executes a rule referred to by another rule on an individual. The result is computed once per sample
+     * and a copy of it is returned, as the calling rule may modify it.
      * @param individual individual
      * @param id rule id
-     * @return result of rule evaluation
+     * @return result of rule evaluation, or <code>null</code> if the rule does not exist or can not be executed
+     * @throws IllegalStateException if the rule refers to itself directly or through other rules
      */
     public LogicResult executeRule( Sample individual, String id ) {
 
-        RuleDAO ruleDAO = DAOFactory.getDAOFactory().getRuleDAO();
-        Rule rule = ruleDAO.getRule(id);
-        LogicResult result = null;
+        if ( !individual.getId().equals(memoSampleID) ) {
+            memo.clear();
+            memoSampleID = individual.getId();
+        }
+
+        LogicResult result = memo.get(id);
+        if ( result != null ) {
+            return result.copy();
+        }
 
+        if ( ruleStack.contains(id) ) {
+            List<String> cycle = new ArrayList<String>( ruleStack.subList( ruleStack.indexOf(id), ruleStack.size() ) );
+            cycle.add(id);
+            throw new IllegalStateException( "Recursive rule reference " + cycle );
+        }
+
+        Rule rule = getRule(id);
         if ( rule == null ) {
+            return null;
+        }
 
-            return result;
+        //The calling rule continues with its own bindings after the referred rule has been executed.
+        ScriptEngine callerEngine = scriptEngine;
+        Object defaultInterestLevel = callerEngine != null ? callerEngine.get("defaultInterestLevel") : null;
+        ruleStack.add(id);
+        try {
+            result = execute(rule, individual);
+        }
+        finally {
+            ruleStack.remove( ruleStack.size() - 1 );
+            if ( callerEngine != null ) {
+                callerEngine.put("defaultInterestLevel", defaultInterestLevel );
+                callerEngine.put("individual", individual );
+            }
         }
 
-        result = execute(rule.getLogic(), individual, rule.getInterestLevel());
+        if ( result == null ) {
+            return null;
+        }
+        memo.put( id, result );
+        return result.copy();
+    }
+
+    private Rule getRule( String id ) {
+
+        Rule rule = rules.get(id);
+        if ( rule == null && loadRules ) {
+            RuleDAO ruleDAO = DAOFactory.getDAOFactory().getRuleDAO();
+            rule = ruleDAO.getRule(id);
+            if ( rule != null ) {
+                rules.put( id, rule );
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * Applies a rule to an individual. The rule logic is parsed once and cached in <code>RuleProgramCache</code>
+     * or, if it has to be run by the script engine, compiled once and cached in <code>CompiledRuleCache</code>.
+     * @param rule the rule to be applied
+     * @param individual an individual to whom the rule is applied
+     * @return results of the decision rule
+     */
+    public LogicResult execute( Rule rule, Sample individual ) {
+
+        if ( nativeEngine ) {
+            RuleProgram program = RuleProgramCache.getInstance().getProgram( rule.getId(), rule.getLogic() );
+            if ( program != null ) {
+                long start = System.nanoTime();
+                try {
+                    return program.evaluate( this, individual, rule.getInterestLevel() );
+                }
+                catch (RuleEvaluationException ex) {
+                    Logger.getLogger( JythonLogicExecutor.class ).error( "Rule " + rule.getId() + ": " + ex.getMessage() );
+                    return null;
+                }
+                finally {
+                    NATIVE_LATENCY.recordSince(start);
+                }
+            }
+        }
+
+        ScriptEngine scriptEngine = getScriptEngine();
+        if ( scriptEngine == null ) {
+            return null;
+        }
+        if ( !(scriptEngine instanceof Compilable) ) {
+            return execute(rule.getLogic(), individual, rule.getInterestLevel());
+        }
+
+        LogicResult result = null;
+
+        try {
+            CompiledScript script = CompiledRuleCache.getInstance().getCompiledScript(rule.getId(), rule.getLogic());
+            if ( script == null ) {
+                return execute(rule.getLogic(), individual, rule.getInterestLevel());
+            }
+            scriptEngine.put("defaultInterestLevel", rule.getInterestLevel() );
+            scriptEngine.put("individual", individual );
+            //Compiled rules may be shared between engines, so they are always evaluated in the context of this engine.
+            long start = System.nanoTime();
+            try {
+                script.eval(scriptEngine.getContext());
+                result = getResult();
+            }
+            finally {
+                JYTHON_LATENCY.recordSince(start);
+            }
+        }
+        catch (ScriptException ex) {
+            Logger.getLogger( JythonLogicExecutor.class ).error(ex);
+        }
 
         return result;
-    }    
+    }
 
     /**
      * Applies the a rule to an individual
@@ -110,13 +298,22 @@ public class JythonLogicExecutor {
     public LogicResult execute(String logic, Sample individual, int defaultInterestLevel ) {
 
         LogicResult result = null;
+        ScriptEngine scriptEngine = getScriptEngine();
+        if ( scriptEngine == null ) {
+            return result;
+        }
 
         try {
             scriptEngine.put("defaultInterestLevel", defaultInterestLevel );
             scriptEngine.put("individual", individual );
-            scriptEngine.eval(logic);
-            Object object = scriptEngine.eval("result.getResult()");
-            result = (LogicResult)object;
+            long start = System.nanoTime();
+            try {
+                scriptEngine.eval(logic);
+                result = getResult();
+            }
+            finally {
+                JYTHON_LATENCY.recordSince(start);
+            }
         }
         catch (ScriptException ex) {
             Logger.getLogger( JythonLogicExecutor.class ).error(ex);
@@ -125,5 +322,17 @@ public class JythonLogicExecutor {
         return result;
     }
 
+    private LogicResult getResult() throws ScriptException {
+
+        Object object;
+        if ( resultScript != null ) {
+            object = resultScript.eval(scriptEngine.getContext());
+        }
+        else {
+            object = scriptEngine.eval(RESULT_EXPRESSION);
+        }
+        return (LogicResult)object;
+    }
+
 
 }
@@ -177,6 +177,26 @@ public class LogicResult {
         unresolvable = p_unresolved;
     }
     
+    /**
+     * Creates a copy of this result. The copy can be modified without affecting this result,
+     * but the associated results are shared.
+     * @return copy of this result
+     */
+    public LogicResult copy() {
+
+        LogicResult copy = new LogicResult();
+        copy.missingGenotypes.addAll(missingGenotypes);
+        copy.missingPhenotypes.addAll(missingPhenotypes);
+        copy.associatedResults.addAll(associatedResults);
+        copy.result = result;
+        copy.value = value;
+        copy.type = type;
+        copy.note = note;
+        copy.interestLevel = interestLevel;
+        copy.unresolvable = unresolvable;
+        return copy;
+    }
+
     public void merge( LogicResult logicResult ) {
 
         addMissingGenotypes( logicResult.getMissingGenotypes() );
@@ -251,52 +271,28 @@ public class LogicResult {
         }
     }
 
+    /**
+     * Compares the genotype held as the value of this result to an allele specification of a rule.
+     * @param allele allele specification, such as "A/G" or "N/T"
+     */
     public void compareToAllele( String allele ) {
+        compareToAllele( AlleleMatcher.getMatcher(allele) );
+    }
 
-        boolean comparisonResult = false;
-
-        String[] genotypeAlleles = this.getValue().split("/");
-        String[] ruleAlleles = allele.split("/");
-        int matchCount = 0;
-        for ( int genotypeIndex = 0; genotypeIndex < genotypeAlleles.length; genotypeIndex++ ) {
-
-            for ( int ruleIndex = 0; ruleIndex < ruleAlleles.length; ruleIndex++ ) {
-                if ( genotypeAlleles[genotypeIndex].matches(ruleAlleles[ruleIndex].replaceAll("N", "\\\\w")) ) {
-                    matchCount++;
-                    break;
-                }
-            }
-        }
-        if ( matchCount >= ruleAlleles.length ) {
-           comparisonResult =  true;
-        }
+    /**
+     * Compares the genotype held as the value of this result to a compiled allele specification.
+     * @param alleleMatcher compiled allele specification
+     */
+    public void compareToAllele( AlleleMatcher alleleMatcher ) {
 
-        this.setResult(comparisonResult);
+        this.setResult( alleleMatcher.matches( this.getValue() ) );
         this.setType( LogicResult.BOOLEAN );
         this.setValue(0);
     }
 
     private void compareAlleles(  LogicResult p_logicResult ) {
 
-        boolean comparisonResult = false;
-
-        String[] genotypeAlleles = this.getValue().split("/");
-        String[] ruleAlleles = p_logicResult.getValue().split("/");
-        int matchCount = 0;
-        for ( int genotypeIndex = 0; genotypeIndex < genotypeAlleles.length; genotypeIndex++ ) {
-
-            for ( int ruleIndex = 0; ruleIndex < ruleAlleles.length; ruleIndex++ ) {
-                if ( genotypeAlleles[genotypeIndex].matches(ruleAlleles[ruleIndex].replaceAll("N", "\\\\w")) ) {
-                    matchCount++;
-                    break;
-                }
-            }
-        }
-        if ( matchCount >= ruleAlleles.length ) {
-           comparisonResult =  true;
-        }
-
-        this.setResult(comparisonResult);
+        this.setResult( AlleleMatcher.getMatcher( p_logicResult.getValue() ).matches( this.getValue() ) );
         merge(p_logicResult);
         this.setType( LogicResult.BOOLEAN );
         this.setValue(0);
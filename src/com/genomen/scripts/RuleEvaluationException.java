@@ -0,0 +1,18 @@
+package com.genomen.scripts;
+
+/**
+ * Thrown when the evaluation of a <code>RuleProgram</code> fails, as a script would fail in the script engine.
+ * @author ciszek
+ */
+public class RuleEvaluationException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public RuleEvaluationException( String message ) {
+        super(message);
+    }
+
+    public RuleEvaluationException( Throwable cause ) {
+        super(cause);
+    }
+}
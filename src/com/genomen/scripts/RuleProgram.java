@@ -0,0 +1,871 @@
+package com.genomen.scripts;
+
+import com.genomen.core.Sample;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rule logic parsed for evaluation without a script engine. Covers the rule language of the base script: calls of
+ * GENO, RULE, RESULT, SET_INTEREST, ACCEPT_RESULT and ACCEPT_RESULT_IF_ATLEAST_ONE_NON_MISSING_VALUE combined with the
+ * operators of intermediate results, one call per line. Logic using any other Python construct is rejected by
+ * <code>parse</code>. Programs are immutable and can be evaluated by several threads at the same time.
+ * @author ciszek
+ */
+public final class RuleProgram {
+
+    private static final String VARIANT_TYPE = "VARIANT";
+    private static final String VARIANT_ID = "VARIANT_ID";
+    private static final String ALLELE = "ALLELE";
+
+    private final List<Expression> statements;
+
+    private RuleProgram( List<Expression> p_statements ) {
+        statements = Collections.unmodifiableList(p_statements);
+    }
+
+    /**
+     * Parses rule logic.
+     * @param logic logic of a rule
+     * @return parsed logic
+     * @throws RuleSyntaxException if the logic uses constructs that are not supported
+     */
+    public static RuleProgram parse( String logic ) throws RuleSyntaxException {
+        return new RuleProgram( new Parser( new Tokenizer(logic).tokenize() ).parseProgram() );
+    }
+
+    /**
+     * Evaluates the rule for an individual.
+     * @param executor executor used for data access and for the rules referred to
+     * @param individual individual to whom the rule is applied
+     * @param defaultInterestLevel default interest level of the rule
+     * @return result of the rule
+     * @throws RuleEvaluationException if the evaluation fails
+     */
+    public LogicResult evaluate( JythonLogicExecutor executor, Sample individual, double defaultInterestLevel ) throws RuleEvaluationException {
+
+        Evaluation evaluation = new Evaluation( executor, individual, defaultInterestLevel );
+        try {
+            for ( Expression statement : statements ) {
+                statement.evaluate(evaluation);
+            }
+        }
+        catch (RuntimeException ex) {
+            throw new RuleEvaluationException(ex);
+        }
+        return evaluation.result;
+    }
+
+    /**
+     * Gets the statements of a program consisting only of <code>RESULT(GENO("id", "allele"), ...)</code> calls with
+     * literal arguments. The result of such a program depends only on the genotypes it refers to, so it can be
+     * evaluated for a whole cohort at once.
+     * @return the statements in order, or <code>null</code> if the program contains other statements
+     */
+    public List<GenotypeResult> getGenotypeResults() {
+
+        List<GenotypeResult> genotypeResults = new ArrayList<GenotypeResult>();
+
+        for ( Expression statement : statements ) {
+            if ( !isCall( statement, Function.RESULT ) ) {
+                return null;
+            }
+            Expression[] resultArguments = ((Call)statement).arguments;
+            if ( !isCall( resultArguments[0], Function.GENO ) ) {
+                return null;
+            }
+            Expression[] genotypeArguments = ((Call)resultArguments[0]).arguments;
+            Object name = getConstant( genotypeArguments[0] );
+            Object allele = getConstant( genotypeArguments[1] );
+            Object alleles = getConstant( genotypeArguments[2] );
+            Object risk = getConstant( genotypeArguments[3] );
+
+            if ( !(name instanceof String) || !(allele instanceof String) || !(alleles instanceof List) || !(risk instanceof List)
+                    || ( !((List<?>)alleles).isEmpty() && !((List<?>)risk).isEmpty() ) ) {
+                return null;
+            }
+            for ( int i = 1; i < resultArguments.length; i++ ) {
+                if ( !(resultArguments[i] instanceof Constant) && !(resultArguments[i] instanceof DefaultInterestLevel) ) {
+                    return null;
+                }
+            }
+            genotypeResults.add( new GenotypeResult( (String)name, (String)allele, resultArguments ) );
+        }
+        return genotypeResults.isEmpty() ? null : genotypeResults;
+    }
+
+    private static boolean isCall( Expression expression, Function function ) {
+        return expression instanceof Call && ((Call)expression).function == function;
+    }
+
+    private static Object getConstant( Expression expression ) {
+        return expression instanceof Constant ? ((Constant)expression).value : null;
+    }
+
+    /**
+     * A <code>RESULT(GENO("id", "allele"), ...)</code> statement with literal arguments.
+     */
+    public static final class GenotypeResult {
+
+        private final String variantID;
+        private final String allele;
+        private final Expression[] resultArguments;
+
+        private GenotypeResult( String p_variantID, String p_allele, Expression[] p_resultArguments ) {
+            variantID = p_variantID;
+            allele = p_allele;
+            resultArguments = p_resultArguments;
+        }
+
+        /**
+         * Gets the id of the variant compared.
+         * @return variant id
+         */
+        public String getVariantID() {
+            return variantID;
+        }
+
+        /**
+         * Gets the allele the genotype is compared to.
+         * @return allele
+         */
+        public String getAllele() {
+            return allele;
+        }
+
+        /**
+         * Evaluates the statement for a genotype comparison whose outcome is already known. The result is the same
+         * as the one the statement gives for a sample with that outcome.
+         * @param matches outcome of the comparison
+         * @param missing <code>true</code> if the sample has no genotype for the variant
+         * @param defaultInterestLevel default interest level of the rule
+         * @return result of the statement
+         * @throws RuleEvaluationException if the arguments of the statement are not valid for the outcome
+         */
+        public LogicResult evaluate( boolean matches, boolean missing, double defaultInterestLevel ) throws RuleEvaluationException {
+
+            //The same result compareToData and GENO give for the comparison.
+            LogicResult genotypeResult = new LogicResult();
+            genotypeResult.setResult(matches);
+            genotypeResult.setValue(0);
+            genotypeResult.setType(LogicResult.ALLELE);
+            if ( missing ) {
+                genotypeResult.addMissingGenotype(variantID);
+                genotypeResult.setUnresolvable(true);
+            }
+
+            Evaluation evaluation = new Evaluation( null, null, defaultInterestLevel );
+            Object[] values = new Object[resultArguments.length];
+            for ( int i = 1; i < resultArguments.length; i++ ) {
+                values[i] = resultArguments[i].evaluate(evaluation);
+            }
+            result( evaluation, genotypeResult, values[1], values[2], values[3], values[4] );
+            return evaluation.result;
+        }
+    }
+
+    /**
+     * State of a single evaluation.
+     */
+    private static class Evaluation {
+
+        private final JythonLogicExecutor executor;
+        private final Sample individual;
+        private final double defaultInterestLevel;
+        private LogicResult result = new LogicResult();
+
+        private Evaluation( JythonLogicExecutor p_executor, Sample p_individual, double p_defaultInterestLevel ) {
+            executor = p_executor;
+            individual = p_individual;
+            defaultInterestLevel = p_defaultInterestLevel;
+        }
+    }
+
+    private static abstract class Expression {
+
+        abstract Object evaluate( Evaluation evaluation ) throws RuleEvaluationException;
+    }
+
+    private static class Constant extends Expression {
+
+        private final Object value;
+
+        private Constant( Object p_value ) {
+            value = p_value;
+        }
+
+        @Override
+        Object evaluate( Evaluation evaluation ) {
+            return value;
+        }
+    }
+
+    private static class DefaultInterestLevel extends Expression {
+
+        @Override
+        Object evaluate( Evaluation evaluation ) {
+            return evaluation.defaultInterestLevel;
+        }
+    }
+
+    private static class ListExpression extends Expression {
+
+        private final List<Expression> elements;
+
+        private ListExpression( List<Expression> p_elements ) {
+            elements = p_elements;
+        }
+
+        @Override
+        Object evaluate( Evaluation evaluation ) throws RuleEvaluationException {
+
+            List<Object> values = new ArrayList<Object>( elements.size() );
+            for ( Expression element : elements ) {
+                values.add( element.evaluate(evaluation) );
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Operator of intermediate results. The left operand is modified and returned, as in the base script.
+     */
+    private static class Operation extends Expression {
+
+        private final String operator;
+        private final Expression left;
+        private final Expression right;
+
+        private Operation( String p_operator, Expression p_left, Expression p_right ) {
+            operator = p_operator;
+            left = p_left;
+            right = p_right;
+        }
+
+        @Override
+        Object evaluate( Evaluation evaluation ) throws RuleEvaluationException {
+
+            LogicResult leftResult = toResult( left.evaluate(evaluation), operator );
+            LogicResult rightResult = toResult( right.evaluate(evaluation), operator );
+
+            switch ( operator ) {
+                case "+": leftResult.add(rightResult); break;
+                case "-": leftResult.subtract(rightResult); break;
+                case "*": leftResult.multiply(rightResult); break;
+                case "/": leftResult.divide(rightResult); break;
+                case "&": leftResult.and(rightResult); break;
+                case "|": leftResult.or(rightResult); break;
+                case "==": leftResult.equals(rightResult); break;
+                case "<": leftResult.lessThan(rightResult); break;
+                case "<=": leftResult.lessThanOrEqual(rightResult); break;
+                case ">": leftResult.greaterThan(rightResult); break;
+                case ">=": leftResult.greaterOrEqual(rightResult); break;
+                default: throw new RuleEvaluationException("Unsupported operator " + operator);
+            }
+            return leftResult;
+        }
+    }
+
+    private static class Call extends Expression {
+
+        private final Function function;
+        private final Expression[] arguments;
+
+        private Call( Function p_function, Expression[] p_arguments ) {
+            function = p_function;
+            arguments = p_arguments;
+        }
+
+        @Override
+        Object evaluate( Evaluation evaluation ) throws RuleEvaluationException {
+
+            Object[] values = new Object[arguments.length];
+            for ( int i = 0; i < arguments.length; i++ ) {
+                values[i] = arguments[i].evaluate(evaluation);
+            }
+            return function.call( evaluation, values );
+        }
+    }
+
+    /**
+     * Functions of the base script with their parameters and default values.
+     */
+    private enum Function {
+
+        GENO( new String[]{ "name", "allele", "alleles", "risk" }, new Object[]{ null, "", Collections.emptyList(), Collections.emptyList() } ),
+        RULE( new String[]{ "id" }, new Object[]{ null } ),
+        RESULT( new String[]{ "logic", "true_interest", "true_result", "false_interest", "false_result" }, new Object[]{ null, 0.0, "", 0.0, "" } ),
+        SET_INTEREST( new String[]{ "test", "true_interest", "false_interest" }, new Object[]{ null, 0.0, 0.0 } ),
+        ACCEPT_RESULT( new String[0], new Object[0] ),
+        ACCEPT_RESULT_IF_ATLEAST_ONE_NON_MISSING_VALUE( new String[0], new Object[0] );
+
+        private final String[] parameters;
+        private final Object[] defaults;
+
+        private Function( String[] p_parameters, Object[] p_defaults ) {
+            parameters = p_parameters;
+            defaults = p_defaults;
+        }
+
+        private static Function find( String name ) {
+
+            for ( Function function : values() ) {
+                if ( function.name().equals(name) ) {
+                    return function;
+                }
+            }
+            return null;
+        }
+
+        private int indexOf( String parameter ) {
+
+            for ( int i = 0; i < parameters.length; i++ ) {
+                if ( parameters[i].equals(parameter) ) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Object call( Evaluation evaluation, Object[] arguments ) throws RuleEvaluationException {
+
+            switch ( this ) {
+                case GENO:
+                    return genotype( evaluation, toText( arguments[0], "name" ), arguments[1], arguments[2], arguments[3] );
+                case RULE:
+                    return evaluation.executor.executeRule( evaluation.individual, toText( arguments[0], "id" ) );
+                case RESULT:
+                    result( evaluation, toResult( arguments[0], "logic" ), arguments[1], arguments[2], arguments[3], arguments[4] );
+                    return null;
+                case SET_INTEREST:
+                    String value = toResult( arguments[0], "test" ).getValue();
+                    evaluation.result.setInterestLevel( toNumber( value != null && !value.isEmpty() ? arguments[1] : arguments[2], "interest" ) );
+                    return null;
+                case ACCEPT_RESULT:
+                    if ( evaluation.result.isUnresolvable() ) {
+                        for ( LogicResult logicResult : evaluation.result.getAssociatedResults() ) {
+                            if ( logicResult.hasMissingData() ) {
+                                evaluation.result.setUnresolvable(false);
+                            }
+                        }
+                    }
+                    return null;
+                default:
+                    for ( LogicResult logicResult : evaluation.result.getAssociatedResults() ) {
+                        if ( !logicResult.isUnresolvable() ) {
+                            evaluation.result.setUnresolvable(false);
+                            break;
+                        }
+                    }
+                    return null;
+            }
+        }
+    }
+
+    private static LogicResult genotype( Evaluation evaluation, String name, Object allele, Object alleles, Object risk ) throws RuleEvaluationException {
+
+        List<?> alleleList = toList( alleles, "alleles" );
+        List<?> riskList = toList( risk, "risk" );
+        LogicResult genotypeResult;
+
+        if ( !alleleList.isEmpty() && !riskList.isEmpty() ) {
+            genotypeResult = null;
+            for ( int i = 0; i < alleleList.size(); i++ ) {
+                genotypeResult = evaluation.executor.compareToData( VARIANT_TYPE, evaluation.individual, VARIANT_ID, name, ALLELE, toText( alleleList.get(i), "alleles" ) );
+                if ( genotypeResult.getResult() ) {
+                    if ( i >= riskList.size() ) {
+                        throw new RuleEvaluationException("No risk given for allele " + alleleList.get(i));
+                    }
+                    genotypeResult.setInterestLevel( toNumber( riskList.get(i), "risk" ) );
+                }
+            }
+        }
+        else {
+            genotypeResult = evaluation.executor.compareToData( VARIANT_TYPE, evaluation.individual, VARIANT_ID, name, ALLELE, toText( allele, "allele" ) );
+            genotypeResult.setType(LogicResult.ALLELE);
+        }
+        return genotypeResult;
+    }
+
+    private static void result( Evaluation evaluation, LogicResult logic, Object trueInterest, Object trueResult, Object falseInterest, Object falseResult ) throws RuleEvaluationException {
+
+        logic.setInterestLevel( evaluation.defaultInterestLevel );
+        Object value = logic.getResult() ? trueResult : falseResult;
+        double interest = toNumber( logic.getResult() ? trueInterest : falseInterest, "interest" );
+
+        if ( !"".equals(value) ) {
+            if ( value instanceof String ) {
+                logic.setValue( (String)value );
+            }
+            else {
+                logic.setValue( toNumber( value, "result" ) );
+            }
+        }
+        if ( interest > 0 ) {
+            logic.setInterestLevel(interest);
+        }
+        evaluation.result = logic;
+    }
+
+    private static LogicResult toResult( Object value, String name ) throws RuleEvaluationException {
+
+        if ( !(value instanceof LogicResult) ) {
+            throw new RuleEvaluationException( "Expected a result for " + name + " but got " + value );
+        }
+        return (LogicResult)value;
+    }
+
+    private static String toText( Object value, String name ) throws RuleEvaluationException {
+
+        if ( !(value instanceof String) ) {
+            throw new RuleEvaluationException( "Expected a string for " + name + " but got " + value );
+        }
+        return (String)value;
+    }
+
+    private static double toNumber( Object value, String name ) throws RuleEvaluationException {
+
+        if ( value instanceof Double ) {
+            return (Double)value;
+        }
+        if ( value instanceof Boolean ) {
+            return ((Boolean)value) ? 1 : 0;
+        }
+        throw new RuleEvaluationException( "Expected a number for " + name + " but got " + value );
+    }
+
+    private static List<?> toList( Object value, String name ) throws RuleEvaluationException {
+
+        if ( !(value instanceof List) ) {
+            throw new RuleEvaluationException( "Expected a list for " + name + " but got " + value );
+        }
+        return (List<?>)value;
+    }
+
+    private enum TokenType { NAME, NUMBER, STRING, OPERATOR, NEWLINE, END }
+
+    private static class Token {
+
+        private final TokenType type;
+        private final String text;
+        private final int line;
+
+        private Token( TokenType p_type, String p_text, int p_line ) {
+            type = p_type;
+            text = p_text;
+            line = p_line;
+        }
+
+        private boolean is( TokenType p_type, String p_text ) {
+            return type == p_type && text.equals(p_text);
+        }
+    }
+
+    /**
+     * Splits logic into tokens. Lines are joined inside brackets as in Python. Indented lines, line continuations,
+     * triple quoted strings and operators outside the rule language are rejected.
+     */
+    private static class Tokenizer {
+
+        private static final String OPERATORS = "()[],=+-*/&|<>";
+        private static final String[] TWO_CHARACTER_OPERATORS = { "<=", ">=", "==" };
+
+        private final String logic;
+        private final List<Token> tokens = new ArrayList<Token>();
+        private int position = 0;
+        private int line = 1;
+        private int depth = 0;
+
+        private Tokenizer( String p_logic ) {
+            logic = p_logic;
+        }
+
+        private List<Token> tokenize() throws RuleSyntaxException {
+
+            boolean lineStart = true;
+
+            while ( position < logic.length() ) {
+                char c = logic.charAt(position);
+
+                if ( c == '\n' ) {
+                    if ( depth == 0 && !tokens.isEmpty() && tokens.get( tokens.size() - 1 ).type != TokenType.NEWLINE ) {
+                        tokens.add( new Token( TokenType.NEWLINE, "\n", line ) );
+                    }
+                    position++;
+                    line++;
+                    lineStart = depth == 0;
+                }
+                else if ( c == ' ' || c == '\t' || c == '\r' || c == '\f' ) {
+                    while ( position < logic.length() && " \t\r\f".indexOf( logic.charAt(position) ) >= 0 ) {
+                        position++;
+                    }
+                    //Indentation is only allowed on lines without statements.
+                    if ( lineStart && position < logic.length() && logic.charAt(position) != '\n' && logic.charAt(position) != '#' ) {
+                        throw error("Indented statement");
+                    }
+                }
+                else if ( c == '#' ) {
+                    while ( position < logic.length() && logic.charAt(position) != '\n' ) {
+                        position++;
+                    }
+                }
+                else {
+                    lineStart = false;
+                    if ( Character.isLetter(c) || c == '_' ) {
+                        readName();
+                    }
+                    else if ( Character.isDigit(c) || ( c == '.' && position + 1 < logic.length() && Character.isDigit( logic.charAt(position + 1) ) ) ) {
+                        readNumber();
+                    }
+                    else if ( c == '"' || c == '\'' ) {
+                        readString(c);
+                    }
+                    else {
+                        readOperator(c);
+                    }
+                }
+            }
+            if ( depth != 0 ) {
+                throw error("Unbalanced brackets");
+            }
+            tokens.add( new Token( TokenType.END, "", line ) );
+            return tokens;
+        }
+
+        private void readName() {
+
+            int start = position;
+            while ( position < logic.length() && ( Character.isLetterOrDigit( logic.charAt(position) ) || logic.charAt(position) == '_' ) ) {
+                position++;
+            }
+            tokens.add( new Token( TokenType.NAME, logic.substring(start, position), line ) );
+        }
+
+        private void readNumber() throws RuleSyntaxException {
+
+            int start = position;
+            while ( position < logic.length() && Character.isDigit( logic.charAt(position) ) ) {
+                position++;
+            }
+            if ( position < logic.length() && logic.charAt(position) == '.' ) {
+                position++;
+                while ( position < logic.length() && Character.isDigit( logic.charAt(position) ) ) {
+                    position++;
+                }
+            }
+            if ( position < logic.length() && ( Character.isLetter( logic.charAt(position) ) || logic.charAt(position) == '_' ) ) {
+                throw error("Unsupported number");
+            }
+            tokens.add( new Token( TokenType.NUMBER, logic.substring(start, position), line ) );
+        }
+
+        private void readString( char quote ) throws RuleSyntaxException {
+
+            if ( logic.startsWith( new String( new char[]{ quote, quote, quote } ), position ) ) {
+                throw error("Triple quoted string");
+            }
+            StringBuilder text = new StringBuilder();
+            position++;
+
+            while ( true ) {
+                if ( position >= logic.length() || logic.charAt(position) == '\n' ) {
+                    throw error("Unterminated string");
+                }
+                char c = logic.charAt(position++);
+                if ( c == quote ) {
+                    break;
+                }
+                if ( c == '\\' ) {
+                    if ( position >= logic.length() ) {
+                        throw error("Unterminated string");
+                    }
+                    char escaped = logic.charAt(position++);
+                    switch ( escaped ) {
+                        case '\\': case '\'': case '"': text.append(escaped); break;
+                        case 'n': text.append('\n'); break;
+                        case 't': text.append('\t'); break;
+                        default: throw error("Unsupported escape \\" + escaped);
+                    }
+                }
+                else {
+                    text.append(c);
+                }
+            }
+            tokens.add( new Token( TokenType.STRING, text.toString(), line ) );
+        }
+
+        private void readOperator( char c ) throws RuleSyntaxException {
+
+            for ( String operator : TWO_CHARACTER_OPERATORS ) {
+                if ( logic.startsWith(operator, position) ) {
+                    tokens.add( new Token( TokenType.OPERATOR, operator, line ) );
+                    position += 2;
+                    return;
+                }
+            }
+            if ( OPERATORS.indexOf(c) < 0 ) {
+                throw error("Unsupported character " + c);
+            }
+            if ( c == '(' || c == '[' ) {
+                depth++;
+            }
+            else if ( c == ')' || c == ']' ) {
+                depth--;
+                if ( depth < 0 ) {
+                    throw error("Unbalanced brackets");
+                }
+            }
+            tokens.add( new Token( TokenType.OPERATOR, String.valueOf(c), line ) );
+            position++;
+        }
+
+        private RuleSyntaxException error( String message ) {
+            return new RuleSyntaxException( message + " on line " + line );
+        }
+    }
+
+    /**
+     * Recursive descent parser following the operator precedence of Python. Chained comparisons are rejected.
+     */
+    private static class Parser {
+
+        private final List<Token> tokens;
+        private int position = 0;
+
+        private Parser( List<Token> p_tokens ) {
+            tokens = p_tokens;
+        }
+
+        private List<Expression> parseProgram() throws RuleSyntaxException {
+
+            List<Expression> statements = new ArrayList<Expression>();
+            while ( peek().type != TokenType.END ) {
+                if ( peek().type == TokenType.NEWLINE ) {
+                    position++;
+                    continue;
+                }
+                statements.add( parseExpression() );
+                if ( peek().type != TokenType.NEWLINE && peek().type != TokenType.END ) {
+                    throw error( "Unexpected " + peek().text );
+                }
+            }
+            return statements;
+        }
+
+        private Expression parseExpression() throws RuleSyntaxException {
+
+            Expression left = parseBitwiseOr();
+            if ( isComparison( peek() ) ) {
+                String operator = next().text;
+                left = new Operation( operator, left, parseBitwiseOr() );
+                if ( isComparison( peek() ) ) {
+                    throw error("Chained comparison");
+                }
+            }
+            return left;
+        }
+
+        private Expression parseBitwiseOr() throws RuleSyntaxException {
+
+            Expression left = parseBitwiseAnd();
+            while ( peek().is( TokenType.OPERATOR, "|" ) ) {
+                next();
+                left = new Operation( "|", left, parseBitwiseAnd() );
+            }
+            return left;
+        }
+
+        private Expression parseBitwiseAnd() throws RuleSyntaxException {
+
+            Expression left = parseSum();
+            while ( peek().is( TokenType.OPERATOR, "&" ) ) {
+                next();
+                left = new Operation( "&", left, parseSum() );
+            }
+            return left;
+        }
+
+        private Expression parseSum() throws RuleSyntaxException {
+
+            Expression left = parseProduct();
+            while ( peek().is( TokenType.OPERATOR, "+" ) || peek().is( TokenType.OPERATOR, "-" ) ) {
+                String operator = next().text;
+                left = new Operation( operator, left, parseProduct() );
+            }
+            return left;
+        }
+
+        private Expression parseProduct() throws RuleSyntaxException {
+
+            Expression left = parseUnary();
+            while ( peek().is( TokenType.OPERATOR, "*" ) || peek().is( TokenType.OPERATOR, "/" ) ) {
+                String operator = next().text;
+                left = new Operation( operator, left, parseUnary() );
+            }
+            return left;
+        }
+
+        //Signs are only supported for number literals.
+        private Expression parseUnary() throws RuleSyntaxException {
+
+            if ( peek().is( TokenType.OPERATOR, "-" ) || peek().is( TokenType.OPERATOR, "+" ) ) {
+                boolean negative = next().text.equals("-");
+                if ( peek().type != TokenType.NUMBER ) {
+                    throw error("Sign of a non-numeric value");
+                }
+                double value = Double.parseDouble( next().text );
+                return new Constant( negative ? -value : value );
+            }
+            return parsePrimary();
+        }
+
+        private Expression parsePrimary() throws RuleSyntaxException {
+
+            Expression expression = parseAtom();
+            if ( peek().is( TokenType.OPERATOR, "(" ) || peek().is( TokenType.OPERATOR, "[" ) ) {
+                throw error("Unsupported call or subscript");
+            }
+            return expression;
+        }
+
+        private Expression parseAtom() throws RuleSyntaxException {
+
+            Token token = next();
+
+            switch ( token.type ) {
+                case NUMBER:
+                    return new Constant( Double.parseDouble(token.text) );
+                case STRING:
+                    if ( peek().type == TokenType.STRING ) {
+                        throw error("Adjacent strings");
+                    }
+                    return new Constant(token.text);
+                case NAME:
+                    return parseName(token);
+                case OPERATOR:
+                    if ( token.text.equals("(") ) {
+                        Expression expression = parseExpression();
+                        expect(")");
+                        return expression;
+                    }
+                    if ( token.text.equals("[") ) {
+                        return parseList();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw error( "Unexpected " + token.text );
+        }
+
+        private Expression parseName( Token token ) throws RuleSyntaxException {
+
+            if ( token.text.equals("True") || token.text.equals("False") ) {
+                return new Constant( Boolean.valueOf( token.text.equals("True") ) );
+            }
+            if ( token.text.equals("defaultInterestLevel") ) {
+                return new DefaultInterestLevel();
+            }
+            Function function = Function.find(token.text);
+            if ( function == null || !peek().is( TokenType.OPERATOR, "(" ) ) {
+                throw error( "Unsupported name " + token.text );
+            }
+            next();
+            return parseCall(function);
+        }
+
+        private Expression parseList() throws RuleSyntaxException {
+
+            List<Expression> elements = new ArrayList<Expression>();
+            while ( !peek().is( TokenType.OPERATOR, "]" ) ) {
+                elements.add( parseExpression() );
+                if ( !peek().is( TokenType.OPERATOR, "]" ) ) {
+                    expect(",");
+                }
+            }
+            next();
+            return new ListExpression(elements);
+        }
+
+        //Binds the arguments of a call to the parameters of the function.
+        private Expression parseCall( Function function ) throws RuleSyntaxException {
+
+            Expression[] arguments = new Expression[function.parameters.length];
+            int positional = 0;
+            boolean keywords = false;
+
+            while ( !peek().is( TokenType.OPERATOR, ")" ) ) {
+                int index;
+                if ( peek().type == TokenType.NAME && peekAt(1).is( TokenType.OPERATOR, "=" ) ) {
+                    String parameter = next().text;
+                    next();
+                    index = function.indexOf(parameter);
+                    if ( index < 0 ) {
+                        throw error( "Unknown parameter " + parameter + " of " + function.name() );
+                    }
+                    keywords = true;
+                }
+                else {
+                    if ( keywords ) {
+                        throw error("Positional argument after keyword argument");
+                    }
+                    index = positional++;
+                    if ( index >= arguments.length ) {
+                        throw error( "Too many arguments for " + function.name() );
+                    }
+                }
+                if ( arguments[index] != null ) {
+                    throw error( "Repeated argument for " + function.name() );
+                }
+                arguments[index] = parseExpression();
+                if ( !peek().is( TokenType.OPERATOR, ")" ) ) {
+                    expect(",");
+                }
+            }
+            next();
+
+            for ( int i = 0; i < arguments.length; i++ ) {
+                if ( arguments[i] == null ) {
+                    if ( function.defaults[i] == null ) {
+                        throw error( "Missing argument " + function.parameters[i] + " of " + function.name() );
+                    }
+                    arguments[i] = new Constant( function.defaults[i] );
+                }
+            }
+            return new Call( function, arguments );
+        }
+
+        private static boolean isComparison( Token token ) {
+            return token.type == TokenType.OPERATOR && ( token.text.equals("==") || token.text.equals("<") || token.text.equals("<=") || token.text.equals(">") || token.text.equals(">=") );
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token peekAt( int offset ) {
+            return tokens.get( Math.min( position + offset, tokens.size() - 1 ) );
+        }
+
+        private Token next() {
+
+            Token token = tokens.get(position);
+            if ( token.type != TokenType.END ) {
+                position++;
+            }
+            return token;
+        }
+
+        private void expect( String operator ) throws RuleSyntaxException {
+
+            if ( !peek().is( TokenType.OPERATOR, operator ) ) {
+                throw error( "Expected " + operator );
+            }
+            next();
+        }
+
+        private RuleSyntaxException error( String message ) {
+            return new RuleSyntaxException( message + " on line " + peek().line );
+        }
+    }
+}
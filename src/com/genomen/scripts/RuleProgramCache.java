@@ -0,0 +1,103 @@
+package com.genomen.scripts;
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * Caches parsed rule logic so that each rule is parsed only once and shared across samples, threads and tasks.
+ * Rules that can not be parsed, or that request the script engine with a <code># engine: jython</code> comment line,
+ * are cached as such and executed with the script engine.
+ * @author ciszek
+ */
+public class RuleProgramCache {
+
+    private static final String JYTHON_DIRECTIVE = "#engine:jython";
+    private static final RuleProgramCache instance = new RuleProgramCache();
+
+    private final ConcurrentHashMap<String, Entry> programs = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Returns the singleton instance of RuleProgramCache
+     * @return instance of RuleProgramCache
+     */
+    public static RuleProgramCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the parsed logic of a rule, parsing it if it is not cached.
+     * @param ruleID id of the rule
+     * @param logic logic of the rule
+     * @return parsed logic, or <code>null</code> if the rule has to be executed with the script engine
+     */
+    public RuleProgram getProgram( String ruleID, String logic ) {
+
+        Entry entry = programs.get(ruleID);
+        if ( entry != null && entry.logic.equals(logic) ) {
+            return entry.program;
+        }
+
+        RuleProgram program = null;
+        if ( !isJythonRequested(logic) ) {
+            try {
+                program = RuleProgram.parse(logic);
+            }
+            catch (RuleSyntaxException ex) {
+                Logger.getLogger( RuleProgramCache.class ).debug( "Rule " + ruleID + " is executed with the script engine: " + ex.getMessage() );
+            }
+        }
+        programs.put( ruleID, new Entry(logic, program) );
+        return program;
+    }
+
+    /**
+     * Removes all parsed rules. Must be called when the rules in the database are changed.
+     */
+    public void invalidate() {
+        programs.clear();
+    }
+
+    /**
+     * Gets the number of cached rules that are executed without the script engine.
+     * @return number of parsed rules
+     */
+    public int getProgramCount() {
+
+        int count = 0;
+        for ( Entry entry : programs.values() ) {
+            if ( entry.program != null ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of cached rules.
+     * @return number of cached rules
+     */
+    public int size() {
+        return programs.size();
+    }
+
+    private static boolean isJythonRequested( String logic ) {
+
+        for ( String line : logic.split("\n") ) {
+            if ( line.replaceAll( "\\s", "" ).equalsIgnoreCase(JYTHON_DIRECTIVE) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Entry {
+
+        private final String logic;
+        private final RuleProgram program;
+
+        private Entry( String p_logic, RuleProgram p_program ) {
+            logic = p_logic;
+            program = p_program;
+        }
+    }
+}
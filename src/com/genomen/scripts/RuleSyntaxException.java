@@ -0,0 +1,14 @@
+package com.genomen.scripts;
+
+/**
+ * Thrown when rule logic can not be parsed by <code>RuleProgram</code>. Such rules are executed with the script engine.
+ * @author ciszek
+ */
+public class RuleSyntaxException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public RuleSyntaxException( String message ) {
+        super(message);
+    }
+}
@@ -2,6 +2,8 @@ package com.genomen.tools;
 
 import com.genomen.core.Configuration;
 import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DerbyDAOFactory;
+import com.genomen.dao.PackedGenotypeStore;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -24,9 +26,13 @@ public class DatabaseRecreator {
 
     public static void recreateDatabase( String args) {
 
-        if (Configuration.getConfiguration().getDBType() == DAOFactory.DERBY ) {
+        if (Configuration.getConfiguration().getDBType() == DAOFactory.DERBY || Configuration.getConfiguration().getDBType() == DAOFactory.PACKED ) {
+            DerbyDAOFactory.closeConnectionPool();
             deleteDatabase();
         }
+        if (Configuration.getConfiguration().getDBType() == DAOFactory.PACKED ) {
+            PackedGenotypeStore.deleteAll();
+        }
         
         String commandFilePath = args;
         
@@ -0,0 +1,153 @@
+package com.genomen.tools;
+
+import com.genomen.core.Configuration;
+import com.genomen.core.Sample;
+import com.genomen.dao.ContentDAO;
+import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DataSetDAO;
+import com.genomen.dao.DerbyDAOFactory;
+import com.genomen.dao.DerbyDataSetDAO;
+import com.genomen.dao.DerbyPartitionedDataSetDAO;
+import com.genomen.entities.DataType;
+import com.genomen.entities.DataTypeManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the stored samples between the storage layouts. After the migration the <code>storageLayout</code>
+ * of the configuration has to be changed to match the new layout.
+ * Usage: <code>StorageLayoutMigrator &lt;layout&gt;</code>, where layout is 0 for one table per sample and 1 for tables shared by the samples.
+ * @author ciszek
+ */
+public class StorageLayoutMigrator {
+
+    public static void main( String[] args ) {
+
+        if ( args.length != 1 || !args[0].matches("[01]") ) {
+            System.out.println("Usage: StorageLayoutMigrator <0|1>");
+            return;
+        }
+        migrate( Integer.parseInt(args[0]) );
+        DerbyDAOFactory.closeConnectionPool();
+    }
+
+    /**
+     * Moves the data of all stored samples to the tables of a storage layout and drops the tables of the other layout.
+     * Tables of the other layout are kept if any of their data could not be moved.
+     * @param targetLayout <code>DataSetDAO.PER_SAMPLE_LAYOUT</code> or <code>DataSetDAO.PARTITIONED_LAYOUT</code>
+     * @return <code>true</code> if all data was moved, <code>false</code> otherwise
+     */
+    public static boolean migrate( int targetLayout ) {
+
+        DataSetDAO perSampleDAO = new DerbyDataSetDAO();
+        DataSetDAO partitionedDAO = new DerbyPartitionedDataSetDAO();
+        boolean toPartitioned = targetLayout == DataSetDAO.PARTITIONED_LAYOUT;
+        DataSetDAO sourceDAO = toPartitioned ? perSampleDAO : partitionedDAO;
+        DataSetDAO targetDAO = toPartitioned ? partitionedDAO : perSampleDAO;
+
+        String schemaName = Configuration.getConfiguration().getDatabaseTempSchemaName();
+        ContentDAO contentDAO = DAOFactory.getDAOFactory().getContentDAO();
+        String[] tableArray = contentDAO.getTables(schemaName);
+        if ( tableArray == null ) {
+            System.out.println("Schema " + schemaName + " can not be read");
+            return false;
+        }
+        Set<String> tables = new HashSet<String>( Arrays.asList(tableArray) );
+
+        List<Sample> samples = perSampleDAO.getSamples();
+        List<DataType> dataTypes = DataTypeManager.getInstance().getDataTypes();
+        Set<String> migratedTables = new HashSet<String>();
+        boolean success = true;
+
+        Connection connection = null;
+        try {
+            connection = DerbyDAOFactory.createConnection();
+            connection.setAutoCommit(false);
+
+            for ( DataType dataType : dataTypes ) {
+                int moved = 0;
+                for ( Sample sample : samples ) {
+
+                    String sampleID = sample.getId().toUpperCase();
+                    String sourceTable = sourceDAO.createTableName(sampleID, dataType);
+                    if ( !tables.contains(sourceTable) ) {
+                        continue;
+                    }
+                    String targetTable = targetDAO.createTableName(sampleID, dataType);
+                    if ( !tables.contains(targetTable) ) {
+                        targetDAO.createDataTable(schemaName, sampleID, dataType);
+                        tables.add(targetTable);
+                    }
+
+                    try {
+                        copySample( connection, schemaName, sourceTable, targetTable, sampleID, dataType, toPartitioned );
+                        connection.commit();
+                        targetDAO.createIndexes(schemaName, sampleID, dataType);
+                        migratedTables.add(sourceTable);
+                        moved++;
+                    }
+                    catch (SQLException ex) {
+                        connection.rollback();
+                        success = false;
+                        System.out.println( "Unable to move " + dataType.getId() + " of " + sample.getId() + ": " + ex.getMessage() );
+                    }
+                }
+                if ( moved > 0 ) {
+                    System.out.println( dataType.getId() + " of " + moved + " samples moved" );
+                }
+            }
+        }
+        catch (Exception ex) {
+            System.out.println(ex);
+            return false;
+        }
+        finally {
+            if ( connection != null ) {
+                try {
+                    connection.setAutoCommit(true);
+                    connection.close();
+                }
+                catch (SQLException ex) {
+                    System.out.println(ex);
+                }
+            }
+        }
+
+        if ( success ) {
+            for ( String table : migratedTables ) {
+                contentDAO.dropTable(schemaName, table);
+            }
+            System.out.println( migratedTables.size() + " tables dropped" );
+        }
+        return success;
+    }
+
+    //Copies the rows of a sample from a table of one layout to the table of the other layout.
+    private static void copySample( Connection connection, String schemaName, String sourceTable, String targetTable, String sampleID, DataType dataType, boolean toPartitioned ) throws SQLException {
+
+        StringBuilder columns = new StringBuilder();
+        for ( String attributeName : dataType.getAttributeNames() ) {
+            columns.append(attributeName);
+            columns.append(", ");
+        }
+        columns.append("ID");
+
+        PreparedStatement statement;
+        if ( toPartitioned ) {
+            statement = connection.prepareStatement( "INSERT INTO " + schemaName + "." + targetTable + " ( " + columns + ", " + DataSetDAO.SAMPLE_COLUMN + " ) "
+                                                   + "SELECT " + columns + ", CAST(? AS VARCHAR(100)) FROM " + schemaName + "." + sourceTable );
+        }
+        else {
+            statement = connection.prepareStatement( "INSERT INTO " + schemaName + "." + targetTable + " ( " + columns + " ) "
+                                                   + "SELECT " + columns + " FROM " + schemaName + "." + sourceTable + " WHERE " + DataSetDAO.SAMPLE_COLUMN + " = ?" );
+        }
+        statement.setString(1, sampleID);
+        statement.executeUpdate();
+        statement.close();
+    }
+}
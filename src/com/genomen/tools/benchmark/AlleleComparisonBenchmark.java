@@ -0,0 +1,29 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.scripts.LogicResult;
+
+/**
+ * Compares genotypes to the allele specifications used by rules, as done for each <code>GENO</code> call.
+ * Throughput is measured in comparisons per second.
+ * @author ciszek
+ */
+public class AlleleComparisonBenchmark extends Benchmark {
+
+    private static final String[] GENOTYPES = { "A/G", "G/A", "C/C", "T/-", "A/T", "G/G", "C/T", "A/A" };
+    private static final String[] ALLELES = { "A/G", "C/C", "N/T", "A/N", "G/G", "T/-", "AT/-" };
+
+    @Override
+    public int run() {
+
+        LogicResult result = new LogicResult();
+        result.setType( LogicResult.BOOLEAN );
+        for ( String genotype : GENOTYPES ) {
+            for ( String allele : ALLELES ) {
+                result.setValue(genotype);
+                result.compareToAllele(allele);
+                consume( result.getResult() );
+            }
+        }
+        return GENOTYPES.length * ALLELES.length;
+    }
+}
@@ -0,0 +1,64 @@
+package com.genomen.tools.benchmark;
+
+/**
+ * A measured operation. The runner calls <code>setUp</code> once, then <code>run</code> repeatedly while measuring
+ * throughput, and finally <code>tearDown</code>. Results of the measured code are passed to <code>consume</code>
+ * so that the JIT compiler can not remove the code as unused.
+ * @author ciszek
+ */
+public abstract class Benchmark {
+
+    private volatile int sink;
+
+    /**
+     * Gets the name under which the results are reported.
+     * @return name of the benchmark
+     */
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Gets the parameters distinguishing this instance from other instances of the same benchmark.
+     * @return parameters as <code>name=value</code> pairs separated by commas, or an empty string
+     */
+    public String getParameters() {
+        return "";
+    }
+
+    /**
+     * Prepares the data used by the benchmark.
+     * @throws Exception if the benchmark can not be prepared
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Performs the measured operation.
+     * @return number of operations performed, such as rows read or rules evaluated
+     * @throws Exception if the operation fails
+     */
+    public abstract int run() throws Exception;
+
+    /**
+     * Releases the data used by the benchmark.
+     */
+    public void tearDown() {
+    }
+
+    /**
+     * Consumes a result of the measured code.
+     * @param value the result
+     */
+    protected void consume( Object value ) {
+        sink += value == null ? 0 : value.hashCode();
+    }
+
+    /**
+     * Consumes a result of the measured code.
+     * @param value the result
+     */
+    protected void consume( int value ) {
+        sink += value;
+    }
+}
@@ -0,0 +1,142 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.core.Configuration;
+import com.genomen.dao.DAOFactory;
+import com.genomen.importers.ImporterException;
+import com.genomen.importers.ImporterFactory;
+import com.genomen.importers.derby.DerbyTwentyThreeandMeImporter;
+import com.genomen.utils.ResourceReleaser;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic data sets used by the benchmarks. The variants are deterministic, so results of different runs are comparable.
+ * @author ciszek
+ */
+public class BenchmarkData {
+
+    private static final String[] BASES = { "A", "C", "G", "T" };
+    //Contig names and qualities that must stay readable, mixed into the generated VCF files.
+    private static final String[] CONTIGS = { "GL000192.1", "HLA-A*01:01", "chrUn_gl000220" };
+    private static final String[] QUALITIES = { "50", "-10.5", "1e+03", ".", "99.9", "2.5E-2" };
+
+    /**
+     * Gets the id of a synthetic variant.
+     * @param index index of the variant
+     * @return rs id of the variant
+     */
+    public static String getVariantID( int index ) {
+        return "rs" + ( 1000 + index );
+    }
+
+    /**
+     * Gets the genotype of a synthetic variant in the form used by 23andMe files.
+     * @param index index of the variant
+     * @return two bases
+     */
+    public static String getGenotype( int index ) {
+        return BASES[ index % BASES.length ] + BASES[ ( index / BASES.length ) % BASES.length ];
+    }
+
+    /**
+     * Writes a 23andMe raw data file.
+     * @param variants number of variants
+     * @return the file, deleted on exit
+     * @throws IOException if the file can not be written
+     */
+    public static File createTwentyThreeandMeFile( int variants ) throws IOException {
+
+        File file = File.createTempFile( "benchmark", ".txt" );
+        file.deleteOnExit();
+        BufferedWriter writer = new BufferedWriter( new FileWriter(file) );
+        try {
+            writer.write("# rsid\tchromosome\tposition\tgenotype\n");
+            for ( int i = 0; i < variants; i++ ) {
+                writer.write( getVariantID(i) + "\t" + ( 1 + i % 22 ) + "\t" + ( 10000 + i * 100 ) + "\t" + getGenotype(i) + "\n" );
+            }
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Writes a VCF file with one genotype column per sample. Every tenth variant is on an unplaced contig.
+     * @param variants number of variants
+     * @param samples number of samples
+     * @return the file, deleted on exit
+     * @throws IOException if the file can not be written
+     */
+    public static File createVCFFile( int variants, int samples ) throws IOException {
+
+        File file = File.createTempFile( "benchmark", ".vcf" );
+        file.deleteOnExit();
+        BufferedWriter writer = new BufferedWriter( new FileWriter(file) );
+        try {
+            writer.write("##fileformat=VCFv4.1\n");
+            writer.write("##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Total Depth\">\n");
+            writer.write("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+            writer.write("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+            for ( int sample = 0; sample < samples; sample++ ) {
+                writer.write( "\tS" + sample );
+            }
+            writer.write("\n");
+
+            for ( int i = 0; i < variants; i++ ) {
+                String ref = BASES[ i % BASES.length ];
+                String alt = BASES[ ( i + 1 ) % BASES.length ];
+                String chromosome = i % 10 == 9 ? CONTIGS[ ( i / 10 ) % CONTIGS.length ] : String.valueOf( 1 + i % 22 );
+                String quality = QUALITIES[ i % QUALITIES.length ];
+                writer.write( chromosome + "\t" + ( 10000 + i * 100 ) + "\t" + getVariantID(i) + "\t" + ref + "\t" + alt + "\t" + quality + "\tPASS\tDP=" + ( 10 + i % 40 ) + "\tGT" );
+                for ( int sample = 0; sample < samples; sample++ ) {
+                    writer.write( ( i + sample ) % 3 == 0 ? "\t0/1" : ( ( i + sample ) % 3 == 1 ? "\t1|1" : "\t0/0" ) );
+                }
+                writer.write("\n");
+            }
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Imports a synthetic 23andMe sample into the temporary schema.
+     * @param sampleID id of the sample
+     * @param variants number of variants
+     * @throws IOException if the data file can not be written
+     * @throws ImporterException if the sample can not be imported
+     */
+    public static void importSample( String sampleID, int variants ) throws IOException, ImporterException {
+
+        File file = createTwentyThreeandMeFile(variants);
+        removeSample(sampleID);
+        ImporterFactory.initialize();
+        new DerbyTwentyThreeandMeImporter().importDataSet( Configuration.getConfiguration().getDatabaseTempSchemaName(), sampleID, new String[]{ file.getPath() } );
+        file.delete();
+    }
+
+    /**
+     * Removes a sample imported by <code>importSample</code>.
+     * @param sampleID id of the sample
+     */
+    public static void removeSample( String sampleID ) {
+
+        List<String> samples = new ArrayList<String>();
+        samples.add(sampleID);
+        removeSamples(samples);
+    }
+
+    /**
+     * Removes imported samples.
+     * @param sampleIDs ids of the samples
+     */
+    public static void removeSamples( List<String> sampleIDs ) {
+        DAOFactory.getDAOFactory().getDataSetDAO().removeSamples(sampleIDs);
+    }
+}
@@ -0,0 +1,75 @@
+package com.genomen.tools.benchmark;
+
+import java.util.List;
+
+/**
+ * Throughput of a benchmark over the measurement iterations.
+ * @author ciszek
+ */
+public class BenchmarkResult {
+
+    //Two-sided 99.9% quantile of the normal distribution, used for the confidence interval of the score.
+    private static final double CONFIDENCE_QUANTILE = 3.291;
+
+    private final Benchmark benchmark;
+    private final int warmupIterations;
+    private final double[] scores;
+
+    /**
+     * Constructs a result.
+     * @param p_benchmark the measured benchmark
+     * @param p_warmupIterations number of iterations run before measuring
+     * @param p_scores operations per second of each measurement iteration
+     */
+    public BenchmarkResult( Benchmark p_benchmark, int p_warmupIterations, List<Double> p_scores ) {
+
+        benchmark = p_benchmark;
+        warmupIterations = p_warmupIterations;
+        scores = new double[p_scores.size()];
+        for ( int i = 0; i < scores.length; i++ ) {
+            scores[i] = p_scores.get(i);
+        }
+    }
+
+    public Benchmark getBenchmark() {
+        return benchmark;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public double[] getScores() {
+        return scores;
+    }
+
+    /**
+     * Gets the mean throughput.
+     * @return operations per second
+     */
+    public double getScore() {
+
+        double sum = 0;
+        for ( double score : scores ) {
+            sum += score;
+        }
+        return scores.length == 0 ? 0 : sum / scores.length;
+    }
+
+    /**
+     * Gets the half width of the 99.9% confidence interval of the mean throughput.
+     * @return operations per second, <code>NaN</code> with fewer than two iterations
+     */
+    public double getScoreError() {
+
+        if ( scores.length < 2 ) {
+            return Double.NaN;
+        }
+        double mean = getScore();
+        double squares = 0;
+        for ( double score : scores ) {
+            squares += ( score - mean ) * ( score - mean );
+        }
+        return CONFIDENCE_QUANTILE * Math.sqrt( squares / ( scores.length - 1 ) ) / Math.sqrt( scores.length );
+    }
+}
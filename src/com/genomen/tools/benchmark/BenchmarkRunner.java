@@ -0,0 +1,243 @@
+package com.genomen.tools.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.genomen.dao.DerbyDAOFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the benchmarks of the import, rule evaluation and report paths and writes their throughput as JSON in the
+ * result format of JMH, so results of different versions can be compared with the same tools. Each benchmark is run
+ * for a number of warmup iterations, followed by the measured iterations of a fixed duration.
+ * Usage: <code>BenchmarkRunner [-o results.json] [-w warmupIterations] [-i iterations] [-t secondsPerIteration] [regexp]</code>,
+ * where only the benchmarks with a name matching the regular expression are run.
+ * @author ciszek
+ */
+public class BenchmarkRunner {
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final int DEFAULT_ITERATION_SECONDS = 2;
+    private static final String DEFAULT_RESULT_FILE = "benchmark-results.json";
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    /**
+     * Constructs a runner.
+     * @param p_warmupIterations number of iterations run before measuring
+     * @param p_iterations number of measured iterations
+     * @param p_iterationSeconds duration of an iteration in seconds
+     */
+    public BenchmarkRunner( int p_warmupIterations, int p_iterations, int p_iterationSeconds ) {
+        warmupIterations = p_warmupIterations;
+        iterations = p_iterations;
+        iterationNanos = p_iterationSeconds * 1000000000L;
+    }
+
+    public static void main( String[] args ) {
+
+        String resultFile = DEFAULT_RESULT_FILE;
+        int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+        int iterations = DEFAULT_ITERATIONS;
+        int iterationSeconds = DEFAULT_ITERATION_SECONDS;
+        Pattern filter = null;
+
+        try {
+            for ( int i = 0; i < args.length; i++ ) {
+                if ( args[i].matches("-[owit]") && i + 1 < args.length ) {
+                    String value = args[++i];
+                    switch ( args[i-1] ) {
+                        case "-o": resultFile = value; break;
+                        case "-w": warmupIterations = Integer.parseInt(value); break;
+                        case "-i": iterations = Integer.parseInt(value); break;
+                        default: iterationSeconds = Integer.parseInt(value); break;
+                    }
+                }
+                else if ( filter == null && !args[i].startsWith("-") ) {
+                    filter = Pattern.compile(args[i]);
+                }
+                else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+            if ( warmupIterations < 0 || iterations < 1 || iterationSeconds < 1 ) {
+                throw new IllegalArgumentException();
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            System.out.println("Usage: BenchmarkRunner [-o results.json] [-w warmupIterations] [-i iterations] [-t secondsPerIteration] [regexp]");
+            return;
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for ( Benchmark benchmark : createBenchmarks() ) {
+            if ( filter == null || filter.matcher( benchmark.getName() ).find() ) {
+                benchmarks.add(benchmark);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner( warmupIterations, iterations, iterationSeconds );
+        List<BenchmarkResult> results = runner.run(benchmarks);
+        DerbyDAOFactory.closeConnectionPool();
+
+        printResults(results);
+        try {
+            writeResults( results, new File(resultFile) );
+            System.out.println("Results written to " + resultFile);
+        }
+        catch (IOException ex) {
+            Logger.getLogger( BenchmarkRunner.class ).error(ex);
+        }
+    }
+
+    /**
+     * Creates all benchmarks of the suite.
+     * @return the benchmarks in the order they are run
+     */
+    public static List<Benchmark> createBenchmarks() {
+
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.add( new VCFReaderBenchmark(1) );
+        benchmarks.add( new VCFReaderBenchmark(10) );
+        benchmarks.add( new VCFReaderBenchmark(100) );
+        benchmarks.add( new TwentyThreeandMeImportBenchmark() );
+        benchmarks.add( new VCFAlleleBenchmark() );
+        benchmarks.add( new AlleleComparisonBenchmark() );
+        benchmarks.add( new RuleEvaluationBenchmark() );
+        benchmarks.add( new DataEntityBenchmark() );
+        benchmarks.add( new TraitEntryBenchmark() );
+        return benchmarks;
+    }
+
+    /**
+     * Runs benchmarks one at a time. A benchmark that fails is logged and left out of the results.
+     * @param benchmarks the benchmarks
+     * @return results of the benchmarks that completed
+     */
+    public List<BenchmarkResult> run( List<Benchmark> benchmarks ) {
+
+        List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+        for ( Benchmark benchmark : benchmarks ) {
+            BenchmarkResult result = run(benchmark);
+            if ( result != null ) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private BenchmarkResult run( Benchmark benchmark ) {
+
+        System.out.println( "Running " + getLabel(benchmark) );
+        try {
+            benchmark.setUp();
+            for ( int i = 0; i < warmupIterations; i++ ) {
+                System.out.println( String.format( "  Warmup %d: %.3f ops/s", i + 1, runIteration(benchmark) ) );
+            }
+            List<Double> scores = new ArrayList<Double>();
+            for ( int i = 0; i < iterations; i++ ) {
+                scores.add( runIteration(benchmark) );
+                System.out.println( String.format( "  Iteration %d: %.3f ops/s", i + 1, scores.get(i) ) );
+            }
+            return new BenchmarkResult( benchmark, warmupIterations, scores );
+        }
+        catch (Exception ex) {
+            Logger.getLogger( BenchmarkRunner.class ).error( benchmark.getName() + ": " + ex );
+            return null;
+        }
+        finally {
+            benchmark.tearDown();
+        }
+    }
+
+    //Runs the benchmark repeatedly for the duration of an iteration and returns the operations per second.
+    private double runIteration( Benchmark benchmark ) throws Exception {
+
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed = 0;
+        while ( elapsed < iterationNanos ) {
+            operations += benchmark.run();
+            elapsed = System.nanoTime() - start;
+        }
+        return operations * 1000000000.0 / elapsed;
+    }
+
+    private static void printResults( List<BenchmarkResult> results ) {
+
+        System.out.println();
+        System.out.println( String.format( "%-50s %15s %12s  %s", "Benchmark", "Score", "Error", "Units" ) );
+        for ( BenchmarkResult result : results ) {
+            System.out.println( String.format( "%-50s %15.3f %12.3f  %s", getLabel( result.getBenchmark() ), result.getScore(), result.getScoreError(), "ops/s" ) );
+        }
+    }
+
+    /**
+     * Writes results as a JSON array in the format JMH uses for throughput benchmarks.
+     * @param results the results
+     * @param file the result file
+     * @throws IOException if the file can not be written
+     */
+    public static void writeResults( List<BenchmarkResult> results, File file ) throws IOException {
+
+        JsonGenerator generator = new JsonFactory().createGenerator( file, JsonEncoding.UTF8 );
+        generator.useDefaultPrettyPrinter();
+        try {
+            generator.writeStartArray();
+            for ( BenchmarkResult result : results ) {
+                Benchmark benchmark = result.getBenchmark();
+                generator.writeStartObject();
+                generator.writeStringField( "benchmark", benchmark.getClass().getName() );
+                generator.writeStringField( "mode", "thrpt" );
+                generator.writeNumberField( "threads", 1 );
+                generator.writeNumberField( "warmupIterations", result.getWarmupIterations() );
+                generator.writeNumberField( "measurementIterations", result.getScores().length );
+
+                if ( !benchmark.getParameters().isEmpty() ) {
+                    generator.writeObjectFieldStart("params");
+                    for ( String parameter : benchmark.getParameters().split(",") ) {
+                        String[] nameAndValue = parameter.split( "=", 2 );
+                        generator.writeStringField( nameAndValue[0], nameAndValue.length > 1 ? nameAndValue[1] : "" );
+                    }
+                    generator.writeEndObject();
+                }
+
+                generator.writeObjectFieldStart("primaryMetric");
+                generator.writeNumberField( "score", result.getScore() );
+                if ( Double.isNaN( result.getScoreError() ) ) {
+                    generator.writeStringField( "scoreError", "NaN" );
+                }
+                else {
+                    generator.writeNumberField( "scoreError", result.getScoreError() );
+                }
+                generator.writeStringField( "scoreUnit", "ops/s" );
+                generator.writeArrayFieldStart("rawData");
+                generator.writeStartArray();
+                for ( double score : result.getScores() ) {
+                    generator.writeNumber(score);
+                }
+                generator.writeEndArray();
+                generator.writeEndArray();
+                generator.writeEndObject();
+
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        finally {
+            generator.close();
+        }
+    }
+
+    private static String getLabel( Benchmark benchmark ) {
+        return benchmark.getParameters().isEmpty() ? benchmark.getName() : benchmark.getName() + "(" + benchmark.getParameters() + ")";
+    }
+}
@@ -0,0 +1,49 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.core.Configuration;
+import com.genomen.dao.DAOFactory;
+import com.genomen.dao.DataSetDAO;
+import com.genomen.entities.DataType;
+import com.genomen.entities.DataTypeManager;
+import com.genomen.importers.derby.DerbySNPImporter;
+
+/**
+ * Looks up single variants of an imported sample by id, as done for genotypes that are not indexed.
+ * Throughput is measured in lookups per second.
+ * @author ciszek
+ */
+public class DataEntityBenchmark extends Benchmark {
+
+    private static final String SAMPLE_ID = "BENCHMARK_DATA";
+    private static final int VARIANTS = 5000;
+    private static final int LOOKUPS = 100;
+
+    private DataSetDAO dataSetDAO;
+    private DataType dataType;
+    private String schemaName;
+    private int next = 0;
+
+    @Override
+    public void setUp() throws Exception {
+
+        BenchmarkData.importSample( SAMPLE_ID, VARIANTS );
+        dataSetDAO = DAOFactory.getDAOFactory().getDataSetDAO();
+        dataType = DataTypeManager.getInstance().getDataType( DerbySNPImporter.VARIANT );
+        schemaName = Configuration.getConfiguration().getDatabaseTempSchemaName();
+    }
+
+    @Override
+    public int run() {
+
+        for ( int i = 0; i < LOOKUPS; i++ ) {
+            next = ( next + 7919 ) % VARIANTS;
+            consume( dataSetDAO.getDataEntity( schemaName, SAMPLE_ID, DerbySNPImporter.VARIANT_ID, BenchmarkData.getVariantID(next), dataType ) );
+        }
+        return LOOKUPS;
+    }
+
+    @Override
+    public void tearDown() {
+        BenchmarkData.removeSample(SAMPLE_ID);
+    }
+}
@@ -0,0 +1,70 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.analyses.snp.Rule;
+import com.genomen.core.AnalysisTask;
+import com.genomen.core.Configuration;
+import com.genomen.core.Sample;
+import com.genomen.scripts.JythonLogicExecutor;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies rules in the form produced by the SNPedia exporter to an imported sample with the rule engine set in
+ * the configuration. Each rule compares the genotypes of a variant to a few allele combinations.
+ * Throughput is measured in rule evaluations per second.
+ * @author ciszek
+ */
+public class RuleEvaluationBenchmark extends Benchmark {
+
+    private static final String SAMPLE_ID = "BENCHMARK_RULES";
+    private static final int VARIANTS = 5000;
+    private static final int RULES = 1000;
+    private static final String[] GENOTYPES = { "A/A", "A/G", "G/G" };
+
+    private final Map<String, Rule> rules = new HashMap<String, Rule>();
+    private final Sample sample = new Sample(SAMPLE_ID);
+    private AnalysisTask analysisTask;
+
+    @Override
+    public String getParameters() {
+        return "engine=" + ( Configuration.getConfiguration().getRuleEngine() == JythonLogicExecutor.NATIVE_ENGINE ? "native" : "jython" );
+    }
+
+    @Override
+    public void setUp() throws Exception {
+
+        BenchmarkData.importSample( SAMPLE_ID, VARIANTS );
+        analysisTask = new AnalysisTask();
+        analysisTask.addIndividual(sample);
+
+        for ( int i = 0; i < RULES; i++ ) {
+            //Every fifth rule refers to a variant missing from the sample.
+            String variantID = BenchmarkData.getVariantID( i % 5 == 4 ? VARIANTS + i : i * ( VARIANTS / RULES ) );
+            String logic = "";
+            for ( int genotype = 0; genotype < GENOTYPES.length; genotype++ ) {
+                logic += "RESULT(GENO(\"" + variantID + "\", \"" + GENOTYPES[genotype] + "\"), true_result=\"" + variantID + "(" + GENOTYPES[genotype] + ")\", true_interest=" + ( genotype + 1 ) + ")\n";
+            }
+            String id = "benchmark" + i;
+            rules.put( id, new Rule( id, Rule.TEXT, "BENCHMARK", 1, logic ) );
+        }
+    }
+
+    @Override
+    public int run() {
+
+        JythonLogicExecutor executor = new JythonLogicExecutor( analysisTask, rules );
+        for ( Rule rule : rules.values() ) {
+            consume( executor.execute( rule, sample ) );
+        }
+        return rules.size();
+    }
+
+    @Override
+    public void tearDown() {
+
+        if ( analysisTask != null ) {
+            analysisTask.releaseGenotypeIndexes();
+        }
+        BenchmarkData.removeSample(SAMPLE_ID);
+    }
+}
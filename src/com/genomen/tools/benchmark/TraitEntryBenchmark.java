@@ -0,0 +1,55 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.reporter.TraitEntry;
+import java.io.BufferedWriter;
+import java.io.Writer;
+
+/**
+ * Writes a trait entry of a report as XML to a writer discarding the output. Throughput is measured in entries per second.
+ * @author ciszek
+ */
+public class TraitEntryBenchmark extends Benchmark {
+
+    private static final int ROWS = 50;
+
+    private TraitEntry traitEntry;
+    private BufferedWriter writer;
+
+    @Override
+    public void setUp() {
+
+        String[] headers = { "variant", "genotype", "result", "interest" };
+        String[] headerDescriptions = { "Variant", "Genotype", "Result", "Interest level" };
+        traitEntry = new TraitEntry( headers, headerDescriptions, "Benchmark trait", "Short description of the trait & its effects",
+                "Long description of the trait, with <markup> and \"quotes\" that have to be escaped." );
+        for ( int i = 0; i < ROWS; i++ ) {
+            traitEntry.getTable().addRow( new String[]{ BenchmarkData.getVariantID(i), BenchmarkData.getGenotype(i), "Result " + i + " <of> " + ROWS, String.valueOf( i % 5 ) } );
+        }
+        writer = new BufferedWriter( new DiscardingWriter() );
+    }
+
+    @Override
+    public int run() {
+
+        traitEntry.writeXML(writer);
+        return 1;
+    }
+
+    /**
+     * Writer ignoring everything written to it.
+     */
+    private static class DiscardingWriter extends Writer {
+
+        @Override
+        public void write( char[] buffer, int offset, int length ) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.core.Configuration;
+import com.genomen.importers.ImporterFactory;
+import com.genomen.importers.derby.DerbyTwentyThreeandMeImporter;
+import java.io.File;
+
+/**
+ * Imports a 23andMe file with <code>DerbyTwentyThreeandMeImporter</code>. The imported sample is removed after each
+ * import. Throughput is measured in rows per second.
+ * @author ciszek
+ */
+public class TwentyThreeandMeImportBenchmark extends Benchmark {
+
+    private static final String SAMPLE_ID = "BENCHMARK_IMPORT";
+    private static final int VARIANTS = 100000;
+
+    private File file;
+
+    @Override
+    public void setUp() throws Exception {
+
+        BenchmarkData.removeSample(SAMPLE_ID);
+        ImporterFactory.initialize();
+        file = BenchmarkData.createTwentyThreeandMeFile(VARIANTS);
+    }
+
+    @Override
+    public int run() throws Exception {
+
+        try {
+            consume( new DerbyTwentyThreeandMeImporter().importDataSet( Configuration.getConfiguration().getDatabaseTempSchemaName(), SAMPLE_ID, new String[]{ file.getPath() } ) );
+        }
+        finally {
+            BenchmarkData.removeSample(SAMPLE_ID);
+        }
+        return VARIANTS;
+    }
+
+    @Override
+    public void tearDown() {
+        if ( file != null ) {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.core.Configuration;
+import com.genomen.importers.ImporterFactory;
+import com.genomen.importers.derby.DerbyVCFImporter;
+import com.genomen.utils.ResourceReleaser;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports a VCF file with <code>DerbyVCFImporter</code>, which decodes the genotype of each sample into alleles.
+ * The sites cover substitutions, insertions, deletions and multiallelic sites. The imported samples are removed
+ * after each import. Throughput is measured in genotypes per second.
+ * @author ciszek
+ */
+public class VCFAlleleBenchmark extends Benchmark {
+
+    private static final String SAMPLE_PREFIX = "BENCHMARK_ALLELES_";
+    private static final int ROWS = 2000;
+    private static final String[] REFERENCES = { "A", "G", "ATG", "C", "TCA" };
+    private static final String[] ALTERNATIVES = { "G", "GTT", "A", "T,CA", "T,TCAG" };
+    private static final String[] BIALLELIC_GENOTYPES = { "0/1", "1|1", "0/0" };
+    private static final String[] MULTIALLELIC_GENOTYPES = { "0/1", "1/2", "2|1" };
+
+    private final List<String> sampleIDs = new ArrayList<String>();
+    private File file;
+
+    @Override
+    public void setUp() throws Exception {
+
+        for ( int sample = 0; sample < BIALLELIC_GENOTYPES.length; sample++ ) {
+            sampleIDs.add( SAMPLE_PREFIX + sample );
+        }
+        BenchmarkData.removeSamples(sampleIDs);
+        ImporterFactory.initialize();
+
+        file = File.createTempFile( "benchmark", ".vcf" );
+        file.deleteOnExit();
+        BufferedWriter writer = new BufferedWriter( new FileWriter(file) );
+        try {
+            writer.write("##fileformat=VCFv4.1\n");
+            writer.write("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+            writer.write("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+            for ( String sampleID : sampleIDs ) {
+                writer.write( "\t" + sampleID );
+            }
+            writer.write("\n");
+
+            for ( int i = 0; i < ROWS; i++ ) {
+                int site = i % REFERENCES.length;
+                String[] genotypes = ALTERNATIVES[site].contains(",") ? MULTIALLELIC_GENOTYPES : BIALLELIC_GENOTYPES;
+                writer.write( ( 1 + i % 22 ) + "\t" + ( 10000 + i * 100 ) + "\t" + BenchmarkData.getVariantID(i) + "\t" + REFERENCES[site] + "\t" + ALTERNATIVES[site] + "\t50\tPASS\t.\tGT" );
+                for ( String genotype : genotypes ) {
+                    writer.write( "\t" + genotype );
+                }
+                writer.write("\n");
+            }
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+    }
+
+    @Override
+    public int run() throws Exception {
+
+        try {
+            consume( new DerbyVCFImporter().importDataSet( Configuration.getConfiguration().getDatabaseTempSchemaName(), "", new String[]{ file.getPath() } ) );
+        }
+        finally {
+            BenchmarkData.removeSamples(sampleIDs);
+        }
+        return ROWS * sampleIDs.size();
+    }
+
+    @Override
+    public void tearDown() {
+        if ( file != null ) {
+            file.delete();
+        }
+    }
+}
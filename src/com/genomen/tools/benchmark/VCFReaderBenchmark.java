@@ -0,0 +1,64 @@
+package com.genomen.tools.benchmark;
+
+import com.genomen.readers.vcfreader.VCFReader;
+import com.genomen.readers.vcfreader.VCFRow;
+import java.io.File;
+
+/**
+ * Reads a VCF file row by row. Throughput is measured in rows per second.
+ * @author ciszek
+ */
+public class VCFReaderBenchmark extends Benchmark {
+
+    private static final int VARIANTS = 20000;
+
+    private final int samples;
+    private File file;
+
+    /**
+     * Constructs a benchmark.
+     * @param p_samples number of genotype columns in the file
+     */
+    public VCFReaderBenchmark( int p_samples ) {
+        samples = p_samples;
+    }
+
+    @Override
+    public String getParameters() {
+        return "samples=" + samples;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        file = BenchmarkData.createVCFFile( VARIANTS / samples, samples );
+    }
+
+    @Override
+    public int run() throws Exception {
+
+        VCFReader reader = new VCFReader();
+        if ( !reader.open( file.getPath() ) ) {
+            throw new IllegalStateException( "Unable to open " + file.getPath() );
+        }
+        int rows = 0;
+        try {
+            VCFRow row = reader.readNextRow();
+            while ( row != null ) {
+                consume(row);
+                rows++;
+                row = reader.readNextRow();
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    @Override
+    public void tearDown() {
+        if ( file != null ) {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.genomen.tools.generator;
+
+import com.genomen.utils.ResourceReleaser;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Generates synthetic inputs for load testing: 23andMe raw data files, a multi-sample VCF file, a PED/MAP pair
+ * and a rule base in the XML format of <code>XMLImporter</code>, as written by the SNPedia exporter. The output is
+ * determined by the seed and written one row at a time, so files of any size can be generated in constant memory.
+ * Usage: <code>DatasetGenerator [-s seed] [-n samples] [-v variants] [-r rules] [-m ruleVariants] &lt;23andme|vcf|ped|rules|all&gt; &lt;outputDirectory&gt;</code>
+ * @author ciszek
+ */
+public class DatasetGenerator {
+
+    public static final String VCF_FILE = "synthetic.vcf";
+    public static final String PED_FILE = "synthetic.ped";
+    public static final String MAP_FILE = "synthetic.map";
+    public static final String RULE_FILE = "synthetic_rules.xml";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String[] RULE_GENOTYPE_NAMES = { "homozygous reference", "heterozygous", "homozygous alternative" };
+    private static final int MAX_MAGNITUDE = 4;
+
+    private final SyntheticGenome genome;
+    private final int samples;
+
+    /**
+     * Constructs a generator.
+     * @param p_seed seed of the generated data
+     * @param p_samples number of samples in the data sets
+     * @param p_variants number of variants in the data sets
+     */
+    public DatasetGenerator( long p_seed, int p_samples, int p_variants ) {
+        genome = new SyntheticGenome( p_seed, p_variants );
+        samples = p_samples;
+    }
+
+    public static void main( String[] args ) {
+
+        long seed = 1;
+        int samples = 10;
+        int variants = 100000;
+        int rules = 1000;
+        int ruleVariants = -1;
+        String format = null;
+        String outputDirectory = null;
+
+        try {
+            for ( int i = 0; i < args.length; i++ ) {
+                if ( args[i].matches("-[snvrm]") && i + 1 < args.length ) {
+                    String value = args[++i];
+                    switch ( args[i-1] ) {
+                        case "-s": seed = Long.parseLong(value); break;
+                        case "-n": samples = Integer.parseInt(value); break;
+                        case "-v": variants = Integer.parseInt(value); break;
+                        case "-r": rules = Integer.parseInt(value); break;
+                        default: ruleVariants = Integer.parseInt(value); break;
+                    }
+                }
+                else if ( format == null && args[i].matches("23andme|vcf|ped|rules|all") ) {
+                    format = args[i];
+                }
+                else if ( format != null && outputDirectory == null ) {
+                    outputDirectory = args[i];
+                }
+                else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+            if ( format == null || outputDirectory == null || samples < 1 || variants < 1 || rules < 0 || ruleVariants == 0 || ruleVariants < -1 ) {
+                throw new IllegalArgumentException();
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            System.out.println("Usage: DatasetGenerator [-s seed] [-n samples] [-v variants] [-r rules] [-m ruleVariants] <23andme|vcf|ped|rules|all> <outputDirectory>");
+            return;
+        }
+
+        File directory = new File(outputDirectory);
+        directory.mkdirs();
+        DatasetGenerator generator = new DatasetGenerator( seed, samples, variants );
+        boolean all = format.equals("all");
+
+        try {
+            if ( all || format.equals("23andme") ) {
+                generator.writeTwentyThreeandMeFiles(directory);
+            }
+            if ( all || format.equals("vcf") ) {
+                generator.writeVCF( new File( directory, VCF_FILE ) );
+            }
+            if ( all || format.equals("ped") ) {
+                generator.writePED( new File( directory, PED_FILE ), new File( directory, MAP_FILE ) );
+            }
+            if ( all || format.equals("rules") ) {
+                generator.writeRules( new File( directory, RULE_FILE ), rules, ruleVariants == -1 ? variants : ruleVariants );
+            }
+        }
+        catch (IOException ex) {
+            System.out.println( "Unable to write to " + directory.getPath() + ": " + ex.getMessage() );
+        }
+    }
+
+    /**
+     * Writes a 23andMe raw data file named by the sample id for each sample.
+     * @param directory directory of the files
+     * @throws IOException if a file can not be written
+     */
+    public void writeTwentyThreeandMeFiles( File directory ) throws IOException {
+
+        for ( int sample = 0; sample < samples; sample++ ) {
+            BufferedWriter writer = createWriter( new File( directory, genome.getSampleID(sample) + ".txt" ) );
+            try {
+                writer.write("# Synthetic data\n");
+                writer.write("# rsid\tchromosome\tposition\tgenotype\n");
+                for ( int variant = 0; variant < genome.getVariantCount(); variant++ ) {
+                    writer.write( genome.getVariantID(variant) );
+                    writer.write('\t');
+                    writer.write( String.valueOf( genome.getChromosome(variant) ) );
+                    writer.write('\t');
+                    writer.write( String.valueOf( genome.getPosition(variant) ) );
+                    writer.write('\t');
+                    writeAlleles( writer, sample, variant, "" );
+                    writer.write('\n');
+                }
+            }
+            finally {
+                ResourceReleaser.close(writer);
+            }
+        }
+    }
+
+    /**
+     * Writes a VCF file with a genotype column for each sample.
+     * @param file the VCF file
+     * @throws IOException if the file can not be written
+     */
+    public void writeVCF( File file ) throws IOException {
+
+        BufferedWriter writer = createWriter(file);
+        try {
+            writer.write("##fileformat=VCFv4.1\n");
+            writer.write("##INFO=<ID=AF,Number=A,Type=Float,Description=\"Allele Frequency\">\n");
+            writer.write("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+            writer.write("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+            for ( int sample = 0; sample < samples; sample++ ) {
+                writer.write('\t');
+                writer.write( genome.getSampleID(sample) );
+            }
+            writer.write('\n');
+
+            for ( int variant = 0; variant < genome.getVariantCount(); variant++ ) {
+                writer.write( genome.getChromosome(variant) + "\t" + genome.getPosition(variant) + "\t" + genome.getVariantID(variant) + "\t"
+                        + genome.getReference(variant) + "\t" + genome.getAlternative(variant) + "\t50\tPASS\tAF="
+                        + String.format( Locale.ROOT, "%.3f", genome.getAlternativeFrequency(variant) ) + "\tGT" );
+                for ( int sample = 0; sample < samples; sample++ ) {
+                    int alternativeCount = genome.getAlternativeCount( sample, variant );
+                    writer.write( alternativeCount == 0 ? "\t0/0" : ( alternativeCount == 1 ? "\t0/1" : "\t1/1" ) );
+                }
+                writer.write('\n');
+            }
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+    }
+
+    /**
+     * Writes a PED file with a row for each sample and the MAP file describing its variants.
+     * @param pedFile the PED file
+     * @param mapFile the MAP file
+     * @throws IOException if a file can not be written
+     */
+    public void writePED( File pedFile, File mapFile ) throws IOException {
+
+        BufferedWriter writer = createWriter(mapFile);
+        try {
+            for ( int variant = 0; variant < genome.getVariantCount(); variant++ ) {
+                writer.write( genome.getChromosome(variant) + " " + genome.getVariantID(variant) + " 0 " + genome.getPosition(variant) + "\n" );
+            }
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+
+        writer = createWriter(pedFile);
+        try {
+            for ( int sample = 0; sample < samples; sample++ ) {
+                //Family, individual, father, mother, sex and phenotype, where -9 stands for a missing phenotype.
+                writer.write( "FAM" + ( sample + 1 ) + " " + ( sample + 1 ) + " 0 0 " + genome.getSex(sample) + " -9" );
+                for ( int variant = 0; variant < genome.getVariantCount(); variant++ ) {
+                    writer.write(' ');
+                    writeAlleles( writer, sample, variant, " " );
+                }
+                writer.write('\n');
+            }
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+    }
+
+    /**
+     * Writes a rule base in which each rule reports the genotype of one variant. The rules refer to the first
+     * variants of the data sets, each variant being used by every <code>variants</code>th rule.
+     * @param file the XML file
+     * @param rules number of rules
+     * @param variants number of variants referred to by the rules
+     * @throws IOException if the file can not be written
+     */
+    public void writeRules( File file, int rules, int variants ) throws IOException {
+
+        BufferedWriter writer = createWriter(file);
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<TABLES>\n<LANGUAGE><SYMBOLIC_NAME_ID>ENG</SYMBOLIC_NAME_ID><NAME>English</NAME></LANGUAGE>\n");
+            for ( int variant = 0; variant < Math.min( rules, variants ); variant++ ) {
+                writer.write( "<GENOTYPE><SYMBOLIC_NAME_ID>" + genome.getVariantID(variant) + "</SYMBOLIC_NAME_ID></GENOTYPE>\n" );
+            }
+            for ( int rule = 0; rule < rules; rule++ ) {
+                writeRule( writer, rule, rule % variants );
+            }
+            writer.write("</TABLES>\n");
+        }
+        finally {
+            ResourceReleaser.close(writer);
+        }
+    }
+
+    private void writeRule( Writer writer, int rule, int variant ) throws IOException {
+
+        String variantID = genome.getVariantID(variant);
+        String symbolicName = "SYNTHETIC_" + ( rule + 1 );
+        String reference = genome.getReference(variant);
+        String alternative = genome.getAlternative(variant);
+        String[] genotypes = { reference + "/" + reference, reference + "/" + alternative, alternative + "/" + alternative };
+
+        writer.write( "<TRAIT><SYMBOLIC_NAME_ID>" + symbolicName + "</SYMBOLIC_NAME_ID><CLASS>TRAIT</CLASS></TRAIT>\n" );
+        writer.write( "<TRAIT_DESCRIPTION><SYMBOLIC_NAME_ID>" + symbolicName + "</SYMBOLIC_NAME_ID><LANGUAGE_SYMBOLIC_NAME_ID>ENG</LANGUAGE_SYMBOLIC_NAME_ID><TRAIT_SYMBOLIC_NAME_ID>"
+                + symbolicName + "</TRAIT_SYMBOLIC_NAME_ID><NAME>" + variantID + "</NAME><SHORT_DESC>Synthetic trait " + ( rule + 1 ) + " of " + variantID
+                + "</SHORT_DESC><DESCRIPTION>Generated for load testing.</DESCRIPTION></TRAIT_DESCRIPTION>\n" );
+
+        writer.write( "<RULE><SYMBOLIC_NAME_ID>" + symbolicName + "</SYMBOLIC_NAME_ID><TRAIT_SYMBOLIC_NAME_ID>" + symbolicName + "</TRAIT_SYMBOLIC_NAME_ID><LOGIC>\n" );
+        for ( int genotype = 0; genotype < genotypes.length; genotype++ ) {
+            //Magnitudes are given with one decimal, as in SNPedia.
+            double magnitude = Math.floor( genome.getRuleValue( rule, genotype ) * MAX_MAGNITUDE * 10 ) / 10;
+            writer.write( "RESULT(GENO(\"" + variantID + "\", \"" + genotypes[genotype] + "\"), true_result=\"" + symbolicName + "_" + ( genotype + 1 ) + "\", true_interest=" + magnitude + ")\n" );
+        }
+        writer.write("</LOGIC><EFFECT_TYPE>TEXT</EFFECT_TYPE><EFFECT_UNIT></EFFECT_UNIT><INTEREST_LEVEL>0</INTEREST_LEVEL><SUBRESULT>N</SUBRESULT></RULE>\n");
+
+        for ( int genotype = 0; genotype < genotypes.length; genotype++ ) {
+            writer.write( "<RESULT_DESCRIPTION><SYMBOLIC_NAME_ID>" + symbolicName + "_" + ( genotype + 1 ) + "</SYMBOLIC_NAME_ID><LANGUAGE_SYMBOLIC_NAME_ID>ENG</LANGUAGE_SYMBOLIC_NAME_ID><RULE_SYMBOLIC_NAME_ID>"
+                    + symbolicName + "</RULE_SYMBOLIC_NAME_ID><DESCRIPTION>" + genotypes[genotype] + " is " + RULE_GENOTYPE_NAMES[genotype] + " for " + variantID + ".</DESCRIPTION></RESULT_DESCRIPTION>\n" );
+        }
+    }
+
+    //Writes the two alleles of a sample, reference alleles first.
+    private void writeAlleles( Writer writer, int sample, int variant, String separator ) throws IOException {
+
+        int alternativeCount = genome.getAlternativeCount( sample, variant );
+        writer.write( alternativeCount == 2 ? genome.getAlternative(variant) : genome.getReference(variant) );
+        writer.write(separator);
+        writer.write( alternativeCount == 0 ? genome.getReference(variant) : genome.getAlternative(variant) );
+    }
+
+    private static BufferedWriter createWriter( File file ) throws IOException {
+        return new BufferedWriter( new OutputStreamWriter( new FileOutputStream(file), StandardCharsets.UTF_8 ), BUFFER_SIZE );
+    }
+}
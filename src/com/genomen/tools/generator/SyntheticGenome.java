@@ -0,0 +1,168 @@
+package com.genomen.tools.generator;
+
+/**
+ * Deterministic model of synthetic variants and the genotypes of synthetic samples. Every property is computed
+ * from the seed and the indexes of the variant and sample alone, so any genotype can be produced in any order
+ * without keeping earlier ones in memory, and the same seed always gives the same data in every file format.
+ * Genotypes follow Hardy-Weinberg proportions of an alternative allele frequency drawn for each variant.
+ * @author ciszek
+ */
+public class SyntheticGenome {
+
+    private static final String[] BASES = { "A", "C", "G", "T" };
+    private static final int CHROMOSOMES = 22;
+    private static final int FIRST_POSITION = 10000;
+    private static final int POSITION_SPACING = 1000;
+    private static final int FIRST_RSID = 1000;
+    private static final double MIN_FREQUENCY = 0.05;
+    private static final double MAX_FREQUENCY = 0.5;
+
+    //Streams of random values, kept apart so that adding a property does not change the others.
+    private static final long VARIANT_STREAM = 1;
+    private static final long GENOTYPE_STREAM = 2;
+    private static final long SEX_STREAM = 3;
+
+    private final long seed;
+    private final int variants;
+
+    /**
+     * Constructs a model.
+     * @param p_seed seed of the generated data
+     * @param p_variants number of variants, used to spread the variants over the chromosomes
+     */
+    public SyntheticGenome( long p_seed, int p_variants ) {
+        seed = p_seed;
+        variants = p_variants;
+    }
+
+    /**
+     * Gets the number of variants of the data sets.
+     * @return number of variants
+     */
+    public int getVariantCount() {
+        return variants;
+    }
+
+    /**
+     * Gets the id of a sample.
+     * @param sample index of the sample
+     * @return sample id consisting of letters and digits
+     */
+    public String getSampleID( int sample ) {
+        return String.format( "SAMPLE%06d", sample + 1 );
+    }
+
+    /**
+     * Gets the sex of a sample in the coding of PED files.
+     * @param sample index of the sample
+     * @return 1 for male, 2 for female
+     */
+    public int getSex( int sample ) {
+        return 1 + (int)( hash( SEX_STREAM, sample, 0 ) >>> 63 );
+    }
+
+    /**
+     * Gets the rs id of a variant. Ids do not depend on the number of variants, so data sets and rule bases
+     * generated with the same seed refer to the same variants.
+     * @param variant index of the variant
+     * @return rs id
+     */
+    public String getVariantID( int variant ) {
+        return "rs" + ( FIRST_RSID + (long)variant );
+    }
+
+    /**
+     * Gets the chromosome of a variant. The variants are divided into consecutive blocks of the autosomes.
+     * @param variant index of the variant
+     * @return chromosome number from 1 to 22
+     */
+    public int getChromosome( int variant ) {
+        return 1 + (int)( (long)variant * CHROMOSOMES / Math.max( variants, 1 ) );
+    }
+
+    /**
+     * Gets the position of a variant. Positions grow with the index of the variant.
+     * @param variant index of the variant
+     * @return base pair position
+     */
+    public long getPosition( int variant ) {
+        return FIRST_POSITION + (long)variant * POSITION_SPACING + Math.abs( hash( VARIANT_STREAM, variant, 1 ) % POSITION_SPACING );
+    }
+
+    /**
+     * Gets the reference allele of a variant.
+     * @param variant index of the variant
+     * @return a single base
+     */
+    public String getReference( int variant ) {
+        return BASES[ getReferenceIndex(variant) ];
+    }
+
+    /**
+     * Gets the alternative allele of a variant, which always differs from the reference allele.
+     * @param variant index of the variant
+     * @return a single base
+     */
+    public String getAlternative( int variant ) {
+
+        int offset = 1 + (int)( ( hash( VARIANT_STREAM, variant, 3 ) >>> 1 ) % ( BASES.length - 1 ) );
+        return BASES[ ( getReferenceIndex(variant) + offset ) % BASES.length ];
+    }
+
+    /**
+     * Gets the frequency of the alternative allele of a variant in the population.
+     * @param variant index of the variant
+     * @return frequency between 0.05 and 0.5
+     */
+    public double getAlternativeFrequency( int variant ) {
+        return MIN_FREQUENCY + ( MAX_FREQUENCY - MIN_FREQUENCY ) * toUnit( hash( VARIANT_STREAM, variant, 4 ) );
+    }
+
+    /**
+     * Gets the number of alternative alleles a sample carries at a variant.
+     * @param sample index of the sample
+     * @param variant index of the variant
+     * @return 0 for homozygous reference, 1 for heterozygous and 2 for homozygous alternative
+     */
+    public int getAlternativeCount( int sample, int variant ) {
+
+        double frequency = getAlternativeFrequency(variant);
+        double draw = toUnit( hash( GENOTYPE_STREAM, sample, variant ) );
+        double homozygousReference = ( 1 - frequency ) * ( 1 - frequency );
+        if ( draw < homozygousReference ) {
+            return 0;
+        }
+        return draw < homozygousReference + 2 * frequency * ( 1 - frequency ) ? 1 : 2;
+    }
+
+    /**
+     * Gets a value of the rule stream, used for choices made when generating rules.
+     * @param rule index of the rule
+     * @param choice index of the choice within the rule
+     * @return a value between 0 inclusive and 1 exclusive
+     */
+    public double getRuleValue( int rule, int choice ) {
+        return toUnit( hash( VARIANT_STREAM + GENOTYPE_STREAM + SEX_STREAM, rule, choice ) );
+    }
+
+    private int getReferenceIndex( int variant ) {
+        return (int)( ( hash( VARIANT_STREAM, variant, 2 ) >>> 1 ) % BASES.length );
+    }
+
+    private long hash( long stream, long first, long second ) {
+        return mix( mix( mix( seed + stream ) + first ) + second );
+    }
+
+    //Finalizer of the SplitMix64 generator, spreading each input bit over the whole output.
+    private static long mix( long value ) {
+
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+        return z ^ ( z >>> 31 );
+    }
+
+    private static double toUnit( long value ) {
+        return ( value >>> 11 ) * 0x1.0p-53;
+    }
+}
@@ -46,6 +46,9 @@ public class ArgumentProcessor {
     private static final String COMMAND_LANGUAGE = "-l";
     private static final String VALID_LANGUAGE_REG_EXP = "^\\w+";
 
+    private static final String COMMAND_PRIORITY = "-p";
+    private static final String VALID_PRIORITY_REG_EXP = "^-?\\d{1,9}";
+
     private static final String COMMAND_HELP = "--help";
     private static final String COMMAND_DESTROY_DATABASE = "--destroy-db";
     
@@ -102,6 +105,7 @@ public class ArgumentProcessor {
         analysisRequest = new AnalysisRequest( dataSets, requiredAnalyses, requiredSamples,language, requiredFormats  );
         analysisRequest.setName(outputName); 
         analysisRequest.setOutputPath(outputPath);
+        analysisRequest.setPriority( parsePriority(args) );
         
         //Skip dataset removal if persistence is required or no input dataset is defined, 
         if ( datasetPersistenceRequired(args) ) {
@@ -281,6 +285,19 @@ public class ArgumentProcessor {
 
        return findParameter( COMMAND_LANGUAGE, VALID_LANGUAGE_REG_EXP, args );
     }
+
+    private static int parsePriority( String[] args ) throws InvalidCLIArgumentException {
+
+        if ( findParameterIndex( COMMAND_PRIORITY, args ) < 0 ) {
+            return 0;
+        }
+        String priority = findParameter( COMMAND_PRIORITY, VALID_PRIORITY_REG_EXP, args );
+
+        if ( priority == null ) {
+            throw new InvalidCLIArgumentException(ERROR_MESSAGE);
+        }
+        return Integer.parseInt(priority);
+    }
     
     /**
      * Gets the name of the imported database file.
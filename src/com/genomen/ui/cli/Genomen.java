@@ -16,9 +16,10 @@ import com.genomen.importers.Importer;
 import com.genomen.importers.ImporterException;
 import com.genomen.importers.ImporterFactory;
 import com.genomen.reporter.CSVReportCreator;
+import com.genomen.reporter.HTMLReportWriter;
+import com.genomen.reporter.ReportCreator;
 import com.genomen.reporter.ReportFormat;
 import com.genomen.reporter.XMLReportCreator;
-import com.genomen.reporter.XSLTTransformer;
 import com.genomen.tools.DatabaseRecreator;
 import com.genomen.utils.database.XMLExporter;
 import com.genomen.utils.database.XMLImporter;
@@ -209,8 +210,7 @@ public class Genomen implements Observer {
                 XMLReportCreator.createXML(analysisRequest.getPath(),analysisRequest.getReports().get(i));
             }                
             if ( analysisRequest.getRequiredFormats().contains( ReportFormat.HTML.getName() ) ) {
-                XMLReportCreator.createXML(analysisRequest.getPath(), analysisRequest.getReports().get(i));
-                XSLTTransformer.transform( analysisRequest.getPath() + analysisRequest.getReports().get(i).getName() + ".xml", Configuration.getConfiguration().getXSLTFilePath(), analysisRequest.getPath() + analysisRequest.getReports().get(i).getName() + ".html");                       
+                ReportCreator.writeReport( analysisRequest.getReports().get(i), new HTMLReportWriter(analysisRequest.getPath()) );
             }  
            
         }
@@ -286,6 +286,7 @@ public class Genomen implements Observer {
     
     private void importDatasets(String[] args) throws InvalidCLIArgumentException {
         System.out.println(MESSAGE_IMPORTING_DATASETS);      
+        ImporterFactory.initialize();
         List<DataSet> datasets = ArgumentProcessor.parseDataSets(args);
         for ( int i = 0; i < datasets.size(); i++ ) {
             Importer dataSetImporter = ImporterFactory.getDatasetImporterFactory().getImporter(datasets.get(i).getFormat());
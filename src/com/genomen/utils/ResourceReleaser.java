@@ -1,6 +1,10 @@
 package com.genomen.utils;
 import java.io.Closeable;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import org.apache.log4j.Logger;
 
 
@@ -26,4 +30,36 @@ public class ResourceReleaser {
         }
 
     }
+
+    /**
+     * Releases the memory mapping of a buffer, so that the mapped file can be deleted or replaced. The buffer must not
+     * be used afterwards. A mapping that can not be released here is released when the buffer is garbage collected.
+     * @param buffer buffer to be released
+     */
+    public static void unmap( MappedByteBuffer buffer ) {
+
+        if ( buffer == null ) {
+            return;
+        }
+        try {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class ).invoke( unsafeField.get(null), buffer );
+            }
+            catch (NoSuchMethodException ex) {
+                //Before Java 9 the cleaner of the buffer is called directly.
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if ( cleaner != null ) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            Logger.getLogger(ResourceReleaser.class).debug(ex);
+        }
+    }
 }
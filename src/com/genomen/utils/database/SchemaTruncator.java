@@ -2,6 +2,9 @@ package com.genomen.utils.database;
 
 import com.genomen.dao.ContentDAO;
 import com.genomen.dao.DAOFactory;
+import com.genomen.dao.KnowledgeBaseCache;
+import com.genomen.scripts.CompiledRuleCache;
+import com.genomen.scripts.RuleProgramCache;
 import java.util.Arrays;
 import java.util.LinkedList;
 
@@ -40,6 +43,11 @@ public class SchemaTruncator {
             truncateTables(tableNode, databaseGraph, schemaName, tablesLeft );
         }
 
+        //Rules may have been removed, so previously compiled rules and cached texts can no longer be used.
+        CompiledRuleCache.getInstance().invalidate();
+        RuleProgramCache.getInstance().invalidate();
+        KnowledgeBaseCache.getInstance().invalidate();
+
         if ( clearDiscSpace ) {
             clearUnusedDiscSpace(schemaName);
         }
@@ -2,6 +2,7 @@ package com.genomen.utils.database;
 
 import com.genomen.dao.ContentDAO;
 import com.genomen.dao.DAOFactory;
+import com.genomen.dao.KnowledgeBaseCache;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.CharacterCodingException;
@@ -20,6 +21,8 @@ import com.genomen.core.Error;
 import com.genomen.core.Error.ErrorType;
 import java.util.LinkedList;
 import com.genomen.utils.StringUtils;
+import com.genomen.scripts.CompiledRuleCache;
+import com.genomen.scripts.RuleProgramCache;
 
 /**
  * Imports data from XML file into the database
@@ -58,6 +61,11 @@ public class XMLImporter {
 
             insertTables(tableNode);
         }
+
+        //Rules may have changed, so previously compiled rules and cached texts can no longer be used.
+        CompiledRuleCache.getInstance().invalidate();
+        RuleProgramCache.getInstance().invalidate();
+        KnowledgeBaseCache.getInstance().invalidate();
     }
 
     //Creates a list of Tuples for each unique table in the XML file and stores the lists to a HashMap